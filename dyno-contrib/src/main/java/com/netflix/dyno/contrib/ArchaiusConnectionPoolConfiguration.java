@@ -8,9 +8,15 @@ import org.slf4j.LoggerFactory;
 import com.netflix.config.DynamicBooleanProperty;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicPropertyFactory;
+import com.netflix.config.DynamicStringProperty;
+import com.netflix.dyno.connectionpool.CircuitBreakerConfig;
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
 import com.netflix.dyno.connectionpool.ErrorRateMonitorConfig;
+import com.netflix.dyno.connectionpool.OutlierDetectionConfig;
 import com.netflix.dyno.connectionpool.RetryPolicy.RetryPolicyFactory;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.dyno.connectionpool.impl.ExponentialBackoffRetry;
+import com.netflix.dyno.connectionpool.impl.RetryBudget;
 import com.netflix.dyno.connectionpool.impl.RetryNTimes;
 import com.netflix.dyno.connectionpool.impl.RunOnce;
 
@@ -29,9 +35,30 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 	private final DynamicIntProperty poolShutdownDelay;
 	private final DynamicBooleanProperty localDcAffinity;
 	private final DynamicIntProperty resetTimingsFrequency;
+	private final DynamicIntProperty maxConcurrentPoolReconnects;
+	private final DynamicIntProperty poolReconnectBackoffBaseMillis;
+	private final DynamicIntProperty minHealthyConnectionsPercentage;
+	private final DynamicIntProperty connectionIdleValidationMillis;
+	private final DynamicIntProperty maxConnectionAgeMillis;
+	private final DynamicIntProperty keepAliveProbeFrequencySeconds;
+	private final DynamicIntProperty slowStartMillis;
+	private final DynamicBooleanProperty lazyConnections;
+	private final DynamicIntProperty coreConnsPerHost;
+	private final DynamicStringProperty topologySnapshotFile;
+	private final DynamicIntProperty topologyReconcileFrequencySeconds;
+	private final DynamicBooleanProperty progressiveStartup;
+	private final DynamicIntProperty remoteRackPrimingConcurrency;
+	private final DynamicIntProperty maxConcurrentHostUpdates;
+	private final DynamicIntProperty maxAsyncWorkerThreads;
+	private final DynamicIntProperty maxInFlightPerConnection;
+	private final DynamicBooleanProperty useVirtualThreads;
+	private final DynamicIntProperty operationDeadlineMillis;
 	
 	private final LoadBalancingStrategy loadBalanceStrategy;
 	private final ErrorRateMonitorConfig errorRateConfig;
+	private final CircuitBreakerConfig circuitBreakerConfig;
+	private final OutlierDetectionConfig outlierDetectionConfig;
+	private final ConcurrencyLimitConfig concurrencyLimitConfig;
 	private final RetryPolicyFactory retryPolicyFactory;
 	
 	public ArchaiusConnectionPoolConfiguration(String name) {
@@ -48,9 +75,30 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 		poolShutdownDelay = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.poolShutdownDelay", super.getPoolShutdownDelay());
 		localDcAffinity = DynamicPropertyFactory.getInstance().getBooleanProperty(propertyPrefix + ".connection.localDcAffinity", super.localDcAffinity());
 		resetTimingsFrequency = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.metrics.resetFrequencySeconds", super.getTimingCountersResetFrequencySeconds());
+		maxConcurrentPoolReconnects = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxConcurrentPoolReconnects", super.getMaxConcurrentPoolReconnects());
+		poolReconnectBackoffBaseMillis = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.poolReconnectBackoffBaseMillis", super.getPoolReconnectBackoffBaseMillis());
+		minHealthyConnectionsPercentage = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.minHealthyConnectionsPercentage", super.getMinHealthyConnectionsPercentage());
+		connectionIdleValidationMillis = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.idleValidationMillis", super.getConnectionIdleValidationMillis());
+		maxConnectionAgeMillis = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxAgeMillis", super.getMaxConnectionAgeMillis());
+		keepAliveProbeFrequencySeconds = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.keepAliveProbeFrequencySeconds", super.getKeepAliveProbeFrequencySeconds());
+		slowStartMillis = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.slowStartMillis", super.getSlowStartMillis());
+		lazyConnections = DynamicPropertyFactory.getInstance().getBooleanProperty(propertyPrefix + ".connection.lazyConnections", super.lazyConnections());
+		coreConnsPerHost = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.coreConnsPerHost", super.getCoreConnsPerHost());
+		topologySnapshotFile = DynamicPropertyFactory.getInstance().getStringProperty(propertyPrefix + ".topology.snapshotFile", super.getTopologySnapshotFile());
+		topologyReconcileFrequencySeconds = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".topology.reconcileFrequencySeconds", super.getTopologyReconcileFrequencySeconds());
+		progressiveStartup = DynamicPropertyFactory.getInstance().getBooleanProperty(propertyPrefix + ".connection.progressiveStartup", super.progressiveStartup());
+		remoteRackPrimingConcurrency = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.remoteRackPrimingConcurrency", super.getRemoteRackPrimingConcurrency());
+		maxConcurrentHostUpdates = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxConcurrentHostUpdates", super.getMaxConcurrentHostUpdates());
+		maxAsyncWorkerThreads = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxAsyncWorkerThreads", super.getMaxAsyncWorkerThreads());
+		maxInFlightPerConnection = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxInFlightPerConnection", super.getMaxInFlightPerConnection());
+		useVirtualThreads = DynamicPropertyFactory.getInstance().getBooleanProperty(propertyPrefix + ".connection.useVirtualThreads", super.useVirtualThreads());
+		operationDeadlineMillis = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.operationDeadlineMillis", super.getOperationDeadlineMillis());
 		
 		loadBalanceStrategy = parseLBStrategy(propertyPrefix);
 		errorRateConfig = parseErrorRateMonitorConfig(propertyPrefix);
+		circuitBreakerConfig = parseCircuitBreakerConfig(propertyPrefix);
+		outlierDetectionConfig = parseOutlierDetectionConfig(propertyPrefix);
+		concurrencyLimitConfig = parseConcurrencyLimitConfig(propertyPrefix);
 		retryPolicyFactory = parseRetryPolicyFactory(propertyPrefix);
 	}
 
@@ -116,6 +164,111 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 		return resetTimingsFrequency.get();
 	}
 
+	@Override
+	public CircuitBreakerConfig getCircuitBreakerConfig() {
+		return circuitBreakerConfig;
+	}
+
+	@Override
+	public OutlierDetectionConfig getOutlierDetectionConfig() {
+		return outlierDetectionConfig;
+	}
+
+	@Override
+	public ConcurrencyLimitConfig getConcurrencyLimitConfig() {
+		return concurrencyLimitConfig;
+	}
+
+	@Override
+	public int getMaxConcurrentPoolReconnects() {
+		return maxConcurrentPoolReconnects.get();
+	}
+
+	@Override
+	public int getPoolReconnectBackoffBaseMillis() {
+		return poolReconnectBackoffBaseMillis.get();
+	}
+
+	@Override
+	public int getMinHealthyConnectionsPercentage() {
+		return minHealthyConnectionsPercentage.get();
+	}
+
+	@Override
+	public int getConnectionIdleValidationMillis() {
+		return connectionIdleValidationMillis.get();
+	}
+
+	@Override
+	public int getMaxConnectionAgeMillis() {
+		return maxConnectionAgeMillis.get();
+	}
+
+	@Override
+	public int getKeepAliveProbeFrequencySeconds() {
+		return keepAliveProbeFrequencySeconds.get();
+	}
+
+	@Override
+	public int getSlowStartMillis() {
+		return slowStartMillis.get();
+	}
+
+	@Override
+	public boolean lazyConnections() {
+		return lazyConnections.get();
+	}
+
+	@Override
+	public int getCoreConnsPerHost() {
+		return coreConnsPerHost.get();
+	}
+
+	@Override
+	public String getTopologySnapshotFile() {
+		return topologySnapshotFile.get();
+	}
+
+	@Override
+	public int getTopologyReconcileFrequencySeconds() {
+		return topologyReconcileFrequencySeconds.get();
+	}
+
+	@Override
+	public boolean progressiveStartup() {
+		return progressiveStartup.get();
+	}
+
+	@Override
+	public int getRemoteRackPrimingConcurrency() {
+		return remoteRackPrimingConcurrency.get();
+	}
+
+	@Override
+	public int getMaxConcurrentHostUpdates() {
+		return maxConcurrentHostUpdates.get();
+	}
+
+	@Override
+	public int getMaxAsyncWorkerThreads() {
+		return maxAsyncWorkerThreads.get();
+	}
+
+	@Override
+	public int getMaxInFlightPerConnection() {
+		return maxInFlightPerConnection.get();
+	}
+
+	@Override
+	public boolean useVirtualThreads() {
+		return useVirtualThreads.get();
+	}
+
+	@Override
+	public int getOperationDeadlineMillis() {
+		return operationDeadlineMillis.get();
+	}
+
 
 	
 	private LoadBalancingStrategy parseLBStrategy(String propertyPrefix) {
@@ -174,6 +327,69 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 		return new ErrorRateMonitorConfigImpl();
 	}
 	
+	private CircuitBreakerConfig parseCircuitBreakerConfig(String propertyPrefix) {
+		
+		String cbPrefix = propertyPrefix + ".circuitBreaker";
+		
+		boolean enabled = DynamicPropertyFactory.getInstance().getBooleanProperty(cbPrefix + ".enabled", false).get();
+		if (!enabled) {
+			return super.getCircuitBreakerConfig();
+		}
+		
+		CircuitBreakerConfigImpl defaults = new CircuitBreakerConfigImpl();
+		
+		return new CircuitBreakerConfigImpl(
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".windowSeconds", defaults.getWindowSizeSeconds()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".minRequests", defaults.getMinRequestsInWindow()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".errorPercentage", defaults.getErrorPercentageThreshold()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".openDurationMillis", defaults.getOpenDurationMillis()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".halfOpenProbes", defaults.getHalfOpenProbes()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(cbPrefix + ".halfOpenSuccessesToClose", defaults.getHalfOpenSuccessesToClose()).get());
+	}
+	
+	private OutlierDetectionConfig parseOutlierDetectionConfig(String propertyPrefix) {
+		
+		String odPrefix = propertyPrefix + ".outlierDetection";
+		
+		boolean enabled = DynamicPropertyFactory.getInstance().getBooleanProperty(odPrefix + ".enabled", false).get();
+		if (!enabled) {
+			return super.getOutlierDetectionConfig();
+		}
+		
+		OutlierDetectionConfigImpl defaults = new OutlierDetectionConfigImpl();
+		
+		return new OutlierDetectionConfigImpl(
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".intervalSeconds", defaults.getIntervalSeconds()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".minRequests", defaults.getMinRequestsPerHost()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".minHostsPerRack", defaults.getMinHostsPerRack()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".latencyPercentage", defaults.getLatencyThresholdPercentage()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".minLatencyMillis", defaults.getMinLatencyMillis()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".timeoutPercentage", defaults.getTimeoutPercentageThreshold()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".baseEjectionMillis", defaults.getBaseEjectionMillis()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".maxEjectionPercentage", defaults.getMaxEjectionPercentage()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(odPrefix + ".returnRampMillis", defaults.getReturnRampMillis()).get());
+	}
+	
+	private ConcurrencyLimitConfig parseConcurrencyLimitConfig(String propertyPrefix) {
+		
+		String clPrefix = propertyPrefix + ".concurrencyLimit";
+		
+		boolean enabled = DynamicPropertyFactory.getInstance().getBooleanProperty(clPrefix + ".enabled", false).get();
+		if (!enabled) {
+			return super.getConcurrencyLimitConfig();
+		}
+		
+		ConcurrencyLimitConfigImpl defaults = new ConcurrencyLimitConfigImpl();
+		
+		return new ConcurrencyLimitConfigImpl(
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".initialLimit", defaults.getInitialLimit()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".minLimit", defaults.getMinLimit()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".maxLimit", defaults.getMaxLimit()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".backoffPercentage", defaults.getBackoffPercentage()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".latencyTolerancePercentage", defaults.getLatencyTolerancePercentage()).get(),
+				DynamicPropertyFactory.getInstance().getIntProperty(clPrefix + ".minLatencyWindowSeconds", defaults.getMinLatencyWindowSeconds()).get());
+	}
+	
 	private RetryPolicyFactory parseRetryPolicyFactory(String propertyPrefix) {
 		
 		String retryPolicy = DynamicPropertyFactory.getInstance().getStringProperty(propertyPrefix + ".retryPolicy", "RunOnce").get();
@@ -204,6 +420,36 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 			}
 		}
 		
+		// ExponentialBackoff:retries:baseDelayMillis:maxDelayMillis[:allowFallback[:retryBudgetPercent]]
+		if (retryPolicy.startsWith("ExponentialBackoff")) {
+			
+			String[] parts = retryPolicy.split(":");
+			
+			if (parts.length < 4) {
+				return new RunOnce.RetryFactory();
+			}
+			
+			try { 
+				
+				int n = Integer.parseInt(parts[1]);
+				long baseDelay = Long.parseLong(parts[2]);
+				long maxDelay = Long.parseLong(parts[3]);
+				boolean allowFallback = false;
+				if (parts.length > 4) {
+					allowFallback = Boolean.parseBoolean(parts[4]);
+				}
+				int budgetPercent = RetryBudget.DEFAULT_RETRY_PERCENT;
+				if (parts.length > 5) {
+					budgetPercent = Integer.parseInt(parts[5]);
+				}
+				RetryBudget budget = new RetryBudget(budgetPercent, RetryBudget.DEFAULT_WINDOW_SECONDS, RetryBudget.DEFAULT_MIN_RETRIES_PER_SECOND);
+				return new ExponentialBackoffRetry.RetryFactory(n, baseDelay, maxDelay, allowFallback, budget);
+				
+			} catch (Exception e) {
+				return new RunOnce.RetryFactory();
+			}
+		}
+		
 		return new RunOnce.RetryFactory();
 	}
 	
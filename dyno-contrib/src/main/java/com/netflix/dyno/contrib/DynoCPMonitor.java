@@ -137,6 +137,13 @@ public class DynoCPMonitor extends CountingConnectionPoolMonitor {
 	}
 
 
+	@Monitor(name = "ConcurrencyLimitExceeded", type = DataSourceType.COUNTER)
+	@Override
+	public long getConcurrencyLimitExceededCount() {
+		return super.getConcurrencyLimitExceededCount();
+	}
+
+
 	@Monitor(name = "HostCount", type = DataSourceType.GAUGE)
 	@Override
 	public long getHostCount() {
@@ -1,15 +1,20 @@
 package com.netflix.dyno.contrib;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Supplier;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Lists;
 import com.netflix.appinfo.AmazonInfo;
 import com.netflix.appinfo.AmazonInfo.MetaDataKey;
 import com.netflix.appinfo.InstanceInfo;
@@ -18,7 +23,7 @@ import com.netflix.discovery.DiscoveryClient;
 import com.netflix.discovery.DiscoveryManager;
 import com.netflix.discovery.shared.Application;
 import com.netflix.dyno.connectionpool.Host;
-import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier;
 
 /**
  * Simple class that implements {@link Supplier}<{@link List}<{@link Host}>>. It provides a List<{@link Host}>
@@ -26,19 +31,37 @@ import com.netflix.dyno.connectionpool.HostSupplier;
  * 
  * Note that the class needs the eureka application name to discover all instances for that application. 
  * 
+ * Once a {@link HostChangeListener} is registered, the eureka client's local copy of the registry is checked every 
+ * second and only the hosts that were added, removed or changed status are pushed to the listeners. The eureka 
+ * client used here has no registry events, and reading its local copy is cheap.
+ * 
  * @author poberai
  */
-public class EurekaHostsSupplier implements HostSupplier {
+public class EurekaHostsSupplier implements IncrementalHostSupplier {
 
 	private static final Logger Logger = LoggerFactory.getLogger(EurekaHostsSupplier.class);
+	
+	public static final int DefaultWatchIntervalMillis = 1000;
 
 	// The C* cluster name for discovering nodes
 	private final String applicationName;
 	private final DiscoveryClient discoveryClient;
 	
+	private final int watchIntervalMillis;
+	private final CopyOnWriteArrayList<HostChangeListener> listeners = new CopyOnWriteArrayList<HostChangeListener>();
+	private ScheduledExecutorService watcher;
+	private ScheduledFuture<?> watchTask;
+	// the hosts as of the last check, only touched by the watcher thread
+	private Map<Host, Host> knownHosts = null;
+	
 	public EurekaHostsSupplier(String applicationName, DiscoveryClient dClient) {
+		this(applicationName, dClient, DefaultWatchIntervalMillis);
+	}
+	
+	public EurekaHostsSupplier(String applicationName, DiscoveryClient dClient, int watchIntervalMillis) {
 		this.applicationName = applicationName.toUpperCase();
 		this.discoveryClient = dClient;
+		this.watchIntervalMillis = watchIntervalMillis;
 	}
 
 	@Override
@@ -53,7 +76,7 @@ public class EurekaHostsSupplier implements HostSupplier {
 			throw new RuntimeException("EurekaHostsSupplier needs a non-null DiscoveryClient");
 		}
 
-		Logger.info("Dyno fetching instance list for app: " + applicationName);
+		Logger.debug("Dyno fetching instance list for app: " + applicationName);
 		
 		Application app = discoveryClient.getApplication(applicationName);
 		List<Host> hosts = new ArrayList<Host>();
@@ -68,32 +91,114 @@ public class EurekaHostsSupplier implements HostSupplier {
 			return hosts;
 		}
 
-		hosts = Lists.newArrayList(Collections2.transform(ins,
-				
-				new Function<InstanceInfo, Host>() {
-					@Override
-					public Host apply(InstanceInfo info) {
-						
-						Host.Status status = info.getStatus() == InstanceStatus.UP ? Host.Status.Up : Host.Status.Down;
-						Host host = new Host(info.getHostName(), status);
-
-						try {
-							if (info.getDataCenterInfo() instanceof AmazonInfo) {
-								AmazonInfo amazonInfo = (AmazonInfo)info.getDataCenterInfo();
-								host.setRack(amazonInfo.get(MetaDataKey.availabilityZone));
-							}
-						}
-						catch (Throwable t) {
-							Logger.error("Error getting rack for host " + host.getHostName(), t);
-						}
-
-						return host;
-					}
-				}));
+		for (InstanceInfo info : ins) {
+			hosts.add(getHost(info));
+		}
 		
-		Logger.info("Dyno found hosts from eureka - num hosts: " + hosts.size());
+		Logger.debug("Dyno found hosts from eureka - num hosts: " + hosts.size());
 		
 		return hosts;
 	}
+	
+	private Host getHost(InstanceInfo info) {
+		
+		Host.Status status = info.getStatus() == InstanceStatus.UP ? Host.Status.Up : Host.Status.Down;
+		Host host = new Host(info.getHostName(), status);
+
+		try {
+			if (info.getDataCenterInfo() instanceof AmazonInfo) {
+				AmazonInfo amazonInfo = (AmazonInfo)info.getDataCenterInfo();
+				host.setRack(amazonInfo.get(MetaDataKey.availabilityZone));
+			}
+		}
+		catch (Throwable t) {
+			Logger.error("Error getting rack for host " + host.getHostName(), t);
+		}
+		return host;
+	}
+
+	@Override
+	public synchronized void addHostChangeListener(HostChangeListener listener) {
+		
+		listeners.addIfAbsent(listener);
+		if (watchTask != null) {
+			return;
+		}
+		if (watcher == null) {
+			watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "DynoEurekaHostsWatcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		watchTask = watcher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					checkForChanges();
+				} catch (Throwable t) {
+					Logger.warn("Failed to check eureka for host changes: " + t.getMessage());
+				}
+			}
+		}, 0, watchIntervalMillis, TimeUnit.MILLISECONDS);
+	}
 
+	@Override
+	public synchronized void removeHostChangeListener(HostChangeListener listener) {
+		
+		listeners.remove(listener);
+		if (listeners.isEmpty() && watchTask != null) {
+			watchTask.cancel(false);
+			watchTask = null;
+		}
+	}
+	
+	/**
+	 * Diff the current hosts against the last check and push whatever changed. The first check only records the 
+	 * hosts, the listeners already got those via {@link #getHosts()}.
+	 */
+	private void checkForChanges() {
+		
+		Map<Host, Host> currentHosts = new HashMap<Host, Host>();
+		for (Host host : getUpdateFromEureka()) {
+			currentHosts.put(host, host);
+		}
+		
+		Map<Host, Host> previousHosts = knownHosts;
+		knownHosts = currentHosts;
+		if (previousHosts == null) {
+			return;
+		}
+		
+		List<Host> added = new ArrayList<Host>();
+		List<Host> statusChanged = new ArrayList<Host>();
+		for (Host host : currentHosts.keySet()) {
+			Host previous = previousHosts.remove(host);
+			if (previous == null) {
+				added.add(host);
+			} else if (previous.getStatus() != host.getStatus()) {
+				statusChanged.add(host);
+			}
+		}
+		List<Host> removed = new ArrayList<Host>(previousHosts.keySet());
+		
+		for (HostChangeListener listener : listeners) {
+			if (!added.isEmpty()) {
+				listener.onHostsAdded(added);
+			}
+			if (!removed.isEmpty()) {
+				listener.onHostsRemoved(removed);
+			}
+			if (!statusChanged.isEmpty()) {
+				listener.onHostsStatusChanged(statusChanged);
+			}
+		}
+		
+		if (!added.isEmpty() || !removed.isEmpty() || !statusChanged.isEmpty()) {
+			Logger.info("Dyno host changes from eureka - added: " + added + ", removed: " + removed + ", status changed: " + statusChanged);
+		}
+	}
 }
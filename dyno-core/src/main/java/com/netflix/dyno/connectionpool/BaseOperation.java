@@ -35,4 +35,17 @@ public interface BaseOperation<CL, R> {
 	 * @return String
 	 */
 	public String getKey();
+	
+	/**
+	 * Implemented by operations that know whether running them twice has the same effect as running them once. 
+	 * Operations that are not idempotent, e.g INCR or LPUSH, are not retried once they may have reached a host. 
+	 * Operations that don't implement this are retried as per the {@link RetryPolicy}
+	 */
+	public static interface Idempotent {
+		
+		/**
+		 * @return whether the operation is safe to retry after it may have reached a host
+		 */
+		public boolean isIdempotent();
+	}
 }
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.health.HostCircuitBreaker;
+
+/**
+ * Interface for config required by {@link HostCircuitBreaker}
+ */
+public interface CircuitBreakerConfig {
+
+	/**
+	 * Size of the rolling window (in seconds) over which the error ratio is computed
+	 * @return int
+	 */
+	public int getWindowSizeSeconds();
+
+	/**
+	 * Min number of requests that must be seen in the window before the error ratio is considered.
+	 * This prevents a couple of errors on a quiet host from tripping the breaker.
+	 * @return int
+	 */
+	public int getMinRequestsInWindow();
+
+	/**
+	 * Percentage of failed requests (errors/requests * 100) in the window at which the breaker trips open
+	 * @return int
+	 */
+	public int getErrorPercentageThreshold();
+
+	/**
+	 * How long the breaker stays open (routing to fallback) before letting probe requests through
+	 * @return int
+	 */
+	public int getOpenDurationMillis();
+
+	/**
+	 * Max number of live requests that are let through as probes while the breaker is half open
+	 * @return int
+	 */
+	public int getHalfOpenProbes();
+
+	/**
+	 * Number of successful probes required to close the breaker again
+	 * @return int
+	 */
+	public int getHalfOpenSuccessesToClose();
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.health.HostConcurrencyLimiter;
+
+/**
+ * Interface for config required by {@link HostConcurrencyLimiter}
+ */
+public interface ConcurrencyLimitConfig {
+
+	/**
+	 * No of requests that may be in flight to a host before any latencies have been observed
+	 * @return int
+	 */
+	public int getInitialLimit();
+
+	/**
+	 * The limit never drops below this, no matter how slow the host gets
+	 * @return int
+	 */
+	public int getMinLimit();
+
+	/**
+	 * The limit never grows beyond this, no matter how fast the host is
+	 * @return int
+	 */
+	public int getMaxLimit();
+
+	/**
+	 * The limit is multiplied by this percentage when the host slows down or times out, e.g 90 cuts it by 10%
+	 * @return int
+	 */
+	public int getBackoffPercentage();
+
+	/**
+	 * A host is considered to slow down when a request takes at least this percentage of the lowest latency recently 
+	 * seen for the host, e.g 200 means twice as long
+	 * @return int
+	 */
+	public int getLatencyTolerancePercentage();
+
+	/**
+	 * How long the lowest latency of a host is remembered for, after which it is measured again. This lets the limit 
+	 * follow lasting changes in the latency of the host, e.g larger payloads.
+	 * @return int
+	 */
+	public int getMinLatencyWindowSeconds();
+}
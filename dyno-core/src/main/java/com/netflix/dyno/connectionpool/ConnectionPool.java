@@ -18,6 +18,7 @@ package com.netflix.dyno.connectionpool;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.netflix.dyno.connectionpool.exception.DynoException;
 
@@ -94,6 +95,32 @@ public interface ConnectionPool<CL> {
      */
     <R> OperationResult<R> executeWithFailover(Operation<CL, R> op) throws DynoException;
     
+    /**
+     * Same as {@link #executeWithFailover(Operation)}, but the operation has to be done within the given time. 
+     * Borrowing connections, socket reads, retries and fallbacks all come out of it, and once it has passed the 
+     * operation fails with a {@link com.netflix.dyno.connectionpool.exception.TimeoutException} instead of starting 
+     * another attempt. Overrides {@link ConnectionPoolConfiguration#getOperationDeadlineMillis()}
+     * 
+     * @param <R>
+     * @param op
+     * @param timeout
+     * @param unit
+     * @throws DynoException
+     */
+    <R> OperationResult<R> executeWithFailover(Operation<CL, R> op, long timeout, TimeUnit unit) throws DynoException;
+    
+    /**
+     * Same as {@link #executeWithFailover(Operation)}, but returns right away. The attempts run on the pool's async 
+     * workers and fail over the same way, a retry is queued up as a new attempt instead of holding on to a thread. 
+     * The future always completes, either with the result or with the last failure.
+     * 
+     * @param <R>
+     * @param op
+     * @return ListenableFuture<OperationResult<R>>
+     * @throws DynoException
+     */
+    <R> ListenableFuture<OperationResult<R>> executeWithFailoverAsync(Operation<CL, R> op) throws DynoException;
+    
     /**
      * Scatter gather style operation
      * @param op
@@ -103,7 +130,9 @@ public interface ConnectionPool<CL> {
     public <R> Collection<OperationResult<R>> executeWithRing(Operation<CL, R> op) throws DynoException;
 
     /**
-     * Execute an operation asynchronously.
+     * Execute an operation asynchronously. The operation fails over and retries the same way as 
+     * {@link #executeWithFailover(Operation)}, each retry is chained on the completion of the previous attempt. 
+     * The future always completes, either with the result or with the last failure.
      * @param op
      * @return ListenableFuture<OperationResult<R>>
      * @throws DynoException
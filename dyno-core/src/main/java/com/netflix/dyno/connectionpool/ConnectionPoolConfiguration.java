@@ -53,6 +53,14 @@ public interface ConnectionPoolConfiguration {
      * @return Get the max number of failover attempts
      */
     public int getMaxFailoverCount();
+    
+    /**
+     * Total time an operation may take across borrowing connections, retries and falling back to remote racks, 
+     * see {@link Deadline}. 0 for no limit, in which case each of those waits is only bounded by its own timeout. 
+     * 
+     * @return int
+     */
+    public int getOperationDeadlineMillis();
 
     /**
      * @return Socket read/write timeout
@@ -81,12 +89,179 @@ public interface ConnectionPoolConfiguration {
      */
     public boolean localDcAffinity(); 
     
+    /**
+     * When true, starting the connection pool only waits for the hosts in the local rack to be primed. 
+     * Hosts in remote racks are primed in the background and join the fallback selectors as they become ready.
+     * 
+     * @return boolean
+     */
+    public boolean progressiveStartup();
+    
+    /**
+     * Max number of remote rack hosts that are primed concurrently in the background with {@link #progressiveStartup()}
+     * 
+     * @return int
+     */
+    public int getRemoteRackPrimingConcurrency();
+    
+    /**
+     * Max number of hosts that are added (primed) or removed concurrently when the set of hosts changes. 
+     * Host updates run on their own threads, hence they never hold up the host refresh task.
+     * 
+     * @return int
+     */
+    public int getMaxConcurrentHostUpdates();
+    
+    /**
+     * Max number of threads that run the attempts of async operations, see 
+     * {@link ConnectionPool#executeWithFailoverAsync(Operation)}. A thread is only held while an attempt runs, 
+     * retries are queued up as new attempts. 
+     * 
+     * @return int
+     */
+    public int getMaxAsyncWorkerThreads();
+    
+    /**
+     * Max number of callers that share a single connection of a 
+     * {@link com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type#Multiplexed} pool, 
+     * i.e the most operations a host has in flight is this times {@link #getMaxConnsPerHost()}. 
+     * 
+     * @return int
+     */
+    public int getMaxInFlightPerConnection();
+    
+    /**
+     * Run the pool's fan out work, i.e {@link ConnectionPool#executeWithRing(Operation)}, priming hosts at startup and 
+     * async attempts, on a virtual thread per task instead of bounded platform thread pools. Only takes effect on 
+     * runtimes with virtual threads (java 21 and later), see {@link com.netflix.dyno.connectionpool.impl.utils.VirtualThreads}
+     * 
+     * @return boolean
+     */
+    public boolean useVirtualThreads();
+    
     /**
      * 
      * @return
      */
     public ErrorMonitorFactory getErrorMonitorFactory();
     
+    /**
+     * Config for the per host circuit breaker. When null, the breaker is disabled and hosts are recycled 
+     * based on the {@link ErrorMonitorFactory} instead.
+     * 
+     * @return CircuitBreakerConfig
+     */
+    public CircuitBreakerConfig getCircuitBreakerConfig();
+    
+    /**
+     * Config for latency based outlier detection across the hosts of a rack. When null, outlier detection is disabled.
+     * 
+     * @return OutlierDetectionConfig
+     */
+    public OutlierDetectionConfig getOutlierDetectionConfig();
+    
+    /**
+     * Config for adaptive limits on the no of requests in flight to each host. When null, requests are only limited by 
+     * {@link #getMaxConnsPerHost()}.
+     * 
+     * @return ConcurrencyLimitConfig
+     */
+    public ConcurrencyLimitConfig getConcurrencyLimitConfig();
+    
+    /**
+     * Min percentage of a host pool's connections (relative to {@link #getMaxConnsPerHost()}) that must be healthy for the 
+     * pool to stay active. When > 0, connections that fail with a fatal error are closed and replaced individually in the 
+     * background and the whole pool is only recycled once the no of healthy connections drops below this percentage. 
+     * 0 disables incremental repair and pools are recycled based on the {@link ErrorMonitorFactory} instead.
+     * 
+     * @return int
+     */
+    public int getMinHealthyConnectionsPercentage();
+    
+    /**
+     * Connections of sync pools that have been idle for longer than this are validated with a ping when borrowed, 
+     * so that connections silently dropped by a NAT or load balancer are replaced before a request is sent on them. 
+     * 0 disables validation.
+     * 
+     * @return int
+     */
+    public int getConnectionIdleValidationMillis();
+    
+    /**
+     * Max age of a connection in sync pools. Older connections are closed and replaced when returned to the pool, 
+     * which spreads connections across proxies that were added after the pool was primed. 0 means connections never expire.
+     * 
+     * @return int
+     */
+    public int getMaxConnectionAgeMillis();
+    
+    /**
+     * How often an idle connection of each sync pool is pinged in the background. The probe latency is reported via 
+     * {@link ConnectionPoolMonitor#incKeepAliveProbe(Host, long)} in order to spot slow hosts. 0 disables the probes.
+     * 
+     * @return int
+     */
+    public int getKeepAliveProbeFrequencySeconds();
+    
+    /**
+     * Slow start window for hosts that are added or reactivated once the pool is running. During the window the host only
+     * gets a share of its traffic that grows linearly from 0 to 100%, the rest spills over to replicas in other racks 
+     * (token aware) or to the other hosts of the rack (round robin). 0 disables slow start.
+     * 
+     * @return int
+     */
+    public int getSlowStartMillis();
+    
+    /**
+     * When true, host pools don't open all of their connections upfront. Only {@link #getCoreConnsPerHost()} connections
+     * are opened when the pool is primed, the rest are opened on demand (one at a time per host) when a borrow finds no 
+     * idle connection, up to {@link #getMaxConnsPerHost()}. The pool is considered active until connecting actually fails.
+     * 
+     * @return boolean
+     */
+    public boolean lazyConnections();
+    
+    /**
+     * No of connections that are opened upfront per host with {@link #lazyConnections()}, can be 0 
+     * 
+     * @return int
+     */
+    public int getCoreConnsPerHost();
+    
+    /**
+     * Path of the local file that the token topology is persisted to whenever the ring changes. When the file is 
+     * there on startup, the load balancer routes from it right away while the actual topology is fetched and 
+     * reconciled in the background. null disables the snapshot.
+     * 
+     * @return String
+     */
+    public String getTopologySnapshotFile();
+    
+    /**
+     * How often the tokens of the hosts are reconciled with the token map supplier, so that hosts whose token moved 
+     * are re-slotted and their stale tokens are dropped from the ring. 0 disables reconciliation.
+     * 
+     * @return int
+     */
+    public int getTopologyReconcileFrequencySeconds();
+    
+    /**
+     * Max number of host pools that are reconnected in parallel by the health tracker after being recycled.
+     * Reconnects run on their own threads, hence they never hold up the host refresh task.
+     * 
+     * @return int
+     */
+    public int getMaxConcurrentPoolReconnects();
+    
+    /**
+     * Base delay for the per host exponential backoff between reconnect attempts of a recycled pool. 
+     * The delay doubles with every failed attempt and is randomized (jitter) so that many hosts going down 
+     * together do not all reconnect at the same instant.
+     * 
+     * @return int
+     */
+    public int getPoolReconnectBackoffBaseMillis();
+    
     /**
      * 
      * @return
@@ -132,6 +132,29 @@ public interface ConnectionPoolMonitor {
 
     public long getConnectionReturnedCount();
 
+    /**
+     * A keep alive probe (ping) was sent on an idle connection to the host. 
+     * A host that is up but slow to respond to probes is likely suffering from a gray failure.
+     * 
+     * @param host
+     * @param latency
+     *            Time taken by the probe in microseconds
+     */
+    public void incKeepAliveProbe(Host host, long latency);
+
+    /**
+     * The adaptive limit on the no of requests in flight to the host, see {@link ConcurrencyLimitConfig}
+     * 
+     * @param host
+     * @param limit
+     */
+    public void setConcurrencyLimit(Host host, int limit);
+
+    /**
+     * @return Count of operations turned away since their hosts were at their concurrency limits
+     */
+    public long getConcurrencyLimitExceededCount();
+
     /**
      * Timeout trying to get a connection from the pool
      */
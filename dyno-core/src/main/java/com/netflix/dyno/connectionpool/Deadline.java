@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which an operation has to be done. All the waits of the operation come out of it, i.e 
+ * borrowing a connection, reading the reply, and the retries and fallbacks after a failure. Once it has passed, 
+ * no more work is started for the operation. 
+ */
+public class Deadline {
+
+	/**
+	 * Key of the operation's deadline in the {@link ConnectionContext} while the operation runs, so that the 
+	 * connection can bound its socket reads by it 
+	 */
+	public static final String CONTEXT_KEY = "dyno.deadline";
+
+	private final long deadlineNanos;
+
+	private Deadline(long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	/**
+	 * @param duration
+	 * @param unit
+	 * @return a deadline the given time from now
+	 */
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(duration));
+	}
+
+	/**
+	 * @param unit
+	 * @return the time left, 0 once the deadline has passed
+	 */
+	public long remaining(TimeUnit unit) {
+		return Math.max(0L, unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS));
+	}
+
+	public boolean isExpired() {
+		return deadlineNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @return the given timeout, cut down to the time left
+	 */
+	public int bound(int timeout, TimeUnit unit) {
+		return (int) Math.min(timeout, remaining(unit));
+	}
+
+	@Override
+	public String toString() {
+		return "Deadline [remaining=" + remaining(TimeUnit.MILLISECONDS) + "ms]";
+	}
+}
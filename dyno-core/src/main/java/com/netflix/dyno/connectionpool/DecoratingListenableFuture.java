@@ -41,6 +41,9 @@ public class DecoratingListenableFuture<V> implements ListenableFuture<V> {
 
 	@Override
 	public void addListener(Runnable listener, Executor executor) {
-		throw new RuntimeException("Not Implemented");
+		if (!(innerFuture instanceof ListenableFuture)) {
+			throw new UnsupportedOperationException("Inner future is not listenable: " + innerFuture.getClass().getName());
+		}
+		((ListenableFuture<V>) innerFuture).addListener(listener, executor);
 	}
 }
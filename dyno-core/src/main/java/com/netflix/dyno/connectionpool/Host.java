@@ -19,6 +19,14 @@ import java.net.InetSocketAddress;
 
 /**
  * Class encapsulating information about a host.
+ * 
+ * Note that the host's socket address is never resolved here, since that would do a blocking DNS lookup for every 
+ * host that is discovered. Connection factories resolve it when connecting, see {@link com.netflix.dyno.connectionpool.impl.utils.HostAddressResolver}
+ * 
+ * A host that runs on the same box as the client, e.g a dynomite sidecar, can also be given the path of its unix 
+ * domain socket. Connection factories that support it then connect over the socket instead of tcp loopback, and 
+ * routing treats the host as part of the local rack. 
+ * 
  * @author poberai
  *
  */
@@ -28,6 +36,7 @@ public class Host {
 	private int port;
 	private Status status = Status.Down;
 	private InetSocketAddress socketAddress = null;
+	private String socketPath = null;
 	
 	private String rack; 
 	
@@ -50,7 +59,7 @@ public class Host {
 		this.port = port;
 		this.status = status;
 		if (port != -1) {
-			this.socketAddress = new InetSocketAddress(name, port);
+			this.socketAddress = InetSocketAddress.createUnresolved(name, port);
 		}
 	}
 
@@ -64,7 +73,19 @@ public class Host {
 	
 	public Host setPort(int p) {
 		this.port = p;
-		this.socketAddress = new InetSocketAddress(name, port);
+		this.socketAddress = InetSocketAddress.createUnresolved(name, port);
+		return this;
+	}
+
+	/**
+	 * @return the path of the host's unix domain socket, or null when it is only reachable over tcp
+	 */
+	public String getSocketPath() {
+		return socketPath;
+	}
+	
+	public Host setSocketPath(String path) {
+		this.socketPath = path;
 		return this;
 	}
 
@@ -90,6 +111,9 @@ public class Host {
 		return status == Status.Up;
 	}
 	
+	/**
+	 * @return the unresolved address of the host
+	 */
 	public InetSocketAddress getSocketAddress() {
 		return socketAddress;
 	}
@@ -123,6 +147,7 @@ public class Host {
 
 	@Override
 	public String toString() {
-		return "Host [name=" + name + ", port=" + port + ", dc: " + rack + ", status: " + status.name() + "]";
+		return "Host [name=" + name + ", port=" + port + (socketPath != null ? ", socket: " + socketPath : "") 
+				+ ", dc: " + rack + ", status: " + status.name() + "]";
 	}
 }
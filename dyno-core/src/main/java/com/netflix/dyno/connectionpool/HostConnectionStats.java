@@ -62,5 +62,15 @@ public interface HostConnectionStats {
 	 * @return long
 	 */
 	public long getOperationErrorCount();
+
+	/**
+	 * @return long the moving average of the keep alive probe latency in microseconds, 0 if the host was never probed
+	 */
+	public long getKeepAliveProbeLatency();
+
+	/**
+	 * @return long the current limit on the no of requests in flight to the host, 0 if concurrency limits are disabled
+	 */
+	public long getConcurrencyLimit();
 }
 
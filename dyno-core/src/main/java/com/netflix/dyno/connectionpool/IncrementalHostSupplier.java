@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import java.util.Collection;
+
+/**
+ * A {@link HostSupplier} that pushes changes to the set of hosts as they happen, so that the {@link ConnectionPool}
+ * only has to apply the hosts that changed.
+ *
+ * The full list from {@link #getHosts()} is still used on startup, and is still polled periodically as a fallback
+ * in case a change is missed.
+ */
+public interface IncrementalHostSupplier extends HostSupplier {
+
+	/**
+	 * Register for changes to the hosts
+	 * @param listener
+	 */
+	public void addHostChangeListener(HostChangeListener listener);
+
+	/**
+	 * @param listener
+	 */
+	public void removeHostChangeListener(HostChangeListener listener);
+
+	/**
+	 * Callback for changes to the hosts. Callbacks are expected to be quick, they must not block on connecting
+	 * to the hosts.
+	 */
+	public static interface HostChangeListener {
+
+		/**
+		 * New hosts, carrying their current status
+		 * @param hosts
+		 */
+		public void onHostsAdded(Collection<Host> hosts);
+
+		/**
+		 * Hosts that have gone away
+		 * @param hosts
+		 */
+		public void onHostsRemoved(Collection<Host> hosts);
+
+		/**
+		 * Known hosts whose status changed, carrying their new status
+		 * @param hosts
+		 */
+		public void onHostsStatusChanged(Collection<Host> hosts);
+	}
+}
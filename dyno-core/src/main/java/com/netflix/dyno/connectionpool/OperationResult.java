@@ -15,6 +15,7 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -66,6 +67,17 @@ public interface OperationResult<R> {
      */
     public OperationResult<R> setAttemptsCount(int count);
     
+    /**
+     * @return the hosts the operation failed on before it succeeded on {@link #getNode()}, in the order they were 
+     * tried. Empty when the first attempt succeeded
+     */
+    public List<Host> getFailedHosts();
+    
+    /**
+     * @param hosts
+     */
+    public OperationResult<R> setFailedHosts(List<Host> hosts);
+    
     /**
      * Set latency after executing the operation. This method is useful to apps that do async operations
      * and can proxy back latency stats to Dyno once they receive their result via the future.
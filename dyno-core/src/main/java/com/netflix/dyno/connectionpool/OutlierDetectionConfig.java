@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.health.HostOutlierDetector;
+
+/**
+ * Interface for config required by {@link HostOutlierDetector}
+ */
+public interface OutlierDetectionConfig {
+
+	/**
+	 * How often hosts are compared with their peers. This is also the window over which latencies and timeouts are collected.
+	 * @return int
+	 */
+	public int getIntervalSeconds();
+
+	/**
+	 * Min number of requests a host must have served in the interval for it to be considered
+	 * @return int
+	 */
+	public int getMinRequestsPerHost();
+
+	/**
+	 * Min number of hosts (with enough requests) in a rack for outlier detection to run for the rack
+	 * @return int
+	 */
+	public int getMinHostsPerRack();
+
+	/**
+	 * A host is an outlier when its avg latency is at least this percentage of the median avg latency of its rack, 
+	 * e.g 300 means 3x slower than its peers
+	 * @return int
+	 */
+	public int getLatencyThresholdPercentage();
+
+	/**
+	 * Hosts with an avg latency below this are never considered outliers, no matter how they compare with their peers
+	 * @return int
+	 */
+	public int getMinLatencyMillis();
+
+	/**
+	 * A host is an outlier when its timeout percentage exceeds the median timeout percentage of its rack by this much
+	 * @return int
+	 */
+	public int getTimeoutPercentageThreshold();
+
+	/**
+	 * How long a host is ejected for. This is multiplied by the no of times the host was recently ejected.
+	 * @return int
+	 */
+	public int getBaseEjectionMillis();
+
+	/**
+	 * Max percentage of the hosts in a rack that may be ejected at the same time. At least one host can always be ejected.
+	 * @return int
+	 */
+	public int getMaxEjectionPercentage();
+
+	/**
+	 * Once the ejection expires, the share of traffic routed to the host ramps up linearly over this period
+	 * @return int
+	 */
+	public int getReturnRampMillis();
+}
@@ -59,4 +59,16 @@ public interface RetryPolicy {
     public static interface RetryPolicyFactory {
     	public RetryPolicy getRetryPolicy();
     }
+    
+    /**
+     * Implemented by policies that wait between attempts. The connection pool does the waiting, without holding 
+     * on to a connection or blocking an I/O thread, and cuts the operation short when the wait would run past its
+     * {@link Deadline} 
+     */
+    public static interface Backoff {
+    	/**
+    	 * @return how long to wait before the next attempt, as of the last failure
+    	 */
+    	public long getBackoffMillis();
+    }
 }
\ No newline at end of file
@@ -14,6 +14,10 @@ public class TokenPoolTopology {
 	}
 	
 	public void addToken(String rack, Long token, HostConnectionPool<?> hostPool) {
+		addToken(rack, token, hostPool, 100);
+	}
+	
+	public void addToken(String rack, Long token, HostConnectionPool<?> hostPool, int trafficPercentage) {
 		
 		List<TokenStatus> list = map.get(rack);
 		if (list == null) {
@@ -21,7 +25,7 @@ public class TokenPoolTopology {
 			map.put(rack, list);
 		}
 		
-		list.add(new TokenStatus(token, hostPool));
+		list.add(new TokenStatus(token, hostPool, trafficPercentage));
 	}
 	
 	public ConcurrentHashMap<String, List<TokenStatus>> getAllTokens() {
@@ -52,10 +56,12 @@ public class TokenPoolTopology {
 		
 		private Long token; 
 		private HostConnectionPool<?> hostPool;
+		private int trafficPercentage;
 		
-		private TokenStatus(Long t, HostConnectionPool<?> pool) {
+		private TokenStatus(Long t, HostConnectionPool<?> pool, int percentage) {
 			token = t;
 			hostPool = pool;
+			trafficPercentage = percentage;
 		}
 		
 		public Long getToken() {
@@ -66,13 +72,24 @@ public class TokenPoolTopology {
 			return hostPool;
 		}
 		
+		/**
+		 * @return the share of its traffic the host currently gets, less than 100 while the host is in slow start
+		 */
+		public int getTrafficPercentage() {
+			return trafficPercentage;
+		}
+		
+		public boolean isRampingUp() {
+			return trafficPercentage < 100;
+		}
+		
 		@Override
 		public int compareTo(TokenStatus o) {
 			return this.token.compareTo(o.token);
 		} 
 		
 		public String toString() {
-			return token + " ==> " + hostPool.toString();
+			return token + " ==> " + hostPool.toString() + (isRampingUp() ? " [slow start: " + trafficPercentage + "%]" : "");
 		}
 	}
 	
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.exception;
+
+import com.netflix.dyno.connectionpool.Host;
+
+/**
+ * The request was turned away without being sent since the host, and any replica it could have gone to instead, 
+ * already had as many requests in flight as their adaptive concurrency limits allow.
+ * See {@link com.netflix.dyno.connectionpool.ConcurrencyLimitConfig}
+ */
+public class ConcurrencyLimitExceededException extends DynoConnectException {
+
+	private static final long serialVersionUID = 4615264712372935127L;
+
+	public ConcurrencyLimitExceededException(Host host, String message) {
+		super(message);
+		setHost(host);
+	}
+}
@@ -18,9 +18,12 @@ package com.netflix.dyno.connectionpool.impl;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.netflix.dyno.connectionpool.CircuitBreakerConfig;
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.ErrorRateMonitorConfig;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.OutlierDetectionConfig;
 import com.netflix.dyno.connectionpool.RetryPolicy;
 import com.netflix.dyno.connectionpool.RetryPolicy.RetryPolicyFactory;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
@@ -41,6 +44,23 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	private static final int DEFAULT_PING_FREQ_SECONDS = 1;
 	private static final int DEFAULT_FLUSH_TIMINGS_FREQ_SECONDS = 300;
 	private static final boolean DEFAULT_LOCAL_DC_AFFINITY = true; 
+	private static final int DEFAULT_MAX_CONCURRENT_POOL_RECONNECTS = 4;
+	private static final int DEFAULT_POOL_RECONNECT_BACKOFF_BASE_MILLIS = 1000;
+	private static final int DEFAULT_MIN_HEALTHY_CONNECTIONS_PERCENTAGE = 0;
+	private static final int DEFAULT_CONNECTION_IDLE_VALIDATION_MILLIS = 0;
+	private static final int DEFAULT_MAX_CONNECTION_AGE_MILLIS = 0;
+	private static final int DEFAULT_KEEP_ALIVE_PROBE_FREQ_SECONDS = 0;
+	private static final int DEFAULT_SLOW_START_MILLIS = 0;
+	private static final boolean DEFAULT_LAZY_CONNECTIONS = false;
+	private static final int DEFAULT_CORE_CONNS_PER_HOST = 0;
+	private static final boolean DEFAULT_PROGRESSIVE_STARTUP = false;
+	private static final int DEFAULT_REMOTE_RACK_PRIMING_CONCURRENCY = 4;
+	private static final int DEFAULT_MAX_CONCURRENT_HOST_UPDATES = 4;
+	private static final int DEFAULT_TOPOLOGY_RECONCILE_FREQ_SECONDS = 0;
+	private static final int DEFAULT_MAX_ASYNC_WORKER_THREADS = 16;
+	private static final int DEFAULT_MAX_IN_FLIGHT_PER_CONNECTION = 64;
+	private static final boolean DEFAULT_USE_VIRTUAL_THREADS = false;
+	private static final int DEFAULT_OPERATION_DEADLINE_MILLIS = 0;
 	private static final LoadBalancingStrategy DEFAULT_LB_STRATEGY = LoadBalancingStrategy.TokenAware; 
 
 	private HostSupplier hostSupplier;
@@ -57,6 +77,24 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	private int pingFrequencySeconds = DEFAULT_PING_FREQ_SECONDS;
 	private int flushTimingsFrequencySeconds = DEFAULT_FLUSH_TIMINGS_FREQ_SECONDS;
 	private boolean localDcAffinity = DEFAULT_LOCAL_DC_AFFINITY; 
+	private int maxConcurrentPoolReconnects = DEFAULT_MAX_CONCURRENT_POOL_RECONNECTS;
+	private int poolReconnectBackoffBaseMillis = DEFAULT_POOL_RECONNECT_BACKOFF_BASE_MILLIS;
+	private int minHealthyConnectionsPercentage = DEFAULT_MIN_HEALTHY_CONNECTIONS_PERCENTAGE;
+	private int connectionIdleValidationMillis = DEFAULT_CONNECTION_IDLE_VALIDATION_MILLIS;
+	private int maxConnectionAgeMillis = DEFAULT_MAX_CONNECTION_AGE_MILLIS;
+	private int keepAliveProbeFrequencySeconds = DEFAULT_KEEP_ALIVE_PROBE_FREQ_SECONDS;
+	private int slowStartMillis = DEFAULT_SLOW_START_MILLIS;
+	private boolean lazyConnections = DEFAULT_LAZY_CONNECTIONS;
+	private int coreConnsPerHost = DEFAULT_CORE_CONNS_PER_HOST;
+	private String topologySnapshotFile = null;
+	private int topologyReconcileFrequencySeconds = DEFAULT_TOPOLOGY_RECONCILE_FREQ_SECONDS;
+	private boolean progressiveStartup = DEFAULT_PROGRESSIVE_STARTUP;
+	private int remoteRackPrimingConcurrency = DEFAULT_REMOTE_RACK_PRIMING_CONCURRENCY;
+	private int maxConcurrentHostUpdates = DEFAULT_MAX_CONCURRENT_HOST_UPDATES;
+	private int maxAsyncWorkerThreads = DEFAULT_MAX_ASYNC_WORKER_THREADS;
+	private int maxInFlightPerConnection = DEFAULT_MAX_IN_FLIGHT_PER_CONNECTION;
+	private boolean useVirtualThreads = DEFAULT_USE_VIRTUAL_THREADS;
+	private int operationDeadlineMillis = DEFAULT_OPERATION_DEADLINE_MILLIS;
 	private LoadBalancingStrategy lbStrategy = DEFAULT_LB_STRATEGY; 
 	private String localDC;
 	
@@ -69,6 +107,9 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	};
 	
 	private ErrorMonitorFactory errorMonitorFactory = new SimpleErrorMonitorFactory();
+	private CircuitBreakerConfig circuitBreakerConfig = null;
+	private OutlierDetectionConfig outlierDetectionConfig = null;
+	private ConcurrencyLimitConfig concurrencyLimitConfig = null;
 	
 	public ConnectionPoolConfigurationImpl(String name) {
 		this.name = name;
@@ -135,6 +176,111 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		return errorMonitorFactory;
 	}
 
+	@Override
+	public CircuitBreakerConfig getCircuitBreakerConfig() {
+		return circuitBreakerConfig;
+	}
+
+	@Override
+	public OutlierDetectionConfig getOutlierDetectionConfig() {
+		return outlierDetectionConfig;
+	}
+
+	@Override
+	public ConcurrencyLimitConfig getConcurrencyLimitConfig() {
+		return concurrencyLimitConfig;
+	}
+
+	@Override
+	public int getMaxConcurrentPoolReconnects() {
+		return maxConcurrentPoolReconnects;
+	}
+
+	@Override
+	public int getPoolReconnectBackoffBaseMillis() {
+		return poolReconnectBackoffBaseMillis;
+	}
+
+	@Override
+	public int getMinHealthyConnectionsPercentage() {
+		return minHealthyConnectionsPercentage;
+	}
+
+	@Override
+	public int getConnectionIdleValidationMillis() {
+		return connectionIdleValidationMillis;
+	}
+
+	@Override
+	public int getMaxConnectionAgeMillis() {
+		return maxConnectionAgeMillis;
+	}
+
+	@Override
+	public int getKeepAliveProbeFrequencySeconds() {
+		return keepAliveProbeFrequencySeconds;
+	}
+
+	@Override
+	public int getSlowStartMillis() {
+		return slowStartMillis;
+	}
+
+	@Override
+	public boolean lazyConnections() {
+		return lazyConnections;
+	}
+
+	@Override
+	public int getCoreConnsPerHost() {
+		return coreConnsPerHost;
+	}
+
+	@Override
+	public String getTopologySnapshotFile() {
+		return topologySnapshotFile;
+	}
+
+	@Override
+	public int getTopologyReconcileFrequencySeconds() {
+		return topologyReconcileFrequencySeconds;
+	}
+
+	@Override
+	public boolean progressiveStartup() {
+		return progressiveStartup;
+	}
+
+	@Override
+	public int getRemoteRackPrimingConcurrency() {
+		return remoteRackPrimingConcurrency;
+	}
+
+	@Override
+	public int getMaxConcurrentHostUpdates() {
+		return maxConcurrentHostUpdates;
+	}
+
+	@Override
+	public int getMaxAsyncWorkerThreads() {
+		return maxAsyncWorkerThreads;
+	}
+
+	@Override
+	public int getMaxInFlightPerConnection() {
+		return maxInFlightPerConnection;
+	}
+
+	@Override
+	public boolean useVirtualThreads() {
+		return useVirtualThreads;
+	}
+
+	@Override
+	public int getOperationDeadlineMillis() {
+		return operationDeadlineMillis;
+	}
+
 	@Override
 	public LoadBalancingStrategy getLoadBalancingStrategy() {
 		return lbStrategy;
@@ -196,6 +342,96 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		return this;
 	}
 
+	public ConnectionPoolConfigurationImpl setMaxConcurrentPoolReconnects(int maxReconnects) {
+		maxConcurrentPoolReconnects = maxReconnects;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setPoolReconnectBackoffBaseMillis(int backoffMillis) {
+		poolReconnectBackoffBaseMillis = backoffMillis;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setMinHealthyConnectionsPercentage(int percentage) {
+		minHealthyConnectionsPercentage = percentage;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setConnectionIdleValidationMillis(int idleMillis) {
+		connectionIdleValidationMillis = idleMillis;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setMaxConnectionAgeMillis(int ageMillis) {
+		maxConnectionAgeMillis = ageMillis;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setKeepAliveProbeFrequencySeconds(int seconds) {
+		keepAliveProbeFrequencySeconds = seconds;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setSlowStartMillis(int millis) {
+		slowStartMillis = millis;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setLazyConnections(boolean condition) {
+		lazyConnections = condition;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setCoreConnsPerHost(int coreConns) {
+		coreConnsPerHost = coreConns;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setTopologySnapshotFile(String path) {
+		topologySnapshotFile = path;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setTopologyReconcileFrequencySeconds(int seconds) {
+		topologyReconcileFrequencySeconds = seconds;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setProgressiveStartup(boolean condition) {
+		progressiveStartup = condition;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setRemoteRackPrimingConcurrency(int concurrency) {
+		remoteRackPrimingConcurrency = concurrency;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setMaxConcurrentHostUpdates(int concurrency) {
+		maxConcurrentHostUpdates = concurrency;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setMaxAsyncWorkerThreads(int threads) {
+		maxAsyncWorkerThreads = threads;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setMaxInFlightPerConnection(int maxInFlight) {
+		maxInFlightPerConnection = maxInFlight;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setUseVirtualThreads(boolean condition) {
+		useVirtualThreads = condition;
+		return this;
+	}
+
+	public ConnectionPoolConfigurationImpl setOperationDeadlineMillis(int deadlineMillis) {
+		operationDeadlineMillis = deadlineMillis;
+		return this;
+	}
+
 	public HostSupplier getHostSupplier() {
 		return hostSupplier;
 	}
@@ -219,6 +455,199 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		return this;
 	}
 	
+	public ConnectionPoolConfigurationImpl withCircuitBreakerConfig(CircuitBreakerConfig config) {
+		circuitBreakerConfig = config;
+		return this;
+	}
+	
+	public ConnectionPoolConfigurationImpl withOutlierDetectionConfig(OutlierDetectionConfig config) {
+		outlierDetectionConfig = config;
+		return this;
+	}
+	
+	public ConnectionPoolConfigurationImpl withConcurrencyLimitConfig(ConcurrencyLimitConfig config) {
+		concurrencyLimitConfig = config;
+		return this;
+	}
+	
+	public static class CircuitBreakerConfigImpl implements CircuitBreakerConfig {
+
+		int window = 10;
+		int minRequests = 20;
+		int errorPercentage = 50;
+		int openDuration = 5000;
+		int halfOpenProbes = 5;
+		int successesToClose = 3;
+
+		public CircuitBreakerConfigImpl() {
+		}
+
+		public CircuitBreakerConfigImpl(int w, int minReqs, int errPercentage, int openMillis, int probes, int successes) {
+			this.window = w;
+			this.minRequests = minReqs;
+			this.errorPercentage = errPercentage;
+			this.openDuration = openMillis;
+			this.halfOpenProbes = probes;
+			this.successesToClose = successes;
+		}
+
+		@Override
+		public int getWindowSizeSeconds() {
+			return window;
+		}
+
+		@Override
+		public int getMinRequestsInWindow() {
+			return minRequests;
+		}
+
+		@Override
+		public int getErrorPercentageThreshold() {
+			return errorPercentage;
+		}
+
+		@Override
+		public int getOpenDurationMillis() {
+			return openDuration;
+		}
+
+		@Override
+		public int getHalfOpenProbes() {
+			return halfOpenProbes;
+		}
+
+		@Override
+		public int getHalfOpenSuccessesToClose() {
+			return successesToClose;
+		}
+	}
+	
+	public static class OutlierDetectionConfigImpl implements OutlierDetectionConfig {
+
+		int interval = 10;
+		int minRequests = 100;
+		int minHosts = 3;
+		int latencyPercentage = 300;
+		int minLatency = 5;
+		int timeoutPercentage = 10;
+		int baseEjection = 30000;
+		int maxEjectionPercentage = 20;
+		int returnRamp = 30000;
+
+		public OutlierDetectionConfigImpl() {
+		}
+
+		public OutlierDetectionConfigImpl(int intervalSeconds, int minReqs, int minHostsPerRack, int latencyPct, int minLatencyMillis, 
+				int timeoutPct, int baseEjectionMillis, int maxEjectionPct, int returnRampMillis) {
+			this.interval = intervalSeconds;
+			this.minRequests = minReqs;
+			this.minHosts = minHostsPerRack;
+			this.latencyPercentage = latencyPct;
+			this.minLatency = minLatencyMillis;
+			this.timeoutPercentage = timeoutPct;
+			this.baseEjection = baseEjectionMillis;
+			this.maxEjectionPercentage = maxEjectionPct;
+			this.returnRamp = returnRampMillis;
+		}
+
+		@Override
+		public int getIntervalSeconds() {
+			return interval;
+		}
+
+		@Override
+		public int getMinRequestsPerHost() {
+			return minRequests;
+		}
+
+		@Override
+		public int getMinHostsPerRack() {
+			return minHosts;
+		}
+
+		@Override
+		public int getLatencyThresholdPercentage() {
+			return latencyPercentage;
+		}
+
+		@Override
+		public int getMinLatencyMillis() {
+			return minLatency;
+		}
+
+		@Override
+		public int getTimeoutPercentageThreshold() {
+			return timeoutPercentage;
+		}
+
+		@Override
+		public int getBaseEjectionMillis() {
+			return baseEjection;
+		}
+
+		@Override
+		public int getMaxEjectionPercentage() {
+			return maxEjectionPercentage;
+		}
+
+		@Override
+		public int getReturnRampMillis() {
+			return returnRamp;
+		}
+	}
+	
+	public static class ConcurrencyLimitConfigImpl implements ConcurrencyLimitConfig {
+
+		int initialLimit = 20;
+		int minLimit = 2;
+		int maxLimit = 200;
+		int backoffPercentage = 90;
+		int latencyTolerance = 200;
+		int minLatencyWindow = 30;
+
+		public ConcurrencyLimitConfigImpl() {
+		}
+
+		public ConcurrencyLimitConfigImpl(int initial, int min, int max, int backoffPct, int latencyTolerancePct, int minLatencyWindowSeconds) {
+			this.initialLimit = initial;
+			this.minLimit = min;
+			this.maxLimit = max;
+			this.backoffPercentage = backoffPct;
+			this.latencyTolerance = latencyTolerancePct;
+			this.minLatencyWindow = minLatencyWindowSeconds;
+		}
+
+		@Override
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		@Override
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		@Override
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		@Override
+		public int getBackoffPercentage() {
+			return backoffPercentage;
+		}
+
+		@Override
+		public int getLatencyTolerancePercentage() {
+			return latencyTolerance;
+		}
+
+		@Override
+		public int getMinLatencyWindowSeconds() {
+			return minLatencyWindow;
+		}
+	}
+	
 	public static class ErrorRateMonitorConfigImpl implements ErrorRateMonitorConfig {
 
 		int window = 20; 
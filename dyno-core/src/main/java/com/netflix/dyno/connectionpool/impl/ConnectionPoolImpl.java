@@ -15,10 +15,14 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -27,9 +31,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,25 +46,34 @@ import org.slf4j.LoggerFactory;
 import com.netflix.dyno.connectionpool.AsyncOperation;
 import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.ConnectionContext;
 import com.netflix.dyno.connectionpool.ConnectionFactory;
 import com.netflix.dyno.connectionpool.ConnectionPool;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Deadline;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier.HostChangeListener;
 import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.Operation;
 import com.netflix.dyno.connectionpool.OperationResult;
 import com.netflix.dyno.connectionpool.RetryPolicy;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type;
 import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
+import com.netflix.dyno.connectionpool.impl.utils.HostAddressResolver;
+import com.netflix.dyno.connectionpool.impl.utils.SettableFuture;
+import com.netflix.dyno.connectionpool.impl.utils.VirtualThreads;
 
 import javax.management.*;
 
@@ -100,6 +118,16 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	
 	private final HostsUpdater hostsUpdater;
 	private final ScheduledExecutorService connPoolThreadPool = Executors.newScheduledThreadPool(1);
+	// primes remote rack hosts with progressive startup
+	private volatile ExecutorService remotePrimingThreadPool;
+	// applies host additions and removals off the refresh thread
+	private final ThreadPoolExecutor hostUpdateThreadPool;
+	
+	private final ExecutorService asyncWorkerThreadPool;
+	// a virtual thread per task for fan out work, only set with ConnectionPoolConfiguration.useVirtualThreads()
+	private final ExecutorService virtualThreadExecutor;
+	// hosts with an update in flight, so that a slow host isn't queued up again by the next refresh
+	private final ConcurrentHashMap<Host, Boolean> pendingHostUpdates = new ConcurrentHashMap<Host, Boolean>();
 	
 	private final AtomicBoolean started = new AtomicBoolean(false);
 
@@ -126,11 +154,52 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 			case Async:
 				hostConnPoolFactory = new AsyncHostConnectionPoolFactory();
 				break;
+			case Multiplexed:
+				hostConnPoolFactory = new MultiplexedHostConnectionPoolFactory();
+				break;
 			default:
 				throw new RuntimeException("unknown type");
 		};
 	
 		this.hostsUpdater = new HostsUpdater(cpConfiguration.getHostSupplier());
+		
+		int hostUpdateThreads = Math.max(1, cpConfiguration.getMaxConcurrentHostUpdates());
+		this.hostUpdateThreadPool = new ThreadPoolExecutor(hostUpdateThreads, hostUpdateThreads, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoHostUpdater");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.hostUpdateThreadPool.allowCoreThreadTimeOut(true);
+		
+		if (cpConfiguration.useVirtualThreads()) {
+			this.virtualThreadExecutor = VirtualThreads.newThreadPerTaskExecutor("DynoVirtualWorker-");
+			if (virtualThreadExecutor == null) {
+				Logger.warn("Virtual threads are not supported on java " + System.getProperty("java.version") + ", using platform threads");
+			}
+		} else {
+			this.virtualThreadExecutor = null;
+		}
+		
+		if (virtualThreadExecutor != null) {
+			this.asyncWorkerThreadPool = virtualThreadExecutor;
+		} else {
+			int asyncWorkerThreads = Math.max(1, cpConfiguration.getMaxAsyncWorkerThreads());
+			ThreadPoolExecutor asyncWorkers = new ThreadPoolExecutor(asyncWorkerThreads, asyncWorkerThreads, 60, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "DynoAsyncWorker");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			asyncWorkers.allowCoreThreadTimeOut(true);
+			this.asyncWorkerThreadPool = asyncWorkers;
+		}
 	}
 	
 	public HostSelectionWithFallback<CL> getTokenSelection() {
@@ -180,13 +249,18 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
                 if (hostPool.isActive()) {
                     if (refreshLoadBalancer) {
+                        // the host joins a pool that is already serving traffic, ramp it up slowly
+                        cpHealthTracker.trackHostActivated(host);
                         selectionStrategy.addHost(host, hostPool);
                     }
 
-                    // Initiate ping based monitoring only for async pools.
+                    // Initiate ping based monitoring only for async and multiplexed pools, their connections are shared.
                     // Note that sync pools get monitored based on feedback from operation executions on the pool itself
-                    if (poolType == Type.Async) {
+                    if (poolType == Type.Async || poolType == Type.Multiplexed) {
                         cpHealthTracker.initialPingHealthchecksForPool(hostPool);
+                    } else if (hostPool instanceof HostConnectionPoolImpl) {
+                        // sync pools can't be pinged as a whole, but their idle connections can be probed
+                        cpHealthTracker.initialKeepAliveProbesForPool((HostConnectionPoolImpl<CL>) hostPool);
                     }
 
                     cpMonitor.hostAdded(host, hostPool);
@@ -196,7 +270,7 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
                     cpMap.remove(host);
                 }
 
-                return primed > 0;
+                return hostPool.isActive();
 			} catch (DynoException e) {
 				Logger.info("Failed to init host pool for host: " + host, e);
 				cpMap.remove(host);
@@ -256,21 +330,126 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		return new ArrayList<HostConnectionPool<CL>>(cpMap.values());
 	}
 
+	/**
+	 * Hosts are added and removed concurrently on the host update threads, and each new host is fully primed before 
+	 * it is added to the load balancer. This does not wait for the updates to be applied, the returned future does. 
+	 * Hosts that still have an update in flight from a previous call are skipped.
+	 */
 	@Override
 	public Future<Boolean> updateHosts(Collection<Host> hostsUp, Collection<Host> hostsDown) {
 		
-		boolean condition = false;
+		final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		
 		if (hostsUp != null && !hostsUp.isEmpty()) {
-			for (Host hostUp : hostsUp) {
-				condition |= addHost(hostUp);
+			for (final Host hostUp : hostsUp) {
+				if (cpMap.containsKey(hostUp)) {
+					continue;
+				}
+				HostAddressResolver.getInstance().prefetch(Collections.singletonList(hostUp));
+				submitHostUpdate(hostUp, futures, new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return addHost(hostUp);
+					}
+				});
 			}
 		}
 		if (hostsDown != null && !hostsDown.isEmpty()) {
-			for (Host hostDown : hostsDown) {
-				condition |= removeHost(hostDown);
+			for (final Host hostDown : hostsDown) {
+				if (!cpMap.containsKey(hostDown)) {
+					continue;
+				}
+				submitHostUpdate(hostDown, futures, new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return removeHost(hostDown);
+					}
+				});
+			}
+		}
+		return new HostUpdatesFuture(futures);
+	}
+	
+	private void submitHostUpdate(final Host host, List<Future<Boolean>> futures, final Callable<Boolean> update) {
+		
+		if (pendingHostUpdates.putIfAbsent(host, Boolean.TRUE) != null) {
+			return;
+		}
+		try {
+			futures.add(hostUpdateThreadPool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					try {
+						return update.call();
+					} finally {
+						pendingHostUpdates.remove(host);
+					}
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			// shutting down
+			pendingHostUpdates.remove(host);
+		}
+	}
+	
+	/**
+	 * Completes once all of the host updates are done, true if any of them changed the set of host pools
+	 */
+	private static class HostUpdatesFuture implements Future<Boolean> {
+		
+		private final List<Future<Boolean>> futures;
+		
+		private HostUpdatesFuture(List<Future<Boolean>> futures) {
+			this.futures = futures;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = false;
+			for (Future<Boolean> future : futures) {
+				cancelled |= future.cancel(mayInterruptIfRunning);
+			}
+			return cancelled;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			for (Future<Boolean> future : futures) {
+				if (!future.isCancelled()) {
+					return false;
+				}
+			}
+			return !futures.isEmpty();
+		}
+
+		@Override
+		public boolean isDone() {
+			for (Future<Boolean> future : futures) {
+				if (!future.isDone()) {
+					return false;
+				}
 			}
+			return true;
+		}
+
+		@Override
+		public Boolean get() throws InterruptedException, ExecutionException {
+			boolean condition = false;
+			for (Future<Boolean> future : futures) {
+				condition |= future.get();
+			}
+			return condition;
+		}
+
+		@Override
+		public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			boolean condition = false;
+			for (Future<Boolean> future : futures) {
+				condition |= future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			return condition;
 		}
-		return getEmptyFutureTask(condition);
 	}
 
 	@Override
@@ -280,6 +459,15 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
 	@Override
 	public <R> OperationResult<R> executeWithFailover(Operation<CL, R> op) throws DynoException {
+		return executeWithFailover(op, getDefaultDeadline());
+	}
+	
+	@Override
+	public <R> OperationResult<R> executeWithFailover(Operation<CL, R> op, long timeout, TimeUnit unit) throws DynoException {
+		return executeWithFailover(op, Deadline.after(timeout, unit));
+	}
+	
+	private <R> OperationResult<R> executeWithFailover(Operation<CL, R> op, Deadline deadline) throws DynoException {
 		
 		// Start recording the operation
 		long startTime = System.currentTimeMillis();
@@ -288,61 +476,254 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		retry.begin();
 		
 		DynoException lastException = null;
+		List<Host> failedHosts = new ArrayList<Host>();
 		
 		do  {
-			Connection<CL> connection = null;
-			
+			if (lastException != null) {
+				long backoff = getBackoffMillis(retry);
+				if (isExpired(deadline) || passesDeadline(backoff, deadline)) {
+					throw deadlineExceeded(deadline, retry, lastException);
+				}
+				if (backoff > 0) {
+					try {
+						Thread.sleep(backoff);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw lastException;
+					}
+				}
+			}
+			int hops = failedHosts.size();
 			try { 
-					connection = 
-							selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
-
-				OperationResult<R> result = connection.execute(op);
-				
-				// Add context to the result from the successful execution
-				result.setNode(connection.getHost())
-					  .addMetadata(connection.getContext().getAll());
-
-				retry.success();
-				cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
-				
-				return result; 
-				
+				return executeAttempt(op, retry, startTime, deadline, failedHosts);
 			} catch(NoAvailableHostsException e) {
-				cpMonitor.incOperationFailure(null, e);
-
 				throw e;
 			} catch(DynoException e) {
-				
-				retry.failure(e);
 				lastException = e;
+				if (failedHosts.size() > hops && !isSafeToRetry(op, e)) {
+					throw e;
+				}
+			}
+			
+		} while(retry.allowRetry());
+		
+		throw lastException;
+	}
+	
+	/**
+	 * @return the deadline for an operation starting now, per {@link ConnectionPoolConfiguration#getOperationDeadlineMillis()}, 
+	 * null when operations have no deadline
+	 */
+	private Deadline getDefaultDeadline() {
+		int deadlineMillis = cpConfiguration.getOperationDeadlineMillis();
+		return deadlineMillis > 0 ? Deadline.after(deadlineMillis, TimeUnit.MILLISECONDS) : null;
+	}
+	
+	/**
+	 * @return whether the operation may be retried after it failed on a host, see {@link BaseOperation.Idempotent}
+	 */
+	private static boolean isSafeToRetry(BaseOperation<?, ?> op, DynoException e) {
+		if (!(op instanceof BaseOperation.Idempotent) || e instanceof ThrottledException) {
+			// the host turned down a throttled command, it never ran
+			return true;
+		}
+		return ((BaseOperation.Idempotent) op).isIdempotent();
+	}
+	
+	private static boolean isExpired(Deadline deadline) {
+		return deadline != null && deadline.isExpired();
+	}
+	
+	private static boolean passesDeadline(long backoffMillis, Deadline deadline) {
+		return deadline != null && backoffMillis >= deadline.remaining(TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @return how long to wait before the next attempt, for retry policies that back off, see {@link RetryPolicy.Backoff}
+	 */
+	private static long getBackoffMillis(RetryPolicy retry) {
+		return (retry instanceof RetryPolicy.Backoff) ? ((RetryPolicy.Backoff) retry).getBackoffMillis() : 0;
+	}
+	
+	private DynoException deadlineExceeded(Deadline deadline, RetryPolicy retry, DynoException lastException) {
+		DynoException e = new com.netflix.dyno.connectionpool.exception.TimeoutException("Operation deadline passed after " + retry.getAttemptCount() + " attempt(s)", lastException);
+		cpMonitor.incOperationFailure(null, e);
+		return e;
+	}
 
-                if (connection != null) {
-                    cpMonitor.incOperationFailure(connection.getHost(), e);
+	@Override
+	public <R> ListenableFuture<OperationResult<R>> executeWithFailoverAsync(Operation<CL, R> op) throws DynoException {
 
-                    if (retry.allowRetry()) {
-                        cpMonitor.incFailover(connection.getHost(), e);
-                    }
+		SettableFuture<OperationResult<R>> future = new SettableFuture<OperationResult<R>>();
+		
+		RetryPolicy retry = cpConfiguration.getRetryPolicyFactory().getRetryPolicy();
+		retry.begin();
+		
+		submitAttempt(op, retry, System.currentTimeMillis(), getDefaultDeadline(), new ArrayList<Host>(), future);
+		return future;
+	}
+	
+	/**
+	 * Queue up an attempt of the operation on the async workers. When the attempt fails and the retry policy allows it, 
+	 * the attempt queues up the next one and frees its worker, i.e no thread waits on a retry.
+	 */
+	private <R> void submitAttempt(final Operation<CL, R> op, final RetryPolicy retry, final long startTime, final Deadline deadline, 
+			final List<Host> failedHosts, final SettableFuture<OperationResult<R>> future) {
+		try {
+			asyncWorkerThreadPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (future.isCancelled()) {
+						return;
+					}
+					int hops = failedHosts.size();
+					try {
+						future.set(executeAttempt(op, retry, startTime, deadline, failedHosts));
+					} catch(NoAvailableHostsException e) {
+						future.setException(e);
+					} catch(DynoException e) {
+						long backoff = getBackoffMillis(retry);
+						if ((failedHosts.size() > hops && !isSafeToRetry(op, e)) || !retry.allowRetry()) {
+							future.setException(e);
+						} else if (isExpired(deadline) || passesDeadline(backoff, deadline)) {
+							future.setException(deadlineExceeded(deadline, retry, e));
+						} else if (backoff > 0) {
+							scheduleAttempt(op, retry, startTime, deadline, failedHosts, future, backoff, e);
+						} else {
+							submitAttempt(op, retry, startTime, deadline, failedHosts, future);
+						}
+					} catch(Throwable t) {
+						future.setException(t);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.setException(new DynoException("Async workers are shut down", e));
+		}
+	}
+	
+	/**
+	 * Queue up the next attempt once the retry policy's backoff has passed. The timer only hands the attempt over 
+	 * to the async workers.
+	 */
+	private <R> void scheduleAttempt(final Operation<CL, R> op, final RetryPolicy retry, final long startTime, final Deadline deadline, 
+			final List<Host> failedHosts, final SettableFuture<OperationResult<R>> future, long backoffMillis, DynoException lastException) {
+		try {
+			connPoolThreadPool.schedule(new Runnable() {
+				@Override
+				public void run() {
+					submitAttempt(op, retry, startTime, deadline, failedHosts, future);
+				}
+			}, backoffMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			future.setException(lastException);
+		}
+	}
+	
+	/**
+	 * Run a single attempt of the operation. Failures are recorded with the retry policy and the health tracker, 
+	 * it is up to the caller to retry. The attempt avoids the hosts the operation already failed on, and adds its 
+	 * own host to them when it fails.
+	 * The attempt holds a permit for its host while it runs, when concurrency limits are enabled.
+	 */
+	private <R> OperationResult<R> executeAttempt(Operation<CL, R> op, RetryPolicy retry, long startTime, Deadline deadline, 
+			List<Host> failedHosts) throws DynoException {
+		
+		Connection<CL> connection = null;
+		long execStartTime = -1L;
+		DynoException failure = null;
+		
+		try { 
+			connection = selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS, 
+					deadline, failedHosts, retry.allowRemoteDCFallback());
+			if (deadline != null) {
+				connection.getContext().setMetadata(Deadline.CONTEXT_KEY, deadline);
+			}
 
-                    // Track the connection health so that the pool can be purged at a later point
-                    cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), lastException);
-                } else {
-                    cpMonitor.incOperationFailure(null, e);
-                }
+			execStartTime = System.nanoTime()/1000;
+			OperationResult<R> result = connection.execute(op);
+			long execLatency = System.nanoTime()/1000 - execStartTime;
+			
+			// Add context to the result from the successful execution
+			result.setNode(connection.getHost())
+				  .addMetadata(getResultMetadata(connection.getContext(), deadline));
 
-			} catch(Throwable t) {
-				throw new RuntimeException(t);
-			} finally {
-				if (connection != null) {
-					connection.getContext().reset();
-					connection.getParentConnectionPool().returnConnection(connection);
+			retry.success();
+			setRetryHops(result, retry, failedHosts);
+			cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
+			cpHealthTracker.trackConnectionSuccess(connection.getParentConnectionPool(), execLatency);
+			
+			return result; 
+			
+		} catch(NoAvailableHostsException e) {
+			cpMonitor.incOperationFailure(null, e);
+
+			throw e;
+		} catch(DynoException e) {
+			
+			failure = e;
+			retry.failure(e);
+
+			if (connection != null) {
+				failedHosts.add(connection.getHost());
+				cpMonitor.incOperationFailure(connection.getHost(), e);
+
+				// ask the retry policy only if the operation may be retried at all, that takes the retry out of its budget
+				if (isSafeToRetry(op, e) && retry.allowRetry()) {
+					cpMonitor.incFailover(connection.getHost(), e);
 				}
+
+				// Track the connection health so that the pool can be purged at a later point
+				cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), e);
+			} else {
+				cpMonitor.incOperationFailure(null, e);
 			}
 			
-		} while(retry.allowRetry());
-		
-		throw lastException;
+			throw e;
+		} catch(Throwable t) {
+			// says nothing about the host, don't let it count towards the latency either
+			execStartTime = -1L;
+			throw new RuntimeException(t);
+		} finally {
+			if (connection != null) {
+				releasePermit(connection.getHost(), execStartTime, failure);
+				connection.getContext().reset();
+				connection.getParentConnectionPool().returnConnection(connection);
+			}
+		}
+	}
+	
+	/**
+	 * Hand back the permit of an attempt to the health tracker, and report the resulting concurrency limit of the host
+	 * @param host
+	 * @param execStartTime when the operation was sent in microseconds, -1 if it never was
+	 * @param failure null if the attempt succeeded
+	 */
+	private void releasePermit(Host host, long execStartTime, DynoException failure) {
+		long execLatency = (execStartTime >= 0) ? System.nanoTime()/1000 - execStartTime : -1L;
+		int limit = cpHealthTracker.releasePermit(host, execLatency, failure);
+		if (limit >= 0) {
+			cpMonitor.setConcurrencyLimit(host, limit);
+		}
 	}
 
+	private static void setRetryHops(OperationResult<?> result, RetryPolicy retry, List<Host> failedHosts) {
+		result.setAttemptsCount(retry.getAttemptCount());
+		if (!failedHosts.isEmpty()) {
+			result.setFailedHosts(new ArrayList<Host>(failedHosts));
+		}
+	}
+	
+	private static Map<String, Object> getResultMetadata(ConnectionContext context, Deadline deadline) {
+		if (deadline == null) {
+			return context.getAll();
+		}
+		// the deadline is only there for the connection
+		Map<String, Object> metadata = new HashMap<String, Object>(context.getAll());
+		metadata.remove(Deadline.CONTEXT_KEY);
+		return metadata;
+	}
+	
 	@Override
 	public <R> Collection<OperationResult<R>> executeWithRing(Operation<CL, R> op) throws DynoException {
 
@@ -351,58 +732,26 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
 		Collection<Connection<CL>> connections = selectionStrategy.getConnectionsToRing(cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
 
+		if (virtualThreadExecutor != null) {
+			return executeWithRingConcurrently(op, connections, startTime);
+		}
+
 		LinkedBlockingQueue<Connection<CL>> connQueue = new LinkedBlockingQueue<Connection<CL>>();
 		connQueue.addAll(connections);
 
 		List<OperationResult<R>> results = new ArrayList<OperationResult<R>>();
 
-		DynoException lastException = null;
+		AtomicReference<DynoException> lastException = new AtomicReference<DynoException>();
 
 		try { 
 			while(!connQueue.isEmpty()) {
 
 				Connection<CL> connection = connQueue.poll();
 
-				RetryPolicy retry = cpConfiguration.getRetryPolicyFactory().getRetryPolicy();
-				retry.begin();
-
-				do {
-					try { 
-						OperationResult<R> result = connection.execute(op);
-
-						// Add context to the result from the successful execution
-						result.setNode(connection.getHost())
-						.addMetadata(connection.getContext().getAll());
-
-						retry.success();
-						cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
-
-						results.add(result); 
-
-					} catch(NoAvailableHostsException e) {
-						cpMonitor.incOperationFailure(null, e);
-
-						throw e;
-					} catch(DynoException e) {
-
-						retry.failure(e);
-						lastException = e;
-
-						cpMonitor.incOperationFailure(connection != null ? connection.getHost() : null, e);
-
-						// Track the connection health so that the pool can be purged at a later point
-						if (connection != null) {
-							cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), lastException);
-						}
-
-					} catch(Throwable t) {
-						throw new RuntimeException(t);
-					} finally {
-						connection.getContext().reset();
-						connection.getParentConnectionPool().returnConnection(connection);
-					}
-
-				} while(retry.allowRetry());
+				OperationResult<R> result = executeOnRingConnection(op, connection, startTime, lastException);
+				if (result != null) {
+					results.add(result);
+				}
 			}
 			
 			// we fail the entire operation on a partial failure. hence need to clean up the rest of the pending connections
@@ -419,13 +768,118 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 			}
 		}
 
-		if (lastException != null) {
-			throw lastException;
+		if (lastException.get() != null) {
+			throw lastException.get();
 		} else {
 			return results;
 		}
 	}
 	
+	/**
+	 * Runs the operation against every connection to the ring at once, one virtual thread per connection
+	 */
+	private <R> Collection<OperationResult<R>> executeWithRingConcurrently(final Operation<CL, R> op, Collection<Connection<CL>> connections, 
+			final long startTime) throws DynoException {
+		
+		final AtomicReference<DynoException> lastException = new AtomicReference<DynoException>();
+		List<Future<OperationResult<R>>> futures = new ArrayList<Future<OperationResult<R>>>();
+		
+		for (final Connection<CL> connection : connections) {
+			futures.add(virtualThreadExecutor.submit(new Callable<OperationResult<R>>() {
+				@Override
+				public OperationResult<R> call() throws Exception {
+					return executeOnRingConnection(op, connection, startTime, lastException);
+				}
+			}));
+		}
+		
+		// wait on all of them, so that every connection is back in its pool before returning
+		List<OperationResult<R>> results = new ArrayList<OperationResult<R>>();
+		RuntimeException failure = null;
+		
+		for (Future<OperationResult<R>> future : futures) {
+			try {
+				OperationResult<R> result = future.get();
+				if (result != null) {
+					results.add(result);
+				}
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DynoException(e);
+			}
+		}
+		
+		if (failure != null) {
+			throw failure;
+		}
+		if (lastException.get() != null) {
+			throw lastException.get();
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs the operation on one of the ring's connections, with retries
+	 * @return the result, or null when all the attempts failed. The last failure is kept in lastException
+	 */
+	private <R> OperationResult<R> executeOnRingConnection(Operation<CL, R> op, Connection<CL> connection, long startTime, 
+			AtomicReference<DynoException> lastException) throws DynoException {
+		
+		RetryPolicy retry = cpConfiguration.getRetryPolicyFactory().getRetryPolicy();
+		retry.begin();
+
+		// the retries all go over the same connection, it goes back to its pool once they are done
+		try {
+			do {
+				try { 
+					long execStartTime = System.nanoTime()/1000;
+					OperationResult<R> result = connection.execute(op);
+					long execLatency = System.nanoTime()/1000 - execStartTime;
+
+					// Add context to the result from the successful execution
+					result.setNode(connection.getHost())
+					.addMetadata(connection.getContext().getAll());
+
+					retry.success();
+					cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
+					cpHealthTracker.trackConnectionSuccess(connection.getParentConnectionPool(), execLatency);
+
+					return result; 
+
+				} catch(NoAvailableHostsException e) {
+					cpMonitor.incOperationFailure(null, e);
+
+					throw e;
+				} catch(DynoException e) {
+
+					retry.failure(e);
+					lastException.set(e);
+
+					cpMonitor.incOperationFailure(connection != null ? connection.getHost() : null, e);
+
+					// Track the connection health so that the pool can be purged at a later point
+					if (connection != null) {
+						cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), e);
+					}
+
+				} catch(Throwable t) {
+					throw new RuntimeException(t);
+				} finally {
+					connection.getContext().reset();
+				}
+
+			} while(retry.allowRetry());
+
+			return null;
+		} finally {
+			connection.getParentConnectionPool().returnConnection(connection);
+		}
+	}
+	
 	/**
 	 * Use with EXTREME CAUTION. Connection that is borrowed must be returned, else we will have connection pool exhaustion
 	 * @param baseOperation
@@ -440,8 +894,16 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		for (Host host : cpMap.keySet()) {
 			removeHost(host);
 		}
+		if (remotePrimingThreadPool != null) {
+			remotePrimingThreadPool.shutdownNow();
+		}
+		hostUpdateThreadPool.shutdownNow();
+		asyncWorkerThreadPool.shutdownNow();
 		cpHealthTracker.stop();
 		hostsUpdater.stop();
+		if (cpConfiguration.getHostSupplier() instanceof IncrementalHostSupplier) {
+			((IncrementalHostSupplier) cpConfiguration.getHostSupplier()).removeHostChangeListener(hostChangeListener);
+		}
 		connPoolThreadPool.shutdownNow();
         unregisterMonitorConsoleMBean();
 	}
@@ -465,11 +927,39 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		if (hostsUp == null || hostsUp.isEmpty()) {
 			throw new NoAvailableHostsException("No available hosts when starting connection pool");
 		}
+		
+		// resolve all the hosts in parallel up front, rather than one by one as their connections are opened
+		HostAddressResolver.getInstance().prefetch(hostsUp);
 
-		final ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(10, hostsUp.size()));
+		Collection<Host> hostsToPrime = hostsUp;
+		final List<Host> deferredHosts = new ArrayList<Host>();
+		
+		if (cpConfiguration.progressiveStartup()) {
+			// only wait on the local rack, the remote racks are just for fallback
+			hostsToPrime = new ArrayList<Host>();
+			String localRack = cpConfiguration.getLocalDC();
+			for (Host host : hostsUp) {
+				if (localRack == null || localRack.equals(host.getRack()) || host.getSocketPath() != null) {
+					hostsToPrime.add(host);
+				} else {
+					deferredHosts.add(host);
+				}
+			}
+			if (hostsToPrime.isEmpty()) {
+				Logger.warn("No active hosts in local rack " + localRack + ", priming all racks");
+				hostsToPrime = hostsUp;
+				deferredHosts.clear();
+			}
+		}
+
+		ExecutorService primingThreadPool = (virtualThreadExecutor != null) ? VirtualThreads.newThreadPerTaskExecutor("DynoPrimer-") : null;
+		if (primingThreadPool == null) {
+			primingThreadPool = Executors.newFixedThreadPool(Math.max(10, hostsToPrime.size()));
+		}
+		final ExecutorService threadPool = primingThreadPool;
 		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
 		
-		for (final Host host : hostsUp) {
+		for (final Host host : hostsToPrime) {
 			
 			// Add host connection pool, but don't init the load balancer yet
 			futures.add(threadPool.submit(new Callable<Void>() {
@@ -501,6 +991,10 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 			selectionStrategy = initSelectionStrategy();
 			cpHealthTracker.start();
 			
+			if (!deferredHosts.isEmpty()) {
+				primeHostsInBackground(deferredHosts);
+			}
+			
 			connPoolThreadPool.scheduleWithFixedDelay(new Runnable() {
 
 				@Override
@@ -516,6 +1010,16 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 				}
 				
 			}, 15*1000, 30*1000, TimeUnit.MILLISECONDS);
+			
+			if (hostSupplier instanceof IncrementalHostSupplier) {
+				// apply changes as they happen, the polling above only acts as a fallback
+				((IncrementalHostSupplier) hostSupplier).addHostChangeListener(hostChangeListener);
+			}
+			
+			int reconcileFrequency = cpConfiguration.getTopologyReconcileFrequencySeconds();
+			if (reconcileFrequency > 0) {
+				scheduleTopologyReconciliation(reconcileFrequency);
+			}
 
 			MonitorConsole.getInstance().registerConnectionPool(this);
 
@@ -525,6 +1029,89 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		return getEmptyFutureTask(true);
 	}
 
+	/**
+	 * Applies the hosts pushed by an {@link IncrementalHostSupplier}. Only the hosts that changed are touched, and 
+	 * new hosts are primed on the host update threads, hence the supplier's thread is never held up.
+	 */
+	private final HostChangeListener hostChangeListener = new HostChangeListener() {
+
+		@Override
+		public void onHostsAdded(Collection<Host> hosts) {
+			applyHostChanges(hosts);
+		}
+
+		@Override
+		public void onHostsRemoved(Collection<Host> hosts) {
+			applyHostChanges(Collections.<Host>emptyList(), hosts);
+		}
+
+		@Override
+		public void onHostsStatusChanged(Collection<Host> hosts) {
+			applyHostChanges(hosts);
+		}
+		
+		private void applyHostChanges(Collection<Host> hosts) {
+			
+			List<Host> hostsUp = new ArrayList<Host>();
+			List<Host> hostsDown = new ArrayList<Host>();
+			for (Host host : hosts) {
+				if (host.isUp()) {
+					hostsUp.add(host);
+				} else {
+					hostsDown.add(host);
+				}
+			}
+			applyHostChanges(hostsUp, hostsDown);
+		}
+		
+		private void applyHostChanges(Collection<Host> hostsUp, Collection<Host> hostsDown) {
+			try {
+				HostStatusTracker hostStatus = hostsUpdater.applyHostChanges(hostsUp, hostsDown);
+				if (hostStatus == null) {
+					return;
+				}
+				cpMonitor.setHostCount(hostStatus.getHostCount());
+				updateHosts(hostsUp, hostsDown);
+			} catch (Throwable throwable) {
+				Logger.error("Failed to apply host changes", throwable);
+			}
+		}
+	};
+
+	/**
+	 * The token map is fetched on a host update thread, so that a slow token map supplier never holds up the 
+	 * scheduler. A run is skipped while the previous one is still going.
+	 */
+	private void scheduleTopologyReconciliation(int frequencySeconds) {
+		
+		final AtomicBoolean reconciling = new AtomicBoolean(false);
+		final Runnable reconciler = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					selectionStrategy.reconcileTopology();
+				} catch (Throwable t) {
+					Logger.warn("Failed to reconcile token map: " + t.getMessage());
+				} finally {
+					reconciling.set(false);
+				}
+			}
+		};
+		
+		connPoolThreadPool.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				if (reconciling.compareAndSet(false, true)) {
+					try {
+						hostUpdateThreadPool.execute(reconciler);
+					} catch (RejectedExecutionException e) {
+						reconciling.set(false);
+					}
+				}
+			}
+		}, frequencySeconds, frequencySeconds, TimeUnit.SECONDS);
+	}
+
 	@Override
 	public ConnectionPoolConfiguration getConfiguration() {
 		return cpConfiguration;
@@ -563,12 +1150,44 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
     }
 	
+	/**
+	 * Primes the given hosts with bounded concurrency, each host joins the load balancer as soon as it is ready.
+	 * Hosts that fail to prime are picked up again by the regular host refresh.
+	 */
+	private void primeHostsInBackground(List<Host> hosts) {
+		
+		Logger.info("Priming " + hosts.size() + " remote rack hosts in the background");
+		
+		remotePrimingThreadPool = Executors.newFixedThreadPool(Math.max(1, cpConfiguration.getRemoteRackPrimingConcurrency()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoRemoteRackPriming");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		
+		for (final Host host : hosts) {
+			remotePrimingThreadPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						addHost(host, true);
+					} catch (Throwable t) {
+						Logger.warn("Failed to prime host " + host + " in the background, will retry on next host refresh", t);
+					}
+				}
+			});
+		}
+		remotePrimingThreadPool.shutdown();
+	}
+	
 	private HostSelectionWithFallback<CL> initSelectionStrategy() {
 		
 		if (cpConfiguration.getTokenSupplier() == null) {
 			throw new RuntimeException("TokenMapSupplier not configured");
 		}
-		HostSelectionWithFallback<CL> selection = new HostSelectionWithFallback<CL>(cpConfiguration, cpMonitor);
+		HostSelectionWithFallback<CL> selection = new HostSelectionWithFallback<CL>(cpConfiguration, cpMonitor, cpHealthTracker);
 		selection.initWithHosts(cpMap);
 		return selection;
 	}
@@ -591,8 +1210,13 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		
 		HostConnectionPool<CL> createHostConnectionPool(Host host, ConnectionPoolImpl<CL> parentPoolImpl);
 		
+		/**
+		 * Sync pools lend each connection to one caller at a time, Async pools share their connections for async operations. 
+		 * Multiplexed pools share a few connections across synchronous callers, which requires connections that can be used 
+		 * by several threads at once, see {@link MultiplexedConnectionPoolImpl}.
+		 */
 		public enum Type {
-			Sync, Async;
+			Sync, Async, Multiplexed;
 		}
 	}
 	
@@ -600,7 +1224,7 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
 		@Override
 		public HostConnectionPool<CL> createHostConnectionPool(Host host, ConnectionPoolImpl<CL> parentPoolImpl) {
-			return new HostConnectionPoolImpl<CL>(host, connFactory, cpConfiguration, cpMonitor);
+			return new HostConnectionPoolImpl<CL>(host, connFactory, cpConfiguration, cpMonitor, cpHealthTracker);
 		}
 	}
 	
@@ -612,44 +1236,187 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		}
 	}
 	
+	private class MultiplexedHostConnectionPoolFactory implements HostConnectionPoolFactory<CL> {
+
+		@Override
+		public HostConnectionPool<CL> createHostConnectionPool(Host host, ConnectionPoolImpl<CL> parentPoolImpl) {
+			return new MultiplexedConnectionPoolImpl<CL>(host, connFactory, cpConfiguration, cpMonitor, cpHealthTracker);
+		}
+	}
+	
 	@Override
 	public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<CL, R> op) throws DynoException {
 		
-		DynoException lastException = null;
+		SettableFuture<OperationResult<R>> future = new SettableFuture<OperationResult<R>>();
+
+		RetryPolicy retry = cpConfiguration.getRetryPolicyFactory().getRetryPolicy();
+		retry.begin();
+		
+		executeAsyncAttempt(op, retry, System.currentTimeMillis(), getDefaultDeadline(), new ArrayList<Host>(), future);
+		return future;
+	}
+	
+	/**
+	 * Dispatch an attempt of the async operation. The outcome is handled by a callback on the attempt's future, which 
+	 * either completes the caller's future or queues up the next attempt, hence nothing waits on the operation.
+	 */
+	private <R> void executeAsyncAttempt(final AsyncOperation<CL, R> op, final RetryPolicy retry, final long startTime, 
+			final Deadline deadline, final List<Host> failedHosts, final SettableFuture<OperationResult<R>> future) {
+		
+		if (future.isCancelled()) {
+			return;
+		}
+		
 		Connection<CL> connection = null;
-		long startTime = System.currentTimeMillis();
 		
 		try { 
-			connection = 
-					selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
+			connection = selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS, 
+					deadline, failedHosts, retry.allowRemoteDCFallback());
 			
-			ListenableFuture<OperationResult<R>> futureResult = connection.executeAsync(op);
+			final Host host = connection.getHost();
+			final HostConnectionPool<CL> hostPool = connection.getParentConnectionPool();
+			final long execStartTime = System.nanoTime()/1000;
 			
-			cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
-		
-			return futureResult; 
+			try {
+				final ListenableFuture<OperationResult<R>> attempt = connection.executeAsync(op);
+				
+				Runnable onDone = new Runnable() {
+					@Override
+					public void run() {
+						onAsyncAttemptDone(op, retry, startTime, deadline, failedHosts, future, host, hostPool, attempt, execStartTime);
+					}
+				};
+				try {
+					attempt.addListener(onDone, SettableFuture.DirectExecutor);
+				} catch (UnsupportedOperationException e) {
+					// the connection's future can't call back, have a worker wait on it instead
+					asyncWorkerThreadPool.execute(onDone);
+				}
+			} catch(DynoException e) {
+				releasePermit(host, execStartTime, e);
+				onAsyncAttemptFailure(op, retry, startTime, deadline, failedHosts, future, host, hostPool, e);
+			} catch(Throwable t) {
+				// the connection can't run async operations, or the workers are shutting down, the attempt never got going
+				releasePermit(host, -1L, null);
+				future.setException(t);
+			}
 			
 		} catch(NoAvailableHostsException e) {
 			cpMonitor.incOperationFailure(null, e);
-			throw e;
+			future.setException(e);
 		} catch(DynoException e) {
-			
-			lastException = e;
-			cpMonitor.incOperationFailure(connection != null ? connection.getHost() : null, e);
-			
-			// Track the connection health so that the pool can be purged at a later point
-			if (connection != null) {
-				cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), lastException);
-			}
-			
+			onAsyncAttemptFailure(op, retry, startTime, deadline, failedHosts, future, null, null, e);
 		} catch(Throwable t) {
-			t.printStackTrace();
+			future.setException(t);
 		} finally {
 			if (connection != null) {
 				connection.getParentConnectionPool().returnConnection(connection);
 			}
 		}
-		return null;
+	}
+	
+	/**
+	 * Handle the outcome of an async attempt, the attempt's permit is released here, before any retry
+	 */
+	private <R> void onAsyncAttemptDone(AsyncOperation<CL, R> op, RetryPolicy retry, long startTime, Deadline deadline, 
+			List<Host> failedHosts, SettableFuture<OperationResult<R>> future, Host host, HostConnectionPool<CL> hostPool, 
+			ListenableFuture<OperationResult<R>> attempt, long execStartTime) {
+		
+		OperationResult<R> result;
+		try {
+			result = attempt.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DynoException || cause instanceof IOException) {
+				DynoException failure = (cause instanceof DynoException) ? (DynoException) cause : new DynoConnectException(cause).setHost(host);
+				releasePermit(host, execStartTime, failure);
+				onAsyncAttemptFailure(op, retry, startTime, deadline, failedHosts, future, host, hostPool, failure);
+			} else {
+				// application errors don't fail over, same as executeWithFailover
+				releasePermit(host, -1L, null);
+				cpMonitor.incOperationFailure(host, e);
+				future.setException(cause);
+			}
+			return;
+		} catch (InterruptedException e) {
+			releasePermit(host, -1L, null);
+			Thread.currentThread().interrupt();
+			future.setException(e);
+			return;
+		} catch (Throwable t) {
+			releasePermit(host, -1L, null);
+			future.setException(t);
+			return;
+		}
+		
+		long execLatency = System.nanoTime()/1000 - execStartTime;
+		releasePermit(host, execStartTime, null);
+		try {
+			retry.success();
+			setRetryHops(result, retry, failedHosts);
+			cpMonitor.incOperationSuccess(host, System.currentTimeMillis()-startTime);
+			cpHealthTracker.trackConnectionSuccess(hostPool, execLatency);
+			
+			future.set(result);
+			
+		} catch (Throwable t) {
+			future.setException(t);
+		}
+	}
+	
+	private <R> void onAsyncAttemptFailure(final AsyncOperation<CL, R> op, final RetryPolicy retry, final long startTime, 
+			final Deadline deadline, final List<Host> failedHosts, final SettableFuture<OperationResult<R>> future, Host host, HostConnectionPool<CL> hostPool, final DynoException e) {
+		
+		retry.failure(e);
+		cpMonitor.incOperationFailure(host, e);
+		
+		// Track the connection health so that the pool can be purged at a later point
+		if (hostPool != null) {
+			cpHealthTracker.trackConnectionError(hostPool, e);
+		}
+		if (host != null) {
+			failedHosts.add(host);
+		}
+		
+		if ((host != null && !isSafeToRetry(op, e)) || !retry.allowRetry()) {
+			future.setException(e);
+			return;
+		}
+		long backoff = getBackoffMillis(retry);
+		if (isExpired(deadline) || passesDeadline(backoff, deadline)) {
+			future.setException(deadlineExceeded(deadline, retry, e));
+			return;
+		}
+		
+		if (host != null) {
+			cpMonitor.incFailover(host, e);
+		}
+		
+		// the failure may have been reported on an I/O thread, pick the next host on a worker instead
+		final Runnable nextAttempt = new Runnable() {
+			@Override
+			public void run() {
+				executeAsyncAttempt(op, retry, startTime, deadline, failedHosts, future);
+			}
+		};
+		try {
+			if (backoff > 0) {
+				connPoolThreadPool.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							asyncWorkerThreadPool.execute(nextAttempt);
+						} catch (RejectedExecutionException ex) {
+							future.setException(e);
+						}
+					}
+				}, backoff, TimeUnit.MILLISECONDS);
+			} else {
+				asyncWorkerThreadPool.execute(nextAttempt);
+			}
+		} catch (RejectedExecutionException ex) {
+			future.setException(e);
+		}
 	}
 
 	public TokenPoolTopology  getTopology() {
@@ -54,6 +54,7 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     private final AtomicLong noHostsCount           = new AtomicLong();
     private final AtomicLong unknownErrorCount      = new AtomicLong();
     private final AtomicLong badRequestCount        = new AtomicLong();
+    private final AtomicLong concurrencyLimitExceededCount = new AtomicLong();
 
     private final EstimatedHistogram borrowedConnHistogram = new EstimatedHistogram();
 
@@ -71,7 +72,9 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     
     private void trackError(Host host, Exception reason) {
     	if (reason != null) {
-    		if (reason instanceof PoolTimeoutException) {
+    		if (reason instanceof ConcurrencyLimitExceededException) {
+    			this.concurrencyLimitExceededCount.incrementAndGet();
+    		} else if (reason instanceof PoolTimeoutException) {
     			this.poolExhastedCount.incrementAndGet();
     		} else if (reason instanceof PoolExhaustedException) {
         	        this.poolExhastedCount.incrementAndGet();
@@ -199,6 +202,27 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
         return this.connectionReturnCount.get();
     }
 
+    @Override
+    public void incKeepAliveProbe(Host host, long latency) {
+        if (host == null || (host instanceof HostGroup)) {
+        	return;
+        }
+        getOrCreateHostStats(host).trackProbeLatency(latency);
+    }
+
+    @Override
+    public void setConcurrencyLimit(Host host, int limit) {
+        if (host == null || (host instanceof HostGroup)) {
+        	return;
+        }
+        getOrCreateHostStats(host).concurrencyLimit.set(limit);
+    }
+
+    @Override
+    public long getConcurrencyLimitExceededCount() {
+        return this.concurrencyLimitExceededCount.get();
+    }
+
     public long getPoolExhaustedTimeoutCount() {
         return this.poolExhastedCount.get();
     }
@@ -338,6 +362,8 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
 		private final AtomicLong createFailed = new AtomicLong();
 		private final AtomicLong borrowed  = new AtomicLong();
 		private final AtomicLong returned  = new AtomicLong();
+		private final AtomicLong probeLatency = new AtomicLong();
+		private final AtomicLong concurrencyLimit = new AtomicLong();
 		    
 		private HostConnectionStatsImpl(Host host) {
 			this.name = host.getHostName();
@@ -382,6 +408,26 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
 		public long getOperationErrorCount() {
 			return opFailure.get();
 		}
+
+		@Override
+		public long getKeepAliveProbeLatency() {
+			return probeLatency.get();
+		}
+
+		@Override
+		public long getConcurrencyLimit() {
+			return concurrencyLimit.get();
+		}
+		
+		private void trackProbeLatency(long latency) {
+			// exponentially weighted moving avg, new samples weigh 1/4
+			long current = probeLatency.get();
+			long next = (current == 0) ? latency : current + (latency - current)/4;
+			while (!probeLatency.compareAndSet(current, next)) {
+				current = probeLatency.get();
+				next = (current == 0) ? latency : current + (latency - current)/4;
+			}
+		}
 		
 		public String toString() {
 			return name + " isUp: " + hostUp.get() + 
@@ -391,7 +437,9 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
 					", closed: " + closed.get() + 
 					", createFailed: " + createFailed.get() + 
 					", success: " + opSuccess.get() + 
-					", error: " + opFailure.get(); 
+					", error: " + opFailure.get() + 
+					", probeLatency: " + probeLatency.get() + 
+					", concurrencyLimit: " + concurrencyLimit.get(); 
 		}
 	}
 }
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.dyno.connectionpool.RetryPolicy;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.ConcurrencyLimitExceededException;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
+
+/**
+ * Retry policy that allows at most N retries, waits between them, and draws every retry from a {@link RetryBudget}
+ * shared by the whole client.
+ *
+ * What happens after a failure depends on the kind of failure
+ * <ul>
+ * <li>{@link ThrottledException}, {@link TimeoutException} and {@link ConcurrencyLimitExceededException} mean the host is overloaded, the policy waits before
+ * the next attempt. The wait doubles with each such failure up to a limit, and is picked at random below that
+ * (full jitter), so that the retries of many clients don't line up.</li>
+ * <li>Any other {@link DynoConnectException}, e.g the pool is offline or exhausted, or the connection broke, says
+ * nothing about the load on the cluster, the next attempt goes to another host right away.</li>
+ * <li>{@link BadRequestException} fails the same way on every host and is not retried.</li>
+ * <li>Anything else waits, like an overloaded host.</li>
+ * </ul>
+ *
+ * Note that ExponentialBackoffRetry(2, ...) means that a total of 2 + 1 = 3 attempts will be allowed before giving
+ * up, if the budget allows.
+ */
+public class ExponentialBackoffRetry implements RetryPolicy, RetryPolicy.Backoff {
+
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+	private final boolean allowRemoteDCFallback;
+	private final RetryBudget budget;
+
+	private final AtomicInteger attempts = new AtomicInteger(0);
+	private final AtomicInteger backoffs = new AtomicInteger(0);
+	private volatile boolean retryAllowed = true;
+	// whether the retry after the last failure still has to be taken out of the budget
+	private final AtomicBoolean budgetPending = new AtomicBoolean(false);
+	private volatile long backoffMillis = 0;
+
+	/**
+	 * @param maxRetries
+	 * @param baseDelayMillis the wait after the first failure that calls for one
+	 * @param maxDelayMillis the limit of the wait
+	 * @param allowFallback
+	 * @param budget may be null for unlimited retries
+	 */
+	public ExponentialBackoffRetry(int maxRetries, long baseDelayMillis, long maxDelayMillis, boolean allowFallback, RetryBudget budget) {
+		this.maxRetries = maxRetries;
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.allowRemoteDCFallback = allowFallback;
+		this.budget = budget;
+	}
+
+	@Override
+	public void begin() {
+	}
+
+	@Override
+	public void success() {
+		attempts.incrementAndGet();
+		if (budget != null) {
+			budget.recordSuccess();
+		}
+	}
+
+	@Override
+	public void failure(Exception e) {
+
+		int attempt = attempts.incrementAndGet();
+
+		if (e instanceof BadRequestException || attempt > maxRetries) {
+			retryAllowed = false;
+			budgetPending.set(false);
+			return;
+		}
+
+		// the retry is only taken out of the budget once someone asks for it, the caller may not retry the 
+		// operation at all, e.g because it isn't idempotent
+		retryAllowed = true;
+		budgetPending.set(budget != null);
+
+		if (shouldBackOff(e)) {
+			backoffMillis = jitter(backoffs.incrementAndGet());
+		} else {
+			backoffMillis = 0;
+		}
+	}
+
+	private static boolean shouldBackOff(Exception e) {
+		if (e instanceof ThrottledException || e instanceof TimeoutException || e instanceof ConcurrencyLimitExceededException) {
+			return true;
+		}
+		return !(e instanceof DynoConnectException);
+	}
+
+	private long jitter(int backoffCount) {
+		long ceiling = baseDelayMillis << Math.min(backoffCount - 1, 30);
+		if (ceiling <= 0 || ceiling > maxDelayMillis) {
+			ceiling = maxDelayMillis;
+		}
+		return ceiling > 0 ? (long) (ThreadLocalRandom.current().nextDouble() * ceiling) : 0;
+	}
+
+	@Override
+	public boolean allowRetry() {
+		// the decision is made once per failure, allowRetry() may be asked several times
+		if (budgetPending.compareAndSet(true, false)) {
+			retryAllowed = budget.tryAcquireRetry();
+		}
+		return retryAllowed;
+	}
+
+	@Override
+	public long getBackoffMillis() {
+		return backoffMillis;
+	}
+
+	@Override
+	public int getAttemptCount() {
+		return attempts.get();
+	}
+
+	@Override
+	public boolean allowRemoteDCFallback() {
+		return allowRemoteDCFallback;
+	}
+
+	/**
+	 * Vends policies that share one {@link RetryBudget}, i.e the budget of the client the factory is configured for
+	 */
+	public static class RetryFactory implements RetryPolicyFactory {
+
+		private final int maxRetries;
+		private final long baseDelayMillis;
+		private final long maxDelayMillis;
+		private final boolean allowDCFallback;
+		private final RetryBudget budget;
+
+		public RetryFactory(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+			this(maxRetries, baseDelayMillis, maxDelayMillis, true, new RetryBudget());
+		}
+
+		public RetryFactory(int maxRetries, long baseDelayMillis, long maxDelayMillis, boolean allowFallback, RetryBudget budget) {
+			this.maxRetries = maxRetries;
+			this.baseDelayMillis = baseDelayMillis;
+			this.maxDelayMillis = maxDelayMillis;
+			this.allowDCFallback = allowFallback;
+			this.budget = budget;
+		}
+
+		@Override
+		public RetryPolicy getRetryPolicy() {
+			return new ExponentialBackoffRetry(maxRetries, baseDelayMillis, maxDelayMillis, allowDCFallback, budget);
+		}
+
+		public RetryBudget getBudget() {
+			return budget;
+		}
+	}
+}
@@ -26,14 +26,15 @@ import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.OperationMonitor;
 import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.impl.utils.SettableFuture;
 
 /**
  * Impl for Future<OperationResult<R>> that encapsulates an inner future. 
  * The class provides a functionality to record the time when the caller calls get() on the future. 
  * This helps record end-end timing for async operations. 
  * Not that there is a caveat here that if the future is called at a later point in time, then yes the timing stats
- * will appear to be bloated unnecessarily. What we really need here is a listenable future, where we should log the 
- * timing stats on the callback. 
+ * will appear to be bloated unnecessarily. Hence when the inner future is a {@link ListenableFuture}, the timing stats 
+ * are logged on its callback instead, i.e when the operation actually completes. 
  * 
  * @author poberai
  *
@@ -50,6 +51,15 @@ public class FutureOperationalResultImpl<R> implements ListenableFuture<Operatio
 		this.future = rFuture;
 		this.opResult = new OperationResultImpl<R>(opName, rFuture, opMonitor).attempts(1);
 		this.startTime = start;
+		
+		if (rFuture instanceof ListenableFuture) {
+			((ListenableFuture<R>) rFuture).addListener(new Runnable() {
+				@Override
+				public void run() {
+					recordTimeIfNeeded();
+				}
+			}, SettableFuture.DirectExecutor);
+		}
 	}
 
 	@Override
@@ -108,6 +118,9 @@ public class FutureOperationalResultImpl<R> implements ListenableFuture<Operatio
 
 	@Override
 	public void addListener(Runnable listener, Executor executor) {
-		throw new RuntimeException("Not Implemented");
+		if (!(future instanceof ListenableFuture)) {
+			throw new UnsupportedOperationException("Inner future is not listenable: " + future.getClass().getName());
+		}
+		((ListenableFuture<R>) future).addListener(listener, executor);
 	}
 }
@@ -18,10 +18,15 @@ package com.netflix.dyno.connectionpool.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,8 +40,10 @@ import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.RetryPolicy;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.PoolOfflineException;
 import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 
 /**
  * Main impl for {@link HostConnectionPool}
@@ -50,6 +57,18 @@ import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
  * and simply terminates every connection that is returned to it. This is generally useful when the host is going away, or where the error rate 
  * from the connections of this pool are greater than a configured error threshold and then an external component decides to recycle the connection pool. 
  * 
+ * When {@link ConnectionPoolConfiguration#getMinHealthyConnectionsPercentage()} is set, a connection that is returned with a fatal error is 
+ * closed and replaced in the background instead, and the pool stays active. The pool is only recycled as a whole when too few healthy 
+ * connections are left. 
+ * 
+ * Since sync pools can't be pinged as a whole (all connections may be in use), the pool can also validate connections that have 
+ * been idle for too long on borrow, rotate connections once they reach a max age and ping its longest idle connection as a keep alive 
+ * probe via {@link #probeIdleConnection()}. All of these are disabled by default, see {@link ConnectionPoolConfiguration}.
+ * 
+ * With lazy connections the pool is primed with just a core of connections (possibly none) and opens the rest when borrowers 
+ * find no idle connection, one at a time. Connections that are closed are not replaced, they are simply opened again on demand. 
+ * See {@link ConnectionPoolConfiguration#lazyConnections()}
+ * 
  * @author poberai
  *
  * @param <CL>
@@ -68,6 +87,18 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 	private final ConnectionFactory<CL> connFactory; 
 	private final ConnectionPoolConfiguration cpConfig; 
 	private final ConnectionPoolMonitor monitor; 
+	// used to repair failed connections in the background, may be null
+	private final ConnectionPoolHealthTracker<CL> healthTracker;
+	// when each open connection was created and last used, for idle validation and max age rotation
+	private final ConcurrentHashMap<Connection<CL>, ConnectionTimestamps> connectionTimestamps = new ConcurrentHashMap<Connection<CL>, ConnectionTimestamps>();
+	// with lazy connections, whether someone is already opening a connection on demand
+	private final AtomicBoolean connectingOnDemand = new AtomicBoolean(false);
+	// with lazy connections, the no of on demand connects that failed in a row and when the next one may be tried
+	private final AtomicInteger onDemandFailures = new AtomicInteger(0);
+	private volatile long nextOnDemandConnectMillis = 0L;
+	// with lazy connections, borrowers wait on this while an on demand connect is in flight instead of polling the idle queue
+	private final ReentrantLock onDemandLock = new ReentrantLock();
+	private final Condition onDemandChanged = onDemandLock.newCondition();
 	
 	// states that dictate the behavior of the pool
 	
@@ -85,10 +116,17 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 	
 	public HostConnectionPoolImpl(Host host, ConnectionFactory<CL> conFactory, 
 			                      ConnectionPoolConfiguration cpConfig, ConnectionPoolMonitor poolMonitor) {
+		this(host, conFactory, cpConfig, poolMonitor, null);
+	}
+	
+	public HostConnectionPoolImpl(Host host, ConnectionFactory<CL> conFactory, 
+			                      ConnectionPoolConfiguration cpConfig, ConnectionPoolMonitor poolMonitor,
+			                      ConnectionPoolHealthTracker<CL> tracker) {
 		this.host = host;
 		this.connFactory = conFactory;
 		this.cpConfig = cpConfig;
 		this.monitor = poolMonitor;
+		this.healthTracker = tracker;
 	}
 	
 	@Override
@@ -163,7 +201,7 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 
         int primedConnectionCount = reconnect(cpNotInited);
 
-        if (primedConnectionCount == 0) {
+        if (primedConnectionCount == 0 && cpState.get() != cpActive) {
             Logger.warn("Unable to make any successful connections to host " + host);
             cpState.set(cpNotInited);
             throw new DynoConnectException("Unable to make ANY successful connections to host " + host);
@@ -180,15 +218,16 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		}
 		
 		int successfullyCreated = 0; 
+		int connsToCreate = getConnectionsToPrime(prevState);
 		
-		for (int i=0; i<cpConfig.getMaxConnsPerHost(); i++) {
+		for (int i=0; i<connsToCreate; i++) {
 			boolean success = createConnectionWithRetries();
 			if (success) {
 				successfullyCreated++;
 			}
 		}
 		
-		if (successfullyCreated == cpConfig.getMaxConnsPerHost()) {
+		if (successfullyCreated == connsToCreate) {
 			if (!(cpState.compareAndSet(cpReconnecting, cpActive))) {
 				throw new IllegalStateException("something went wrong with prime connections");
 			}
@@ -200,6 +239,147 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		return successfullyCreated;
 	}
 	
+	/**
+	 * @return all the connections, or with lazy connections only the core connections. A pool that is reconnecting 
+	 * after failing opens at least one connection though, to make sure that the host is reachable again.
+	 */
+	private int getConnectionsToPrime(ConnectionPoolState<CL> prevState) {
+		if (!cpConfig.lazyConnections()) {
+			return cpConfig.getMaxConnsPerHost();
+		}
+		int coreConns = Math.min(Math.max(0, cpConfig.getCoreConnsPerHost()), cpConfig.getMaxConnsPerHost());
+		return (prevState == cpNotInited) ? coreConns : Math.max(1, coreConns);
+	}
+	
+	/**
+	 * Get an idle connection, or with lazy connections open a new one if there is none and the pool isn't full yet. 
+	 * Only one connection is opened at a time, concurrent borrowers wait for it (or for a returned connection) 
+	 * instead of all opening their own.
+	 * 
+	 * @param deadline in nanos
+	 * @return Connection<CL> or null if none became available before the deadline
+	 * @throws InterruptedException
+	 */
+	private Connection<CL> pollConnection(long deadline) throws InterruptedException {
+		
+		if (!cpConfig.lazyConnections()) {
+			return availableConnections.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		
+		while (true) {
+			
+			Connection<CL> connection = availableConnections.poll();
+			if (connection != null) {
+				return connection;
+			}
+			
+			if (cpState.get() != cpActive) {
+				throw new PoolOfflineException(getHost(), "Pool went down while waiting on connections");
+			}
+			
+			if (numActiveConnections.get() < cpConfig.getMaxConnsPerHost() && System.currentTimeMillis() >= nextOnDemandConnectMillis 
+					&& connectingOnDemand.compareAndSet(false, true)) {
+				boolean created = false;
+				try {
+					if (numActiveConnections.get() < cpConfig.getMaxConnsPerHost()) {
+						created = createConnectionOnDemand();
+					}
+				} finally {
+					connectingOnDemand.set(false);
+					// whatever happened, the borrowers waiting on this connect have to look again
+					signalOnDemandWaiters(true);
+				}
+				if (created) {
+					// the new connection is up for grabs just like any other
+					continue;
+				}
+			}
+			
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			if (connectingOnDemand.get()) {
+				// wait for the connect in flight to finish or for a connection to be returned, whichever comes first
+				awaitOnDemandConnect(remaining);
+				continue;
+			}
+			long wait = remaining;
+			if (numActiveConnections.get() < cpConfig.getMaxConnsPerHost()) {
+				// the last connect failed, wait for a returned connection until it may be tried again
+				long backoff = Math.max(1L, nextOnDemandConnectMillis - System.currentTimeMillis());
+				wait = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(backoff));
+			}
+			connection = availableConnections.poll(wait, TimeUnit.NANOSECONDS);
+			if (connection != null) {
+				return connection;
+			}
+		}
+	}
+	
+	private void awaitOnDemandConnect(long nanos) throws InterruptedException {
+		onDemandLock.lock();
+		try {
+			while (nanos > 0 && connectingOnDemand.get() && availableConnections.isEmpty()) {
+				nanos = onDemandChanged.awaitNanos(nanos);
+			}
+		} finally {
+			onDemandLock.unlock();
+		}
+	}
+	
+	/**
+	 * Wake up borrowers that are waiting on an on demand connect. 
+	 * @param all true when the connect is done, false when just one connection became available
+	 */
+	private void signalOnDemandWaiters(boolean all) {
+		onDemandLock.lock();
+		try {
+			if (all) {
+				onDemandChanged.signalAll();
+			} else {
+				onDemandChanged.signal();
+			}
+		} finally {
+			onDemandLock.unlock();
+		}
+	}
+	
+	private void addAvailableConnection(Connection<CL> connection) {
+		availableConnections.add(connection);
+		if (connectingOnDemand.get()) {
+			signalOnDemandWaiters(false);
+		}
+	}
+	
+	/**
+	 * @return true if a connection was opened, false if it failed but the pool still has other connections to wait on
+	 * @throws DynoException if the connection failed and there are no other connections, in which case the pool is marked as down
+	 */
+	private boolean createConnectionOnDemand() throws DynoException {
+		try {
+			cpActive.createConnection();
+			onDemandFailures.set(0);
+			return true;
+		} catch (DynoException e) {
+			if (numActiveConnections.get() > 0) {
+				Logger.debug("Failed to connect on demand to host: " + host + ", " + e.getMessage());
+				// back off the same way that pool reconnects do, rather than hammer a host that isn't taking connections
+				int failures = onDemandFailures.incrementAndGet();
+				long backoff = (healthTracker != null) ? healthTracker.getReconnectDelayMillis(failures) : cpConfig.getPoolReconnectBackoffBaseMillis();
+				nextOnDemandConnectMillis = System.currentTimeMillis() + backoff;
+				return false;
+			}
+			// nothing to fall back on, this host is actually unreachable
+			Logger.warn("Failed to connect on demand to host: " + host + ", marking pool as down");
+			markAsDown(e);
+			if (healthTracker != null) {
+				healthTracker.reconnectPool(this);
+			}
+			throw e;
+		}
+	}
+	
 	private boolean createConnectionWithRetries() {
 		
 		boolean success = false;
@@ -222,6 +402,181 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		return success;
 	}
 
+	/**
+	 * Close a connection that failed with a fatal error and replace it in the background. 
+	 * If the no of healthy connections has dropped below the configured percentage then the pool is handed over to the 
+	 * {@link ConnectionPoolHealthTracker} to be recycled as a whole instead.
+	 * 
+	 * @param connection
+	 */
+	private void repairConnection(Connection<CL> connection) {
+		
+		Logger.info("Closing failed connection to host: " + host + ", " + connection.getLastException());
+		cpActive.closeConnection(connection);
+		
+		if (!hasEnoughHealthyConnections()) {
+			if (healthTracker != null) {
+				Logger.warn("Too few healthy connections left for host: " + host + ", recycling pool");
+				healthTracker.reconnectPool(this);
+				return;
+			}
+		}
+		
+		replaceConnection();
+	}
+	
+	/**
+	 * Create a new connection to make up for one that was closed, in the background when possible
+	 */
+	private void replaceConnection() {
+		
+		if (cpConfig.lazyConnections()) {
+			// will be opened again on demand
+			return;
+		}
+		
+		if (healthTracker != null) {
+			healthTracker.scheduleConnectionRepair(new ConnectionRepairTask(0), 0);
+		} else {
+			// no tracker to do this in the background, just try once here
+			if (!createConnectionWithRetries()) {
+				Logger.warn("Failed to replace connection for host: " + host);
+			}
+		}
+	}
+	
+	private boolean hasEnoughHealthyConnections() {
+		if (cpConfig.lazyConnections()) {
+			// the pool is only ever as big as it needs to be, it goes down when connecting fails
+			return true;
+		}
+		int minHealthy = (int) Math.ceil(cpConfig.getMaxConnsPerHost() * cpConfig.getMinHealthyConnectionsPercentage() / 100.0);
+		return numActiveConnections.get() >= minHealthy;
+	}
+	
+	/**
+	 * Validate a connection that has been idle for longer than the configured threshold with a ping. 
+	 * Connections that fail validation are closed and replaced.
+	 *  
+	 * @param connection
+	 * @return true if the connection can be used
+	 */
+	private boolean validateIdleConnection(Connection<CL> connection) {
+		
+		int idleMillis = cpConfig.getConnectionIdleValidationMillis();
+		if (idleMillis <= 0) {
+			return true;
+		}
+		
+		ConnectionTimestamps timestamps = connectionTimestamps.get(connection);
+		if (timestamps == null || System.currentTimeMillis() - timestamps.lastUsed < idleMillis) {
+			return true;
+		}
+		
+		try {
+			connection.execPing();
+			timestamps.lastUsed = System.currentTimeMillis();
+			return true;
+		} catch (Exception e) {
+			Logger.info("Idle connection to host: " + host + " failed validation, " + e.getMessage());
+			repairConnection(connection);
+			return false;
+		}
+	}
+	
+	private boolean isExpired(Connection<CL> connection) {
+		
+		if (cpConfig.getMaxConnectionAgeMillis() <= 0) {
+			return false;
+		}
+		ConnectionTimestamps timestamps = connectionTimestamps.get(connection);
+		return timestamps != null && System.currentTimeMillis() >= timestamps.expiresAt;
+	}
+	
+	/**
+	 * Ping the connection that has been idle the longest, if any, and report the latency to the {@link ConnectionPoolMonitor}. 
+	 * This is meant to be called periodically in the background by the {@link ConnectionPoolHealthTracker}. 
+	 * Connections that are in use are never touched.
+	 */
+	public void probeIdleConnection() {
+		
+		if (cpState.get() != cpActive) {
+			return;
+		}
+		
+		// the head of the queue is the connection that was returned the longest time ago
+		Connection<CL> connection = availableConnections.poll();
+		if (connection == null) {
+			// all connections are busy, which is a health check in itself
+			return;
+		}
+		
+		long startTime = System.nanoTime()/1000;
+		try {
+			connection.execPing();
+		} catch (Exception e) {
+			Logger.warn("Keep alive probe failed for host: " + host + ", " + e.getMessage());
+			repairConnection(connection);
+			return;
+		}
+		monitor.incKeepAliveProbe(host, System.nanoTime()/1000 - startTime);
+
+		ConnectionTimestamps timestamps = connectionTimestamps.get(connection);
+		if (timestamps != null) {
+			timestamps.lastUsed = System.currentTimeMillis();
+		}
+		
+		if (cpState.get() == cpActive) {
+			addAvailableConnection(connection);
+		} else {
+			cpState.get().closeConnection(connection);
+		}
+	}
+	
+	private class ConnectionTimestamps {
+		
+		private final long expiresAt;
+		private volatile long lastUsed;
+		
+		private ConnectionTimestamps() {
+			long now = System.currentTimeMillis();
+			int maxAge = cpConfig.getMaxConnectionAgeMillis();
+			// expire connections up to 10% early so that connections created together are not all rotated together
+			expiresAt = (maxAge > 0) ? now + maxAge - ThreadLocalRandom.current().nextInt(maxAge/10 + 1) : Long.MAX_VALUE;
+			lastUsed = now;
+		}
+	}
+
+	private class ConnectionRepairTask implements Runnable {
+		
+		private final int attempt;
+		
+		private ConnectionRepairTask(int attempt) {
+			this.attempt = attempt;
+		}
+
+		@Override
+		public void run() {
+			
+			if (cpState.get() != cpActive || numActiveConnections.get() >= cpConfig.getMaxConnsPerHost()) {
+				// the pool is being recycled or shut down, or is already full
+				return;
+			}
+			
+			if (createConnectionWithRetries()) {
+				Logger.info("Replaced failed connection for host: " + host);
+				return;
+			}
+			
+			if (!hasEnoughHealthyConnections()) {
+				Logger.warn("Too few healthy connections left for host: " + host + ", recycling pool");
+				healthTracker.reconnectPool(HostConnectionPoolImpl.this);
+			} else {
+				healthTracker.scheduleConnectionRepair(new ConnectionRepairTask(attempt + 1), attempt + 1);
+			}
+		}
+	}
+
 	@Override
 	public Host getHost() {
 		return host;
@@ -283,7 +638,8 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 			try { 
 				Connection<CL> connection = connFactory.createConnection((HostConnectionPool<CL>) pool, null);
 				connection.open();
-				availableConnections.add(connection);
+				connectionTimestamps.put(connection, new ConnectionTimestamps());
+				addAvailableConnection(connection);
 
 				monitor.incConnectionCreated(host);
 				numActiveConnections.incrementAndGet();
@@ -318,14 +674,32 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		@Override
 		public boolean returnConnection(Connection<CL> connection) {
 			try {
-				if (numActiveConnections.get() > cpConfig.getMaxConnsPerHost()) {
+				if (cpConfig.getMinHealthyConnectionsPercentage() > 0 && 
+						connection.getLastException() instanceof FatalConnectionException) {
+					
+					repairConnection(connection);
+					return true;
+					
+				} else if (numActiveConnections.get() > cpConfig.getMaxConnsPerHost()) {
 					
 					// Just close the connection
 					return closeConnection(connection);
 					
+				} else if (isExpired(connection)) {
+					
+					// rotate the connection
+					Logger.debug("Connection to host: " + host + " reached its max age, replacing it");
+					closeConnection(connection);
+					replaceConnection();
+					return true;
+					
 				} else {
 					// add connection back to the pool
-					availableConnections.add(connection);
+					ConnectionTimestamps timestamps = connectionTimestamps.get(connection);
+					if (timestamps != null) {
+						timestamps.lastUsed = System.currentTimeMillis();
+					}
+					addAvailableConnection(connection);
 					return false;
 				}
 			} finally { 
@@ -342,6 +716,7 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 				Logger.error("Failed to close connection for host: " + host + " " + e.getMessage());
 				return false;
 			} finally {
+				connectionTimestamps.remove(connection);
 				numActiveConnections.decrementAndGet();
 				monitor.incConnectionClosed(host, connection.getLastException());
 			}
@@ -356,7 +731,13 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 			Connection<CL> conn = null;
 			try {
 				// wait on the connection pool with a timeout
-				conn = availableConnections.poll(duration, unit);
+				long deadline = System.nanoTime() + unit.toNanos(duration);
+				conn = pollConnection(deadline);
+				
+				// connections that fail validation are replaced, try the next one within whatever time is left
+				while (conn != null && !validateIdleConnection(conn)) {
+					conn = pollConnection(deadline);
+				}
 			} catch (InterruptedException e) {
 				Logger.info("Thread interrupted when waiting on connections");
 				throw new DynoConnectException(e);
@@ -408,6 +789,7 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 				Logger.warn("Failed to close connection for host: " + host + " " + e.getMessage());
 				return false;
 			} finally {
+				connectionTimestamps.remove(connection);
 				numActiveConnections.decrementAndGet();
 				monitor.incConnectionClosed(host, connection.getLastException());
 			}
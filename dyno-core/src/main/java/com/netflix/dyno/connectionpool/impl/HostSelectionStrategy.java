@@ -74,7 +74,7 @@ public interface HostSelectionStrategy<CL> {
 	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end);
 
 	/**
-	 * Init the connection pool with the set of hosts provided
+	 * Init the connection pool with the set of hosts provided. Any hosts that the strategy already had are replaced.
 	 * @param hostPools
 	 */
 	public void initWithHosts(Map<HostToken, HostConnectionPool<CL>> hostPools);
@@ -93,6 +93,14 @@ public interface HostSelectionStrategy<CL> {
 	 * @return true/false indicating whether the pool was indeed removed
 	 */
 	public boolean removeHostPool(HostToken host);
+	
+	/**
+	 * Add and remove a batch of hosts in one go, e.g when reconciling with the token map. Callers never see the 
+	 * selection strategy with only part of the batch applied.
+	 * @param added
+	 * @param removed
+	 */
+	public void updateHostPools(Map<HostToken, HostConnectionPool<CL>> added, Collection<HostToken> removed);
 
 	public static interface HostSelectionStrategyFactory<CL> {
 		
@@ -166,6 +166,35 @@ public class HostStatusTracker {
 		return new HostStatusTracker(nextActiveHosts, nextInactiveHosts);
 	}
 	
+	/**
+	 * Like {@link #computeNewHostStatus(Collection, Collection)}, but for just the hosts that changed, i.e any host 
+	 * that isn't mentioned keeps its status. Only the status of the given hosts is updated.
+	 * 
+	 * @param hostsUp    hosts that were added or came up
+	 * @param hostsDown  hosts that went down or were removed
+	 * @return the new HostStatusTracker
+	 */
+	public HostStatusTracker computeHostStatusDelta(Collection<Host> hostsUp, Collection<Host> hostsDown) {
+		
+		verifyMutuallyExclusive(hostsUp, hostsDown);
+		
+		Set<Host> nextActiveHosts = new HashSet<Host>(activeHosts);
+		nextActiveHosts.removeAll(hostsDown);
+		nextActiveHosts.addAll(hostsUp);
+		
+		Set<Host> nextInactiveHosts = new HashSet<Host>(inactiveHosts);
+		nextInactiveHosts.removeAll(hostsUp);
+		nextInactiveHosts.addAll(hostsDown);
+		
+		for (Host host : hostsUp) {
+			host.setStatus(Status.Up);
+		}
+		for (Host host : hostsDown) {
+			host.setStatus(Status.Down);
+		}
+		return new HostStatusTracker(nextActiveHosts, nextInactiveHosts);
+	}
+	
 	public boolean isHostUp(Host host) {
 		return activeHosts.contains(host);
 	}
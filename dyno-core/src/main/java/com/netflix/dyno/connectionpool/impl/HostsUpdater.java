@@ -8,6 +8,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 
 public class HostsUpdater {
@@ -45,10 +46,30 @@ public class HostsUpdater {
 			}
 		}
 		
-		HostStatusTracker newTracker = hostTracker.get().computeNewHostStatus(hostsUp, hostsDown);
-		hostTracker.set(newTracker);
+		synchronized (hostTracker) {
+			HostStatusTracker newTracker = hostTracker.get().computeNewHostStatus(hostsUp, hostsDown);
+			hostTracker.set(newTracker);
+			return newTracker;
+		}
+	}
+	
+	/**
+	 * Apply just the hosts that changed, as pushed by an {@link IncrementalHostSupplier}
+	 * @param hostsUp    hosts that were added or came up
+	 * @param hostsDown  hosts that went down or were removed
+	 * @return the new HostStatusTracker, or null if stopped
+	 */
+	public HostStatusTracker applyHostChanges(Collection<Host> hostsUp, Collection<Host> hostsDown) {
 		
-		return hostTracker.get();
+		if (stop.get()) {
+			return null;
+		}
+		
+		synchronized (hostTracker) {
+			HostStatusTracker newTracker = hostTracker.get().computeHostStatusDelta(hostsUp, hostsDown);
+			hostTracker.set(newTracker);
+			return newTracker;
+		}
 	}
 	
 	public void stop() {
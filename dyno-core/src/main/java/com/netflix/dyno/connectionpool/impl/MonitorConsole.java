@@ -15,6 +15,7 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -104,6 +105,9 @@ public class MonitorConsole implements MonitorConsoleMBean {
 			 sb.append(" createFailed: " + hStats.getConnectionsCreateFailed());
 			 sb.append(" errors: " + hStats.getOperationErrorCount());
 			 sb.append(" success: " + hStats.getOperationSuccessCount());
+			 if (hStats.getConcurrencyLimit() > 0) {
+				 sb.append(" concurrencyLimit: " + hStats.getConcurrencyLimit());
+			 }
 		 }
 		 sb.append("\n");
 		 
@@ -146,10 +150,13 @@ public class MonitorConsole implements MonitorConsoleMBean {
             String token = tokenStatus.getToken().toString();
             HostConnectionPool<?> hostPool = tokenStatus.getHostPool();
 
-            List<String> meta = CollectionUtils.newArrayList(
+            List<String> meta = new ArrayList<String>(CollectionUtils.newArrayList(
                     hostPool.getHost().getHostName(),
                     hostPool.isActive() ? "UP" : "DOWN"
-            );
+            ));
+            if (tokenStatus.isRampingUp()) {
+                meta.add("RAMP_" + tokenStatus.getTrafficPercentage());
+            }
 
             map.put(token, meta);
         }
@@ -99,6 +99,9 @@ public class MonitorConsoleResource {
 			String token = tokenStatus.getToken().toString();
 			HostConnectionPool<?> hostPool = tokenStatus.getHostPool();
 			String poolStatus = hostPool.getHost().getHostName() + "__" + (hostPool.isActive() ? "UP" : "DOWN");
+			if (tokenStatus.isRampingUp()) {
+				poolStatus += "__RAMP_" + tokenStatus.getTrafficPercentage();
+			}
 			map.put(token, poolStatus);
 		}
 		return map;
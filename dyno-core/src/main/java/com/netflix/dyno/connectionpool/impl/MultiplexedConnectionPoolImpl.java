@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.ConnectionFactory;
+import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
+
+/**
+ * Host connection pool where callers share a few connections instead of borrowing them exclusively.
+ *
+ * The pool opens {@link ConnectionPoolConfiguration#getMaxConnsPerHost()} connections and hands each borrower the one
+ * with the fewest operations in flight. A connection is shared by at most
+ * {@link ConnectionPoolConfiguration#getMaxInFlightPerConnection()} callers at a time, past that callers wait for a
+ * slot and time out the same way as with {@link HostConnectionPoolImpl}.
+ *
+ * The connections must allow several threads to use them at once, writing commands in order and handing out the
+ * replies in the same order, e.g the RESP connections. Callers keep a synchronous API while the commands of
+ * concurrent callers are pipelined on the same socket.
+ *
+ * A connection that fails is dropped from the pool right away and replaced in the background, and so are the
+ * connections that could not be opened when the pool was primed. The pool takes traffic as long as it has one.
+ *
+ * Each borrower gets its own {@link ConnectionContext}, operations run on a shared connection see the context of the
+ * borrow they were executed through rather than the connection's own, which all the borrowers would be writing to.
+ *
+ * @param <CL>
+ */
+public class MultiplexedConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
+
+	private static final Logger Logger = LoggerFactory.getLogger(MultiplexedConnectionPoolImpl.class);
+
+	private final Host host;
+	private final ConnectionFactory<CL> connFactory;
+	private final ConnectionPoolConfiguration cpConfig;
+	private final ConnectionPoolMonitor cpMonitor;
+	private final ConnectionPoolHealthTracker<CL> healthTracker;
+
+	// the connections being shared, along with the number of callers using each
+	private final CopyOnWriteArrayList<Connection<CL>> connections = new CopyOnWriteArrayList<Connection<CL>>();
+	private final ConcurrentHashMap<Connection<CL>, AtomicInteger> inFlight = new ConcurrentHashMap<Connection<CL>, AtomicInteger>();
+	// the callers that may be in flight across the open connections, grows and shrinks as connections come and go
+	private final Slots slots = new Slots();
+	private final int slotsPerConnection;
+
+	private final AtomicBoolean active = new AtomicBoolean(false);
+	private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+
+	public MultiplexedConnectionPoolImpl(Host host, ConnectionFactory<CL> cFactory, ConnectionPoolConfiguration config,
+										 ConnectionPoolMonitor monitor, ConnectionPoolHealthTracker<CL> healthTracker) {
+		this.host = host;
+		this.connFactory = cFactory;
+		this.cpConfig = config;
+		this.cpMonitor = monitor;
+		this.healthTracker = healthTracker;
+		this.slotsPerConnection = Math.max(1, config.getMaxInFlightPerConnection());
+	}
+
+	@Override
+	public Connection<CL> borrowConnection(int duration, TimeUnit unit) throws DynoException {
+
+		if (!active.get()) {
+			throw new DynoConnectException("Cannot connect to pool when pool is shutdown for host: " + host);
+		}
+
+		long startTime = System.nanoTime()/1000;
+		try {
+			if (!slots.tryAcquire(duration, unit)) {
+				throw new PoolTimeoutException("Fast fail waiting for a slot on a shared connection")
+				.setHost(host)
+				.setLatency(System.nanoTime()/1000 - startTime);
+			}
+		} catch (InterruptedException e) {
+			Logger.info("Thread interrupted when waiting on connections");
+			throw new DynoConnectException(e);
+		}
+
+		Connection<CL> connection = leastBusyConnection();
+		if (connection == null) {
+			slots.release();
+			throw new DynoConnectException("No open connections for host: " + host).setHost(host);
+		}
+
+		cpMonitor.incConnectionBorrowed(host, System.nanoTime()/1000 - startTime);
+		return new BorrowedConnection<CL>(connection);
+	}
+
+	private Connection<CL> leastBusyConnection() {
+
+		Connection<CL> leastBusy = null;
+		AtomicInteger leastCount = null;
+		for (Connection<CL> connection : connections) {
+			AtomicInteger count = inFlight.get(connection);
+			if (count != null && (leastCount == null || count.get() < leastCount.get())) {
+				leastBusy = connection;
+				leastCount = count;
+			}
+		}
+		if (leastCount != null) {
+			leastCount.incrementAndGet();
+		}
+		return leastBusy;
+	}
+
+	@Override
+	public boolean returnConnection(Connection<CL> connection) {
+		connection = getSharedConnection(connection);
+		try {
+			AtomicInteger count = inFlight.get(connection);
+			int stillInFlight = (count != null) ? count.decrementAndGet() : 0;
+			slots.release();
+
+			if (connection.getLastException() instanceof FatalConnectionException && connections.contains(connection)) {
+				Logger.info("Closing failed connection to host: " + host + ", " + connection.getLastException());
+				closeConnection(connection);
+				replaceConnection(0);
+				return true;
+			}
+
+			if (!active.get()) {
+				// other callers may still have commands in flight on the connection, the last one out closes it
+				return stillInFlight <= 0 && closeConnection(connection);
+			}
+			return false;
+
+		} finally {
+			cpMonitor.incConnectionReturned(host);
+		}
+	}
+
+	@Override
+	public boolean closeConnection(Connection<CL> connection) {
+		connection = getSharedConnection(connection);
+
+		// only the first caller closes it, others may still be returning it
+		if (!connections.remove(connection)) {
+			return false;
+		}
+		// callers that still hold the connection give their slots back when they return it
+		slots.shrink(slotsPerConnection);
+		try {
+			connection.close();
+			return true;
+		} catch (Exception e) {
+			Logger.error("Failed to close connection for host: " + host + " " + e.getMessage());
+			return false;
+		} finally {
+			inFlight.remove(connection);
+			cpMonitor.incConnectionClosed(host, connection.getLastException());
+		}
+	}
+
+	/**
+	 * Open a connection in place of a failed one, backing off while the host can't be reached
+	 * @param attempt
+	 */
+	private void replaceConnection(final int attempt) {
+
+		if (connections.isEmpty() && healthTracker != null) {
+			Logger.warn("No connections left for host: " + host + ", recycling pool");
+			healthTracker.reconnectPool(this);
+			return;
+		}
+
+		Runnable repairTask = new Runnable() {
+			@Override
+			public void run() {
+				if (!active.get() || connections.size() >= cpConfig.getMaxConnsPerHost()) {
+					return;
+				}
+				try {
+					createConnection();
+					Logger.info("Replaced failed connection for host: " + host);
+				} catch (DynoException e) {
+					replaceConnection(attempt + 1);
+				}
+			}
+		};
+
+		if (healthTracker != null) {
+			healthTracker.scheduleConnectionRepair(repairTask, attempt);
+		} else if (attempt == 0) {
+			// no tracker to do this in the background, just try once here
+			repairTask.run();
+		}
+	}
+
+	@Override
+	public void markAsDown(DynoException reason) {
+		active.set(false);
+	}
+
+	@Override
+	public void reconnect() {
+
+		if (active.get()) {
+			Logger.info("Pool already active, ignoring reconnect connections request");
+			return;
+		}
+
+		if (!(reconnecting.compareAndSet(false, true))) {
+			Logger.info("Pool already reconnecting, ignoring reconnect connections request");
+			return;
+		}
+
+		try {
+			shutdown();
+			primeConnections();
+		} finally {
+			reconnecting.set(false);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+
+		Logger.info("Shutting down connection pool for host:" + host);
+		active.set(false);
+
+		for (Connection<CL> connection : connections) {
+			closeConnection(connection);
+		}
+	}
+
+	@Override
+	public int primeConnections() throws DynoException {
+
+		Logger.info("Priming connection pool for host:" + host);
+
+		if (active.get()) {
+			throw new DynoException("Connection pool has already been inited, cannot prime connections for host:" + host);
+		}
+
+		int created = 0;
+		for (int i=0; i<cpConfig.getMaxConnsPerHost(); i++) {
+			try {
+				createConnection();
+				created++;
+			} catch (DynoException e) {
+				// already logged, the pool can take traffic on the connections it did get
+			}
+		}
+
+		if (created == 0) {
+			Logger.warn("Unable to make any successful connections to host " + host);
+			throw new DynoConnectException("Unable to make ANY successful connections to host " + host).setHost(host);
+		}
+		active.set(true);
+
+		// the missing connections are opened in the background, same as failed ones
+		for (int i=created; i<cpConfig.getMaxConnsPerHost(); i++) {
+			replaceConnection(0);
+		}
+		return created;
+	}
+
+	private Connection<CL> createConnection() throws DynoException {
+
+		Connection<CL> connection = null;
+		try {
+			connection = connFactory.createConnection((HostConnectionPool<CL>) this, null);
+			connection.open();
+			inFlight.put(connection, new AtomicInteger(0));
+			connections.add(connection);
+			slots.release(slotsPerConnection);
+
+			cpMonitor.incConnectionCreated(host);
+			return connection;
+
+		} catch (DynoConnectException e) {
+			Logger.error("Failed to create connection to host: " + host + " " + e.getMessage());
+			cpMonitor.incConnectionCreateFailed(host, e);
+			closeQuietly(connection);
+			throw e;
+		} catch (RuntimeException e) {
+			Logger.error("Failed to create connection to host: " + host + " " + e.getMessage());
+			cpMonitor.incConnectionCreateFailed(host, e);
+			closeQuietly(connection);
+			throw new DynoConnectException(e).setHost(host);
+		}
+	}
+
+	private void closeQuietly(Connection<CL> connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.close();
+		} catch (Exception e) {
+			Logger.debug("Failed to close connection for host: " + host + " " + e.getMessage());
+		}
+	}
+
+	@Override
+	public Collection<Connection<CL>> getAllConnections() {
+		return connections;
+	}
+
+	@Override
+	public int getConnectionTimeout() {
+		return cpConfig.getConnectTimeout();
+	}
+
+	@Override
+	public Host getHost() {
+		return host;
+	}
+
+	@Override
+	public boolean isActive() {
+		return active.get();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return !active.get();
+	}
+
+	public String toString() {
+		return "MultiplexedConnectionPool [host=" + host + ", connections=" + connections.size()
+				+ ", inFlight=" + inFlight.values() + ", active=" + active.get() + "]";
+	}
+
+	/**
+	 * @param connection a connection handed out by {@link #borrowConnection(int, TimeUnit)} or one of the pool's own
+	 * @return the shared connection behind it
+	 */
+	static <CL> Connection<CL> getSharedConnection(Connection<CL> connection) {
+		return (connection instanceof BorrowedConnection) ? ((BorrowedConnection<CL>) connection).shared : connection;
+	}
+
+	/**
+	 * A single borrow of a shared connection. Everything goes to the shared connection except for the context, 
+	 * which belongs to this borrow only, so that callers don't see or reset each other's metadata.
+	 */
+	private static class BorrowedConnection<CL> implements Connection<CL> {
+
+		private final Connection<CL> shared;
+		private final ConnectionContextImpl context = new ConnectionContextImpl();
+
+		private BorrowedConnection(Connection<CL> shared) {
+			this.shared = shared;
+		}
+
+		@Override
+		public <R> OperationResult<R> execute(final Operation<CL, R> op) throws DynoException {
+			return shared.execute(new Operation<CL, R>() {
+
+				@Override
+				public R execute(CL client, ConnectionContext state) throws DynoException {
+					return op.execute(client, context);
+				}
+
+				@Override
+				public String getName() {
+					return op.getName();
+				}
+
+				@Override
+				public String getKey() {
+					return op.getKey();
+				}
+			});
+		}
+
+		@Override
+		public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<CL, R> op) throws DynoException {
+			return shared.executeAsync(op);
+		}
+
+		@Override
+		public void close() {
+			shared.close();
+		}
+
+		@Override
+		public Host getHost() {
+			return shared.getHost();
+		}
+
+		@Override
+		public void open() throws DynoException {
+			shared.open();
+		}
+
+		@Override
+		public DynoConnectException getLastException() {
+			return shared.getLastException();
+		}
+
+		@Override
+		public HostConnectionPool<CL> getParentConnectionPool() {
+			return shared.getParentConnectionPool();
+		}
+
+		@Override
+		public void execPing() {
+			shared.execPing();
+		}
+
+		@Override
+		public ConnectionContext getContext() {
+			return context;
+		}
+	}
+
+	/**
+	 * Semaphore that can take back permits that are handed out, they are made up for as callers release them
+	 */
+	private static class Slots extends Semaphore {
+
+		private static final long serialVersionUID = -3263523587345728410L;
+
+		private Slots() {
+			super(0);
+		}
+
+		private void shrink(int permits) {
+			reducePermits(permits);
+		}
+	}
+}
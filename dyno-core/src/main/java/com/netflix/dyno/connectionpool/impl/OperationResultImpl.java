@@ -15,6 +15,8 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
@@ -41,6 +43,7 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 	private Host host = null;
 	private long duration = 0;
 	private int attempts = 0;
+	private List<Host> failedHosts = Collections.emptyList();
 	private final OperationMonitor opMonitor; 
 	private final ConcurrentHashMap<String, String> metadata = new ConcurrentHashMap<String, String>();
 	
@@ -93,6 +96,17 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 		return this;
 	}
 
+	@Override
+	public List<Host> getFailedHosts() {
+		return failedHosts;
+	}
+
+	@Override
+	public OperationResultImpl<R> setFailedHosts(List<Host> hosts) {
+		failedHosts = hosts;
+		return this;
+	}
+
 	public OperationResultImpl<R> setNode(Host h) {
 		host = h;
 		return this;
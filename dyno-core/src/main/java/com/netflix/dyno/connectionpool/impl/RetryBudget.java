@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caps the retries of a whole client to a share of its successful operations over a rolling window, e.g retries
+ * may be at most 10% of the successes in the last 10 seconds. A small number of retries per second is always
+ * allowed so that a client with little traffic can still retry.
+ *
+ * During a partial outage the budget runs out quickly, and the failing operations fail instead of piling retries
+ * onto the hosts that are still healthy.
+ *
+ * One budget is meant to be shared by all the {@link ExponentialBackoffRetry} policies of a client, see
+ * {@link ExponentialBackoffRetry.RetryFactory}.
+ */
+public class RetryBudget {
+
+	public static final int DEFAULT_RETRY_PERCENT = 10;
+	public static final int DEFAULT_WINDOW_SECONDS = 10;
+	public static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+
+	private final int retryPercent;
+	private final int windowSeconds;
+	private final int minRetriesPerSecond;
+
+	// one bucket per second of the window, reused round robin
+	private final AtomicLongArray bucketSecond;
+	private final AtomicLongArray successes;
+	private final AtomicLongArray retries;
+
+	public RetryBudget() {
+		this(DEFAULT_RETRY_PERCENT, DEFAULT_WINDOW_SECONDS, DEFAULT_MIN_RETRIES_PER_SECOND);
+	}
+
+	public RetryBudget(int retryPercent, int windowSeconds, int minRetriesPerSecond) {
+		this.retryPercent = retryPercent;
+		this.windowSeconds = Math.max(1, windowSeconds);
+		this.minRetriesPerSecond = minRetriesPerSecond;
+
+		bucketSecond = new AtomicLongArray(this.windowSeconds);
+		successes = new AtomicLongArray(this.windowSeconds);
+		retries = new AtomicLongArray(this.windowSeconds);
+	}
+
+	public void recordSuccess() {
+		successes.incrementAndGet(currentBucket());
+	}
+
+	/**
+	 * Take a retry out of the budget
+	 * @return whether there was any budget left for it
+	 */
+	public boolean tryAcquireRetry() {
+
+		int bucket = currentBucket();
+		long now = bucketSecond.get(bucket);
+
+		long successCount = 0;
+		long retryCount = 0;
+		for (int i=0; i<windowSeconds; i++) {
+			if (now - bucketSecond.get(i) < windowSeconds) {
+				successCount += successes.get(i);
+				retryCount += retries.get(i);
+			}
+		}
+
+		long allowed = Math.max((long) minRetriesPerSecond * windowSeconds, successCount * retryPercent / 100);
+		if (retryCount >= allowed) {
+			return false;
+		}
+		retries.incrementAndGet(bucket);
+		return true;
+	}
+
+	private int currentBucket() {
+
+		long second = System.currentTimeMillis() / 1000;
+		int bucket = (int) (second % windowSeconds);
+
+		long bucketStart = bucketSecond.get(bucket);
+		if (bucketStart != second && bucketSecond.compareAndSet(bucket, bucketStart, second)) {
+			// the bucket was last used a window ago, start it over. Counts racing with the reset may get lost,
+			// which is fine for a budget
+			successes.set(bucket, 0);
+			retries.set(bucket, 0);
+		}
+		return bucket;
+	}
+
+	public String toString() {
+		return "RetryBudget [retryPercent=" + retryPercent + ", windowSeconds=" + windowSeconds
+				+ ", minRetriesPerSecond=" + minRetriesPerSecond + "]";
+	}
+}
@@ -15,11 +15,8 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl.hash;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.netflix.dyno.connectionpool.HashPartitioner;
@@ -31,6 +28,9 @@ import com.netflix.dyno.connectionpool.impl.lb.HostToken;
  * Impl of {@link HashPartitioner} that can be used to keys to the dynomite topology ring using the binary search mechanism. 
  * Note that the class only performs the function of binary search to locate a hash token on the dynomite topology ring. 
  * The hash token to be generated from the key is generated using the HashPartitioner provided to this class. 
+ * 
+ * The ring is held as an immutable {@link TokenRing} that is swapped out on every change, hence lookups never see a 
+ * partially updated ring. 
  *  
  * @author poberai
  *
@@ -39,8 +39,7 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 
 	private final HashPartitioner partitioner; 
 	
-	private final AtomicReference<DynoBinarySearch<Long>> binarySearch = new AtomicReference<DynoBinarySearch<Long>>(null); 
-	private final ConcurrentHashMap<Long, HostToken> tokenMap = new ConcurrentHashMap<Long, HostToken>(); 
+	private final AtomicReference<TokenRing> ring = new AtomicReference<TokenRing>(TokenRing.EMPTY); 
 	
 	public BinarySearchTokenMapper(HashPartitioner p) {
 		this.partitioner = p;
@@ -63,44 +62,46 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 
 	@Override
 	public HostToken getToken(Long keyHash) {
-		Long token = binarySearch.get().getTokenOwner(keyHash);
+		HostToken token = ring.get().getToken(keyHash);
 		if (token == null) {
 			throw new NoAvailableHostsException("Token not found for key hash: " + keyHash);
 		}
-		return tokenMap.get(token);
+		return token;
 	}
 
 	public void initSearchMecahnism(Collection<HostToken> hostTokens) {
-
-		for (HostToken hostToken : hostTokens) {
-			tokenMap.put(hostToken.getToken(), hostToken);
-		}
-		initBinarySearch();
+		updateHostTokens(hostTokens, Collections.<HostToken>emptyList());
 	}
 	
-	public void addHostToken(HostToken hostToken) {
+	public synchronized void addHostToken(HostToken hostToken) {
 
-		HostToken prevToken = tokenMap.putIfAbsent(hostToken.getToken(), hostToken);
-		if (prevToken == null) {
-			initBinarySearch();
+		if (ring.get().getHostToken(hostToken.getToken()) == null) {
+			updateHostTokens(Collections.singletonList(hostToken), Collections.<HostToken>emptyList());
 		}
 	}
 	
 	public void remoteHostToken(HostToken hostToken) {
-
-		HostToken prevToken = tokenMap.remove(hostToken.getToken());
-		if (prevToken != null) {
-			initBinarySearch();
-		}
+		updateHostTokens(Collections.<HostToken>emptyList(), Collections.singletonList(hostToken));
+	}
+	
+	/**
+	 * Apply a batch of changes to the ring in one go
+	 * @param added
+	 * @param removed
+	 */
+	public synchronized void updateHostTokens(Collection<HostToken> added, Collection<HostToken> removed) {
+		ring.set(ring.get().update(added, removed));
 	}
 	
 	public void removeHost(Host host) {
 		
 		HostToken theToken = null;
 		
-		for (HostToken token : tokenMap.values()) {
-			if (token.getHost().getHostName().equals(host.getHostName())) {
-				theToken = token;
+		TokenRing current = ring.get();
+		for (Long token : current.getTokens()) {
+			HostToken hostToken = current.getHostToken(token);
+			if (hostToken.getHost().getHostName().equals(host.getHostName())) {
+				theToken = hostToken;
 				break;
 			}
 		}
@@ -110,17 +111,18 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 		}
 	}
 
-	private void initBinarySearch() {
-		List<Long> tokens = new ArrayList<Long>(tokenMap.keySet());
-		Collections.sort(tokens);
-		binarySearch.set(new DynoBinarySearch<Long>(tokens));
+	/**
+	 * @return the current ring, which does not change underneath the caller
+	 */
+	public TokenRing getRing() {
+		return ring.get();
 	}
 
 	public boolean isEmpty() {
-		return this.tokenMap.size() == 0;
+		return ring.get().isEmpty();
 	}
 	
 	public String toString() {
-		return binarySearch.toString();
+		return ring.get().toString();
 	}
 }
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.hash;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+
+/**
+ * Immutable snapshot of the tokens on the dynomite ring along with the {@link DynoBinarySearch} over them.
+ *
+ * Changes to the ring never modify a snapshot, they produce a new one via {@link #update(Collection, Collection)} that
+ * callers swap in atomically. Hence readers always see a complete ring. A batch of changes costs a single merge of the
+ * sorted tokens, instead of a full sort per token.
+ */
+public class TokenRing {
+
+	public static final TokenRing EMPTY = new TokenRing(Collections.<Long, HostToken>emptyMap(), Collections.<Long>emptyList());
+
+	private final Map<Long, HostToken> tokenMap;
+	private final List<Long> sortedTokens;
+	private final DynoBinarySearch<Long> binarySearch;
+
+	private TokenRing(Map<Long, HostToken> tokenMap, List<Long> sortedTokens) {
+		this.tokenMap = tokenMap;
+		this.sortedTokens = sortedTokens;
+		this.binarySearch = new DynoBinarySearch<Long>(sortedTokens);
+	}
+
+	private TokenRing(Map<Long, HostToken> tokenMap, TokenRing sameTokens) {
+		this.tokenMap = tokenMap;
+		this.sortedTokens = sameTokens.sortedTokens;
+		this.binarySearch = sameTokens.binarySearch;
+	}
+
+	/**
+	 * @param keyHash
+	 * @return the token that owns the hash, or null if the ring is empty
+	 */
+	public HostToken getToken(Long keyHash) {
+		Long token = binarySearch.getTokenOwner(keyHash);
+		return token != null ? tokenMap.get(token) : null;
+	}
+
+	public HostToken getHostToken(Long token) {
+		return tokenMap.get(token);
+	}
+
+	/**
+	 * @return the tokens in ring order
+	 */
+	public List<Long> getTokens() {
+		return sortedTokens;
+	}
+
+	public int size() {
+		return sortedTokens.size();
+	}
+
+	public boolean isEmpty() {
+		return sortedTokens.isEmpty();
+	}
+
+	/**
+	 * Build a new ring with the given tokens added and removed. An added token that is already on the ring replaces
+	 * the existing one, i.e the token moved to another host.
+	 * @param added
+	 * @param removed
+	 * @return TokenRing
+	 */
+	public TokenRing update(Collection<HostToken> added, Collection<HostToken> removed) {
+
+		Map<Long, HostToken> newTokenMap = new HashMap<Long, HostToken>(tokenMap);
+		Set<Long> removedTokens = new HashSet<Long>();
+		List<Long> addedTokens = new ArrayList<Long>();
+
+		for (HostToken hostToken : removed) {
+			if (newTokenMap.remove(hostToken.getToken()) != null) {
+				removedTokens.add(hostToken.getToken());
+			}
+		}
+		for (HostToken hostToken : added) {
+			Long token = hostToken.getToken();
+			if (newTokenMap.put(token, hostToken) == null || removedTokens.remove(token)) {
+				addedTokens.add(token);
+			}
+		}
+		newTokenMap = Collections.unmodifiableMap(newTokenMap);
+
+		if (removedTokens.isEmpty() && addedTokens.isEmpty()) {
+			return new TokenRing(newTokenMap, this);
+		}
+
+		// merge the surviving tokens with the new ones, both in order
+		Collections.sort(addedTokens);
+		List<Long> newSortedTokens = new ArrayList<Long>(newTokenMap.size());
+		int i = 0;
+		for (Long token : sortedTokens) {
+			if (removedTokens.contains(token)) {
+				continue;
+			}
+			while (i < addedTokens.size() && addedTokens.get(i) < token) {
+				newSortedTokens.add(addedTokens.get(i++));
+			}
+			if (i < addedTokens.size() && addedTokens.get(i).equals(token)) {
+				// the token was already on the ring, it just got a new host
+				i++;
+			}
+			newSortedTokens.add(token);
+		}
+		while (i < addedTokens.size()) {
+			newSortedTokens.add(addedTokens.get(i++));
+		}
+		return new TokenRing(newTokenMap, Collections.unmodifiableList(newSortedTokens));
+	}
+
+	public String toString() {
+		return binarySearch.toString();
+	}
+}
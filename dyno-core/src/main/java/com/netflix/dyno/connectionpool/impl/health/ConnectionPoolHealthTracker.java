@@ -16,21 +16,29 @@
 package com.netflix.dyno.connectionpool.impl.health;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.netflix.dyno.connectionpool.CircuitBreakerConfig;
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
 import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.OutlierDetectionConfig;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import com.netflix.dyno.connectionpool.impl.HostConnectionPoolImpl;
 
 /**
  * This class tracks the error rates for any {@link HostConnectionPool} via the {@link ErrorRateMonitor}
@@ -42,6 +50,28 @@ import com.netflix.dyno.connectionpool.exception.TimeoutException;
  * i.e before borrowing a connection check for isActive(). If not active, then use a fallback pool else throw an ex to the caller. 
  * Resume executing operations against the pool only once the pool becomes active. 
  * 
+ * When a {@link CircuitBreakerConfig} is configured, errors are instead tracked by a {@link HostCircuitBreaker} per host
+ * and callers should also consult {@link #allowRequest(Host)} before using a pool. An open breaker simply routes traffic 
+ * away from the host and closes again once probe requests succeed, without recycling the pool. The pool is only recycled
+ * as a last resort i.e when a probe request fails while the breaker is half open.
+ * 
+ * Recycled pools are reconnected on a dedicated thread pool, bounded by {@link ConnectionPoolConfiguration#getMaxConcurrentPoolReconnects()}, 
+ * so that many pools can be reconnected in parallel without holding up the shared thread pool that refreshes hosts. 
+ * Each host backs off exponentially (with jitter) between failed reconnect attempts.
+ * 
+ * When {@link ConnectionPoolConfiguration#getMinHealthyConnectionsPercentage()} is set, sync pools repair failed connections
+ * one at a time via {@link #scheduleConnectionRepair(Runnable, int)} and only fall back to {@link #reconnectPool(HostConnectionPool)} 
+ * when too few healthy connections remain.
+ * 
+ * When an {@link OutlierDetectionConfig} is configured, the latencies and timeouts of operations are also fed to a {@link HostOutlierDetector}
+ * which temporarily ejects hosts that are much slower than their peers. Ejected hosts are also reported via {@link #allowRequest(Host)}.
+ * 
+ * When a {@link ConcurrencyLimitConfig} is configured, callers must also get a permit via {@link #tryAcquirePermit(Host)} before
+ * sending a request to a host, and hand it back via {@link #releasePermit(Host, long, DynoException)} once the request is done. 
+ * The permits of each host are capped by a {@link HostConcurrencyLimiter}.
+ * 
+ * Finally the tracker keeps track of hosts that are in slow start after being added or reactivated, see {@link #admitDuringSlowStart(Host)}
+ * 
  * @author poberai
  *
  * @param <CL>
@@ -56,8 +86,20 @@ public class ConnectionPoolHealthTracker<CL> {
 	private final ConcurrentHashMap<Host, ErrorMonitor> errorRates = new ConcurrentHashMap<Host, ErrorMonitor>();
 	private final ConcurrentHashMap<Host, HostConnectionPool<CL>> reconnectingPools = new ConcurrentHashMap<Host, HostConnectionPool<CL>>();
 	private final ConcurrentHashMap<Host, HostConnectionPool<CL>> pingingPools = new ConcurrentHashMap<Host, HostConnectionPool<CL>>();
+	private final ConcurrentHashMap<Host, HostConnectionPoolImpl<CL>> probingPools = new ConcurrentHashMap<Host, HostConnectionPoolImpl<CL>>();
+	private final ConcurrentHashMap<Host, HostCircuitBreaker> circuitBreakers = new ConcurrentHashMap<Host, HostCircuitBreaker>();
+	// when hosts in slow start were (re)activated
+	private final ConcurrentHashMap<Host, Long> slowStartHosts = new ConcurrentHashMap<Host, Long>();
+	// null when outlier detection is disabled
+	private final HostOutlierDetector outlierDetector;
+	private final ConcurrentHashMap<Host, HostConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<Host, HostConcurrencyLimiter>();
 
 	private final AtomicBoolean startedPing = new AtomicBoolean(false);
+	private final AtomicBoolean startedProbes = new AtomicBoolean(false);
+	private final AtomicBoolean started = new AtomicBoolean(false);
+	
+	// recycled pools are reconnected on their own threads so that a bunch of bad hosts can't hold up the host refresh task
+	private final ScheduledExecutorService reconnectThreadPool;
 	
 	private static final Integer DEFAULT_SLEEP_MILLIS = 10*1000; 
 	private static final Integer DEFAULT_POOL_RECONNECT_WAIT_MILLIS = 5*1000; 
@@ -73,11 +115,29 @@ public class ConnectionPoolHealthTracker<CL> {
 		threadPool = thPool;
 		SleepMillis = sleepMillis;
 		PoolReconnectWaitMillis = poolReconnectWaitMillis;
+		// the threads only start once there is work for them i.e a pool to reconnect, a connection to repair or probes to run
+		reconnectThreadPool = Executors.newScheduledThreadPool(Math.max(1, config.getMaxConcurrentPoolReconnects()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoHealthTracker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		outlierDetector = (config.getOutlierDetectionConfig() != null) ? new HostOutlierDetector(config.getOutlierDetectionConfig()) : null;
 	}
 
 
 	public void removeHost(Host host) {
-		HostConnectionPool<CL> destPool = reconnectingPools.get(host);
+		circuitBreakers.remove(host);
+		slowStartHosts.remove(host);
+		concurrencyLimiters.remove(host);
+		if (outlierDetector != null) {
+			outlierDetector.removeHost(host);
+		}
+		probingPools.remove(host);
+		// the host may come back with a new pool, which must not find this one in its way
+		HostConnectionPool<CL> destPool = reconnectingPools.remove(host);
 		if (destPool != null) {
 			Logger.info("Health tracker marking host as down " + host);
 			destPool.getHost().setStatus(Status.Down);
@@ -86,58 +146,156 @@ public class ConnectionPoolHealthTracker<CL> {
 
 	public void start() {
 		
-		threadPool.scheduleWithFixedDelay(new Runnable() {
+		if (!started.compareAndSet(false, true)) {
+			return;
+		}
+		
+		// schedule reconnects for any pools that were recycled before the tracker was started
+		for (HostConnectionPool<CL> pool : reconnectingPools.values()) {
+			scheduleReconnect(pool, 0);
+		}
+		
+		if (outlierDetector != null) {
+			int interval = cpConfiguration.getOutlierDetectionConfig().getIntervalSeconds();
+			reconnectThreadPool.scheduleWithFixedDelay(new Runnable() {
 
-			@Override
-			public void run() {
-				
-				if(stop.get() || Thread.currentThread().isInterrupted()) {
-					return;
-				}
-				
-				Logger.debug("Running, pending pools size: " + reconnectingPools.size());
-					
-				for (Host host : reconnectingPools.keySet()) {
-						
-					if (!host.isUp()) {
-						Logger.info("Host: " + host + " is marked as down, evicting host from reconnection pool");
-						reconnectingPools.remove(host);
-						continue;
-					}
-						
-					HostConnectionPool<CL> pool = reconnectingPools.get(host);
-					Logger.info("Checking for reconnecting pool for host: " + host + ", pool active? " + pool.isActive());
-					if (pool.isActive()) {
-						// Pool is already active. Move on
-						reconnectingPools.remove(host);
-					} else {
-						try {
-							Logger.info("Reconnecting pool : " + pool);
-							pool.markAsDown(null);
-							if (PoolReconnectWaitMillis > 0) {
-								Logger.debug("Sleeping to allow enough time to drain connections");
-								Thread.sleep(PoolReconnectWaitMillis);
-							}
-							pool.reconnect();
-							if (pool.isActive()) {
-								Logger.info("Host pool reactivated: " + host);
-								reconnectingPools.remove(host);
-							} else {
-								Logger.info("Could not re-activate pool, will try again later");
-							}
-						} catch (Exception e) {
-							// do nothing, will retry again once thread wakes up
-							Logger.warn("Failed to reconnect pool for host: " + host + " " +  e.getMessage());
-						}
+				@Override
+				public void run() {
+					try {
+						outlierDetector.evaluate();
+					} catch (Exception e) {
+						Logger.warn("Failed to run outlier detection " + e.getMessage());
 					}
 				}
-			}
-			
-		}, 1000, SleepMillis, TimeUnit.MILLISECONDS);
+			}, interval, interval, TimeUnit.SECONDS);
+		}
 	}
 	
 	public void stop() {
 		stop.set(true);
+		reconnectThreadPool.shutdownNow();
+	}
+	
+	/**
+	 * Schedule the next reconnect attempt for the host's pool on the reconnect thread pool. 
+	 * The first attempt only waits for the connections to drain, subsequent attempts back off exponentially 
+	 * with jitter, capped at SleepMillis.
+	 * 
+	 * @param pool
+	 * @param attempt
+	 */
+	private void scheduleReconnect(HostConnectionPool<CL> pool, int attempt) {
+		
+		if (stop.get() || !started.get()) {
+			return;
+		}
+		
+		Host host = pool.getHost();
+		long delay = getReconnectDelayMillis(attempt);
+		Logger.debug("Scheduling reconnect attempt " + attempt + " for host: " + host + " in " + delay + " ms");
+		try {
+			reconnectThreadPool.schedule(new PoolReconnectTask(pool, attempt), delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			Logger.warn("Reconnect thread pool has been shutdown, not reconnecting host: " + host);
+		}
+	}
+	
+	/**
+	 * @param attempt the no of attempts that failed so far
+	 * @return how long to wait before the next attempt to reconnect, or to connect at all, to a host
+	 */
+	public long getReconnectDelayMillis(int attempt) {
+		
+		int base = Math.max(1, cpConfiguration.getPoolReconnectBackoffBaseMillis());
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		if (attempt == 0) {
+			// give the connections a chance to drain, with some jitter so that hosts don't reconnect in lock step
+			return Math.max(0, PoolReconnectWaitMillis) + random.nextInt(base/2 + 1);
+		}
+		
+		long backoff = Math.min((long) SleepMillis, ((long) base) << Math.min(attempt, 16));
+		backoff = Math.max(backoff, 1);
+		// equal jitter i.e between half and all of the backoff
+		return backoff/2 + random.nextLong(backoff/2 + 1);
+	}
+	
+	/**
+	 * Schedule the repair of a single connection of a pool on the reconnect thread pool. 
+	 * The first attempt runs right away, subsequent attempts back off the same way that pool reconnects do.
+	 * 
+	 * @param repairTask
+	 * @param attempt
+	 */
+	public void scheduleConnectionRepair(Runnable repairTask, int attempt) {
+		
+		if (stop.get()) {
+			return;
+		}
+		
+		long delay = (attempt == 0) ? 0 : getReconnectDelayMillis(attempt);
+		try {
+			reconnectThreadPool.schedule(repairTask, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			Logger.warn("Reconnect thread pool has been shutdown, not repairing connection");
+		}
+	}
+	
+	private class PoolReconnectTask implements Runnable {
+		
+		private final Host host;
+		private final HostConnectionPool<CL> pool;
+		private final int attempt;
+		
+		private PoolReconnectTask(HostConnectionPool<CL> pool, int attempt) {
+			this.host = pool.getHost();
+			this.pool = pool;
+			this.attempt = attempt;
+		}
+		
+		@Override
+		public void run() {
+			
+			if (stop.get() || Thread.currentThread().isInterrupted()) {
+				return;
+			}
+
+			if (reconnectingPools.get(host) != pool) {
+				// the host was removed, or came back with another pool that has reconnects of its own
+				return;
+			}
+			
+			if (!host.isUp()) {
+				Logger.info("Host: " + host + " is marked as down, evicting host from reconnection pool");
+				reconnectingPools.remove(host, pool);
+				return;
+			}
+
+			Logger.info("Checking for reconnecting pool for host: " + host + ", pool active? " + pool.isActive());
+			if (pool.isActive()) {
+				// Pool is already active. Move on
+				reconnectingPools.remove(host, pool);
+				return;
+			}
+			
+			try {
+				Logger.info("Reconnecting pool : " + pool + ", attempt: " + attempt);
+				pool.markAsDown(null);
+				pool.reconnect();
+			} catch (Exception e) {
+				// do nothing, will retry again after backing off
+				Logger.warn("Failed to reconnect pool for host: " + host + " " +  e.getMessage());
+			}
+			
+			if (pool.isActive()) {
+				Logger.info("Host pool reactivated: " + host);
+				reconnectingPools.remove(host, pool);
+				trackHostActivated(host);
+			} else {
+				Logger.info("Could not re-activate pool for host: " + host + ", will try again later");
+				scheduleReconnect(pool, attempt + 1);
+			}
+		}
 	}
 	
 	public void trackConnectionError(HostConnectionPool<CL> hostPool, DynoException e) {
@@ -145,6 +303,10 @@ public class ConnectionPoolHealthTracker<CL> {
 		if (e != null && e instanceof TimeoutException) {
 			// don't track timeouts, since that may not be indicative of an actual n/w problem
 			// that may just be a slowdown due to pool saturation of larger payloads
+			// The outlier detector does track them though, since it compares hosts with their peers
+			if (outlierDetector != null) {
+				outlierDetector.trackTimeout(hostPool.getHost());
+			}
 			return; 
 		}
 		
@@ -152,6 +314,16 @@ public class ConnectionPoolHealthTracker<CL> {
 
 			Logger.error("FAIL: " + e.getMessage());
 			
+			if (cpConfiguration.getCircuitBreakerConfig() != null) {
+				trackCircuitBreakerError(hostPool);
+				return;
+			}
+			
+			if (cpConfiguration.getMinHealthyConnectionsPercentage() > 0) {
+				// the pool replaces the failed connection by itself and asks for a recycle only when it runs out of healthy connections
+				return;
+			}
+			
 			Host host = hostPool.getHost();
 			
 			ErrorMonitor errorMonitor = errorRates.get(host);
@@ -171,11 +343,235 @@ public class ConnectionPoolHealthTracker<CL> {
 		}
 	}
 	
+	/**
+	 * Track a successful operation on the pool. This is needed by the circuit breaker to compute error ratios.
+	 * @param hostPool
+	 */
+	public void trackConnectionSuccess(HostConnectionPool<CL> hostPool) {
+		trackConnectionSuccess(hostPool, -1L);
+	}
+	
+	/**
+	 * Track a successful operation on the pool, along with the time it took to execute on the connection. 
+	 * The latency is needed for outlier detection.
+	 * @param hostPool
+	 * @param latencyMicros the latency or -1 if unknown
+	 */
+	public void trackConnectionSuccess(HostConnectionPool<CL> hostPool, long latencyMicros) {
+		
+		if (outlierDetector != null && latencyMicros >= 0) {
+			outlierDetector.trackSuccess(hostPool.getHost(), latencyMicros);
+		}
+		
+		if (cpConfiguration.getCircuitBreakerConfig() == null) {
+			return;
+		}
+		
+		HostCircuitBreaker breaker = getOrCreateCircuitBreaker(hostPool.getHost());
+		if (breaker.trackSuccess() == HostCircuitBreaker.State.CLOSED) {
+			Logger.info("Circuit breaker closed for host: " + hostPool.getHost());
+		}
+	}
+	
+	/**
+	 * Check whether the host could take requests at all, i.e its circuit breaker isn't open and the host hasn't been
+	 * ejected as an outlier. Unlike {@link #allowRequest(Host)} this has no side effects, hence it is the one to use 
+	 * when scanning for a host.
+	 * 
+	 * @param host
+	 * @return true if the host may be picked for a request
+	 */
+	public boolean isRoutable(Host host) {
+		
+		if (outlierDetector != null && outlierDetector.isEjected(host)) {
+			return false;
+		}
+		
+		if (cpConfiguration.getCircuitBreakerConfig() == null) {
+			return true;
+		}
+		
+		HostCircuitBreaker breaker = circuitBreakers.get(host);
+		return breaker == null || breaker.isRoutable();
+	}
+	
+	/**
+	 * Check whether the circuit breaker for the host allows requests to go to it and that the host hasn't been
+	 * ejected as an outlier. 
+	 * Note that when the breaker is half open, this hands out one of the probe requests, hence this should only be
+	 * called for the host a request actually goes to.
+	 * 
+	 * @param host
+	 * @return true if requests may be routed to the host
+	 */
+	public boolean allowRequest(Host host) {
+		
+		if (outlierDetector != null && !outlierDetector.allowRequest(host)) {
+			return false;
+		}
+		
+		if (cpConfiguration.getCircuitBreakerConfig() == null) {
+			return true;
+		}
+		
+		HostCircuitBreaker breaker = circuitBreakers.get(host);
+		return breaker == null || breaker.allowRequest();
+	}
+	
+	/**
+	 * Start the slow start window for a host that was just added or reactivated, if slow start is configured
+	 * @param host
+	 */
+	public void trackHostActivated(Host host) {
+		if (cpConfiguration.getSlowStartMillis() > 0) {
+			slowStartHosts.put(host, System.currentTimeMillis());
+		}
+	}
+	
+	/**
+	 * @param host
+	 * @return the share (0-100) of its traffic that the host should get, which is less than 100 during slow start
+	 */
+	public int getTrafficPercentage(Host host) {
+		
+		Long activated = slowStartHosts.get(host);
+		if (activated == null) {
+			return 100;
+		}
+		
+		long elapsed = System.currentTimeMillis() - activated;
+		int window = cpConfiguration.getSlowStartMillis();
+		if (window <= 0 || elapsed >= window) {
+			slowStartHosts.remove(host, activated);
+			return 100;
+		}
+		return (int) (elapsed * 100 / window);
+	}
+	
+	/**
+	 * @param host
+	 * @return false if the request should spill over to another host since this host is still in slow start
+	 */
+	public boolean admitDuringSlowStart(Host host) {
+		
+		if (slowStartHosts.isEmpty()) {
+			return true;
+		}
+		int percentage = getTrafficPercentage(host);
+		return percentage >= 100 || ThreadLocalRandom.current().nextInt(100) < percentage;
+	}
+	
+	/**
+	 * @return whether requests have to get a permit via {@link #tryAcquirePermit(Host)}
+	 */
+	public boolean isConcurrencyLimited() {
+		return cpConfiguration.getConcurrencyLimitConfig() != null;
+	}
+	
+	/**
+	 * @param host
+	 * @return true if the request may be sent to the host, false if the host has as many requests in flight as its 
+	 * concurrency limit allows. Always true when concurrency limits are disabled.
+	 */
+	public boolean tryAcquirePermit(Host host) {
+		
+		if (!isConcurrencyLimited()) {
+			return true;
+		}
+		return getOrCreateConcurrencyLimiter(host).tryAcquire();
+	}
+	
+	/**
+	 * Hand back the permit of a request once it is done. The outcome of the request adjusts the host's concurrency limit.
+	 * @param host
+	 * @param latencyMicros how long the request took on the host, or -1 if unknown
+	 * @param e the failure of the request, null if it succeeded
+	 * @return the concurrency limit of the host, or -1 if concurrency limits are disabled
+	 */
+	public int releasePermit(Host host, long latencyMicros, DynoException e) {
+		
+		if (!isConcurrencyLimited()) {
+			return -1;
+		}
+		HostConcurrencyLimiter limiter = concurrencyLimiters.get(host);
+		if (limiter == null) {
+			// the host was removed while the request was in flight
+			return -1;
+		}
+		
+		if (e == null) {
+			limiter.onSuccess(latencyMicros);
+		} else if (e instanceof TimeoutException) {
+			limiter.onDropped(latencyMicros);
+		} else {
+			limiter.onIgnore();
+		}
+		return limiter.getLimit();
+	}
+	
+	/**
+	 * @param host
+	 * @return the concurrency limit of the host, or -1 if concurrency limits are disabled
+	 */
+	public int getConcurrencyLimit(Host host) {
+		return isConcurrencyLimited() ? getOrCreateConcurrencyLimiter(host).getLimit() : -1;
+	}
+	
+	/**
+	 * @param host
+	 * @return the no of requests that hold a permit for the host, or -1 if concurrency limits are disabled
+	 */
+	public int getInFlight(Host host) {
+		return isConcurrencyLimited() ? getOrCreateConcurrencyLimiter(host).getInFlight() : -1;
+	}
+	
+	private HostConcurrencyLimiter getOrCreateConcurrencyLimiter(Host host) {
+		
+		HostConcurrencyLimiter limiter = concurrencyLimiters.get(host);
+		if (limiter == null) {
+			concurrencyLimiters.putIfAbsent(host, new HostConcurrencyLimiter(cpConfiguration.getConcurrencyLimitConfig()));
+			limiter = concurrencyLimiters.get(host);
+		}
+		return limiter;
+	}
+	
+	private void trackCircuitBreakerError(HostConnectionPool<CL> hostPool) {
+		
+		Host host = hostPool.getHost();
+		HostCircuitBreaker breaker = getOrCreateCircuitBreaker(host);
+		
+		HostCircuitBreaker.State prevState = breaker.getState();
+		HostCircuitBreaker.State newState = breaker.trackError();
+		
+		if (newState == HostCircuitBreaker.State.OPEN) {
+			if (prevState == HostCircuitBreaker.State.HALF_OPEN) {
+				// The host is still failing after the open duration, the connections are likely stale
+				Logger.warn("Circuit breaker probe failed for host: " + host + ", recycling pool");
+				reconnectPool(hostPool);
+			} else {
+				Logger.warn("Circuit breaker opened for host: " + host + " due to error ratio");
+			}
+		}
+	}
+	
+	private HostCircuitBreaker getOrCreateCircuitBreaker(Host host) {
+		
+		HostCircuitBreaker breaker = circuitBreakers.get(host);
+		if (breaker == null) {
+			circuitBreakers.putIfAbsent(host, new HostCircuitBreaker(cpConfiguration.getCircuitBreakerConfig()));
+			breaker = circuitBreakers.get(host);
+		}
+		return breaker;
+	}
+	
 	public void reconnectPool(HostConnectionPool<CL> hostPool) {
 		Host host = hostPool.getHost();
 		Logger.error("Enqueueing host cp for recycling due to too many errors: " + hostPool);
 		hostPool.markAsDown(null);
-		reconnectingPools.put(host, hostPool);
+		// replaces any pool that the host had before, e.g when it was removed and added again
+		if (reconnectingPools.put(host, hostPool) != hostPool) {
+			scheduleReconnect(hostPool, 0);
+		}
 	}
 	
 	public void initialPingHealthchecksForPool(HostConnectionPool<CL> hostPool) {
@@ -206,6 +602,39 @@ public class ConnectionPoolHealthTracker<CL> {
 		}
 	}
 
+	/**
+	 * Start background keep alive probes for a sync pool, see {@link HostConnectionPoolImpl#probeIdleConnection()}. 
+	 * The probes run on the reconnect thread pool so that a slow host can't hold up the host refresh task.
+	 * 
+	 * @param hostPool
+	 */
+	public void initialKeepAliveProbesForPool(HostConnectionPoolImpl<CL> hostPool) {
+		
+		final int frequencySeconds = cpConfiguration.getKeepAliveProbeFrequencySeconds();
+		if (frequencySeconds <= 0) {
+			return;
+		}
+		
+		probingPools.put(hostPool.getHost(), hostPool);
+		
+		if (startedProbes.compareAndSet(false, true)) {
+			
+			reconnectThreadPool.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					for (HostConnectionPoolImpl<CL> hostPool : probingPools.values()) {
+						try {
+							hostPool.probeIdleConnection();
+						} catch (Exception e) {
+							Logger.warn("Failed to probe pool for host: " + hostPool.getHost() + " " + e.getMessage());
+						}
+					}
+				}
+			}, frequencySeconds, frequencySeconds, TimeUnit.SECONDS);
+		}
+	}
+
 	private void pingHostPool(HostConnectionPool<CL> hostPool) {
 		for (Connection<CL> connection : hostPool.getAllConnections()) {
 			try { 
@@ -220,4 +649,17 @@ public class ConnectionPoolHealthTracker<CL> {
 	ConcurrentHashMap<Host, HostConnectionPool<CL>> getReconnectingPools() {
 		return reconnectingPools;
 	}
+	
+	// used for unit tests
+	HostCircuitBreaker getCircuitBreaker(Host host) {
+		return circuitBreakers.get(host);
+	}
+	
+	/**
+	 * @param host
+	 * @return true if the host is currently ejected as a latency outlier
+	 */
+	public boolean isEjected(Host host) {
+		return outlierDetector != null && outlierDetector.isEjected(host);
+	}
 }
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.netflix.dyno.connectionpool.CircuitBreakerConfig;
+import com.netflix.dyno.connectionpool.Host;
+
+/**
+ * Per {@link Host} circuit breaker used by {@link ConnectionPoolHealthTracker}
+ *
+ * The breaker tracks requests and errors over a rolling window of per second buckets and trips when the error ratio
+ * (errors/requests) crosses the configured percentage, provided that enough requests were seen in the window.
+ *
+ * The breaker has 3 states
+ *    CLOSED     - all requests are allowed. This is the normal state.
+ *    OPEN       - no requests are allowed, callers are expected to use a fallback host right away.
+ *    HALF_OPEN  - once the open duration expires, a limited number of live requests are let through as probes.
+ *                 Enough successful probes close the breaker, a single failed probe opens it again.
+ *
+ * Note that the breaker only decides whether traffic should be routed to the host. It never touches the connections
+ * of the host's pool, hence closing the breaker does not disrupt any healthy connections.
+ *
+ */
+public class HostCircuitBreaker {
+
+	public static enum State {
+		CLOSED, OPEN, HALF_OPEN;
+	}
+
+	private final CircuitBreakerConfig config;
+
+	private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+	// when the breaker last went OPEN or HALF_OPEN
+	private final AtomicLong stateTimestamp = new AtomicLong(0L);
+	// probes vended and probes succeeded while HALF_OPEN
+	private final AtomicInteger probesAllowed = new AtomicInteger(0);
+	private final AtomicInteger probeSuccesses = new AtomicInteger(0);
+
+	// rolling window of per second buckets, indexed by (second % window size)
+	private final AtomicReferenceArray<Bucket> buckets;
+
+	public HostCircuitBreaker(CircuitBreakerConfig config) {
+		this.config = config;
+		this.buckets = new AtomicReferenceArray<Bucket>(Math.max(1, config.getWindowSizeSeconds()));
+	}
+
+	/**
+	 * @return true if a request may be sent to the host. When HALF_OPEN this vends one of the probe slots.
+	 */
+	public boolean allowRequest() {
+
+		State current = state.get();
+
+		switch (current) {
+
+		case CLOSED:
+			return true;
+
+		case OPEN:
+			if (System.currentTimeMillis() - stateTimestamp.get() < config.getOpenDurationMillis()) {
+				return false;
+			}
+			if (transition(State.OPEN, State.HALF_OPEN)) {
+				probesAllowed.set(0);
+				probeSuccesses.set(0);
+			}
+			return allowProbe();
+
+		case HALF_OPEN:
+			return allowProbe();
+
+		default:
+			return true;
+		}
+	}
+
+	private boolean allowProbe() {
+
+		if (state.get() != State.HALF_OPEN) {
+			return state.get() == State.CLOSED;
+		}
+
+		if (probesAllowed.incrementAndGet() <= config.getHalfOpenProbes()) {
+			return true;
+		}
+
+		// All probes are out. If they don't report back within an open duration (e.g the callers bailed out
+		// before executing) then vend a fresh set of probes, else the breaker would stay half open forever.
+		long stamp = stateTimestamp.get();
+		if (System.currentTimeMillis() - stamp >= config.getOpenDurationMillis() && stateTimestamp.compareAndSet(stamp, System.currentTimeMillis())) {
+			probesAllowed.set(1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record a successful request against the host
+	 * @return the state the breaker transitioned to, or null if the state did not change
+	 */
+	public State trackSuccess() {
+
+		getCurrentBucket().requests.incrementAndGet();
+
+		if (state.get() == State.HALF_OPEN) {
+			if (probeSuccesses.incrementAndGet() >= config.getHalfOpenSuccessesToClose()) {
+				if (transition(State.HALF_OPEN, State.CLOSED)) {
+					reset();
+					return State.CLOSED;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Record a failed request against the host
+	 * @return the state the breaker transitioned to, or null if the state did not change
+	 */
+	public State trackError() {
+
+		Bucket bucket = getCurrentBucket();
+		bucket.requests.incrementAndGet();
+		bucket.errors.incrementAndGet();
+
+		State current = state.get();
+
+		if (current == State.HALF_OPEN) {
+			// the probe failed, back to open
+			return transition(State.HALF_OPEN, State.OPEN) ? State.OPEN : null;
+		}
+
+		if (current == State.CLOSED && errorRatioExceeded()) {
+			return transition(State.CLOSED, State.OPEN) ? State.OPEN : null;
+		}
+
+		return null;
+	}
+
+	private boolean errorRatioExceeded() {
+
+		long now = System.currentTimeMillis()/1000;
+		long requests = 0;
+		long errors = 0;
+
+		for (int i=0; i<buckets.length(); i++) {
+			Bucket b = buckets.get(i);
+			if (b != null && (now - b.second) < buckets.length()) {
+				requests += b.requests.get();
+				errors += b.errors.get();
+			}
+		}
+
+		if (requests == 0 || requests < config.getMinRequestsInWindow()) {
+			return false;
+		}
+		return (errors * 100) >= (requests * config.getErrorPercentageThreshold());
+	}
+
+	private boolean transition(State from, State to) {
+		if (state.compareAndSet(from, to)) {
+			stateTimestamp.set(System.currentTimeMillis());
+			return true;
+		}
+		return false;
+	}
+
+	private void reset() {
+		for (int i=0; i<buckets.length(); i++) {
+			buckets.set(i, null);
+		}
+	}
+
+	private Bucket getCurrentBucket() {
+
+		long second = System.currentTimeMillis()/1000;
+		int index = (int) (second % buckets.length());
+
+		Bucket bucket = buckets.get(index);
+		while (bucket == null || bucket.second != second) {
+			Bucket newBucket = new Bucket(second);
+			if (buckets.compareAndSet(index, bucket, newBucket)) {
+				return newBucket;
+			}
+			// someone else beat us to it
+			bucket = buckets.get(index);
+		}
+		return bucket;
+	}
+
+	/**
+	 * Same as {@link #allowRequest()} but without taking a probe slot or changing the state
+	 * @return false if a request would surely be turned away
+	 */
+	public boolean isRoutable() {
+
+		long sinceStateChange = System.currentTimeMillis() - stateTimestamp.get();
+
+		switch (state.get()) {
+
+		case OPEN:
+			return sinceStateChange >= config.getOpenDurationMillis();
+
+		case HALF_OPEN:
+			return probesAllowed.get() < config.getHalfOpenProbes() || sinceStateChange >= config.getOpenDurationMillis();
+
+		default:
+			return true;
+		}
+	}
+
+	public State getState() {
+		return state.get();
+	}
+
+	public boolean isClosed() {
+		return state.get() == State.CLOSED;
+	}
+
+	public String toString() {
+		return "HostCircuitBreaker [state=" + state.get() + "]";
+	}
+
+	private static class Bucket {
+
+		private final long second;
+		private final AtomicLong requests = new AtomicLong(0L);
+		private final AtomicLong errors = new AtomicLong(0L);
+
+		private Bucket(long sec) {
+			second = sec;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
+import com.netflix.dyno.connectionpool.Host;
+
+/**
+ * Per {@link Host} adaptive limit on the no of requests in flight, used by {@link ConnectionPoolHealthTracker}
+ * 
+ * The limit follows an AIMD scheme driven by the latency of the requests
+ *    - the lowest latency recently seen is taken as the latency of the host when it is not loaded
+ *    - a request that takes much longer than that, or times out, means the host is queueing requests and the limit 
+ *      is cut by a percentage. Requests that were already in flight when the limit was cut don't cut it again, 
+ *      i.e the limit is cut at most once per round trip.
+ *    - otherwise the limit grows by about 1 per round trip, as long as the host is actually kept busy
+ * 
+ * Callers must pair each successful {@link #tryAcquire()} with exactly one of {@link #onSuccess(long)}, 
+ * {@link #onDropped(long)} or {@link #onIgnore()}.
+ */
+public class HostConcurrencyLimiter {
+
+	// latencies below this are mostly noise, a host is never considered slow for taking less
+	private static final long MIN_BASELINE_LATENCY_MICROS = 1000;
+	
+	private final ConcurrencyLimitConfig config;
+	
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	private volatile int currentLimit;
+	
+	// fractional so that increases of 1/limit per request add up to 1 per round trip. Guarded by this
+	private double limit;
+	private long minLatencyMicros = -1;
+	private long minLatencyTimestamp = 0;
+	private long lastDecreaseNanos = 0;
+
+	public HostConcurrencyLimiter(ConcurrencyLimitConfig config) {
+		this.config = config;
+		this.limit = Math.min(Math.max(config.getInitialLimit(), config.getMinLimit()), config.getMaxLimit());
+		this.currentLimit = (int) limit;
+	}
+
+	/**
+	 * @return true if the request may be sent to the host, false if the host already has as many requests in flight as the limit allows
+	 */
+	public boolean tryAcquire() {
+		
+		while (true) {
+			int current = inFlight.get();
+			if (current >= currentLimit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * The request got a response from the host
+	 * @param latencyMicros how long the request took, or -1 if unknown
+	 */
+	public void onSuccess(long latencyMicros) {
+		
+		int wasInFlight = inFlight.getAndDecrement();
+		if (latencyMicros < 0) {
+			return;
+		}
+		
+		synchronized (this) {
+			
+			long now = System.currentTimeMillis();
+			if (minLatencyMicros < 0 || latencyMicros < minLatencyMicros 
+					|| now - minLatencyTimestamp >= config.getMinLatencyWindowSeconds() * 1000L) {
+				minLatencyMicros = latencyMicros;
+				minLatencyTimestamp = now;
+			}
+			
+			long baseline = Math.max(minLatencyMicros, MIN_BASELINE_LATENCY_MICROS);
+			if (latencyMicros * 100 > baseline * config.getLatencyTolerancePercentage()) {
+				decrease(latencyMicros);
+			} else if (wasInFlight * 2 >= limit) {
+				// don't grow the limit of a host that isn't anywhere near it
+				setLimit(limit + 1.0 / limit);
+			}
+		}
+	}
+
+	/**
+	 * The request timed out, which is taken as a sign that the host is overloaded
+	 * @param latencyMicros how long the request waited, or -1 if unknown
+	 */
+	public void onDropped(long latencyMicros) {
+		
+		inFlight.decrementAndGet();
+		synchronized (this) {
+			decrease(Math.max(latencyMicros, 0));
+		}
+	}
+
+	/**
+	 * The request failed for a reason that says nothing about the load on the host, e.g a broken connection
+	 */
+	public void onIgnore() {
+		inFlight.decrementAndGet();
+	}
+
+	private void decrease(long latencyMicros) {
+		
+		long now = System.nanoTime();
+		if (lastDecreaseNanos != 0 && now - latencyMicros * 1000 < lastDecreaseNanos) {
+			// the request was sent before the last cut, which already accounts for it
+			return;
+		}
+		lastDecreaseNanos = now;
+		setLimit(limit * config.getBackoffPercentage() / 100);
+	}
+	
+	private void setLimit(double newLimit) {
+		limit = Math.min(Math.max(newLimit, config.getMinLimit()), config.getMaxLimit());
+		currentLimit = (int) limit;
+	}
+
+	public int getLimit() {
+		return currentLimit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	public String toString() {
+		return "HostConcurrencyLimiter [limit=" + currentLimit + ", inFlight=" + inFlight.get() + "]";
+	}
+}
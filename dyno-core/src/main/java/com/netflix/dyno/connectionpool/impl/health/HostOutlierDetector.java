@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.OutlierDetectionConfig;
+
+/**
+ * Detects hosts that are much slower (or time out much more often) than their peers in the same rack and ejects them 
+ * from rotation for a while. This catches hosts that are degraded but not failing outright, which neither the 
+ * {@link ErrorMonitor} nor the {@link HostCircuitBreaker} will notice since timeouts are not tracked as errors.
+ * 
+ * Latencies and timeouts are collected per host over an interval. At the end of each interval {@link #evaluate()} compares
+ * every host with enough requests against the median of its rack. Outliers are ejected for a period that grows with the no 
+ * of recent ejections, subject to a cap on the percentage of the rack that may be ejected at once. When the ejection expires, 
+ * the share of requests allowed to the host ramps up linearly instead of the host getting its full share right away.
+ * 
+ * Note that like the circuit breaker, the detector only decides whether traffic should be routed to a host, see {@link #allowRequest(Host)}
+ */
+public class HostOutlierDetector {
+
+	private static final Logger Logger = LoggerFactory.getLogger(HostOutlierDetector.class);
+	
+	// cap on the ejection multiplier, so that a flapping host is not ejected for ever
+	private static final int MAX_EJECTION_MULTIPLIER = 10;
+	
+	private final OutlierDetectionConfig config;
+	private final ConcurrentHashMap<Host, HostStats> hostStats = new ConcurrentHashMap<Host, HostStats>();
+	
+	public HostOutlierDetector(OutlierDetectionConfig config) {
+		this.config = config;
+	}
+	
+	public void trackSuccess(Host host, long latencyMicros) {
+		IntervalStats stats = getOrCreateHostStats(host).interval.get();
+		stats.requests.incrementAndGet();
+		stats.latencySum.addAndGet(latencyMicros);
+	}
+
+	public void trackTimeout(Host host) {
+		IntervalStats stats = getOrCreateHostStats(host).interval.get();
+		stats.requests.incrementAndGet();
+		stats.timeouts.incrementAndGet();
+	}
+	
+	public void removeHost(Host host) {
+		hostStats.remove(host);
+	}
+	
+	/**
+	 * @param host
+	 * @return false if the host is ejected. When the host is returning from an ejection, only a share of the requests are allowed.
+	 */
+	public boolean allowRequest(Host host) {
+		
+		HostStats stats = hostStats.get(host);
+		if (stats == null || stats.ejectedUntil == 0) {
+			return true;
+		}
+		
+		long now = System.currentTimeMillis();
+		if (now < stats.ejectedUntil) {
+			return false;
+		}
+		
+		long sinceReturn = now - stats.ejectedUntil;
+		int ramp = config.getReturnRampMillis();
+		if (sinceReturn >= ramp) {
+			return true;
+		}
+		return ThreadLocalRandom.current().nextInt(ramp) < sinceReturn;
+	}
+	
+	public boolean isEjected(Host host) {
+		HostStats stats = hostStats.get(host);
+		return stats != null && System.currentTimeMillis() < stats.ejectedUntil;
+	}
+	
+	/**
+	 * Compare the stats collected since the last call for each host with those of its peers, eject outliers and reset the stats.
+	 * This is meant to be called every {@link OutlierDetectionConfig#getIntervalSeconds()}
+	 */
+	public void evaluate() {
+		
+		long now = System.currentTimeMillis();
+		
+		Map<String, List<HostSample>> samplesPerRack = new HashMap<String, List<HostSample>>();
+		Map<String, Integer> hostsPerRack = new HashMap<String, Integer>();
+		Map<String, Integer> ejectedPerRack = new HashMap<String, Integer>();
+		
+		for (Map.Entry<Host, HostStats> entry : hostStats.entrySet()) {
+			
+			Host host = entry.getKey();
+			HostStats stats = entry.getValue();
+			IntervalStats interval = stats.interval.getAndSet(new IntervalStats());
+			
+			String rack = String.valueOf(host.getRack());
+			increment(hostsPerRack, rack);
+			
+			if (now < stats.ejectedUntil) {
+				increment(ejectedPerRack, rack);
+				continue;
+			}
+			
+			long requests = interval.requests.get();
+			if (requests < config.getMinRequestsPerHost()) {
+				continue;
+			}
+			
+			long successes = requests - interval.timeouts.get();
+			long avgLatency = (successes > 0) ? interval.latencySum.get()/successes : 0L;
+			long timeoutPercentage = interval.timeouts.get() * 100 / requests;
+			
+			List<HostSample> samples = samplesPerRack.get(rack);
+			if (samples == null) {
+				samples = new ArrayList<HostSample>();
+				samplesPerRack.put(rack, samples);
+			}
+			samples.add(new HostSample(host, stats, avgLatency, timeoutPercentage));
+		}
+		
+		for (Map.Entry<String, List<HostSample>> entry : samplesPerRack.entrySet()) {
+			
+			String rack = entry.getKey();
+			List<HostSample> samples = entry.getValue();
+			
+			if (samples.size() < config.getMinHostsPerRack()) {
+				continue;
+			}
+			
+			long medianLatency = median(samples, true);
+			long medianTimeouts = median(samples, false);
+			
+			int maxEjected = Math.max(1, hostsPerRack.get(rack) * config.getMaxEjectionPercentage() / 100);
+			int ejected = ejectedPerRack.containsKey(rack) ? ejectedPerRack.get(rack) : 0;
+
+			// worst hosts first, so that they are the ones ejected if we hit the cap
+			Collections.sort(samples, new Comparator<HostSample>() {
+				@Override
+				public int compare(HostSample o1, HostSample o2) {
+					return Long.compare(o2.avgLatency, o1.avgLatency);
+				}
+			});
+			
+			for (HostSample sample : samples) {
+				
+				boolean slow = sample.avgLatency >= config.getMinLatencyMillis() * 1000L && 
+						sample.avgLatency * 100 >= medianLatency * config.getLatencyThresholdPercentage();
+				boolean timingOut = sample.timeoutPercentage - medianTimeouts >= config.getTimeoutPercentageThreshold();
+				
+				if (!slow && !timingOut) {
+					sample.stats.healthyInterval(now, config.getReturnRampMillis());
+					continue;
+				}
+				
+				if (ejected >= maxEjected) {
+					Logger.warn("Host: " + sample.host + " is an outlier but max no of hosts are already ejected in rack: " + rack);
+					continue;
+				}
+				
+				ejected++;
+				sample.stats.eject(now, config.getBaseEjectionMillis());
+				Logger.warn("Ejecting outlier host: " + sample.host + " until " + sample.stats.ejectedUntil + ", avg latency: " + sample.avgLatency + 
+						"us (median " + medianLatency + "us), timeouts: " + sample.timeoutPercentage + "% (median " + medianTimeouts + "%)");
+			}
+		}
+	}
+	
+	private long median(List<HostSample> samples, boolean latency) {
+		
+		List<Long> values = new ArrayList<Long>();
+		for (HostSample sample : samples) {
+			values.add(latency ? sample.avgLatency : sample.timeoutPercentage);
+		}
+		Collections.sort(values);
+		return values.get(values.size()/2);
+	}
+	
+	private void increment(Map<String, Integer> map, String key) {
+		Integer count = map.get(key);
+		map.put(key, (count == null) ? 1 : count + 1);
+	}
+
+	private HostStats getOrCreateHostStats(Host host) {
+		
+		HostStats stats = hostStats.get(host);
+		if (stats == null) {
+			hostStats.putIfAbsent(host, new HostStats());
+			stats = hostStats.get(host);
+		}
+		return stats;
+	}
+	
+	private static class IntervalStats {
+		
+		private final AtomicLong requests = new AtomicLong(0L);
+		private final AtomicLong timeouts = new AtomicLong(0L);
+		private final AtomicLong latencySum = new AtomicLong(0L);
+	}
+	
+	private static class HostStats {
+		
+		private final AtomicReference<IntervalStats> interval = new AtomicReference<IntervalStats>(new IntervalStats());
+		
+		// only updated by evaluate(), which runs on a single thread
+		private volatile long ejectedUntil = 0L;
+		private volatile int ejectionMultiplier = 0;
+		
+		private void eject(long now, int baseEjectionMillis) {
+			ejectionMultiplier = Math.min(ejectionMultiplier + 1, MAX_EJECTION_MULTIPLIER);
+			ejectedUntil = now + (long) baseEjectionMillis * ejectionMultiplier;
+		}
+		
+		private void healthyInterval(long now, int returnRampMillis) {
+			// a host that stays healthy after it fully returned slowly earns back shorter ejections
+			if (ejectionMultiplier > 0 && now - ejectedUntil >= returnRampMillis) {
+				ejectionMultiplier--;
+			}
+		}
+	}
+	
+	private static class HostSample {
+		
+		private final Host host;
+		private final HostStats stats;
+		private final long avgLatency;
+		private final long timeoutPercentage;
+		
+		private HostSample(Host host, HostStats stats, long avgLatency, long timeoutPercentage) {
+			this.host = host;
+			this.stats = stats;
+			this.avgLatency = avgLatency;
+			this.timeoutPercentage = timeoutPercentage;
+		}
+	}
+}
@@ -1,16 +1,30 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.TimeoutException;
 import com.netflix.dyno.connectionpool.impl.utils.ConfigUtils;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
@@ -19,8 +33,6 @@ import org.slf4j.LoggerFactory;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
 
 /**
  * An Example of the JSON payload that we get from a dynomite server
@@ -35,6 +47,11 @@ import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
  *   {"token":"1669478519","hostname":"ec2-54-80-65-203.compute-1.amazonaws.com" ,"dc":"florida-v000","ip":"54.80.65.203", "zone":"us-east-1e", "location":"us-east-1"}
  * ]
  * 
+ * The topology is fetched from a few hosts in parallel, stopping as soon as every active host's token is known, 
+ * and the parsed result is cached for a short while so that a burst of {@link #getTokenForHost(Host, Set)} calls
+ * (e.g one per added host at startup) doesn't fetch it over and over again. Concurrent callers of 
+ * {@link #getTokenForHost(Host, Set)} share a single in flight fetch.
+ * 
  * @author poberai
  *
  */
@@ -42,66 +59,289 @@ public abstract class AbstractTokenMapSupplier implements TokenMapSupplier {
 
 	private static final Logger Logger = LoggerFactory.getLogger(AbstractTokenMapSupplier.class);
 	
+	public static final int DefaultFetchParallelism = 3;
+	public static final long DefaultCacheTtlMillis = 15000L;
+	
 	private final String localZone;
 	protected final int port;
+	
+	// no of hosts that are queried concurrently for the topology
+	private final int fetchParallelism;
+	// how long a parsed topology is served from cache, <= 0 disables caching
+	private final long cacheTtlMillis;
+	
+	private final ThreadPoolExecutor fetchThreadPool;
+	
+	private final AtomicReference<TopologySnapshot> cachedTopology = new AtomicReference<TopologySnapshot>(null);
+	// the fetch that concurrent getTokenForHost() callers wait on, instead of all hitting dynomite
+	private final AtomicReference<FutureTask<TopologySnapshot>> inFlightFetch = new AtomicReference<FutureTask<TopologySnapshot>>(null);
 
     public AbstractTokenMapSupplier() {
         this(8080);
     }
 
 	public AbstractTokenMapSupplier(int port) {
+		this(port, DefaultFetchParallelism, DefaultCacheTtlMillis);
+	}
+
+	public AbstractTokenMapSupplier(int port, int fetchParallelism, long cacheTtlMillis) {
 		localZone = ConfigUtils.getLocalZone();
 		this.port = port;
+		this.fetchParallelism = Math.max(1, fetchParallelism);
+		this.cacheTtlMillis = cacheTtlMillis;
+		
+		this.fetchThreadPool = new ThreadPoolExecutor(this.fetchParallelism, this.fetchParallelism, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoTokenMapSupplier");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.fetchThreadPool.allowCoreThreadTimeOut(true);
 	}
 
 	public abstract String getTopologyJsonPayload(Set<Host> activeHosts);
 	
 	public abstract String getTopologyJsonPayload(String hostname);
 	
+	/**
+	 * @return the tokens in the topology described by a random host from the given set. Subclasses that can do 
+	 * better than fetching the payload as a String (e.g stream it, or skip an unchanged topology) should override this.
+	 */
+	protected List<HostToken> getTopology(Set<Host> activeHosts) {
+		return parseTokenListFromJson(getTopologyJsonPayload(activeHosts));
+	}
+	
+	/**
+	 * @return the tokens in the topology described by the given host
+	 * @see #getTopology(Set)
+	 */
+	protected List<HostToken> getTopology(String hostname) {
+		return parseTokenListFromJson(getTopologyJsonPayload(hostname));
+	}
+	
+	protected int getFetchParallelism() {
+		return fetchParallelism;
+	}
+	
 	@Override
 	public List<HostToken> getTokens(Set<Host> activeHosts) {
 
-		// Doing this since not all tokens are received from an individual call to a dynomite server
-		// hence trying them all
-		Set<HostToken> allTokens = new HashSet<HostToken>();
+		TopologySnapshot snapshot = cachedTopology.get();
+		if (snapshot != null && snapshot.isFresh() && snapshot.covers(activeHosts)) {
+			return new ArrayList<HostToken>(snapshot.tokens.values());
+		}
+		
+		snapshot = fetchFromHosts(activeHosts);
+		cachedTopology.set(snapshot);
+		return new ArrayList<HostToken>(snapshot.tokens.values());
+	}
+	
+	/**
+	 * Not all tokens are received from an individual call to a dynomite server, hence we query the hosts a few at a 
+	 * time (local zone first) and stop as soon as every active host has been accounted for.
+	 */
+	private TopologySnapshot fetchFromHosts(Set<Host> activeHosts) {
 		
+		List<Host> hosts = new ArrayList<Host>(activeHosts.size());
 		for (Host host : activeHosts) {
-			try {
-				List<HostToken> hostTokens = parseTokenListFromJson(getTopologyJsonPayload((host.getHostName())));
-				for (HostToken hToken : hostTokens) {
-					allTokens.add(hToken);
+			if (isLocalZoneHost(host)) {
+				hosts.add(0, host);
+			} else {
+				hosts.add(host);
+			}
+		}
+		
+		Map<String, HostToken> allTokens = new HashMap<String, HostToken>();
+		
+		CompletionService<List<HostToken>> completionService = new ExecutorCompletionService<List<HostToken>>(fetchThreadPool);
+		List<Future<List<HostToken>>> futures = new ArrayList<Future<List<HostToken>>>();
+		
+		Iterator<Host> iter = hosts.iterator();
+		int outstanding = 0;
+		
+		try {
+			while (outstanding < fetchParallelism && iter.hasNext()) {
+				futures.add(completionService.submit(new TopologyFetch(iter.next().getHostName())));
+				outstanding++;
+			}
+			
+			while (outstanding > 0) {
+				
+				Future<List<HostToken>> future = completionService.take();
+				outstanding--;
+				try {
+					for (HostToken hToken : future.get()) {
+						allTokens.put(hToken.getHost().getHostName(), hToken);
+					}
+				} catch (ExecutionException e) {
+					Logger.warn("Could not get json response for token topology [" + e.getCause().getMessage() + "]");
+				}
+				
+				if (coversAll(allTokens, activeHosts)) {
+					break;
+				}
+				
+				if (iter.hasNext()) {
+					futures.add(completionService.submit(new TopologyFetch(iter.next().getHostName())));
+					outstanding++;
 				}
-			} catch (Exception e) {
-				Logger.warn("Could not get json response for token topology [" + e.getMessage() + "]");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// we have what we need, don't wait on the stragglers
+			for (Future<List<HostToken>> future : futures) {
+				future.cancel(true);
 			}
 		}
-		return new ArrayList<HostToken>(allTokens);
+		
+		return new TopologySnapshot(allTokens);
 	}
 	
 	@Override
 	public HostToken getTokenForHost(final Host host, final Set<Host> activeHosts) {
-        String jsonPayload;
+		
+		TopologySnapshot snapshot = cachedTopology.get();
+		if (snapshot != null && snapshot.isFresh()) {
+			HostToken hostToken = snapshot.tokens.get(host.getHostName());
+			if (hostToken != null) {
+				return hostToken;
+			}
+		}
+		
+		// The fetch we joined may have been started for another host and may have been answered by a node that  
+		// doesn't know about this one yet. Give it one more go with a fetch of our own in that case.
+		for (int i=0; i<2; i++) {
+			
+			FutureTask<TopologySnapshot> task = new FutureTask<TopologySnapshot>(new Callable<TopologySnapshot>() {
+				@Override
+				public TopologySnapshot call() throws Exception {
+					List<HostToken> hostTokens = getTopology(host, activeHosts);
+					
+					TopologySnapshot snapshot = cachedTopology.get();
+					if (snapshot != null && snapshot.source == hostTokens) {
+						// unchanged topology, no need to rebuild the lookup map
+						snapshot = new TopologySnapshot(snapshot.tokens, hostTokens);
+					} else {
+						snapshot = new TopologySnapshot(hostTokens);
+					}
+					cachedTopology.set(snapshot);
+					return snapshot;
+				}
+			});
+			
+			boolean owner = inFlightFetch.compareAndSet(null, task);
+			if (owner) {
+				try {
+					task.run();
+				} finally {
+					inFlightFetch.compareAndSet(task, null);
+				}
+			} else {
+				FutureTask<TopologySnapshot> inFlight = inFlightFetch.get();
+				if (inFlight != null) {
+					task = inFlight;
+				} else {
+					// it just finished, go again
+					i--;
+					continue;
+				}
+			}
+			
+			HostToken hostToken = getResult(task).tokens.get(host.getHostName());
+			if (hostToken != null || owner) {
+				return hostToken;
+			}
+		}
+		return null;
+	}
+	
+	private List<HostToken> getTopology(Host host, Set<Host> activeHosts) {
         if (activeHosts.size() == 0) {
-            jsonPayload = getTopologyJsonPayload(host.getHostName());
+            return getTopology(host.getHostName());
         } else {
             try {
-                jsonPayload = getTopologyJsonPayload(activeHosts);
+                return getTopology(activeHosts);
             } catch (TimeoutException ex) {
                 // Try using the host we just primed connections to. If that fails,
                 // let the exception bubble up to ConnectionPoolImpl which will remove
                 // the host from the host-mapping
-                jsonPayload = getTopologyJsonPayload(host.getHostName());
+                return getTopology(host.getHostName());
             }
         }
-		List<HostToken> hostTokens = parseTokenListFromJson(jsonPayload);
+	}
+	
+	private TopologySnapshot getResult(FutureTask<TopologySnapshot> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DynoException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new DynoException(e.getCause());
+		}
+	}
+	
+	private class TopologyFetch implements Callable<List<HostToken>> {
+		
+		private final String hostname;
 		
-		return CollectionUtils.find(hostTokens, new Predicate<HostToken>() {
+		private TopologyFetch(String hostname) {
+			this.hostname = hostname;
+		}
 
-			@Override
-			public boolean apply(HostToken x) {
-				return x.getHost().getHostName().equals(host.getHostName());
+		@Override
+		public List<HostToken> call() throws Exception {
+			return getTopology(hostname);
+		}
+	}
+	
+	private class TopologySnapshot {
+		
+		private final Map<String, HostToken> tokens;
+		// the list this snapshot was built from, if it came from a single host
+		private final List<HostToken> source;
+		private final long timestamp = System.currentTimeMillis();
+		
+		private TopologySnapshot(Map<String, HostToken> tokens) {
+			this(tokens, null);
+		}
+		
+		private TopologySnapshot(Map<String, HostToken> tokens, List<HostToken> source) {
+			this.tokens = tokens;
+			this.source = source;
+		}
+		
+		private TopologySnapshot(List<HostToken> hostTokens) {
+			this.source = hostTokens;
+			this.tokens = new HashMap<String, HostToken>();
+			for (HostToken hToken : hostTokens) {
+				tokens.put(hToken.getHost().getHostName(), hToken);
 			}
-		});
+		}
+		
+		private boolean isFresh() {
+			return cacheTtlMillis > 0 && System.currentTimeMillis() - timestamp < cacheTtlMillis;
+		}
+		
+		private boolean covers(Set<Host> hosts) {
+			return coversAll(tokens, hosts);
+		}
+	}
+	
+	private static boolean coversAll(Map<String, HostToken> tokens, Set<Host> hosts) {
+		for (Host host : hosts) {
+			if (!tokens.containsKey(host.getHostName())) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	private boolean isLocalZoneHost(Host host) {
@@ -113,33 +353,107 @@ public abstract class AbstractTokenMapSupplier implements TokenMapSupplier {
 
     // package-private for Test
 	List<HostToken> parseTokenListFromJson(String json) {
+		try {
+			return parseTokenListFromJson(new StringReader(json));
+		} catch (IOException e) {
+			// can't happen with a StringReader
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Parses the topology straight into {@link HostToken}s as the payload is read, without building the intermediate 
+	 * JSON tree or holding the whole payload as a String. Entries that aren't JSON objects are skipped. 
+	 * @param reader
+	 * @return List<HostToken>
+	 * @throws IOException
+	 */
+	protected List<HostToken> parseTokenListFromJson(Reader reader) throws IOException {
 		
-		List<HostToken> hostTokens = new ArrayList<HostToken>();
+		final List<HostToken> hostTokens = new ArrayList<HostToken>();
 		
-		JSONParser parser = new JSONParser();
-		try {
-			JSONArray arr = (JSONArray) parser.parse(json);
+		ContentHandler handler = new ContentHandler() {
 			
-			Iterator<?> iter = arr.iterator();
-			while (iter.hasNext()) {
-				
-				Object item = iter.next();
-				if (!(item instanceof JSONObject)) {
-					continue;
+			// 1 = in the top level array, 2 = in one of its objects
+			private int depth = 0;
+			private String key;
+			private Object token;
+			private String hostname;
+			private String zone;
+			
+			@Override
+			public void startJSON() {
+			}
+
+			@Override
+			public void endJSON() {
+			}
+
+			@Override
+			public boolean startArray() {
+				depth++;
+				return true;
+			}
+
+			@Override
+			public boolean endArray() {
+				depth--;
+				return true;
+			}
+
+			@Override
+			public boolean startObject() {
+				depth++;
+				if (depth == 2) {
+					token = null;
+					hostname = null;
+					zone = null;
 				}
-				JSONObject jItem = (JSONObject)item;
-				
-				Long token = Long.parseLong((String)jItem.get("token"));
-				String hostname = (String)jItem.get("hostname");
-				String zone = (String)jItem.get("zone");
-				
-				Host host = new Host(hostname, port, Status.Up).setRack(zone);
-				HostToken hostToken = new HostToken(token, host);
-				hostTokens.add(hostToken);
+				return true;
 			}
-			
+
+			@Override
+			public boolean endObject() {
+				if (depth == 2) {
+					Host host = new Host(hostname, port, Status.Up).setRack(zone);
+					hostTokens.add(new HostToken(Long.parseLong(String.valueOf(token)), host));
+				}
+				depth--;
+				return true;
+			}
+
+			@Override
+			public boolean startObjectEntry(String name) {
+				key = name;
+				return true;
+			}
+
+			@Override
+			public boolean endObjectEntry() {
+				key = null;
+				return true;
+			}
+
+			@Override
+			public boolean primitive(Object value) {
+				if (depth != 2 || key == null) {
+					return true;
+				}
+				if ("token".equals(key)) {
+					token = value;
+				} else if ("hostname".equals(key)) {
+					hostname = (String) value;
+				} else if ("zone".equals(key)) {
+					zone = (String) value;
+				}
+				return true;
+			}
+		};
+		
+		try {
+			new JSONParser().parse(reader, handler);
 		} catch (ParseException e) {
-			Logger.error("Failed to parse json response: " + json, e);
+			Logger.error("Failed to parse json response at position " + e.getPosition(), e);
 			throw new RuntimeException(e);
 		}
 
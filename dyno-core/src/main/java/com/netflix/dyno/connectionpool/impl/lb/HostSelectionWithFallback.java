@@ -17,6 +17,7 @@ package com.netflix.dyno.connectionpool.impl.lb;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.Deadline;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration.LoadBalancingStrategy;
 import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
@@ -37,13 +39,16 @@ import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
+import com.netflix.dyno.connectionpool.exception.ConcurrencyLimitExceededException;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
 import com.netflix.dyno.connectionpool.exception.PoolOfflineException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy.HostSelectionStrategyFactory;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
@@ -57,6 +62,17 @@ import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
  * falls back to the remote HostSelectionStrategy. Also it uses pure round robin for distributing load on the fall back HostSelectionStrategy
  * impls for even distribution of load on the remote DCs in the event of an outage in the local dc. 
  * Note that this class does not prefer any one remote HostSelectionStrategy over the other.  
+ * 
+ * When provided with a {@link ConnectionPoolHealthTracker}, a host pool whose circuit breaker is open or whose host has been 
+ * ejected as a latency outlier is treated just like an inactive pool, i.e the request goes straight to the fallback.
+ * Hosts that are in slow start only get a share of their requests, the rest spill over to another rack (token aware) 
+ * or to the next host in the rack (round robin).
+ * 
+ * When configured with a topology snapshot file, the token topology is persisted to it whenever the ring changes and a 
+ * restarting client routes from it while the token map is fetched in the background. See {@link TopologySnapshotFile}
+ * 
+ * The tokens can be periodically reconciled with the token map supplier, see {@link #reconcileTopology()}. All the 
+ * changes for a rack are applied to its selector as one batch. 
  *  
  * @author poberai
  *
@@ -75,51 +91,123 @@ public class HostSelectionWithFallback<CL> {
 	private final ConcurrentHashMap<String, HostSelectionStrategy<CL>> remoteDCSelectors = new ConcurrentHashMap<String, HostSelectionStrategy<CL>>();
 
 	private final ConcurrentHashMap<Host, HostToken> hostTokens = new ConcurrentHashMap<Host, HostToken>();
+	// the sidecars in hostTokens by their token, rebuilt whenever a sidecar comes or goes
+	private volatile Map<Long, HostToken> sidecarTokens = Collections.emptyMap();
+	// the pools of the hosts in hostTokens, used when reconciling with the token map
+	private final ConcurrentHashMap<Host, HostConnectionPool<CL>> hostPools = new ConcurrentHashMap<Host, HostConnectionPool<CL>>();
 
 	private final TokenMapSupplier tokenSupplier; 
 	private final ConnectionPoolConfiguration cpConfig;
 	private final ConnectionPoolMonitor cpMonitor; 
+	private final ConnectionPoolHealthTracker<CL> healthTracker;
 
 	// list of names of remote zones. Used for RoundRobin over remote zones when local zone host is down
 	private final CircularList<String> remoteDCNames = new CircularList<String>(new ArrayList<String>());
 
 	private final HostSelectionStrategyFactory<CL> selectorFactory;
+	
+	// optional local copy of the topology, see initWithHosts()
+	private final TopologySnapshotFile topologySnapshot;
 
 	public HostSelectionWithFallback(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor) {
+		this(config, monitor, null);
+	}
+
+	public HostSelectionWithFallback(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor, ConnectionPoolHealthTracker<CL> tracker) {
 
 		cpMonitor = monitor;
 		cpConfig = config;
+		healthTracker = tracker;
 		localRack = cpConfig.getLocalDC();
 		tokenSupplier = cpConfig.getTokenSupplier();
 
 		selectorFactory = new DefaultSelectionFactory(cpConfig);
 		localSelector = selectorFactory.vendPoolSelectionStrategy();
+		
+		String snapshotFile = cpConfig.getTopologySnapshotFile();
+		topologySnapshot = (snapshotFile != null && !snapshotFile.isEmpty()) ? new TopologySnapshotFile(snapshotFile) : null;
 	}
 
 	public Connection<CL> getConnection(BaseOperation<CL, ?> op, int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
-		return getConnection(op, null, duration, unit);
+		return getConnection(op, null, duration, unit, null, null, false);
+	}
+
+	/**
+	 * Same as {@link #getConnection(BaseOperation, int, TimeUnit)}, but the waits for a connection, including the one 
+	 * in the fallback DC, are cut down to what is left of the operation's deadline
+	 * @param op
+	 * @param duration
+	 * @param unit
+	 * @param deadline may be null
+	 * @return the connection
+	 * @throws NoAvailableHostsException
+	 * @throws PoolExhaustedException
+	 */
+	public Connection<CL> getConnection(BaseOperation<CL, ?> op, int duration, TimeUnit unit, Deadline deadline) throws NoAvailableHostsException, PoolExhaustedException {
+		return getConnection(op, null, duration, unit, deadline, null, false);
 	}
 
-	private Connection<CL> getConnection(BaseOperation<CL, ?> op, Long token, int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
+	/**
+	 * Get a connection to retry the operation on. When the operation would go to a host it already failed on, it 
+	 * goes to another one instead, see {@link #getRetryPool(BaseOperation, HostConnectionPool, Collection, boolean)}
+	 * 
+	 * When concurrency limits are enabled, the connection also comes with a permit from the health tracker, that the 
+	 * caller must release once the operation is done, see {@link ConnectionPoolHealthTracker#releasePermit(Host, long, DynoException)}
+	 * @param op
+	 * @param duration
+	 * @param unit
+	 * @param deadline may be null
+	 * @param failedHosts the hosts the operation failed on so far
+	 * @param allowOtherRack whether the retry may go to the token's replica in another rack
+	 * @return the connection
+	 * @throws NoAvailableHostsException
+	 * @throws PoolExhaustedException
+	 * @throws ConcurrencyLimitExceededException when the host and its replicas are all at their concurrency limits
+	 */
+	public Connection<CL> getConnection(BaseOperation<CL, ?> op, int duration, TimeUnit unit, Deadline deadline, 
+			Collection<Host> failedHosts, boolean allowOtherRack) throws NoAvailableHostsException, PoolExhaustedException {
+		return getConnection(op, null, duration, unit, deadline, failedHosts, allowOtherRack);
+	}
+
+	private Connection<CL> getConnection(BaseOperation<CL, ?> op, Long token, int duration, TimeUnit unit, Deadline deadline, 
+			Collection<Host> failedHosts, boolean allowOtherRack) throws NoAvailableHostsException, PoolExhaustedException {
 
 		HostConnectionPool<CL> hostPool = null; 
 		DynoConnectException lastEx = null;
 		
 		boolean useFallback = false;
+		// only the callers that pass the failed hosts release permits
+		boolean limited = failedHosts != null && healthTracker != null && healthTracker.isConcurrencyLimited();
 		
 		try {
 			hostPool = (op != null) ? localSelector.getPoolForOperation(op) : localSelector.getPoolForToken(token);
 			useFallback = !isConnectionPoolActive(hostPool);
 			
+			if (!useFallback && op != null && failedHosts != null && failedHosts.contains(hostPool.getHost())) {
+				hostPool = getRetryPool(op, hostPool, failedHosts, allowOtherRack);
+			} else if (!useFallback && op != null && healthTracker != null && !healthTracker.admitDuringSlowStart(hostPool.getHost())) {
+				hostPool = getSlowStartSpillPool(op, hostPool);
+			}
+			
 		} catch (NoAvailableHostsException e) {
 			lastEx = e;
 			useFallback = true;
 		}
 		
+		if (!useFallback) {
+			if (limited) {
+				hostPool = acquirePermit(op, hostPool, failedHosts, allowOtherRack);
+			}
+			useFallback = !admitRequest(hostPool, limited);
+		}
+		
 		if (!useFallback) {
 			try { 
-				return hostPool.borrowConnection(duration, unit);
+				return hostPool.borrowConnection(boundByDeadline(duration, unit, deadline), unit);
 			} catch (DynoConnectException e) {
+				if (limited) {
+					healthTracker.releasePermit(hostPool.getHost(), -1L, null);
+				}
 				lastEx = e;
 				cpMonitor.incOperationFailure(null, e);
 				useFallback = true;
@@ -151,7 +239,59 @@ public class HostSelectionWithFallback<CL> {
 			throw new NoAvailableHostsException("Found no hosts when using fallback DC");
 		}
 		
-		return hostPool.borrowConnection(duration, unit);
+		if (deadline != null && deadline.isExpired()) {
+			PoolTimeoutException pte = new PoolTimeoutException("Operation deadline passed before borrowing from fallback DC");
+			pte.setHost(hostPool.getHost());
+			cpMonitor.incOperationFailure(null, pte);
+			throw pte;
+		}
+		
+		if (limited && !healthTracker.tryAcquirePermit(hostPool.getHost())) {
+			throw new ConcurrencyLimitExceededException(hostPool.getHost(), "Fallback host " + hostPool.getHost() 
+					+ " is at its concurrency limit of " + healthTracker.getConcurrencyLimit(hostPool.getHost()));
+		}
+		if (!admitRequest(hostPool, limited)) {
+			PoolOfflineException poe = new PoolOfflineException(hostPool.getHost(), "Fallback host is not taking requests");
+			cpMonitor.incOperationFailure(null, poe);
+			throw poe;
+		}
+		try {
+			return hostPool.borrowConnection(boundByDeadline(duration, unit, deadline), unit);
+		} catch (DynoConnectException e) {
+			if (limited) {
+				healthTracker.releasePermit(hostPool.getHost(), -1L, null);
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Get a permit for the host the operation would go to. When the host is at its concurrency limit the operation 
+	 * goes to a replica instead, picked the same way as for a retry, see {@link #getRetryPool(BaseOperation, HostConnectionPool, Collection, boolean)}.
+	 * If the replica is at its limit too then the operation is turned away right away rather than queue up for a 
+	 * connection to an overloaded host.
+	 * @return the pool the permit is for
+	 */
+	private HostConnectionPool<CL> acquirePermit(BaseOperation<CL, ?> op, HostConnectionPool<CL> hostPool, 
+			Collection<Host> failedHosts, boolean allowOtherRack) throws ConcurrencyLimitExceededException {
+		
+		Host host = hostPool.getHost();
+		if (healthTracker.tryAcquirePermit(host)) {
+			return hostPool;
+		}
+		
+		List<Host> excludedHosts = new ArrayList<Host>(failedHosts);
+		excludedHosts.add(host);
+		HostConnectionPool<CL> replicaPool = getRetryPool(op, hostPool, excludedHosts, allowOtherRack);
+		if (replicaPool != hostPool && healthTracker.tryAcquirePermit(replicaPool.getHost())) {
+			return replicaPool;
+		}
+		throw new ConcurrencyLimitExceededException(host, "Host " + host + " is at its concurrency limit of " 
+				+ healthTracker.getConcurrencyLimit(host) + " and no replica could take the operation");
+	}
+	
+	private static int boundByDeadline(int duration, TimeUnit unit, Deadline deadline) {
+		return deadline != null ? deadline.bound(duration, unit) : duration;
 	}
 
 	private HostConnectionPool<CL> getFallbackHostPool(BaseOperation<CL, ?> op, Long token) {
@@ -193,12 +333,71 @@ public class HostSelectionWithFallback<CL> {
 		}
 	}
 
+	/**
+	 * Find another pool to take a request off a host that is in slow start. For token aware this is the replica in 
+	 * another rack, for round robin it is simply the next host in the rack. 
+	 * If there is no suitable pool then the request stays with the host in slow start.
+	 */
+	private HostConnectionPool<CL> getSlowStartSpillPool(BaseOperation<CL, ?> op, HostConnectionPool<CL> rampingPool) {
+		
+		try {
+			HostConnectionPool<CL> spillPool;
+			if (cpConfig.getLoadBalancingStrategy() == LoadBalancingStrategy.RoundRobin) {
+				spillPool = localSelector.getPoolForOperation(op);
+			} else {
+				if (remoteDCNames.getEntireList().isEmpty() || cpConfig.getMaxFailoverCount() == 0) {
+					return rampingPool;
+				}
+				spillPool = getFallbackHostPool(op, null);
+			}
+			return isConnectionPoolActive(spillPool) ? spillPool : rampingPool;
+			
+		} catch (NoAvailableHostsException e) {
+			return rampingPool;
+		}
+	}
+
+	/**
+	 * Find a pool to retry an operation on, other than the hosts it already failed on. For token aware this is the 
+	 * replica in another rack, for round robin it is the next host in the rack. 
+	 * If there is no such pool then the retry goes to the same host again.
+	 */
+	private HostConnectionPool<CL> getRetryPool(BaseOperation<CL, ?> op, HostConnectionPool<CL> failedPool, Collection<Host> failedHosts, boolean allowOtherRack) {
+		
+		try {
+			if (cpConfig.getLoadBalancingStrategy() == LoadBalancingStrategy.RoundRobin) {
+				int numPools = localSelector.getOrderedHostPools().size();
+				for (int i=0; i<numPools; i++) {
+					HostConnectionPool<CL> pool = localSelector.getPoolForOperation(op);
+					if (isConnectionPoolActive(pool) && !failedHosts.contains(pool.getHost())) {
+						return pool;
+					}
+				}
+			} else if (allowOtherRack) {
+				int numRemotes = remoteDCNames.getEntireList().size();
+				for (int i=0; i<numRemotes; i++) {
+					HostSelectionStrategy<CL> remoteDCSelector = remoteDCSelectors.get(remoteDCNames.getNextElement());
+					HostConnectionPool<CL> pool = remoteDCSelector != null ? remoteDCSelector.getPoolForOperation(op) : null;
+					if (isConnectionPoolActive(pool) && !failedHosts.contains(pool.getHost())) {
+						return pool;
+					}
+				}
+			}
+		} catch (NoAvailableHostsException e) {
+			// stay with the pool that failed
+		}
+		return failedPool;
+	}
+
 	public Collection<Connection<CL>> getConnectionsToRing(int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
 		
 		final Collection<HostToken> localZoneTokens = CollectionUtils.filter(hostTokens.values(), new Predicate<HostToken>() {
 			@Override
 			public boolean apply(HostToken x) {
-				return localRack != null ? localRack.equalsIgnoreCase(x.getHost().getRack()) : true; 
+				if (localRack == null) {
+					return true;
+				}
+				return (localRack.equalsIgnoreCase(x.getHost().getRack()) || isSidecar(x.getHost())) && getSidecarOwning(x) == null; 
 			}
 		});
 		
@@ -215,7 +414,7 @@ public class HostSelectionWithFallback<CL> {
 				
 		for (Long token : tokens) {
 			try { 
-				connections.add(getConnection(null, token, duration, unit));
+				connections.add(getConnection(null, token, duration, unit, null, null, false));
 			} catch (DynoConnectException e) {
 				Logger.warn("Failed to get connection when getting all connections from ring", e.getMessage());
 				lastEx = e;
@@ -242,11 +441,7 @@ public class HostSelectionWithFallback<CL> {
 
 	private HostSelectionStrategy<CL> findSelector(Host host) {
 		String dc = host.getRack();
-		if (localRack == null) {
-			return localSelector;
-		}
-
-		if (localRack.equals(dc)) {
+		if (isLocal(host)) {
 			return localSelector;
 		}
 
@@ -254,17 +449,117 @@ public class HostSelectionWithFallback<CL> {
 		return remoteSelector;
 	}
 
+	/**
+	 * A host with a unix domain socket runs on this box, hence it belongs to the local rack whatever rack it reports
+	 */
+	private boolean isLocal(Host host) {
+		return localRack == null || localRack.equals(host.getRack()) || isSidecar(host);
+	}
+
+	private static boolean isSidecar(Host host) {
+		return host.getSocketPath() != null;
+	}
+
+	/**
+	 * A sidecar is in the local rack whatever rack it reports, so it may own the same token as a host of the local rack. 
+	 * The sidecar always gets the token since it runs on this box, the local host is left out of the local rack's ring.
+	 * @param hToken
+	 * @return the sidecar's token, or null if no sidecar owns the token or the host isn't a local one
+	 */
+	private HostToken getSidecarOwning(HostToken hToken) {
+		if (sidecarTokens.isEmpty() || localRack == null || isSidecar(hToken.getHost()) || !localRack.equals(hToken.getHost().getRack())) {
+			return null;
+		}
+		return sidecarTokens.get(hToken.getToken());
+	}
+
+	/**
+	 * Rebuilds the sidecars' tokens from hostTokens, logging the local hosts that a sidecar takes the token of. 
+	 * Needs to be called whenever a sidecar is added to or removed from hostTokens.
+	 */
+	private void updateSidecarTokens() {
+		
+		Map<Long, HostToken> tokens = new HashMap<Long, HostToken>();
+		for (HostToken hToken : hostTokens.values()) {
+			if (isSidecar(hToken.getHost())) {
+				tokens.put(hToken.getToken(), hToken);
+			}
+		}
+		if (tokens.isEmpty()) {
+			sidecarTokens = Collections.emptyMap();
+			return;
+		}
+		sidecarTokens = tokens;
+		
+		for (HostToken hToken : hostTokens.values()) {
+			HostToken sidecarToken = getSidecarOwning(hToken);
+			if (sidecarToken != null) {
+				Logger.info("Sidecar " + sidecarToken.getHost() + " owns token " + hToken.getToken() + " of local host " 
+						+ hToken.getHost() + ", routing the token to the sidecar");
+			}
+		}
+	}
+
+	/**
+	 * @return the token of the local host that the given sidecar takes the place of, or null if there is none
+	 */
+	private HostToken getDisplacedBy(HostToken sidecarToken) {
+		for (HostToken other : hostTokens.values()) {
+			if (!isSidecar(other.getHost()) && localRack.equals(other.getHost().getRack()) 
+					&& other.getToken().equals(sidecarToken.getToken())) {
+				return other;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The token suppliers build their own hosts from the topology they fetch, which only have a name, port and rack. 
+	 * Route with the hosts we were given instead, they also have e.g the socket paths that routing depends on.
+	 */
+	private static List<HostToken> withOwnHosts(List<HostToken> tokens, Collection<Host> ownHosts) {
+		
+		Map<Host, Host> hosts = new HashMap<Host, Host>();
+		for (Host host : ownHosts) {
+			hosts.put(host, host);
+		}
+		
+		List<HostToken> result = new ArrayList<HostToken>(tokens.size());
+		for (HostToken hToken : tokens) {
+			Host host = hosts.get(hToken.getHost());
+			result.add((host == null || host == hToken.getHost()) ? hToken : new HostToken(hToken.getToken(), host));
+		}
+		return result;
+	}
+
+	/**
+	 * Side effect free check used to filter candidate pools, see {@link ConnectionPoolHealthTracker#isRoutable(Host)}
+	 */
 	private boolean isConnectionPoolActive(HostConnectionPool<CL> hPool) {
 		if (hPool == null) {
 			return false;
 		}
 		Host host = hPool.getHost();
 
-		if (!host.isUp()) {
+		if (!host.isUp() || !hPool.isActive()) {
 			return false;
-		} else {
-			return hPool.isActive();
+		} 
+		
+		return healthTracker == null || healthTracker.isRoutable(host);
+	}
+	
+	/**
+	 * Ask the health tracker to let the request go to the pool that was picked for it. This is done once per request 
+	 * since it hands out the circuit breaker's probes. When the request is turned away, its permit is released.
+	 */
+	private boolean admitRequest(HostConnectionPool<CL> hPool, boolean limited) {
+		if (healthTracker == null || healthTracker.allowRequest(hPool.getHost())) {
+			return true;
 		}
+		if (limited) {
+			healthTracker.releasePermit(hPool.getHost(), -1L, null);
+		}
+		return false;
 	}
 
 	private Map<HostToken, HostConnectionPool<CL>> getHostPoolsForDC(final Map<HostToken, HostConnectionPool<CL>> map, final String dc) {
@@ -277,32 +572,49 @@ public class HostSelectionWithFallback<CL> {
 						if (localRack == null) {
 							return true;
 						}
-						return dc.equals(x.getHost().getRack());
+						if (isSidecar(x.getHost())) {
+							return dc.equals(localRack);
+						}
+						return dc.equals(x.getHost().getRack()) && getSidecarOwning(x) == null;
 					}
 				});
 		return dcPools;
 	}
 	
-	public void initWithHosts(Map<Host, HostConnectionPool<CL>> hPools) {
-
-		// Get the list of tokens for these hosts
-		//tokenSupplier.initWithHosts(hPools.keySet());
-		List<HostToken> allHostTokens = tokenSupplier.getTokens(hPools.keySet());
+	/**
+	 * Init the selectors with the tokens of the given hosts. When a topology snapshot that covers all the hosts is 
+	 * available, the tokens are taken from it so that routing can start right away, while the actual topology is 
+	 * fetched from the token supplier and reconciled in the background.
+	 * @param hPools
+	 */
+	public void initWithHosts(final Map<Host, HostConnectionPool<CL>> hPools) {
+
+		List<HostToken> allHostTokens = getTokensFromSnapshot(hPools);
+		boolean fromSnapshot = allHostTokens != null; 
+		
+		if (!fromSnapshot) {
+			// Get the list of tokens for these hosts
+			//tokenSupplier.initWithHosts(hPools.keySet());
+			allHostTokens = withOwnHosts(tokenSupplier.getTokens(hPools.keySet()), hPools.keySet());
+		}
 
 		Map<HostToken, HostConnectionPool<CL>> tokenPoolMap = new HashMap<HostToken, HostConnectionPool<CL>>();
 		
+		hostPools.putAll(hPools);
+		
 		// Update inner state with the host tokens.
 		
 		for (HostToken hToken : allHostTokens) {
 			hostTokens.put(hToken.getHost(), hToken);
 			tokenPoolMap.put(hToken, hPools.get(hToken.getHost()));
 		}
+		updateSidecarTokens();
 		
 		Set<String> remoteDCs = new HashSet<String>();
 
 		for (Host host : hPools.keySet()) {
 			String dc = host.getRack();
-			if (localRack != null && !localRack.isEmpty() && dc != null && !dc.isEmpty() && !localRack.equals(dc)) {
+			if (localRack != null && !localRack.isEmpty() && dc != null && !dc.isEmpty() && !isLocal(host)) {
 				remoteDCs.add(dc);
 			}
 		}
@@ -321,6 +633,170 @@ public class HostSelectionWithFallback<CL> {
 		}
 
 		remoteDCNames.swapWithList(remoteDCSelectors.keySet());
+		
+		if (fromSnapshot) {
+			Logger.info("Routing from " + topologySnapshot + " until the token map has been fetched");
+			
+			Thread reconciler = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					reconcileTopology(hPools);
+				}
+			}, "DynoTopologyReconciler");
+			reconciler.setDaemon(true);
+			reconciler.start();
+		} else {
+			saveTopologySnapshot();
+		}
+	}
+	
+	/**
+	 * @return the tokens for the given hosts from the topology snapshot, or null if there is no snapshot or it 
+	 * doesn't know about all of the hosts
+	 */
+	private List<HostToken> getTokensFromSnapshot(Map<Host, HostConnectionPool<CL>> hPools) {
+		
+		if (topologySnapshot == null) {
+			return null;
+		}
+		List<HostToken> snapshotTokens = topologySnapshot.read();
+		if (snapshotTokens == null) {
+			return null;
+		}
+		
+		Map<Host, Host> hosts = new HashMap<Host, Host>();
+		for (Host host : hPools.keySet()) {
+			hosts.put(host, host);
+		}
+		
+		List<HostToken> allHostTokens = new ArrayList<HostToken>();
+		for (HostToken hToken : snapshotTokens) {
+			// use our own host instance, the one from the snapshot only has a name and a rack
+			Host host = hosts.remove(hToken.getHost());
+			if (host != null) {
+				allHostTokens.add(new HostToken(hToken.getToken(), host));
+			}
+		}
+		
+		if (!hosts.isEmpty()) {
+			Logger.info(topologySnapshot + " does not know about hosts " + hosts.keySet() + ", ignoring it");
+			return null;
+		}
+		return allHostTokens;
+	}
+	
+	/**
+	 * Fetches the actual topology and fixes up the tokens of any hosts that moved since the snapshot was taken
+	 */
+	private void reconcileTopology(Map<Host, HostConnectionPool<CL>> hPools) {
+		
+		List<HostToken> allHostTokens = null;
+		
+		for (int attempt = 0; allHostTokens == null; attempt++) {
+			try {
+				allHostTokens = tokenSupplier.getTokens(hPools.keySet());
+			} catch (Exception e) {
+				if (attempt >= 2) {
+					Logger.error("Failed to fetch token map, still routing from " + topologySnapshot, e);
+					return;
+				}
+				Logger.warn("Failed to fetch token map, will retry: " + e.getMessage());
+				try {
+					Thread.sleep(1000L << attempt);
+				} catch (InterruptedException ie) {
+					return;
+				}
+			}
+		}
+		
+		int changed = applyTopology(allHostTokens);
+		
+		Logger.info("Reconciled token map with " + topologySnapshot + ", " + changed + " host token(s) changed");
+		saveTopologySnapshot();
+	}
+	
+	/**
+	 * Fetches the token map for the current hosts and fixes up the tokens of any hosts that moved, dropping their 
+	 * stale tokens from the ring. Meant to be called periodically, see 
+	 * {@link ConnectionPoolConfiguration#getTopologyReconcileFrequencySeconds()}
+	 */
+	public void reconcileTopology() {
+		
+		Set<Host> hosts = new HashSet<Host>(hostPools.keySet());
+		if (hosts.isEmpty()) {
+			return;
+		}
+		
+		int changed = applyTopology(tokenSupplier.getTokens(hosts));
+		if (changed > 0) {
+			Logger.info("Reconciled token map, " + changed + " host token(s) changed");
+			saveTopologySnapshot();
+		}
+	}
+	
+	/**
+	 * Updates the tokens of the hosts that moved, one batch per selector
+	 * @return the no of hosts whose token changed
+	 */
+	private int applyTopology(List<HostToken> allHostTokens) {
+		
+		allHostTokens = withOwnHosts(allHostTokens, hostPools.keySet());
+		
+		Map<HostSelectionStrategy<CL>, Map<HostToken, HostConnectionPool<CL>>> added = new HashMap<HostSelectionStrategy<CL>, Map<HostToken, HostConnectionPool<CL>>>();
+		Map<HostSelectionStrategy<CL>, List<HostToken>> removed = new HashMap<HostSelectionStrategy<CL>, List<HostToken>>();
+		int changed = 0;
+		
+		synchronized (hostTokens) {
+			for (HostToken hToken : allHostTokens) {
+
+				Host host = hToken.getHost();
+				HostConnectionPool<CL> hostPool = hostPools.get(host);
+				HostSelectionStrategy<CL> selector = findSelector(host);
+				if (hostPool == null || selector == null) {
+					continue;
+				}
+
+				HostToken current = hostTokens.get(host);
+				if (current != null && current.getToken().equals(hToken.getToken())) {
+					continue;
+				}
+				if (!added.containsKey(selector)) {
+					added.put(selector, new HashMap<HostToken, HostConnectionPool<CL>>());
+					removed.put(selector, new ArrayList<HostToken>());
+				}
+				// a local host's token that a sidecar owns is not in the ring, and must not take it from the sidecar either
+				if (current != null && getSidecarOwning(current) == null) {
+					removed.get(selector).add(current);
+				}
+				hostTokens.put(host, hToken);
+				if (isSidecar(host)) {
+					updateSidecarTokens();
+				}
+				if (getSidecarOwning(hToken) == null) {
+					added.get(selector).put(hToken, hostPool);
+				}
+				changed++;
+			}
+			
+			for (HostSelectionStrategy<CL> selector : added.keySet()) {
+				selector.updateHostPools(added.get(selector), removed.get(selector));
+			}
+		}
+		return changed;
+	}
+	
+	private void saveTopologySnapshot() {
+		
+		if (topologySnapshot == null) {
+			return;
+		}
+		synchronized (topologySnapshot) {
+			try {
+				topologySnapshot.write(new ArrayList<HostToken>(hostTokens.values()));
+			} catch (Exception e) {
+				Logger.warn("Failed to write " + topologySnapshot + ": " + e.getMessage());
+			}
+		}
 	}
 
 
@@ -330,24 +806,109 @@ public class HostSelectionWithFallback<CL> {
 		if (hostToken == null) {
 			throw new DynoConnectException("Could not find host token for host: " + host);
 		}
+		if (hostToken.getHost() != host) {
+			hostToken = new HostToken(hostToken.getToken(), host);
+		}
 		
-		hostTokens.put(hostToken.getHost(), hostToken);
+		synchronized (hostTokens) {
+			hostTokens.put(host, hostToken);
+			hostPools.put(host, hostPool);
+			if (isSidecar(host)) {
+				updateSidecarTokens();
+			}
+
+			HostSelectionStrategy<CL> selector = findSelector(host);
+			if (selector == localSelector) {
+				addLocalHostPool(hostToken, hostPool);
+			} else if (selector != null) {
+				selector.addHostPool(hostToken, hostPool);
+			} else {
+				addRemoteSelector(hostToken, hostPool);
+			}
+		}
+		saveTopologySnapshot();
+	}
+
+	/**
+	 * Adds the host to the local rack's ring, sorting out a sidecar and a local host that own the same token. 
+	 * The sidecar gets the token either way.
+	 */
+	private void addLocalHostPool(HostToken hostToken, HostConnectionPool<CL> hostPool) {
+		
+		if (localRack != null) {
+			HostToken sidecarToken = getSidecarOwning(hostToken);
+			if (sidecarToken != null) {
+				Logger.info("Sidecar " + sidecarToken.getHost() + " owns token " + hostToken.getToken() + " of local host " 
+						+ hostToken.getHost() + ", leaving the local host out of the ring");
+				return;
+			}
+			
+			HostToken displaced = isSidecar(hostToken.getHost()) ? getDisplacedBy(hostToken) : null;
+			if (displaced != null) {
+				localSelector.removeHostPool(displaced);
+			}
+		}
+		localSelector.addHostPool(hostToken, hostPool);
+	}
+
+	/**
+	 * Adds a selector for a remote rack that we didn't know about at init time, e.g because its hosts were being 
+	 * primed in the background. The selector is only published once it has the host in it. 
+	 */
+	private void addRemoteSelector(HostToken hostToken, HostConnectionPool<CL> hostPool) {
 		
-		HostSelectionStrategy<CL> selector = findSelector(host);
-		if (selector != null) {
-			selector.addHostPool(hostToken, hostPool);
+		String dc = hostToken.getHost().getRack();
+		if (dc == null || dc.isEmpty()) {
+			return;
+		}
+		
+		Map<HostToken, HostConnectionPool<CL>> dcPools = new HashMap<HostToken, HostConnectionPool<CL>>();
+		dcPools.put(hostToken, hostPool);
+
+		HostSelectionStrategy<CL> remoteSelector = selectorFactory.vendPoolSelectionStrategy();
+		remoteSelector.initWithHosts(dcPools);
+		
+		HostSelectionStrategy<CL> prevSelector = remoteDCSelectors.putIfAbsent(dc, remoteSelector);
+		if (prevSelector != null) {
+			prevSelector.addHostPool(hostToken, hostPool);
+		} else {
+			Logger.info("Added selector for remote rack " + dc);
+			remoteDCNames.swapWithList(remoteDCSelectors.keySet());
 		}
 	}
 
 	public void removeHost(Host host, HostConnectionPool<CL> hostPool) {
 
-		HostToken hostToken = hostTokens.remove(host);
-		if (hostToken != null) {
+		synchronized (hostTokens) {
+			HostToken hostToken = hostTokens.get(host);
+			if (hostToken == null) {
+				hostPools.remove(host);
+				return;
+			}
+			HostToken sidecarToken = getSidecarOwning(hostToken);
+			hostTokens.remove(host);
+			hostPools.remove(host);
+			if (isSidecar(host)) {
+				updateSidecarTokens();
+			}
+			
+			// a local host whose token belongs to a sidecar was never in the ring
 			HostSelectionStrategy<CL> selector = findSelector(host);
-			if (selector != null) {
+			if (selector != null && sidecarToken == null) {
 				selector.removeHostPool(hostToken);
 			}
+			
+			if (localRack != null && isSidecar(host)) {
+				// the local host that the sidecar stood in for gets its token back
+				HostToken displaced = getDisplacedBy(hostToken);
+				HostConnectionPool<CL> displacedPool = (displaced != null) ? hostPools.get(displaced.getHost()) : null;
+				if (displacedPool != null) {
+					Logger.info("Sidecar " + host + " removed, routing token " + hostToken.getToken() + " to local host " + displaced.getHost());
+					localSelector.addHostPool(displaced, displacedPool);
+				}
+			}
 		}
+		saveTopologySnapshot();
 	}
 
 	private class DefaultSelectionFactory implements HostSelectionStrategyFactory<CL> {
@@ -391,7 +952,8 @@ public class HostSelectionWithFallback<CL> {
 			if (hToken == null) {
 				continue;
 			}
-			topology.addToken(rack, hToken.getToken(), pool);
+			int trafficPercentage = (healthTracker != null) ? healthTracker.getTrafficPercentage(pool.getHost()) : 100;
+			topology.addToken(rack, hToken.getToken(), pool, trafficPercentage);
 		}
 	}
 }
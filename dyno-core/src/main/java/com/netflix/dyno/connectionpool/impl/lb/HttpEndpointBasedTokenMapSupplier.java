@@ -1,28 +1,47 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
-import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
-import com.netflix.dyno.connectionpool.impl.utils.IOUtilities;
 
+/**
+ * {@link AbstractTokenMapSupplier} that gets the topology from dynomite's cluster_describe http endpoint.
+ * 
+ * A single pooled http client is shared by all requests so that connections to the endpoint are kept alive and 
+ * reused. The topology is streamed straight into {@link HostToken}s, and the last topology seen from each host is 
+ * remembered along with its ETag and checksum. An unchanged topology is not fetched again when the endpoint honours 
+ * the ETag, and is not applied again when only its checksum matches.
+ */
 public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier {
 
 	private static final Logger Logger = LoggerFactory.getLogger(HttpEndpointBasedTokenMapSupplier.class);
@@ -30,27 +49,89 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 	private static final String DefaultServerUrl = "http://{hostname}:8080/REST/v1/admin/cluster_describe";
 	private final String serverUrl;
 	private static final Integer NumRetries = 2;
+	
+	private final PoolingClientConnectionManager connManager;
+	private final DefaultHttpClient client;
+	
+	// last topology seen from each host
+	private final ConcurrentHashMap<String, CachedTopology> lastTopology = new ConcurrentHashMap<String, CachedTopology>();
 
 	public HttpEndpointBasedTokenMapSupplier(int port) {
 		this(DefaultServerUrl, port);
 	}
 
 	public HttpEndpointBasedTokenMapSupplier(String url, int port) {
-        super(port);
+		this(url, port, DefaultFetchParallelism, DefaultCacheTtlMillis);
+	}
+
+	public HttpEndpointBasedTokenMapSupplier(String url, int port, int fetchParallelism, long cacheTtlMillis) {
+		super(port, fetchParallelism, cacheTtlMillis);
 		serverUrl = url;
+		
+		connManager = new PoolingClientConnectionManager();
+		connManager.setMaxTotal(getFetchParallelism() * 2);
+		connManager.setDefaultMaxPerRoute(2);
+		
+		client = new DefaultHttpClient(connManager);
+		client.getParams().setParameter(HttpConnectionParams.CONNECTION_TIMEOUT, 2000);
+		client.getParams().setParameter(HttpConnectionParams.SO_TIMEOUT, 5000);
+		client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(NumRetries, true));
 	}
 
 	@Override
 	public String getTopologyJsonPayload(Set<Host> activeHosts) {
+		return withRetries(activeHosts, new HttpCall<String>() {
+			@Override
+			public String call(String hostname) throws Exception {
+				return getResponseViaHttp(hostname);
+			}
+		});
+	}
+
+	@Override
+	public String getTopologyJsonPayload(String hostname) {
+		try { 
+			return getResponseViaHttp(hostname);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	protected List<HostToken> getTopology(Set<Host> activeHosts) {
+		return withRetries(activeHosts, new HttpCall<List<HostToken>>() {
+			@Override
+			public List<HostToken> call(String hostname) throws Exception {
+				return getTokensViaHttp(hostname);
+			}
+		});
+	}
+
+	@Override
+	protected List<HostToken> getTopology(String hostname) {
+		try { 
+			List<HostToken> hostTokens = getTokensViaHttp(hostname);
+			if (hostTokens == null) {
+				throw new DynoException("Could not get token topology from host " + hostname);
+			}
+			return hostTokens;
+		} catch (DynoException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private <T> T withRetries(Set<Host> activeHosts, HttpCall<T> httpCall) {
 		
 		int count = NumRetries;
 		Exception lastEx = null;
 
-		String response;
+		T response;
         final String randomHost = getRandomHost(activeHosts);
 		do {
 			try {
-                response = getResponseViaHttp(randomHost);
+                response = httpCall.call(randomHost);
                 if (response != null) {
                     return response;
                 }
@@ -72,16 +153,78 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 		}
 	}
 
-	@Override
-	public String getTopologyJsonPayload(String hostname) {
-		try { 
-			return getResponseViaHttp(hostname);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	private String getResponseViaHttp(String hostname) throws Exception {
+		
+		HttpResponse response = execute(hostname, null);
+		HttpEntity entity = response.getEntity();
+		try {
+			if (response.getStatusLine().getStatusCode() != 200) {
+				return null;
+			}
+			return EntityUtils.toString(entity);
+		} finally {
+			// hands the connection back to the pool
+			EntityUtils.consume(entity);
 		}
 	}
 
-	private String getResponseViaHttp(String hostname) throws Exception {
+	/**
+	 * @return the tokens described by the host, the very same list as last time if the topology did not change, 
+	 * or null if the endpoint did not respond with the topology
+	 */
+	private List<HostToken> getTokensViaHttp(String hostname) throws Exception {
+		
+		CachedTopology cached = lastTopology.get(hostname);
+		
+		HttpResponse response = execute(hostname, cached != null ? cached.etag : null);
+		HttpEntity entity = response.getEntity();
+		try {
+			int statusCode = response.getStatusLine().getStatusCode();
+			
+			if (statusCode == 304 && cached != null) {
+				return cached.hostTokens;
+			}
+			if (statusCode != 200 || entity == null) {
+				return null;
+			}
+			
+			// one pass over the body both checksums and parses it
+			Charset charset = ContentType.getOrDefault(entity).getCharset();
+			CheckedInputStream content = new CheckedInputStream(entity.getContent(), new CRC32());
+			Reader reader = new InputStreamReader(content, charset != null ? charset : Charset.forName("UTF-8"));
+			List<HostToken> hostTokens = parseTokenListFromJson(reader);
+			drain(content);
+			long checksum = content.getChecksum().getValue();
+			
+			Header etagHeader = response.getFirstHeader("ETag");
+			String etag = etagHeader != null ? etagHeader.getValue() : null;
+			
+			if (cached != null && cached.checksum == checksum) {
+				if (etag != null && !etag.equals(cached.etag)) {
+					lastTopology.put(hostname, new CachedTopology(etag, checksum, cached.hostTokens));
+				}
+				return cached.hostTokens;
+			}
+			
+			hostTokens = Collections.unmodifiableList(hostTokens);
+			lastTopology.put(hostname, new CachedTopology(etag, checksum, hostTokens));
+			return hostTokens;
+			
+		} finally {
+			EntityUtils.consume(entity);
+		}
+	}
+	
+	/**
+	 * Reads whatever the parser left behind, e.g trailing whitespace, so that it counts towards the checksum
+	 */
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[512];
+		while (in.read(buffer) >= 0) {
+		}
+	}
+	
+	private HttpResponse execute(String hostname, String etag) throws Exception {
 		
 		String url = serverUrl;
 		url = url.replace("{hostname}", hostname);
@@ -90,31 +233,17 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 			Logger.debug("Making http call to url: " + url);
 		}
 		
-		DefaultHttpClient client = new DefaultHttpClient();
-		client.getParams().setParameter(HttpConnectionParams.CONNECTION_TIMEOUT, 2000);
-		client.getParams().setParameter(HttpConnectionParams.SO_TIMEOUT, 5000);
-		
-		DefaultHttpRequestRetryHandler retryhandler = new DefaultHttpRequestRetryHandler(NumRetries, true);
-		client.setHttpRequestRetryHandler(retryhandler);
-		
 		HttpGet get = new HttpGet(url);
+		if (etag != null) {
+			get.setHeader("If-None-Match", etag);
+		}
 		
 		HttpResponse response = client.execute(get);
 		int statusCode = response.getStatusLine().getStatusCode();
-		if (!(statusCode == 200)) {
+		if (statusCode != 200 && statusCode != 304) {
 			Logger.error("Got non 200 status code from " + url);
-			return null;
-		}
-			
-		InputStream in = null;
-		try {
-			in = response.getEntity().getContent();
-			return IOUtilities.toString(in);
-		} finally {
-			if (in != null) {
-				in.close();
-			}
 		}
+		return response;
 	}
 	
 	private String getRandomHost(Set<Host> activeHosts) {
@@ -130,4 +259,21 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 		
 		return hostsUp.get(random.nextInt(hostsUp.size())).getHostName();
 	}
+	
+	private interface HttpCall<T> {
+		T call(String hostname) throws Exception;
+	}
+	
+	private static class CachedTopology {
+		
+		private final String etag;
+		private final long checksum;
+		private final List<HostToken> hostTokens;
+		
+		private CachedTopology(String etag, long checksum, List<HostToken> hostTokens) {
+			this.etag = etag;
+			this.checksum = checksum;
+			this.hostTokens = hostTokens;
+		}
+	}
 }
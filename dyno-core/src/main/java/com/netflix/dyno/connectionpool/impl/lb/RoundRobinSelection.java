@@ -18,8 +18,10 @@ package com.netflix.dyno.connectionpool.impl.lb;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.netflix.dyno.connectionpool.BaseOperation;
@@ -105,16 +107,23 @@ public class RoundRobinSelection<CL> implements HostSelectionStrategy<CL> {
 	}
 	
 	@Override
-	public void initWithHosts(Map<HostToken, HostConnectionPool<CL>> hPools) {
+	public synchronized void initWithHosts(Map<HostToken, HostConnectionPool<CL>> hPools) {
 		
 		for (HostToken token : hPools.keySet()) {
 			tokenPools.put(token.getToken(), hPools.get(token));
 		}
 		circularList.swapWithList(hPools.keySet());
+		
+		// drop whatever isn't in the new list, only once the list no longer refers to it
+		Set<Long> tokens = new HashSet<Long>();
+		for (HostToken token : hPools.keySet()) {
+			tokens.add(token.getToken());
+		}
+		tokenPools.keySet().retainAll(tokens);
 	}
 
 	@Override
-	public boolean addHostPool(HostToken host, HostConnectionPool<CL> hostPool) {
+	public synchronized boolean addHostPool(HostToken host, HostConnectionPool<CL> hostPool) {
 		
 		HostConnectionPool<CL> prevPool = tokenPools.put(host.getToken(), hostPool);
 		if (prevPool == null) {
@@ -126,7 +135,7 @@ public class RoundRobinSelection<CL> implements HostSelectionStrategy<CL> {
 	}
 
 	@Override
-	public boolean removeHostPool(HostToken host) {
+	public synchronized boolean removeHostPool(HostToken host) {
 
 		HostConnectionPool<CL> prevPool = tokenPools.get(host.getToken());
 		if (prevPool != null) {
@@ -138,6 +147,29 @@ public class RoundRobinSelection<CL> implements HostSelectionStrategy<CL> {
 		return prevPool != null;
 	}
 	
+	@Override
+	public synchronized void updateHostPools(Map<HostToken, HostConnectionPool<CL>> added, Collection<HostToken> removed) {
+		
+		List<HostToken> newHostList = new ArrayList<HostToken>(circularList.getEntireList());
+		newHostList.removeAll(removed);
+		
+		Set<Long> addedTokens = new HashSet<Long>();
+		for (Map.Entry<HostToken, HostConnectionPool<CL>> entry : added.entrySet()) {
+			tokenPools.put(entry.getKey().getToken(), entry.getValue());
+			addedTokens.add(entry.getKey().getToken());
+			if (!newHostList.contains(entry.getKey())) {
+				newHostList.add(entry.getKey());
+			}
+		}
+		circularList.swapWithList(newHostList);
+		
+		for (HostToken host : removed) {
+			if (!addedTokens.contains(host.getToken())) {
+				tokenPools.remove(host.getToken());
+			}
+		}
+	}
+	
 	public String toString() {
 		return "RoundRobinSelector: list: " + circularList.toString();
 	}
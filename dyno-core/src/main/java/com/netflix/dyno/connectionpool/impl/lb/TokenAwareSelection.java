@@ -17,9 +17,11 @@ package com.netflix.dyno.connectionpool.impl.lb;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
@@ -28,14 +30,16 @@ import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy;
 import com.netflix.dyno.connectionpool.impl.hash.BinarySearchTokenMapper;
 import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
+import com.netflix.dyno.connectionpool.impl.hash.TokenRing;
 
 /**
  * Simple class that implements {@link HostSelectionStrategy} using the TOKEN AWARE algorithm. 
  * Note that this component needs to be aware of the dynomite ring topology to be able to 
  * successfully map to the correct token owner for any key of an {@link Operation}
  * 
+ * The tokens and their pools are kept together in an immutable {@link Ring} that is swapped out on every change, 
+ * hence a lookup never finds a token without its pool (or vice versa) while hosts are being added or removed. 
+ * 
  * @author poberai
  *
  * @param <CL>
@@ -44,26 +48,21 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 
 	private final BinarySearchTokenMapper tokenMapper;
 
-	private final ConcurrentHashMap<Long, HostConnectionPool<CL>> tokenPools = new ConcurrentHashMap<Long, HostConnectionPool<CL>>();
+	private final AtomicReference<Ring<CL>> ring = new AtomicReference<Ring<CL>>(new Ring<CL>(TokenRing.EMPTY, Collections.<Long, HostConnectionPool<CL>>emptyMap()));
 	
 	public TokenAwareSelection() {
 		
 		this.tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
 	}
 
+	/**
+	 * Replaces the ring with the given host pools
+	 */
 	@Override
-	public void initWithHosts(Map<HostToken, HostConnectionPool<CL>> hPools) {
+	public synchronized void initWithHosts(Map<HostToken, HostConnectionPool<CL>> hPools) {
 		
-		tokenPools.putAll(CollectionUtils.transformMapKeys(hPools, new Transform<HostToken, Long>() {
-
-			@Override
-			public Long get(HostToken x) {
-				return x.getToken();
-			}
-			
-		}));
-
-		this.tokenMapper.initSearchMecahnism(hPools.keySet());
+		Ring<CL> empty = new Ring<CL>(TokenRing.EMPTY, Collections.<Long, HostConnectionPool<CL>>emptyMap());
+		ring.set(empty.update(hPools, Collections.<HostToken>emptyList()));
 	}
 
 	@Override
@@ -71,13 +70,15 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 		
 		String key = op.getKey();
 		Long keyHash = tokenMapper.hash(key);
-		HostToken hToken = tokenMapper.getToken(keyHash);
 		
-		HostConnectionPool<CL> hostPool = null;
-		if (hToken != null) {
-			hostPool = tokenPools.get(hToken.getToken());
+		Ring<CL> current = ring.get();
+		HostToken hToken = current.tokens.getToken(keyHash);
+		if (hToken == null) {
+			throw new NoAvailableHostsException("Token not found for key hash: " + keyHash);
 		}
 		
+		HostConnectionPool<CL> hostPool = current.pools.get(hToken.getToken());
+		
 		if (hostPool == null) {
 			throw new NoAvailableHostsException("Could not find host connection pool for key: " + key + ", hash: " + keyHash);
 		}
@@ -92,12 +93,18 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 	
 	@Override
 	public List<HostConnectionPool<CL>> getOrderedHostPools() {
-		return new ArrayList<HostConnectionPool<CL>>(tokenPools.values());
+		
+		Ring<CL> current = ring.get();
+		List<HostConnectionPool<CL>> pools = new ArrayList<HostConnectionPool<CL>>(current.tokens.size());
+		for (Long token : current.tokens.getTokens()) {
+			pools.add(current.pools.get(token));
+		}
+		return pools;
 	}
 	
 	@Override
 	public HostConnectionPool<CL> getPoolForToken(Long token) {
-		return tokenPools.get(token);
+		return ring.get().pools.get(token);
 	}
 	
 	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end) {
@@ -105,27 +112,28 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 	}
 
 	@Override
-	public boolean addHostPool(HostToken hostToken, HostConnectionPool<CL> hostPool) {
+	public synchronized boolean addHostPool(HostToken hostToken, HostConnectionPool<CL> hostPool) {
 		
-		HostConnectionPool<CL> prevPool = tokenPools.put(hostToken.getToken(), hostPool);
-		if (prevPool == null) {
-			tokenMapper.addHostToken(hostToken);
-			return true;
-		}  else {
-			return false;
-		}
+		Ring<CL> current = ring.get();
+		boolean added = !current.pools.containsKey(hostToken.getToken());
+		ring.set(current.update(Collections.singletonMap(hostToken, hostPool), Collections.<HostToken>emptyList()));
+		return added;
 	}
 
 	@Override
-	public boolean removeHostPool(HostToken hostToken) {
+	public synchronized boolean removeHostPool(HostToken hostToken) {
 
-		HostConnectionPool<CL> prev = tokenPools.get(hostToken.getToken());
-		if (prev != null) {
-			tokenPools.remove(hostToken.getToken());
-			return true;
-		} else {
+		Ring<CL> current = ring.get();
+		if (!current.pools.containsKey(hostToken.getToken())) {
 			return false;
 		}
+		ring.set(current.update(Collections.<HostToken, HostConnectionPool<CL>>emptyMap(), Collections.singletonList(hostToken)));
+		return true;
+	}
+
+	@Override
+	public synchronized void updateHostPools(Map<HostToken, HostConnectionPool<CL>> added, Collection<HostToken> removed) {
+		ring.set(ring.get().update(added, removed));
 	}
 
 	public Long getKeyHash(String key) {
@@ -135,6 +143,32 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 
 	
 	public String toString() {
-		return "TokenAwareSelection: " + tokenMapper.toString();
+		return "TokenAwareSelection: " + ring.get().tokens.toString();
+	}
+	
+	/**
+	 * Immutable view of the ring, i.e the tokens and the pools that own them
+	 */
+	private static class Ring<CL> {
+		
+		private final TokenRing tokens;
+		private final Map<Long, HostConnectionPool<CL>> pools;
+		
+		private Ring(TokenRing tokens, Map<Long, HostConnectionPool<CL>> pools) {
+			this.tokens = tokens;
+			this.pools = pools;
+		}
+		
+		private Ring<CL> update(Map<HostToken, HostConnectionPool<CL>> added, Collection<HostToken> removed) {
+			
+			Map<Long, HostConnectionPool<CL>> newPools = new HashMap<Long, HostConnectionPool<CL>>(pools);
+			for (HostToken hostToken : removed) {
+				newPools.remove(hostToken.getToken());
+			}
+			for (Map.Entry<HostToken, HostConnectionPool<CL>> entry : added.entrySet()) {
+				newPools.put(entry.getKey().getToken(), entry.getValue());
+			}
+			return new Ring<CL>(tokens.update(added.keySet(), removed), Collections.unmodifiableMap(newPools));
+		}
 	}
 }
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+
+/**
+ * Local file that the token topology is persisted to, so that a restarting client can route right away instead of
+ * waiting on the token map supplier. See {@link HostSelectionWithFallback}
+ *
+ * The file is written to a temp file next to it and then moved into place, hence readers never see a partial
+ * snapshot. It is memory mapped for reads and carries a checksum, a missing, stale format or corrupt snapshot
+ * is simply ignored.
+ *
+ * Hosts read from the snapshot only carry their name and rack (which is what {@link Host#equals(Object)} looks at),
+ * callers are expected to map them back to the hosts they know about.
+ */
+public class TopologySnapshotFile {
+
+	private static final Logger Logger = LoggerFactory.getLogger(TopologySnapshotFile.class);
+
+	private static final int Magic = 0x44594e4f; // DYNO
+	private static final int Version = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Path path;
+	private final Path tempPath;
+
+	public TopologySnapshotFile(String file) {
+		this.path = Paths.get(file);
+		this.tempPath = Paths.get(file + ".tmp");
+	}
+
+	/**
+	 * @return the tokens in the snapshot, or null if there is no usable snapshot
+	 */
+	public List<HostToken> read() {
+
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+
+			long size = channel.size();
+			if (size < 20) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			CRC32 crc = new CRC32();
+			for (int i=0; i<size-8; i++) {
+				crc.update(buffer.get(i));
+			}
+			if (crc.getValue() != buffer.getLong((int) size - 8)) {
+				Logger.warn("Ignoring corrupt topology snapshot " + path);
+				return null;
+			}
+
+			if (buffer.getInt() != Magic || buffer.getInt() != Version) {
+				Logger.warn("Ignoring topology snapshot " + path + " with unknown format");
+				return null;
+			}
+
+			int count = buffer.getInt();
+			List<HostToken> hostTokens = new ArrayList<HostToken>(count);
+
+			for (int i=0; i<count; i++) {
+				long token = buffer.getLong();
+				String hostname = readString(buffer);
+				String rack = readString(buffer);
+
+				Host host = new Host(hostname, Status.Up).setRack(rack);
+				hostTokens.add(new HostToken(token, host));
+			}
+			return hostTokens;
+
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (Exception e) {
+			Logger.warn("Failed to read topology snapshot " + path + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Atomically replaces the snapshot with the given tokens
+	 * @param hostTokens
+	 * @throws IOException
+	 */
+	public void write(Collection<HostToken> hostTokens) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(Magic);
+		out.writeInt(Version);
+		out.writeInt(hostTokens.size());
+		for (HostToken hostToken : hostTokens) {
+			out.writeLong(hostToken.getToken());
+			writeString(out, hostToken.getHost().getHostName());
+			writeString(out, hostToken.getHost().getRack());
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		FileOutputStream fos = new FileOutputStream(tempPath.toFile());
+		try {
+			bytes.writeTo(fos);
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+
+		try {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String readString(MappedByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public String toString() {
+		return "TopologySnapshotFile [" + path + "]";
+	}
+}
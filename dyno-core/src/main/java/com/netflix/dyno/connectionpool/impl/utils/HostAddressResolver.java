@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.Host;
+
+/**
+ * Resolves host names off the caller's thread and caches the addresses for a while. {@link Host} only carries an
+ * unresolved address, the connection factories resolve it via {@link #resolve(Host, long)} when they connect.
+ *
+ * Lookups for different hosts run in parallel on a small pool of daemon threads, concurrent lookups of the same
+ * host share one DNS query. Once an address expires it keeps being served while it is refreshed in the background,
+ * hence a slow resolver only ever holds up the first connect to a host.
+ */
+public class HostAddressResolver {
+
+	private static final Logger Logger = LoggerFactory.getLogger(HostAddressResolver.class);
+
+	public static final int DefaultCacheTtlMillis = 30000;
+	public static final int DefaultResolverThreads = 8;
+
+	private static final HostAddressResolver Instance = new HostAddressResolver(DefaultCacheTtlMillis, DefaultResolverThreads);
+
+	public static HostAddressResolver getInstance() {
+		return Instance;
+	}
+
+	private final long cacheTtlMillis;
+	private final ConcurrentHashMap<String, CachedAddress> cache = new ConcurrentHashMap<String, CachedAddress>();
+	private final ConcurrentHashMap<String, FutureTask<InetAddress>> inFlight = new ConcurrentHashMap<String, FutureTask<InetAddress>>();
+	private final ThreadPoolExecutor threadPool;
+
+	public HostAddressResolver(long cacheTtlMillis, int threads) {
+		this.cacheTtlMillis = cacheTtlMillis;
+		this.threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoHostResolver");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.threadPool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Start resolving the given hosts in the background, unless their address is already cached
+	 * @param hosts
+	 */
+	public void prefetch(Collection<Host> hosts) {
+		for (Host host : hosts) {
+			resolveAsync(host.getHostName());
+		}
+	}
+
+	/**
+	 * Resolve the host's address, waiting at most the given time if it isn't cached yet.
+	 * @param host
+	 * @param timeoutMillis
+	 * @return the resolved address, or the unresolved one if the name could not be resolved in time
+	 */
+	public InetSocketAddress resolve(Host host, long timeoutMillis) {
+
+		String hostname = host.getHostName();
+
+		CachedAddress cached = cache.get(hostname);
+		if (cached != null) {
+			if (!cached.isFresh()) {
+				resolveAsync(hostname);
+			}
+			return new InetSocketAddress(cached.address, host.getPort());
+		}
+
+		try {
+			InetAddress address = resolveAsync(hostname).get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return new InetSocketAddress(address, host.getPort());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Logger.warn("Failed to resolve " + hostname + ": " + e.getCause().getMessage());
+		} catch (TimeoutException e) {
+			Logger.warn("Timed out resolving " + hostname + " after " + timeoutMillis + " ms");
+		}
+		return InetSocketAddress.createUnresolved(hostname, host.getPort());
+	}
+
+	/**
+	 * @param hostname
+	 * @return a future for the address of the host, shared with any lookup of the host that is already in flight. 
+	 * The future is already done if the address is cached.
+	 */
+	public Future<InetAddress> resolveAsync(final String hostname) {
+
+		final CachedAddress cached = cache.get(hostname);
+		if (cached != null && cached.isFresh()) {
+			FutureTask<InetAddress> done = new FutureTask<InetAddress>(new Callable<InetAddress>() {
+				@Override
+				public InetAddress call() throws Exception {
+					return cached.address;
+				}
+			});
+			done.run();
+			return done;
+		}
+
+		FutureTask<InetAddress> task = inFlight.get(hostname);
+		if (task != null) {
+			return task;
+		}
+
+		task = new FutureTask<InetAddress>(new Callable<InetAddress>() {
+			@Override
+			public InetAddress call() throws Exception {
+				try {
+					InetAddress address = lookup(hostname);
+					cache.put(hostname, new CachedAddress(address));
+					return address;
+				} finally {
+					inFlight.remove(hostname);
+				}
+			}
+		});
+
+		FutureTask<InetAddress> prev = inFlight.putIfAbsent(hostname, task);
+		if (prev != null) {
+			return prev;
+		}
+		try {
+			threadPool.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.run();
+		}
+		return task;
+	}
+
+	/**
+	 * The actual DNS lookup
+	 * @param hostname
+	 * @return InetAddress
+	 * @throws UnknownHostException
+	 */
+	protected InetAddress lookup(String hostname) throws UnknownHostException {
+		return InetAddress.getByName(hostname);
+	}
+
+	private class CachedAddress {
+
+		private final InetAddress address;
+		private final long timestamp = System.currentTimeMillis();
+
+		private CachedAddress(InetAddress address) {
+			this.address = address;
+		}
+
+		private boolean isFresh() {
+			return System.currentTimeMillis() - timestamp < cacheTtlMillis;
+		}
+	}
+}
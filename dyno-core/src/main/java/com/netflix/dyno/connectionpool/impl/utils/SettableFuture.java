@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.ListenableFuture;
+
+/**
+ * A {@link ListenableFuture} that is completed by whoever produces the value, via {@link #set(Object)} or
+ * {@link #setException(Throwable)}. Only the first completion counts.
+ *
+ * Listeners run once the future completes, on the given executor. Listeners added after that run right away.
+ *
+ * @param <V>
+ */
+public class SettableFuture<V> implements ListenableFuture<V> {
+
+	private static final Logger Logger = LoggerFactory.getLogger(SettableFuture.class);
+
+	/**
+	 * Runs listeners on the thread that completes the future. Only meant for listeners that are quick.
+	 */
+	public static final Executor DirectExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private final CountDownLatch latch = new CountDownLatch(1);
+	private final List<Listener> listeners = new ArrayList<Listener>();
+
+	private boolean done = false;
+	private volatile boolean cancelled = false;
+	private volatile V value;
+	private volatile Throwable exception;
+
+	/**
+	 * @param v
+	 * @return true if this completed the future
+	 */
+	public boolean set(V v) {
+		synchronized (listeners) {
+			if (done) {
+				return false;
+			}
+			value = v;
+			done = true;
+		}
+		complete();
+		return true;
+	}
+
+	/**
+	 * @param t
+	 * @return true if this completed the future
+	 */
+	public boolean setException(Throwable t) {
+		synchronized (listeners) {
+			if (done) {
+				return false;
+			}
+			exception = t;
+			done = true;
+		}
+		complete();
+		return true;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (listeners) {
+			if (done) {
+				return false;
+			}
+			cancelled = true;
+			done = true;
+		}
+		complete();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return latch.getCount() == 0;
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return getValue();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!latch.await(timeout, unit)) {
+			throw new TimeoutException("Timed out after " + timeout + " " + unit);
+		}
+		return getValue();
+	}
+
+	@Override
+	public void addListener(Runnable listener, Executor executor) {
+		synchronized (listeners) {
+			if (latch.getCount() > 0) {
+				listeners.add(new Listener(listener, executor));
+				return;
+			}
+		}
+		new Listener(listener, executor).run();
+	}
+
+	private V getValue() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (exception != null) {
+			throw new ExecutionException(exception);
+		}
+		return value;
+	}
+
+	private void complete() {
+		List<Listener> toRun;
+		synchronized (listeners) {
+			latch.countDown();
+			toRun = new ArrayList<Listener>(listeners);
+			listeners.clear();
+		}
+		for (Listener listener : toRun) {
+			listener.run();
+		}
+	}
+
+	private class Listener {
+
+		private final Runnable runnable;
+		private final Executor executor;
+
+		private Listener(Runnable runnable, Executor executor) {
+			this.runnable = runnable;
+			this.executor = executor;
+		}
+
+		private void run() {
+			try {
+				executor.execute(runnable);
+			} catch (RuntimeException e) {
+				Logger.warn("Listener failed for future: " + e.getMessage());
+			}
+		}
+	}
+}
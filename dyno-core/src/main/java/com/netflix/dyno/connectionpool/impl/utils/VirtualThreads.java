@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executors that start a virtual thread per task. The jdk only has virtual threads from java 21 on, hence they are
+ * looked up reflectively and {@link #isSupported()} is false on older runtimes.
+ *
+ * Virtual threads suit the blocking parts of the client: waiting for a pooled connection parks on the pool's
+ * queue, and the socket reads of the clients park as well. Neither happens while holding a monitor, so the
+ * waiting virtual threads don't pin their carrier threads.
+ */
+public class VirtualThreads {
+
+	private static final Logger Logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final Method OfVirtual;
+	private static final Method BuilderName;
+	private static final Method BuilderFactory;
+	private static final Method NewThreadPerTaskExecutor;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newExecutor = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (Exception e) {
+			ofVirtual = null;
+		}
+		OfVirtual = ofVirtual;
+		BuilderName = name;
+		BuilderFactory = factory;
+		NewThreadPerTaskExecutor = newExecutor;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return whether the runtime has virtual threads
+	 */
+	public static boolean isSupported() {
+		return OfVirtual != null;
+	}
+
+	/**
+	 * @param namePrefix the threads are named this followed by a counter
+	 * @return a factory for virtual threads, or null when the runtime doesn't have them
+	 */
+	public static ThreadFactory newThreadFactory(String namePrefix) {
+
+		if (!isSupported()) {
+			return null;
+		}
+		try {
+			Object builder = OfVirtual.invoke(null);
+			builder = BuilderName.invoke(builder, namePrefix, 0L);
+			return (ThreadFactory) BuilderFactory.invoke(builder);
+		} catch (Exception e) {
+			Logger.warn("Failed to create virtual thread factory: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param namePrefix the threads are named this followed by a counter
+	 * @return an executor that starts a virtual thread per task, or null when the runtime doesn't have them
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+
+		ThreadFactory threadFactory = newThreadFactory(namePrefix);
+		if (threadFactory == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) NewThreadPerTaskExecutor.invoke(null, threadFactory);
+		} catch (Exception e) {
+			Logger.warn("Failed to create virtual thread executor: " + e.getMessage());
+			return null;
+		}
+	}
+}
@@ -2,9 +2,14 @@ package com.netflix.dyno.connectionpool.impl;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -14,6 +19,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionContext;
 import com.netflix.dyno.connectionpool.ConnectionFactory;
@@ -24,20 +30,25 @@ import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.HostConnectionStats;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier;
+import com.netflix.dyno.connectionpool.IncrementalHostSupplier.HostChangeListener;
 import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.Operation;
 import com.netflix.dyno.connectionpool.OperationResult;
 import com.netflix.dyno.connectionpool.RetryPolicy;
 import com.netflix.dyno.connectionpool.RetryPolicy.RetryPolicyFactory;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
+import com.netflix.dyno.connectionpool.exception.ConcurrencyLimitExceededException;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
 import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.ConcurrencyLimitConfigImpl;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.ErrorRateMonitorConfigImpl;
 import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.utils.SettableFuture;
 
 public class ConnectionPoolImplTest {
 	
@@ -128,6 +139,7 @@ public class ConnectionPoolImplTest {
 	private Host host1 = new Host("host1", 8080, Status.Up).setRack("localDC");
 	private Host host2 = new Host("host2", 8080, Status.Up).setRack("localDC");
 	private Host host3 = new Host("host3", 8080, Status.Up).setRack("localDC");
+	private Host host4 = new Host("host4", 8080, Status.Up).setRack("remoteDC");
 
     private final List<Host> hostSupplierHosts = new ArrayList<Host>();
 	
@@ -228,6 +240,7 @@ public class ConnectionPoolImplTest {
         tokenMap.put(host1, new HostToken(309687905L, host1));
         tokenMap.put(host2, new HostToken(1383429731L, host2));
         tokenMap.put(host3, new HostToken(2457171554L, host3));
+        tokenMap.put(host4, new HostToken(309687905L, host4));
 
 		return new TokenMapSupplier() {
 
@@ -254,6 +267,167 @@ public class ConnectionPoolImplTest {
 		};
 	}
 	
+	@Test
+	public void testProgressiveStartup() throws Exception {
+		
+		cpConfig.setProgressiveStartup(true);
+		
+		final CountDownLatch remoteLatch = new CountDownLatch(1);
+		
+		ConnectionFactory<TestClient> slowRemoteFactory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor observor) throws DynoConnectException, ThrottledException {
+				if (pool.getHost().equals(host4)) {
+					try {
+						remoteLatch.await();
+					} catch (InterruptedException e) {
+						throw new DynoConnectException(e);
+					}
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(slowRemoteFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		hostSupplierHosts.add(host4);
+		
+		try {
+			// does not wait on the remote rack
+			Assert.assertTrue(pool.start().get(1, TimeUnit.SECONDS));
+			Assert.assertTrue(pool.isHostUp(host1));
+			Assert.assertTrue(pool.isHostUp(host2));
+			Assert.assertFalse(pool.isHostUp(host4));
+			Assert.assertFalse(pool.getTopology().getAllTokens().containsKey("remoteDC"));
+
+			remoteLatch.countDown();
+			
+			for (int i=0; i<100 && !pool.getTopology().getAllTokens().containsKey("remoteDC"); i++) {
+				Thread.sleep(20);
+			}
+			Assert.assertTrue(pool.isHostUp(host4));
+			Assert.assertEquals(host4, pool.getTopology().getAllTokens().get("remoteDC").get(0).getHostPool().getHost());
+		} finally {
+			remoteLatch.countDown();
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentHostUpdates() throws Exception {
+		
+		final CountDownLatch primingStarted = new CountDownLatch(2);
+		final CountDownLatch primingLatch = new CountDownLatch(1);
+		final Set<Host> priming = Collections.newSetFromMap(new ConcurrentHashMap<Host, Boolean>());
+		
+		ConnectionFactory<TestClient> slowFactory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor observor) throws DynoConnectException, ThrottledException {
+				Host host = pool.getHost();
+				if (host.equals(host2) || host.equals(host3)) {
+					if (priming.add(host)) {
+						primingStarted.countDown();
+					}
+					try {
+						primingLatch.await();
+					} catch (InterruptedException e) {
+						throw new DynoConnectException(e);
+					}
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(slowFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		
+		try {
+			pool.start().get(1, TimeUnit.SECONDS);
+			
+			// does not wait on the hosts being primed
+			Future<Boolean> updates = pool.updateHosts(Arrays.asList(host2, host3), Collections.<Host>emptyList());
+			Assert.assertFalse(updates.isDone());
+
+			// both hosts are primed at the same time, and are not published until they are primed
+			Assert.assertTrue(primingStarted.await(1, TimeUnit.SECONDS));
+			Assert.assertFalse(pool.isHostUp(host2));
+			Assert.assertFalse(pool.isHostUp(host3));
+			
+			// hosts that are still being updated are not queued up again
+			Assert.assertFalse(pool.updateHosts(Arrays.asList(host2, host3), Collections.<Host>emptyList()).get(1, TimeUnit.SECONDS));
+
+			primingLatch.countDown();
+			
+			Assert.assertTrue(updates.get(1, TimeUnit.SECONDS));
+			Assert.assertTrue(pool.isHostUp(host2));
+			Assert.assertTrue(pool.isHostUp(host3));
+			
+			Assert.assertTrue(pool.updateHosts(Collections.<Host>emptyList(), Arrays.asList(host3)).get(1, TimeUnit.SECONDS));
+			Assert.assertFalse(pool.isHostUp(host3));
+		} finally {
+			primingLatch.countDown();
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testIncrementalHostSupplier() throws Exception {
+		
+		final AtomicReference<HostChangeListener> listener = new AtomicReference<HostChangeListener>();
+		cpConfig.withHostSupplier(new IncrementalHostSupplier() {
+			
+			@Override
+			public Collection<Host> getHosts() {
+				return hostSupplierHosts;
+			}
+
+			@Override
+			public void addHostChangeListener(HostChangeListener l) {
+				listener.set(l);
+			}
+
+			@Override
+			public void removeHostChangeListener(HostChangeListener l) {
+				listener.compareAndSet(l, null);
+			}
+		});
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		
+		try {
+			pool.start().get(1, TimeUnit.SECONDS);
+			Assert.assertNotNull(listener.get());
+			
+			// applied right away, no need to wait for the hosts to be polled
+			listener.get().onHostsAdded(Arrays.asList(new Host("host3", 8080, Status.Up).setRack("localDC")));
+			for (int i=0; i<100 && !pool.isHostUp(host3); i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(pool.isHostUp(host3));
+			
+			listener.get().onHostsStatusChanged(Arrays.asList(new Host("host2", 8080, Status.Down).setRack("localDC")));
+			for (int i=0; i<100 && pool.isHostUp(host2); i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertFalse(pool.isHostUp(host2));
+			
+			listener.get().onHostsRemoved(Arrays.asList(host3));
+			for (int i=0; i<100 && pool.isHostUp(host3); i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertFalse(pool.isHostUp(host3));
+			Assert.assertTrue(pool.isHostUp(host1));
+		} finally {
+			pool.shutdown();
+		}
+		Assert.assertNull(listener.get());
+	}
+	
 	@Test
 	public void testAddingNewHosts() throws Exception {
 		
@@ -511,6 +685,549 @@ public class ConnectionPoolImplTest {
 		}
 	}
 
+	@Test
+	public void testRetriesStopAtDeadline() throws Exception {
+
+		final ConnectionFactory<TestClient> slowConnectionFactory = new ConnectionFactory<TestClient>() {
+			@Override
+			public Connection<TestClient> createConnection(final HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return new TestConnection(pool) {
+					@Override
+					public <R> OperationResult<R> execute(Operation<TestClient, R> op) throws DynoException {
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException e) {
+						}
+						throw new DynoException("Fail for slow host");
+					}
+				};
+			}
+		};
+
+		final RetryNTimes retry = new RetryNTimes(100, false);
+		final RetryPolicyFactory rFactory = new RetryNTimes.RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return retry;
+			}
+		};
+
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(slowConnectionFactory,
+				cpConfig.setRetryPolicyFactory(rFactory).setOperationDeadlineMillis(200), cpMonitor);
+		hostSupplierHosts.add(host1);
+
+		pool.start();
+
+		long start = System.currentTimeMillis();
+		try {
+			executeTestClientOperation(pool, null);
+			Assert.fail("Test failed: expected TimeoutException");
+		} catch (com.netflix.dyno.connectionpool.exception.TimeoutException e) {
+			long elapsed = System.currentTimeMillis() - start;
+			Assert.assertTrue("Elapsed: " + elapsed, elapsed < 1000);
+			Assert.assertTrue("Retry: " + retry.getAttemptCount(), retry.getAttemptCount() < 10);
+			Assert.assertTrue(e.getCause() instanceof DynoException);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static abstract class KeyOperation implements Operation<TestClient, Integer>, BaseOperation.Idempotent {
+
+		private final String key;
+		private final boolean idempotent;
+
+		private KeyOperation(String key, boolean idempotent) {
+			this.key = key;
+			this.idempotent = idempotent;
+		}
+
+		@Override
+		public String getName() {
+			return "KeyOperation";
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public boolean isIdempotent() {
+			return idempotent;
+		}
+	}
+
+	@Test
+	public void testRetryGoesToReplicaInOtherRack() throws Exception {
+
+		final ConnectionFactory<TestClient> badConnectionFactory = new ConnectionFactory<TestClient>() {
+			@Override
+			public Connection<TestClient> createConnection(final HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return new TestConnection(pool) {
+					@Override
+					public <R> OperationResult<R> execute(Operation<TestClient, R> op) throws DynoException {
+						if (pool.getHost().getHostName().equals("host1")) {
+							throw new DynoException("Fail for bad host");
+						}
+						return super.execute(op);
+					}
+				};
+			}
+		};
+
+		cpConfig.setLoadBalancingStrategy(LoadBalancingStrategy.TokenAware).setRetryPolicyFactory(new RetryNTimes.RetryFactory(1, true));
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(badConnectionFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		hostSupplierHosts.add(host3);
+		hostSupplierHosts.add(host4);
+
+		pool.start();
+
+		try {
+			int hops = 0;
+			int nonIdempotentFailures = 0;
+			for (int i=0; i<100; i++) {
+				OperationResult<Integer> result = pool.executeWithFailover(new KeyOperation("key" + i, true) {
+					@Override
+					public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+						return 1;
+					}
+				});
+				if (!result.getFailedHosts().isEmpty()) {
+					hops++;
+					Assert.assertEquals(Collections.singletonList(host1), result.getFailedHosts());
+					Assert.assertEquals(host4, result.getNode());
+					Assert.assertEquals(2, result.getAttemptsCount());
+				} else {
+					Assert.assertNotEquals(host1, result.getNode());
+				}
+
+				try {
+					pool.executeWithFailover(new KeyOperation("key" + i, false) {
+						@Override
+						public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+							return 1;
+						}
+					});
+				} catch (DynoException e) {
+					nonIdempotentFailures++;
+				}
+			}
+			Assert.assertTrue("Hops: " + hops, hops > 0);
+			// the ops that are not idempotent fail instead of going to the replica
+			Assert.assertEquals(hops, nonIdempotentFailures);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExecuteWithRingOnVirtualThreads() throws Exception {
+		
+		// falls back to platform threads on runtimes without virtual threads
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig.setUseVirtualThreads(true), cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		hostSupplierHosts.add(host3);
+
+		pool.start();
+		
+		try {
+			Collection<OperationResult<Integer>> results = pool.executeWithRing(new Operation<TestClient, Integer>() {
+
+				@Override
+				public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+					return client.ops.incrementAndGet();
+				}
+
+				@Override
+				public String getName() {
+					return "TestRingOperation";
+				}
+
+				@Override
+				public String getKey() {
+					return null;
+				}
+			});
+			
+			Set<Host> nodes = new HashSet<Host>();
+			for (OperationResult<Integer> result : results) {
+				nodes.add(result.getNode());
+			}
+			Assert.assertEquals(new HashSet<Host>(Arrays.asList(host1, host2, host3)), nodes);
+			Assert.assertEquals(3, client.ops.get());
+			Assert.assertEquals(cpMonitor.getConnectionBorrowedCount(), cpMonitor.getConnectionReturnedCount());
+			
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExecuteWithRingReturnsConnectionsOnceAfterRetries() throws Exception {
+		
+		final RetryPolicyFactory rFactory = new RetryNTimes.RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return new RetryNTimes(2, false);
+			}
+		};
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig.setRetryPolicyFactory(rFactory), cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+
+		pool.start();
+		
+		try {
+			pool.executeWithRing(new Operation<TestClient, Integer>() {
+
+				@Override
+				public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+					client.ops.incrementAndGet();
+					throw new DynoException("Fail on every attempt");
+				}
+
+				@Override
+				public String getName() {
+					return "TestRingOperation";
+				}
+
+				@Override
+				public String getKey() {
+					return null;
+				}
+			});
+			Assert.fail("Test failed: expected DynoException");
+			
+		} catch (DynoException e) {
+			// every connection was tried 3 times, but only borrowed once
+			Assert.assertEquals(6, client.ops.get());
+			Assert.assertEquals(2, cpMonitor.getConnectionBorrowedCount());
+			Assert.assertEquals(2, cpMonitor.getConnectionReturnedCount());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExecuteWithFailoverAsync() throws Exception {
+		
+		// every other attempt fails
+		final AtomicInteger attempts = new AtomicInteger(0);
+		final ConnectionFactory<TestClient> flakyConnectionFactory = new ConnectionFactory<TestClient>() {
+			@Override
+			public Connection<TestClient> createConnection(final HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return new TestConnection(pool) {
+					@Override
+					public <R> OperationResult<R> execute(Operation<TestClient, R> op) throws DynoException {
+						if (attempts.incrementAndGet() % 2 == 1) {
+							throw new DynoException("Fail for flaky host");
+						}
+						return super.execute(op);
+					}
+				};
+			}
+		};
+		
+		final AtomicReference<RetryNTimes> retry = new AtomicReference<RetryNTimes>();
+		final RetryPolicyFactory rFactory = new RetryNTimes.RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				retry.set(new RetryNTimes(1, false));
+				return retry.get();
+			}
+		};
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(flakyConnectionFactory, 
+				cpConfig.setRetryPolicyFactory(rFactory).setMaxAsyncWorkerThreads(1), cpMonitor);
+		hostSupplierHosts.add(host1);
+
+		pool.start();
+		
+		Operation<TestClient, Integer> op = new Operation<TestClient, Integer>() {
+
+			@Override
+			public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+				client.ops.incrementAndGet();
+				return 1;
+			}
+
+			@Override
+			public String getName() {
+				return "TestOperation";
+			}
+
+			@Override
+			public String getKey() {
+				return "TestOperation";
+			}
+		};
+		
+		try { 
+			final CountDownLatch completed = new CountDownLatch(1);
+			ListenableFuture<OperationResult<Integer>> future = pool.executeWithFailoverAsync(op);
+			future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					completed.countDown();
+				}
+			}, SettableFuture.DirectExecutor);
+			
+			Assert.assertTrue(completed.await(1, TimeUnit.SECONDS));
+			Assert.assertEquals(1, future.get().getResult().intValue());
+			Assert.assertEquals(2, retry.get().getAttemptCount());
+			Assert.assertEquals(1, client.ops.get());
+			Assert.assertEquals(1, cpMonitor.getOperationSuccessCount());
+			Assert.assertEquals(1, cpMonitor.getOperationFailureCount());
+			
+			// with no retries left the future completes with the failure
+			cpConfig.setRetryPolicyFactory(new RetryPolicyFactory() {
+				@Override
+				public RetryPolicy getRetryPolicy() {
+					return new RunOnce();
+				}
+			});
+			try {
+				pool.executeWithFailoverAsync(op).get(1, TimeUnit.SECONDS);
+				Assert.fail("Test failed: expected DynoException");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof DynoException);
+			}
+			Assert.assertEquals(1, client.ops.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExecuteAsyncWithRetries() throws Exception {
+		
+		// the first two attempts fail once the "request" is done, on another thread
+		final AtomicInteger attempts = new AtomicInteger(0);
+		final ScheduledExecutorService ioThread = Executors.newSingleThreadScheduledExecutor();
+		final ConnectionFactory<TestClient> asyncConnectionFactory = new ConnectionFactory<TestClient>() {
+			@Override
+			public Connection<TestClient> createConnection(final HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return new TestConnection(pool) {
+					@Override
+					public <R> ListenableFuture<OperationResult<R>> executeAsync(final AsyncOperation<TestClient, R> op) throws DynoException {
+						final boolean fail = attempts.incrementAndGet() <= 2;
+						final SettableFuture<R> response = new SettableFuture<R>();
+						ioThread.schedule(new Runnable() {
+							@Override
+							public void run() {
+								if (fail) {
+									response.setException(new DynoConnectException("Fail for bad host"));
+									return;
+								}
+								try {
+									response.set(op.executeAsync(client).get());
+								} catch (Exception e) {
+									response.setException(e.getCause());
+								}
+							}
+						}, 10, TimeUnit.MILLISECONDS);
+						return new FutureOperationalResultImpl<R>(op.getName(), response, System.currentTimeMillis(), null);
+					}
+				};
+			}
+		};
+		
+		final RetryPolicyFactory rFactory = new RetryNTimes.RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return new RetryNTimes(2, false);
+			}
+		};
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(asyncConnectionFactory, cpConfig.setRetryPolicyFactory(rFactory), cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+
+		pool.start();
+		
+		final AtomicBoolean appError = new AtomicBoolean(false);
+		AsyncOperation<TestClient, Integer> op = new AsyncOperation<TestClient, Integer>() {
+
+			@Override
+			public ListenableFuture<Integer> executeAsync(TestClient client) throws DynoException {
+				SettableFuture<Integer> result = new SettableFuture<Integer>();
+				if (appError.get()) {
+					result.setException(new IllegalStateException("Bad request"));
+				} else {
+					result.set(client.ops.incrementAndGet());
+				}
+				return result;
+			}
+
+			@Override
+			public String getName() {
+				return "TestOperation";
+			}
+
+			@Override
+			public String getKey() {
+				return "TestOperation";
+			}
+		};
+		
+		try { 
+			OperationResult<Integer> result = pool.executeAsync(op).get(1, TimeUnit.SECONDS);
+			Assert.assertEquals(1, result.getResult().intValue());
+			Assert.assertEquals(3, attempts.get());
+			Assert.assertEquals(2, cpMonitor.getFailoverCount());
+			Assert.assertEquals(1, cpMonitor.getOperationSuccessCount());
+			
+			// application errors don't fail over
+			appError.set(true);
+			try {
+				pool.executeAsync(op).get(1, TimeUnit.SECONDS);
+				Assert.fail("Test failed: expected IllegalStateException");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+			Assert.assertEquals(4, attempts.get());
+		} finally {
+			pool.shutdown();
+			ioThread.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPermitsAreReleasedOnErrors() throws Exception {
+		
+		// a leaked permit would leave the host with no room at all
+		cpConfig.withConcurrencyLimitConfig(new ConcurrencyLimitConfigImpl(1, 1, 1, 90, 200, 30));
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+
+		pool.start();
+		
+		AsyncOperation<TestClient, Integer> asyncOp = new AsyncOperation<TestClient, Integer>() {
+
+			@Override
+			public ListenableFuture<Integer> executeAsync(TestClient client) throws DynoException {
+				return null;
+			}
+
+			@Override
+			public String getName() {
+				return "TestOperation";
+			}
+
+			@Override
+			public String getKey() {
+				return "TestOperation";
+			}
+		};
+		
+		try {
+			// the test connection can't run async operations
+			try {
+				pool.executeAsync(asyncOp).get(1, TimeUnit.SECONDS);
+				Assert.fail("Test failed: expected RuntimeException");
+			} catch (ExecutionException e) {
+				Assert.assertEquals("Not Implemented", e.getCause().getMessage());
+			}
+			Assert.assertEquals(0, pool.getCPHealthTracker().getInFlight(host1));
+			
+			try {
+				executeTestClientOperation(pool, new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						throw new IllegalStateException("Bad request");
+					}
+				});
+				Assert.fail("Test failed: expected RuntimeException");
+			} catch (RuntimeException e) {
+			}
+			Assert.assertEquals(0, pool.getCPHealthTracker().getInFlight(host1));
+			
+			executeTestClientOperation(pool);
+			Assert.assertEquals(1, client.ops.get());
+			Assert.assertEquals(0, pool.getCPHealthTracker().getInFlight(host1));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrencyLimitSpillsToReplica() throws Exception {
+		
+		cpConfig.setLoadBalancingStrategy(LoadBalancingStrategy.TokenAware).setRetryPolicyFactory(new RetryNTimes.RetryFactory(1, true));
+		cpConfig.withConcurrencyLimitConfig(new ConcurrencyLimitConfigImpl(1, 1, 1, 90, 200, 30));
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		// host4 is the replica of host1 in the other rack
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host4);
+
+		pool.start();
+		
+		final CountDownLatch running = new CountDownLatch(2);
+		final CountDownLatch done = new CountDownLatch(1);
+		final KeyOperation slowOp = new KeyOperation("key1", true) {
+			@Override
+			public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+				running.countDown();
+				try {
+					done.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 1;
+			}
+		};
+		
+		ExecutorService threadPool = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<OperationResult<Integer>>> futures = new ArrayList<Future<OperationResult<Integer>>>();
+			for (int i=0; i<2; i++) {
+				futures.add(threadPool.submit(new Callable<OperationResult<Integer>>() {
+					@Override
+					public OperationResult<Integer> call() throws Exception {
+						return pool.executeWithFailover(slowOp);
+					}
+				}));
+			}
+			Assert.assertTrue(running.await(1, TimeUnit.SECONDS));
+			
+			// both hosts are at their limit, the operation is turned away rather than wait
+			try {
+				pool.executeWithFailover(new KeyOperation("key1", true) {
+					@Override
+					public Integer execute(TestClient client, ConnectionContext state) throws DynoException {
+						return 1;
+					}
+				});
+				Assert.fail("Test failed: expected ConcurrencyLimitExceededException");
+			} catch (ConcurrencyLimitExceededException e) {
+			}
+			
+			done.countDown();
+			Set<Host> nodes = new HashSet<Host>();
+			for (Future<OperationResult<Integer>> future : futures) {
+				OperationResult<Integer> result = future.get(1, TimeUnit.SECONDS);
+				Assert.assertTrue(result.getFailedHosts().isEmpty());
+				nodes.add(result.getNode());
+			}
+			// the second operation spilled over to the replica
+			Assert.assertEquals(new HashSet<Host>(Arrays.asList(host1, host4)), nodes);
+			
+			Assert.assertEquals(0, pool.getCPHealthTracker().getInFlight(host1));
+			Assert.assertEquals(0, pool.getCPHealthTracker().getInFlight(host4));
+			Assert.assertEquals(1, cpMonitor.getHostStats().get(host1).getConcurrencyLimit());
+			Assert.assertEquals(1, cpMonitor.getHostStats().get(host4).getConcurrencyLimit());
+		} finally {
+			done.countDown();
+			threadPool.shutdownNow();
+			pool.shutdown();
+		}
+	}
+
     @Test(expected = NoAvailableHostsException.class)
     public void testHostsDownDuringStartup() {
 
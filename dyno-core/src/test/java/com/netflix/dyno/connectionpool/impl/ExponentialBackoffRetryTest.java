@@ -0,0 +1,103 @@
+package com.netflix.dyno.connectionpool.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.PoolOfflineException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+
+public class ExponentialBackoffRetryTest {
+
+	@Test
+	public void testNRetries() throws Exception {
+
+		ExponentialBackoffRetry retry = new ExponentialBackoffRetry(3, 10, 100, true, null);
+
+		RuntimeException e = new RuntimeException("failure");
+		retry.begin();
+
+		Assert.assertTrue(retry.allowRetry());
+
+		retry.failure(e);
+		Assert.assertTrue(retry.allowRetry());
+		retry.failure(e);
+		Assert.assertTrue(retry.allowRetry());
+		retry.failure(e);
+		Assert.assertTrue(retry.allowRetry());
+
+		retry.failure(e);
+		Assert.assertFalse(retry.allowRetry());
+
+		Assert.assertEquals(4, retry.getAttemptCount());
+	}
+
+	@Test
+	public void testBackoffByFailure() throws Exception {
+
+		ExponentialBackoffRetry retry = new ExponentialBackoffRetry(10, 100, 250, true, null);
+
+		retry.failure(new PoolOfflineException(null, "offline"));
+		Assert.assertTrue(retry.allowRetry());
+		Assert.assertEquals(0, retry.getBackoffMillis());
+
+		long maxSeen = 0;
+		for (int i=0; i<5; i++) {
+			retry.failure(new ThrottledException("throttled"));
+			Assert.assertTrue(retry.allowRetry());
+			Assert.assertTrue(retry.getBackoffMillis() < 250);
+			maxSeen = Math.max(maxSeen, retry.getBackoffMillis());
+		}
+		Assert.assertTrue(maxSeen > 0);
+
+		retry.failure(new BadRequestException());
+		Assert.assertFalse(retry.allowRetry());
+	}
+
+	@Test
+	public void testRetryBudget() throws Exception {
+
+		// 10% of successes, and no retries otherwise
+		RetryBudget budget = new RetryBudget(10, 10, 0);
+		ExponentialBackoffRetry.RetryFactory factory = new ExponentialBackoffRetry.RetryFactory(3, 0, 0, true, budget);
+
+		for (int i=0; i<50; i++) {
+			factory.getRetryPolicy().success();
+		}
+
+		int retries = 0;
+		for (int i=0; i<20; i++) {
+			ExponentialBackoffRetry retry = (ExponentialBackoffRetry) factory.getRetryPolicy();
+			retry.failure(new PoolOfflineException(null, "offline"));
+			if (retry.allowRetry()) {
+				retries++;
+			}
+		}
+		Assert.assertEquals(5, retries);
+	}
+
+	@Test
+	public void testRetryBudgetOnlySpentOnRetries() throws Exception {
+
+		RetryBudget budget = new RetryBudget(10, 10, 0);
+		ExponentialBackoffRetry.RetryFactory factory = new ExponentialBackoffRetry.RetryFactory(3, 0, 0, true, budget);
+
+		for (int i=0; i<10; i++) {
+			factory.getRetryPolicy().success();
+		}
+
+		// failures that the caller doesn't retry, e.g of non idempotent operations, leave the budget alone
+		for (int i=0; i<5; i++) {
+			factory.getRetryPolicy().failure(new PoolOfflineException(null, "offline"));
+		}
+
+		ExponentialBackoffRetry retry = (ExponentialBackoffRetry) factory.getRetryPolicy();
+		retry.failure(new PoolOfflineException(null, "offline"));
+		Assert.assertTrue(retry.allowRetry());
+		Assert.assertTrue(retry.allowRetry());
+
+		retry = (ExponentialBackoffRetry) factory.getRetryPolicy();
+		retry.failure(new PoolOfflineException(null, "offline"));
+		Assert.assertFalse(retry.allowRetry());
+	}
+}
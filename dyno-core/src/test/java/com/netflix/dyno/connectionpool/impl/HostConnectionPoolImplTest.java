@@ -1,9 +1,18 @@
 package com.netflix.dyno.connectionpool.impl;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -14,6 +23,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.netflix.dyno.connectionpool.AsyncOperation;
 import com.netflix.dyno.connectionpool.Connection;
@@ -29,6 +40,7 @@ import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 
 public class HostConnectionPoolImplTest {
 
@@ -48,6 +60,7 @@ public class HostConnectionPoolImplTest {
 
 		private DynoConnectException ex;
 		private HostConnectionPool<TestClient> myPool;
+		private boolean failPing = false;
 
 		private TestConnection(HostConnectionPool<TestClient> pool) {
 			myPool = pool;
@@ -91,7 +104,9 @@ public class HostConnectionPoolImplTest {
 
 		@Override
 		public void execPing() {
-			// do nothing
+			if (failPing) {
+				throw new FatalConnectionException("ping failed");
+			}
 		}
 
 		@Override
@@ -231,6 +246,310 @@ public class HostConnectionPoolImplTest {
 		Assert.assertTrue(result.failureCount.get() > 0);
 	}
 
+	@Test
+	public void testFailedConnectionIsReplaced() throws Exception {
+
+		ConnectionPoolConfigurationImpl repairConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		repairConfig.setMaxConnsPerHost(4).setMinHealthyConnectionsPercentage(50);
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, connFactory, repairConfig, cpMonitor);
+		pool.primeConnections();
+
+		TestConnection connection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		connection.setException(new FatalConnectionException("fatal"));
+		Assert.assertTrue(pool.returnConnection(connection));
+
+		// the bad connection was replaced without taking the pool down
+		Assert.assertTrue(pool.isActive());
+		Assert.assertEquals(5, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(1, cpMonitor.getConnectionClosedCount());
+		
+		for (int i=0; i<4; i++) {
+			Assert.assertNotSame(connection, pool.borrowConnection(100, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void testIdleConnectionValidation() throws Exception {
+
+		ConnectionPoolConfigurationImpl idleConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		idleConfig.setMaxConnsPerHost(2).setConnectionIdleValidationMillis(50);
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, connFactory, idleConfig, cpMonitor);
+		pool.primeConnections();
+
+		TestConnection badConnection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		TestConnection goodConnection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		badConnection.failPing = true;
+		pool.returnConnection(badConnection);
+		pool.returnConnection(goodConnection);
+
+		Thread.sleep(100);
+
+		// the bad connection is first in line, but fails validation and gets replaced
+		Assert.assertSame(goodConnection, pool.borrowConnection(100, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(3, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(1, cpMonitor.getConnectionClosedCount());
+		
+		// keep alive probes replace bad connections too
+		TestConnection connection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		connection.failPing = true;
+		pool.returnConnection(connection);
+		pool.probeIdleConnection();
+		Assert.assertEquals(4, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(2, cpMonitor.getConnectionClosedCount());
+		Assert.assertTrue(pool.isActive());
+	}
+
+	@Test
+	public void testMaxConnectionAge() throws Exception {
+
+		ConnectionPoolConfigurationImpl ageConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		ageConfig.setMaxConnsPerHost(2).setMaxConnectionAgeMillis(50);
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, connFactory, ageConfig, cpMonitor);
+		pool.primeConnections();
+
+		Thread.sleep(100);
+
+		Connection<TestClient> connection = pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(pool.returnConnection(connection));
+		
+		Assert.assertEquals(3, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(1, cpMonitor.getConnectionClosedCount());
+		Assert.assertTrue(pool.isActive());
+	}
+
+	@Test
+	public void testPoolRecycledWhenTooFewHealthyConnections() throws Exception {
+
+		ConnectionPoolConfigurationImpl repairConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		repairConfig.setMaxConnsPerHost(4).setMinHealthyConnectionsPercentage(50);
+
+		final AtomicBoolean hostDown = new AtomicBoolean(false);
+		ConnectionFactory<TestClient> factory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				if (hostDown.get()) {
+					throw new DynoConnectException("host down");
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		@SuppressWarnings("unchecked")
+		ConnectionPoolHealthTracker<TestClient> tracker = mock(ConnectionPoolHealthTracker.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				// run the first repair attempt inline, drop the retries
+				if ((Integer) invocation.getArguments()[1] == 0) {
+					((Runnable) invocation.getArguments()[0]).run();
+				}
+				return null;
+			}
+		}).when(tracker).scheduleConnectionRepair(any(Runnable.class), anyInt());
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, factory, repairConfig, cpMonitor, tracker);
+		pool.primeConnections();
+		hostDown.set(true);
+
+		// 2 out of 4 connections are still healthy, no recycle yet
+		for (int i=0; i<2; i++) {
+			TestConnection connection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+			connection.setException(new FatalConnectionException("fatal"));
+			pool.returnConnection(connection);
+		}
+		verify(tracker, never()).reconnectPool(pool);
+
+		TestConnection connection = (TestConnection) pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+		connection.setException(new FatalConnectionException("fatal"));
+		pool.returnConnection(connection);
+		
+		verify(tracker, times(1)).reconnectPool(pool);
+	}
+
+	@Test
+	public void testLazyConnections() throws Exception {
+
+		ConnectionPoolConfigurationImpl lazyConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		lazyConfig.setMaxConnsPerHost(3).setLazyConnections(true);
+
+		final AtomicInteger connects = new AtomicInteger(0);
+		ConnectionFactory<TestClient> slowFactory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				connects.incrementAndGet();
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, slowFactory, lazyConfig, cpMonitor);
+		Assert.assertEquals(0, pool.primeConnections());
+		Assert.assertTrue(pool.isActive());
+
+		// sequential borrows keep reusing the one connection
+		for (int i=0; i<5; i++) {
+			pool.returnConnection(pool.borrowConnection(100, TimeUnit.MILLISECONDS));
+		}
+		Assert.assertEquals(1, connects.get());
+
+		// a burst never opens more than the max
+		final CountDownLatch latch = new CountDownLatch(10);
+		final AtomicInteger borrowed = new AtomicInteger(0);
+		for (int i=0; i<10; i++) {
+			threadPool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						Connection<TestClient> connection = pool.borrowConnection(1000, TimeUnit.MILLISECONDS);
+						borrowed.incrementAndGet();
+						Thread.sleep(10);
+						pool.returnConnection(connection);
+					} finally {
+						latch.countDown();
+					}
+					return null;
+				}
+			});
+		}
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(10, borrowed.get());
+		Assert.assertTrue(connects.get() <= 3);
+		Assert.assertEquals(connects.get(), cpMonitor.getConnectionCreatedCount());
+	}
+
+	@Test
+	public void testLazyPoolGoesDownWhenConnectFails() throws Exception {
+
+		ConnectionPoolConfigurationImpl lazyConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		lazyConfig.setMaxConnsPerHost(3).setLazyConnections(true);
+
+		ConnectionFactory<TestClient> factory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				throw new DynoConnectException("host down");
+			}
+		};
+
+		@SuppressWarnings("unchecked")
+		ConnectionPoolHealthTracker<TestClient> tracker = mock(ConnectionPoolHealthTracker.class);
+
+		pool = new HostConnectionPoolImpl<TestClient>(TestHost, factory, lazyConfig, cpMonitor, tracker);
+		pool.primeConnections();
+		Assert.assertTrue(pool.isActive());
+
+		try {
+			pool.borrowConnection(100, TimeUnit.MILLISECONDS);
+			Assert.fail("should have failed to connect");
+		} catch (DynoConnectException e) {
+		}
+		Assert.assertFalse(pool.isActive());
+		verify(tracker, times(1)).reconnectPool(pool);
+	}
+
+	@Test
+	public void testLazyConnectBacksOffAfterFailure() throws Exception {
+
+		ConnectionPoolConfigurationImpl lazyConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		lazyConfig.setMaxConnsPerHost(3).setLazyConnections(true).setPoolReconnectBackoffBaseMillis(1000);
+
+		// the first connect works, the rest fail
+		final AtomicInteger connects = new AtomicInteger(0);
+		ConnectionFactory<TestClient> factory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				if (connects.incrementAndGet() > 1) {
+					throw new DynoConnectException("host refused connection");
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		// not the shared pool, workers that are still winding down from other tests use that one
+		HostConnectionPoolImpl<TestClient> lazyPool = new HostConnectionPoolImpl<TestClient>(TestHost, factory, lazyConfig, cpMonitor);
+		lazyPool.primeConnections();
+		Connection<TestClient> connection = lazyPool.borrowConnection(100, TimeUnit.MILLISECONDS);
+
+		// the failed connect is not tried again until the backoff passes, the borrower waits for a returned connection instead
+		try {
+			lazyPool.borrowConnection(200, TimeUnit.MILLISECONDS);
+			Assert.fail("should have timed out");
+		} catch (DynoConnectException e) {
+		}
+		Assert.assertEquals(2, connects.get());
+		Assert.assertTrue(lazyPool.isActive());
+
+		lazyPool.returnConnection(connection);
+		lazyPool.returnConnection(lazyPool.borrowConnection(100, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, connects.get());
+	}
+
+	@Test
+	public void testLazyWaitersGetReturnedConnectionsDuringConnect() throws Exception {
+
+		ConnectionPoolConfigurationImpl lazyConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		lazyConfig.setMaxConnsPerHost(3).setLazyConnections(true);
+
+		// the second connect hangs until released
+		final AtomicInteger connects = new AtomicInteger(0);
+		final CountDownLatch release = new CountDownLatch(1);
+		ConnectionFactory<TestClient> factory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				if (connects.incrementAndGet() == 2) {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+					}
+				}
+				return new TestConnection(pool);
+			}
+		};
+
+		final HostConnectionPoolImpl<TestClient> lazyPool = new HostConnectionPoolImpl<TestClient>(TestHost, factory, lazyConfig, cpMonitor);
+		lazyPool.primeConnections();
+		Connection<TestClient> connection = lazyPool.borrowConnection(100, TimeUnit.MILLISECONDS);
+
+		Callable<Connection<TestClient>> borrower = new Callable<Connection<TestClient>>() {
+			@Override
+			public Connection<TestClient> call() throws Exception {
+				return lazyPool.borrowConnection(5000, TimeUnit.MILLISECONDS);
+			}
+		};
+
+		ExecutorService borrowers = Executors.newFixedThreadPool(2);
+		try {
+			Future<Connection<TestClient>> connecting = borrowers.submit(borrower);
+			while (connects.get() < 2) {
+				Thread.sleep(1);
+			}
+			Future<Connection<TestClient>> waiting = borrowers.submit(borrower);
+			Thread.sleep(50);
+
+			// the waiter gets the returned connection right away, not once the connect in flight is done
+			lazyPool.returnConnection(connection);
+			Assert.assertSame(connection, waiting.get(1, TimeUnit.SECONDS));
+			Assert.assertFalse(connecting.isDone());
+
+			release.countDown();
+			Assert.assertNotNull(connecting.get(1, TimeUnit.SECONDS));
+			Assert.assertEquals(2, connects.get());
+		} finally {
+			release.countDown();
+			borrowers.shutdownNow();
+		}
+	}
+
 	private class BasicWorker implements Callable<Void> {
 
 		private final BasicResult result;
@@ -114,6 +114,30 @@ public class HostStatusTrackerTest {
 		verifySet(tracker.getInactiveHosts(), "E", "J", "H", "D", "F", "B",  "K", "X", "Y", "A", "C");
 	}
 
+	@Test
+	public void testHostStatusDelta() throws Exception {
+
+		HostStatusTracker tracker = new HostStatusTracker(getHostSet("A", "B", "D", "E"), getHostSet("C", "F"));
+
+		// 'J' shows up, 'C' comes back and 'D' goes away, nobody else is touched
+		Set<Host> up = getHostSet("J", "C");
+		Set<Host> down = getHostSet("D");
+		tracker = tracker.computeHostStatusDelta(up, down);
+
+		verifySet(tracker.getActiveHosts(), "A", "B", "C", "E", "J");
+		verifySet(tracker.getInactiveHosts(), "D", "F");
+		
+		for (Host host : up) {
+			Assert.assertTrue(host.isUp());
+		}
+		Assert.assertFalse(down.iterator().next().isUp());
+
+		// nothing changed
+		tracker = tracker.computeHostStatusDelta(getHostSet(), getHostSet());
+		verifySet(tracker.getActiveHosts(), "A", "B", "C", "E", "J");
+		verifySet(tracker.getInactiveHosts(), "D", "F");
+	}
+
 	private Set<Host> getHostSet(String ...names) { 
 
 		Set<Host> set = new HashSet<Host>();
@@ -0,0 +1,366 @@
+package com.netflix.dyno.connectionpool.impl;
+
+import static com.netflix.dyno.connectionpool.impl.MultiplexedConnectionPoolImpl.getSharedConnection;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.ConnectionFactory;
+import com.netflix.dyno.connectionpool.ConnectionObservor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+
+public class MultiplexedConnectionPoolImplTest {
+
+	private static final Host TestHost = new Host("TestHost", 1234);
+
+	private class TestClient {}
+
+	private MultiplexedConnectionPoolImpl<TestClient> pool;
+
+	private ConnectionFactory<TestClient> connFactory = new ConnectionFactory<TestClient>() {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+			return mock(Connection.class);
+		}
+	};
+
+	private ConnectionPoolConfigurationImpl config;
+	private CountingConnectionPoolMonitor cpMonitor;
+
+	@Before
+	public void beforeTest() {
+		config = new ConnectionPoolConfigurationImpl("TestClient").setMaxConnsPerHost(2).setMaxInFlightPerConnection(2);
+		cpMonitor = new CountingConnectionPoolMonitor();
+		pool = new MultiplexedConnectionPoolImpl<TestClient>(TestHost, connFactory, config, cpMonitor, null);
+	}
+
+	@After
+	public void afterTest() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBorrowersShareConnections() throws Exception {
+
+		Assert.assertEquals(2, pool.primeConnections());
+
+		Map<Connection<TestClient>, Integer> borrowed = new HashMap<Connection<TestClient>, Integer>();
+		for (int i=0; i<4; i++) {
+			Connection<TestClient> connection = getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS));
+			Integer count = borrowed.get(connection);
+			borrowed.put(connection, count == null ? 1 : count + 1);
+		}
+
+		// spread evenly across the connections, up to the cap of each
+		Assert.assertEquals(2, borrowed.size());
+		for (Integer count : borrowed.values()) {
+			Assert.assertEquals(2, count.intValue());
+		}
+
+		try {
+			pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected pool timeout when all connections are busy");
+		} catch (PoolTimeoutException e) {
+		}
+
+		Connection<TestClient> connection = borrowed.keySet().iterator().next();
+		pool.returnConnection(connection);
+		Assert.assertEquals(connection, getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS)));
+
+		Assert.assertEquals(5, cpMonitor.getConnectionBorrowedCount());
+		Assert.assertEquals(1, cpMonitor.getConnectionReturnedCount());
+		Assert.assertEquals(2, cpMonitor.getConnectionCreatedCount());
+	}
+
+	@Test
+	public void testFailedConnectionIsReplaced() throws Exception {
+
+		pool.primeConnections();
+
+		Connection<TestClient> failed = getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS));
+		Connection<TestClient> other = getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS));
+		Assert.assertNotSame(failed, other);
+
+		when(failed.getLastException()).thenReturn(new FatalConnectionException("socket closed"));
+		Assert.assertTrue(pool.returnConnection(failed));
+		Assert.assertFalse(pool.returnConnection(other));
+
+		Assert.assertEquals(2, pool.getAllConnections().size());
+		Assert.assertFalse(pool.getAllConnections().contains(failed));
+		Assert.assertTrue(pool.getAllConnections().contains(other));
+
+		Assert.assertEquals(3, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(1, cpMonitor.getConnectionClosedCount());
+		Assert.assertTrue(pool.isActive());
+	}
+
+	@Test
+	public void testMarkAsDownAndReconnect() throws Exception {
+
+		pool.primeConnections();
+		pool.markAsDown(new FatalConnectionException("mark pool as down"));
+
+		try {
+			pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected failure when pool is down");
+		} catch (DynoConnectException e) {
+		}
+
+		pool.reconnect();
+
+		Assert.assertTrue(pool.isActive());
+		Assert.assertNotNull(pool.borrowConnection(20, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(4, cpMonitor.getConnectionCreatedCount());
+		Assert.assertEquals(2, cpMonitor.getConnectionClosedCount());
+	}
+
+	@Test
+	public void testPoolMarkedDownClosesConnectionsOnceIdle() throws Exception {
+
+		config.setMaxConnsPerHost(1);
+		pool.primeConnections();
+
+		Connection<TestClient> first = pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+		Connection<TestClient> second = pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+		Connection<TestClient> shared = getSharedConnection(first);
+		pool.markAsDown(new FatalConnectionException("mark pool as down"));
+
+		// the second caller still has commands in flight on the connection
+		Assert.assertFalse(pool.returnConnection(first));
+		verify(shared, never()).close();
+
+		Assert.assertTrue(pool.returnConnection(second));
+		verify(shared, times(1)).close();
+	}
+
+	@Test
+	public void testPrimeWithSomeFailedConnects() throws Exception {
+
+		// the first connect fails, the rest work
+		final AtomicInteger connects = new AtomicInteger(0);
+		pool = new MultiplexedConnectionPoolImpl<TestClient>(TestHost, new ConnectionFactory<TestClient>() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				if (connects.incrementAndGet() == 1) {
+					throw new DynoConnectException("host refused connection");
+				}
+				return mock(Connection.class);
+			}
+		}, config, cpMonitor, null);
+
+		// the missing connection is opened right after, there is no health tracker to do it in the background
+		Assert.assertEquals(1, pool.primeConnections());
+		Assert.assertTrue(pool.isActive());
+		Assert.assertEquals(2, pool.getAllConnections().size());
+		Assert.assertEquals(1, cpMonitor.getConnectionCreateFailedCount());
+	}
+
+	@Test
+	public void testPrimeWithNoConnectsClosesOpenedConnections() throws Exception {
+
+		// the connections are created but fail to open
+		@SuppressWarnings("unchecked")
+		final Connection<TestClient> connection = mock(Connection.class);
+		doThrow(new DynoConnectException("host refused connection")).when(connection).open();
+		pool = new MultiplexedConnectionPoolImpl<TestClient>(TestHost, new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return connection;
+			}
+		}, config, cpMonitor, null);
+
+		try {
+			pool.primeConnections();
+			Assert.fail("Expected failure when no connections could be opened");
+		} catch (DynoException e) {
+		}
+		Assert.assertFalse(pool.isActive());
+		Assert.assertTrue(pool.getAllConnections().isEmpty());
+		verify(connection, times(2)).close();
+	}
+
+	@Test
+	public void testSlotsFollowOpenConnections() throws Exception {
+
+		pool.primeConnections();
+
+		// with one connection gone only its share of the slots is left
+		pool.closeConnection(pool.getAllConnections().iterator().next());
+		Connection<TestClient> connection = getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS));
+		Assert.assertSame(connection, getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS)));
+		try {
+			pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected pool timeout when the only connection is busy");
+		} catch (PoolTimeoutException e) {
+		}
+
+		pool.returnConnection(connection);
+		Assert.assertSame(connection, getSharedConnection(pool.borrowConnection(20, TimeUnit.MILLISECONDS)));
+	}
+
+	@Test
+	public void testBorrowersHaveTheirOwnContext() throws Exception {
+
+		// one connection shared by both callers, it runs operations with a context of its own like the RESP connections do
+		config.setMaxConnsPerHost(1);
+		final SharedConnection shared = new SharedConnection();
+		pool = new MultiplexedConnectionPoolImpl<TestClient>(TestHost, new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				return shared;
+			}
+		}, config, cpMonitor, null);
+		pool.primeConnections();
+
+		// both operations are in flight on the connection when the first caller resets its context
+		final CyclicBarrier inFlight = new CyclicBarrier(2);
+		final CyclicBarrier reset = new CyclicBarrier(2);
+
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> first = callers.submit(new Caller("first", inFlight, reset, true));
+			Future<Object> second = callers.submit(new Caller("second", inFlight, reset, false));
+
+			Assert.assertNull(first.get(1, TimeUnit.SECONDS));
+			Assert.assertEquals("second", second.get(1, TimeUnit.SECONDS));
+			Assert.assertTrue(shared.context.getAll().isEmpty());
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	private class Caller implements Callable<Object> {
+
+		private final String name;
+		private final CyclicBarrier inFlight;
+		private final CyclicBarrier reset;
+		private final boolean resets;
+
+		private Caller(String name, CyclicBarrier inFlight, CyclicBarrier reset, boolean resets) {
+			this.name = name;
+			this.inFlight = inFlight;
+			this.reset = reset;
+			this.resets = resets;
+		}
+
+		@Override
+		public Object call() throws Exception {
+
+			Connection<TestClient> connection = pool.borrowConnection(20, TimeUnit.MILLISECONDS);
+			try {
+				connection.getContext().setMetadata("caller", name);
+				return connection.execute(new Operation<TestClient, Object>() {
+
+					@Override
+					public Object execute(TestClient client, ConnectionContext state) throws DynoException {
+						try {
+							inFlight.await(1, TimeUnit.SECONDS);
+							if (resets) {
+								state.reset();
+							}
+							reset.await(1, TimeUnit.SECONDS);
+						} catch (Exception e) {
+							throw new DynoException(e);
+						}
+						return state.getMetadata("caller");
+					}
+
+					@Override
+					public String getName() {
+						return "test";
+					}
+
+					@Override
+					public String getKey() {
+						return name;
+					}
+				}).getResult();
+			} finally {
+				pool.returnConnection(connection);
+			}
+		}
+	}
+
+	private class SharedConnection implements Connection<TestClient> {
+
+		private final ConnectionContextImpl context = new ConnectionContextImpl();
+
+		@Override
+		public <R> OperationResult<R> execute(Operation<TestClient, R> op) throws DynoException {
+			return new OperationResultImpl<R>(op.getName(), op.execute(new TestClient(), context), null);
+		}
+
+		@Override
+		public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<TestClient, R> op) throws DynoException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public Host getHost() {
+			return TestHost;
+		}
+
+		@Override
+		public void open() throws DynoException {
+		}
+
+		@Override
+		public DynoConnectException getLastException() {
+			return null;
+		}
+
+		@Override
+		public HostConnectionPool<TestClient> getParentConnectionPool() {
+			return pool;
+		}
+
+		@Override
+		public void execPing() {
+		}
+
+		@Override
+		public ConnectionContext getContext() {
+			return context;
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package com.netflix.dyno.connectionpool.impl.hash;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -84,6 +86,34 @@ public class BinarySearchTokenMapperTest {
 		Assert.assertTrue("Failures: " + failures, failures == 0);
 	}
 
+	@Test
+	public void testBatchUpdate() throws Exception {
+
+		final BinarySearchTokenMapper tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		tokenMapper.initSearchMecahnism(getTestTokens());
+		
+		TokenRing before = tokenMapper.getRing();
+
+		// remove 'h3', add a token between 'h1' and 'h2' and move 'h4' to another host, all in one go
+		Long midpoint = 309687905L + (1383429731L - 309687905L)/2;
+		List<HostToken> added = new ArrayList<HostToken>();
+		added.add(new HostToken(midpoint, new Host("h12", Status.Up)));
+		added.add(new HostToken(3530913377L, new Host("h5", Status.Up)));
+		tokenMapper.updateHostTokens(added, Collections.singletonList(new HostToken(2457171554L, new Host("h3", Status.Up))));
+
+		Assert.assertEquals(Arrays.asList(309687905L, midpoint, 1383429731L, 3530913377L), tokenMapper.getRing().getTokens());
+
+		Long failures = 0L;
+		failures += runTest(309687905L + 1L, 309687905L + 10L, "h12", tokenMapper);
+		failures += runTest(midpoint + 1L, midpoint + 10L, "h2", tokenMapper);
+		failures += runTest(1383429731L + 1L, 1383429731L + 1000000L, "h5", tokenMapper);
+		Assert.assertTrue("Failures: " + failures, failures == 0);
+		
+		// the previous ring is left as is
+		Assert.assertEquals(4, before.size());
+		Assert.assertEquals("h3", before.getToken(1383429731L + 1L).getHost().getHostName());
+	}
+
 	private long runTest(Long start, Long end, final String expectedToken, final BinarySearchTokenMapper tokenMapper) {
 
 		final AtomicLong failures = new AtomicLong(0L);
@@ -4,6 +4,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -27,6 +28,7 @@ import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.CircuitBreakerConfigImpl;
 
 public class ConnectionPoolHealthTrackerTest {
 
@@ -100,6 +102,137 @@ public class ConnectionPoolHealthTrackerTest {
 		Assert.assertNotNull(tracker.getReconnectingPools().get(h1));
 	}
 
+	@Test
+	public void testReaddedHostReconnectsItsNewPool() throws Exception {
+
+		ConnectionPoolConfiguration config = new ConnectionPoolConfigurationImpl("test");
+		ConnectionPoolHealthTracker<Integer> tracker = new ConnectionPoolHealthTracker<Integer>(config, threadPool, 1000, -1);
+		tracker.start();
+
+		// the host's pool is recycled but can't reconnect, then the host goes away
+		Host h1 = new Host("h1", Status.Up);
+		HostConnectionPool<Integer> oldPool = getMockConnectionPool(h1, new AtomicBoolean(false), true);
+		tracker.reconnectPool(oldPool);
+		tracker.removeHost(h1);
+
+		// and comes back with a new pool, which fails too
+		Host h1Again = new Host("h1", Status.Up);
+		AtomicBoolean poolStatus = new AtomicBoolean(true);
+		HostConnectionPool<Integer> newPool = getMockConnectionPool(h1Again, poolStatus);
+		tracker.reconnectPool(newPool);
+
+		Thread.sleep(1500);
+
+		tracker.stop();
+
+		verify(newPool, times(1)).reconnect();
+		Assert.assertTrue(newPool.isActive());
+		Assert.assertNull(tracker.getReconnectingPools().get(h1Again));
+	}
+
+	@Test
+	public void testCircuitBreakerDoesNotRecyclePool() throws Exception {
+
+		ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("test");
+		config.withCircuitBreakerConfig(new CircuitBreakerConfigImpl(10, 10, 50, 200, 1, 1));
+		
+		ConnectionPoolHealthTracker<Integer> tracker = new ConnectionPoolHealthTracker<Integer>(config, threadPool, 1000, -1);
+		tracker.start();
+
+		Host h1 = new Host("h1", Status.Up);
+		AtomicBoolean poolStatus = new AtomicBoolean(true); 
+		HostConnectionPool<Integer> hostPool = getMockConnectionPool(h1, poolStatus);
+
+		FatalConnectionException e = new FatalConnectionException("fatal");
+
+		for (int i=0; i<10; i++)  {
+			tracker.trackConnectionError(hostPool, e);
+		}
+		
+		Assert.assertFalse(tracker.allowRequest(h1));
+		Thread.sleep(250);
+		
+		// probe succeeds and closes the breaker
+		Assert.assertTrue(tracker.allowRequest(h1));
+		tracker.trackConnectionSuccess(hostPool);
+		Assert.assertTrue(tracker.getCircuitBreaker(h1).isClosed());
+		Assert.assertTrue(tracker.allowRequest(h1));
+		
+		Thread.sleep(1500);
+		tracker.stop();
+
+		verify(hostPool, never()).markAsDown(any(DynoException.class));
+		verify(hostPool, never()).reconnect();
+		Assert.assertTrue(hostPool.isActive());
+	}
+
+	@Test
+	public void testPoolsReconnectInParallel() throws Exception {
+
+		ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("test");
+		config.setMaxConcurrentPoolReconnects(2);
+		
+		ConnectionPoolHealthTracker<Integer> tracker = new ConnectionPoolHealthTracker<Integer>(config, threadPool, 1000, -1);
+		tracker.start();
+
+		// a pool that takes a long time to reconnect must not hold up other pools
+		Host h1 = new Host("h1", Status.Up);
+		final AtomicBoolean slowPoolStatus = new AtomicBoolean(true); 
+		HostConnectionPool<Integer> slowPool = getMockConnectionPool(h1, slowPoolStatus);
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Thread.sleep(3000);
+				slowPoolStatus.set(true);
+				return null;
+			}
+		}).when(slowPool).reconnect();
+
+		Host h2 = new Host("h2", Status.Up);
+		AtomicBoolean poolStatus = new AtomicBoolean(true); 
+		HostConnectionPool<Integer> hostPool = getMockConnectionPool(h2, poolStatus);
+
+		tracker.reconnectPool(slowPool);
+		tracker.reconnectPool(hostPool);
+		
+		Thread.sleep(1500);
+
+		verify(hostPool, times(1)).reconnect();
+		Assert.assertTrue(hostPool.isActive());
+		Assert.assertNull(tracker.getReconnectingPools().get(h2));
+		Assert.assertNotNull(tracker.getReconnectingPools().get(h1));
+		
+		tracker.stop();
+	}
+
+	@Test
+	public void testReconnectBackoff() throws Exception {
+
+		ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("test");
+		config.setPoolReconnectBackoffBaseMillis(100);
+		
+		ConnectionPoolHealthTracker<Integer> tracker = new ConnectionPoolHealthTracker<Integer>(config, threadPool, 1000, 500);
+		
+		for (int i=0; i<100; i++) {
+			// first attempt waits for connections to drain
+			long delay = tracker.getReconnectDelayMillis(0);
+			Assert.assertTrue("" + delay, delay >= 500 && delay <= 550);
+			
+			delay = tracker.getReconnectDelayMillis(1);
+			Assert.assertTrue("" + delay, delay >= 100 && delay <= 200);
+
+			delay = tracker.getReconnectDelayMillis(3);
+			Assert.assertTrue("" + delay, delay >= 400 && delay <= 800);
+			
+			// capped at the sleep millis
+			delay = tracker.getReconnectDelayMillis(20);
+			Assert.assertTrue("" + delay, delay >= 500 && delay <= 1000);
+		}
+		
+		tracker.stop();
+	}
+
 	private HostConnectionPool<Integer> getMockConnectionPool(final Host host, final AtomicBoolean active) {
 		return getMockConnectionPool(host, active, false);
 	}
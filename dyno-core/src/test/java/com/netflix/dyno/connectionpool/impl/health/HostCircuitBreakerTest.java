@@ -0,0 +1,107 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.CircuitBreakerConfigImpl;
+import com.netflix.dyno.connectionpool.impl.health.HostCircuitBreaker.State;
+
+public class HostCircuitBreakerTest {
+
+	@Test
+	public void testTripsOnErrorRatio() throws Exception {
+
+		// window 10s, min 10 reqs, 50% errors, 200ms open, 2 probes, 2 successes to close
+		HostCircuitBreaker breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 10, 50, 200, 2, 2));
+
+		for (int i=0; i<6; i++) {
+			breaker.trackSuccess();
+		}
+		for (int i=0; i<4; i++) {
+			Assert.assertNull(breaker.trackError());
+		}
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+
+		// 6 errors out of 12 requests
+		breaker.trackError();
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+		Assert.assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void testDoesNotTripBelowMinRequests() throws Exception {
+
+		HostCircuitBreaker breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 10, 50, 200, 2, 2));
+
+		for (int i=0; i<9; i++) {
+			Assert.assertNull(breaker.trackError());
+		}
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+	}
+
+	@Test
+	public void testHalfOpenProbesClose() throws Exception {
+
+		HostCircuitBreaker breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 1, 50, 200, 2, 2));
+
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+		Assert.assertFalse(breaker.allowRequest());
+
+		Thread.sleep(250);
+
+		// only the configured no of probes go through
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertFalse(breaker.allowRequest());
+
+		Assert.assertNull(breaker.trackSuccess());
+		Assert.assertEquals(State.CLOSED, breaker.trackSuccess());
+		Assert.assertTrue(breaker.allowRequest());
+
+		// the window is reset on close, a single error should not re-trip with min requests 2
+		breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 2, 50, 200, 2, 1));
+		breaker.trackError();
+		breaker.trackError();
+		Thread.sleep(250);
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.CLOSED, breaker.trackSuccess());
+		Assert.assertNull(breaker.trackError());
+	}
+
+	@Test
+	public void testHalfOpenProbeFailureReopens() throws Exception {
+
+		HostCircuitBreaker breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 1, 50, 200, 2, 2));
+
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+		Thread.sleep(250);
+
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+		Assert.assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void testIsRoutableDoesNotTakeProbes() throws Exception {
+
+		HostCircuitBreaker breaker = new HostCircuitBreaker(new CircuitBreakerConfigImpl(10, 1, 50, 200, 1, 1));
+
+		Assert.assertEquals(State.OPEN, breaker.trackError());
+		Assert.assertFalse(breaker.isRoutable());
+
+		Thread.sleep(250);
+
+		for (int i=0; i<5; i++) {
+			Assert.assertTrue(breaker.isRoutable());
+		}
+		Assert.assertEquals(State.OPEN, breaker.getState());
+
+		// the single probe is still there for the request that actually goes to the host
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertFalse(breaker.isRoutable());
+		Assert.assertFalse(breaker.allowRequest());
+	}
+}
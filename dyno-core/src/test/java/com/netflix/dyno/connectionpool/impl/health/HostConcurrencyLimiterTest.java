@@ -0,0 +1,82 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.ConcurrencyLimitConfigImpl;
+
+public class HostConcurrencyLimiterTest {
+
+	@Test
+	public void testCapsRequestsInFlight() throws Exception {
+
+		// initial 4, min 2, max 10, cut by half, 2x latency tolerance, 30s min latency window
+		HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(new ConcurrencyLimitConfigImpl(4, 2, 10, 50, 200, 30));
+
+		for (int i=0; i<4; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		Assert.assertFalse(limiter.tryAcquire());
+		Assert.assertEquals(4, limiter.getInFlight());
+
+		limiter.onIgnore();
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testGrowsWhileHostIsBusyAndFast() throws Exception {
+
+		HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(new ConcurrencyLimitConfigImpl(4, 2, 10, 50, 200, 30));
+
+		for (int round=0; round<100; round++) {
+			int acquired = 0;
+			while (limiter.tryAcquire()) {
+				acquired++;
+			}
+			for (int i=0; i<acquired; i++) {
+				limiter.onSuccess(1000);
+			}
+		}
+		Assert.assertEquals(10, limiter.getLimit());
+		Assert.assertEquals(0, limiter.getInFlight());
+
+		// a host with a single request in flight doesn't need a higher limit
+		limiter = new HostConcurrencyLimiter(new ConcurrencyLimitConfigImpl(4, 2, 10, 50, 200, 30));
+		for (int i=0; i<100; i++) {
+			limiter.tryAcquire();
+			limiter.onSuccess(1000);
+		}
+		Assert.assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testBacksOffWhenHostSlowsDown() throws Exception {
+
+		HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(new ConcurrencyLimitConfigImpl(20, 2, 100, 50, 200, 30));
+
+		limiter.tryAcquire();
+		limiter.onSuccess(1500);
+		Assert.assertEquals(20, limiter.getLimit());
+
+		// 2 slow requests in flight at the same time only cut the limit once
+		limiter.tryAcquire();
+		limiter.tryAcquire();
+		limiter.onSuccess(15000);
+		Assert.assertEquals(10, limiter.getLimit());
+		limiter.onSuccess(15000);
+		Assert.assertEquals(10, limiter.getLimit());
+
+		// a timeout of a request sent after the cut cuts it again
+		limiter.tryAcquire();
+		limiter.onDropped(0);
+		Assert.assertEquals(5, limiter.getLimit());
+
+		for (int i=0; i<5; i++) {
+			limiter.tryAcquire();
+			limiter.onDropped(0);
+		}
+		Assert.assertEquals(2, limiter.getLimit());
+		Assert.assertEquals(0, limiter.getInFlight());
+	}
+}
@@ -0,0 +1,106 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.OutlierDetectionConfigImpl;
+
+public class HostOutlierDetectorTest {
+
+	// 10s interval, 10 reqs, 3 hosts per rack, 300% latency, 1ms min latency, 10% timeouts, 200ms ejection, 20% max ejected, 200ms ramp
+	private final OutlierDetectionConfigImpl config = new OutlierDetectionConfigImpl(10, 10, 3, 300, 1, 10, 200, 20, 200);
+	
+	@Test
+	public void testEjectsSlowHost() throws Exception {
+		
+		HostOutlierDetector detector = new HostOutlierDetector(config);
+		
+		Host h1 = new Host("h1", 8102, Status.Up).setRack("rack1");
+		Host h2 = new Host("h2", 8102, Status.Up).setRack("rack1");
+		Host h3 = new Host("h3", 8102, Status.Up).setRack("rack1");
+		Host h4 = new Host("h4", 8102, Status.Up).setRack("rack1");
+		
+		for (int i=0; i<20; i++) {
+			detector.trackSuccess(h1, 2000);
+			detector.trackSuccess(h2, 2500);
+			detector.trackSuccess(h3, 1800);
+			detector.trackSuccess(h4, 20000);
+		}
+		
+		detector.evaluate();
+		
+		Assert.assertFalse(detector.isEjected(h1));
+		Assert.assertFalse(detector.isEjected(h2));
+		Assert.assertFalse(detector.isEjected(h3));
+		Assert.assertTrue(detector.isEjected(h4));
+		Assert.assertFalse(detector.allowRequest(h4));
+		
+		// once the ejection expires, the host gets a growing share of requests
+		Thread.sleep(250);
+		Assert.assertFalse(detector.isEjected(h4));
+		int allowed = 0;
+		for (int i=0; i<1000; i++) {
+			if (detector.allowRequest(h4)) {
+				allowed++;
+			}
+		}
+		Assert.assertTrue("" + allowed, allowed > 0 && allowed < 1000);
+		
+		Thread.sleep(250);
+		Assert.assertTrue(detector.allowRequest(h4));
+	}
+	
+	@Test
+	public void testEjectsTimingOutHostAndCapsEjections() throws Exception {
+		
+		HostOutlierDetector detector = new HostOutlierDetector(config);
+		
+		Host h1 = new Host("h1", 8102, Status.Up).setRack("rack1");
+		Host h2 = new Host("h2", 8102, Status.Up).setRack("rack1");
+		Host h3 = new Host("h3", 8102, Status.Up).setRack("rack1");
+		Host h4 = new Host("h4", 8102, Status.Up).setRack("rack1");
+		Host h5 = new Host("h5", 8102, Status.Up).setRack("rack1");
+		
+		for (int i=0; i<20; i++) {
+			detector.trackSuccess(h1, 2000);
+			detector.trackSuccess(h2, 2000);
+			detector.trackSuccess(h3, 2000);
+			// both h4 and h5 time out a lot
+			detector.trackSuccess(h4, 2000);
+			detector.trackSuccess(h5, 2000);
+			if (i % 2 == 0) {
+				detector.trackTimeout(h4);
+				detector.trackTimeout(h5);
+			}
+		}
+		
+		detector.evaluate();
+		
+		// only 1 of 5 hosts (20%) may be ejected
+		Assert.assertTrue(detector.isEjected(h4) ^ detector.isEjected(h5));
+		Assert.assertFalse(detector.isEjected(h1));
+	}
+	
+	@Test
+	public void testNoEjectionWithTooFewPeers() throws Exception {
+		
+		HostOutlierDetector detector = new HostOutlierDetector(config);
+		
+		Host h1 = new Host("h1", 8102, Status.Up).setRack("rack1");
+		Host h2 = new Host("h2", 8102, Status.Up).setRack("rack1");
+		Host h3 = new Host("h3", 8102, Status.Up).setRack("rack2");
+		
+		for (int i=0; i<20; i++) {
+			detector.trackSuccess(h1, 2000);
+			detector.trackSuccess(h2, 50000);
+			detector.trackSuccess(h3, 2000);
+		}
+		
+		detector.evaluate();
+		
+		Assert.assertFalse(detector.isEjected(h2));
+		Assert.assertTrue(detector.allowRequest(h2));
+	}
+}
@@ -1,6 +1,9 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -72,4 +75,93 @@ public class AbstractTokenMapSupplierTest {
 		Assert.assertTrue(hTokens.get(7).getToken().equals(3450843231L));
 		Assert.assertTrue(hTokens.get(7).getHost().getHostName().equals("ec2-54-81-138-73.compute-1.amazonaws.com"));
 	}
+
+	@Test
+	public void testStopsOnceAllTokensAreCovered() throws Exception {
+
+		final AtomicInteger calls = new AtomicInteger(0);
+
+		TokenMapSupplier supplier = new AbstractTokenMapSupplier(8080, 2, 0) {
+
+			@Override
+			public String getTopologyJsonPayload(Set<Host> activeHosts) {
+				return json;
+			}
+
+			@Override
+			public String getTopologyJsonPayload(String hostname) {
+				calls.incrementAndGet();
+				return json;
+			}
+		};
+
+		List<HostToken> hTokens = supplier.getTokens(new HashSet<Host>(getHosts()));
+		Assert.assertEquals(8, hTokens.size());
+		// every host is in the very first payload, so at most the first batch gets queried
+		Assert.assertTrue(calls.get() <= 2);
+	}
+
+	@Test
+	public void testGetTokenForHostSharesFetch() throws Exception {
+
+		final AtomicInteger calls = new AtomicInteger(0);
+
+		final TokenMapSupplier supplier = new AbstractTokenMapSupplier(8080, 2, 60000) {
+
+			@Override
+			public String getTopologyJsonPayload(Set<Host> activeHosts) {
+				calls.incrementAndGet();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+				}
+				return json;
+			}
+
+			@Override
+			public String getTopologyJsonPayload(String hostname) {
+				return getTopologyJsonPayload((Set<Host>)null);
+			}
+		};
+
+		final List<Host> hosts = getHosts();
+		final Set<Host> activeHosts = new HashSet<Host>(hosts.subList(0, 2));
+
+		final CountDownLatch latch = new CountDownLatch(hosts.size());
+		final AtomicInteger found = new AtomicInteger(0);
+
+		for (final Host host : hosts) {
+			new Thread() {
+				public void run() {
+					if (supplier.getTokenForHost(host, activeHosts) != null) {
+						found.incrementAndGet();
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(hosts.size(), found.get());
+		Assert.assertEquals(1, calls.get());
+
+		// served from the cache
+		Assert.assertNotNull(supplier.getTokenForHost(hosts.get(3), activeHosts));
+		Assert.assertEquals(1, calls.get());
+	}
+
+	private List<Host> getHosts() {
+
+		List<Host> hostList = new ArrayList<Host>();
+
+		hostList.add(new Host("ec2-54-237-143-4.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-50-17-65-2.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-83-87-174.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-81-138-73.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-82-176-215.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-82-83-115.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-211-220-55.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-80-65-203.compute-1.amazonaws.com", 11211, Status.Up));
+		return hostList;
+	}
 }
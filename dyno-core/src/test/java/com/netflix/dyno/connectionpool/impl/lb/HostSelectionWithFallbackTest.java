@@ -4,6 +4,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -12,8 +13,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -29,8 +34,11 @@ import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
+import com.netflix.dyno.connectionpool.TokenPoolTopology;
+import com.netflix.dyno.connectionpool.TokenPoolTopology.TokenStatus;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
 import com.netflix.dyno.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
 
@@ -128,6 +136,270 @@ public class HostSelectionWithFallbackTest {
 		verifyExactly(hostnames, "h1", "h2");
 	}
 
+	@Test
+	public void testSidecarHostIsLocal() throws Exception {
+
+		// h3 is reported in a remote rack, but a host with a unix domain socket runs on this box. 
+		// It owns the same token as h1, so it takes h1's place in the local rack
+		h3.setSocketPath("/var/run/dynomite/dynomite.sock");
+
+		final TokenMapSupplier tokenSupplier = getTokenMapSupplier();
+		cpConfig.withTokenSupplier(new TokenMapSupplier() {
+			@Override
+			public List<HostToken> getTokens(Set<Host> activeHosts) {
+				List<HostToken> tokens = new ArrayList<HostToken>();
+				for (HostToken token : tokenSupplier.getTokens(activeHosts)) {
+					if (activeHosts.contains(token.getHost())) {
+						tokens.add(token);
+					}
+				}
+				return tokens;
+			}
+
+			@Override
+			public HostToken getTokenForHost(Host host, Set<Host> activeHosts) {
+				return tokenSupplier.getTokenForHost(host, activeHosts);
+			}
+		});
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : Arrays.asList(h2, h3, h4, h5, h6)) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+
+		selection.initWithHosts(pools);
+
+		Set<String> hostnames = new HashSet<String>();
+
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+
+		verifyExactly(hostnames, "h2", "h3");
+	}
+
+	@Test
+	public void testSidecarHostIsLocalWithSuppliedHosts() throws Exception {
+
+		// h3 is a sidecar that owns the same token as h1, the token supplier only knows the hosts from the topology it fetched
+		h3.setSocketPath("/var/run/dynomite/dynomite.sock");
+
+		final TokenMapSupplier tokenSupplier = getTokenMapSupplier();
+		cpConfig.withTokenSupplier(new TokenMapSupplier() {
+			@Override
+			public List<HostToken> getTokens(Set<Host> activeHosts) {
+				List<HostToken> tokens = new ArrayList<HostToken>();
+				for (HostToken token : tokenSupplier.getTokens(activeHosts)) {
+					tokens.add(getTokenForHost(token.getHost(), activeHosts));
+				}
+				return tokens;
+			}
+
+			@Override
+			public HostToken getTokenForHost(Host host, Set<Host> activeHosts) {
+				HostToken token = tokenSupplier.getTokenForHost(host, activeHosts);
+				return new HostToken(token.getToken(), new Host(host.getHostName(), 8102, Status.Up).setRack(host.getRack()));
+			}
+		});
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+
+		selection.initWithHosts(pools);
+
+		// the sidecar takes h1's token in the local rack
+		Set<String> hostnames = new HashSet<String>();
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+		verifyExactly(hostnames, "h2", "h3");
+
+		hostnames.clear();
+		for (Connection<Integer> conn : selection.getConnectionsToRing(10, TimeUnit.MILLISECONDS)) {
+			hostnames.add(conn.getHost().getHostName());
+		}
+		verifyExactly(hostnames, "h2", "h3");
+
+		// and hands it back when it goes away
+		selection.removeHost(h3, pools.get(h3));
+		hostnames.clear();
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+		verifyExactly(hostnames, "h1", "h2");
+	}
+
+	@Test
+	public void testSlowStartSpillsTraffic() throws Exception {
+
+		cpConfig.setSlowStartMillis(60000);
+		ScheduledExecutorService threadPool = Executors.newScheduledThreadPool(1);
+		ConnectionPoolHealthTracker<Integer> tracker = new ConnectionPoolHealthTracker<Integer>(cpConfig, threadPool);
+		
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor, tracker);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+
+		selection.initWithHosts(pools);
+		
+		// h1 just came back, it should get (almost) none of its traffic for now
+		tracker.trackHostActivated(h1);
+		Assert.assertTrue(tracker.getTrafficPercentage(h1) < 100);
+
+		Set<String> hostnames = new HashSet<String>();
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+
+		verifyExactly(hostnames, "h2");
+		
+		TokenPoolTopology topology = selection.getTokenPoolTopology();
+		for (TokenStatus status : topology.getAllTokens().get("localTestDC")) {
+			Assert.assertEquals(status.getHostPool().getHost() == h1, status.isRampingUp());
+		}
+		
+		tracker.stop();
+		threadPool.shutdownNow();
+	}
+
+	@Test
+	public void testInitFromTopologySnapshot() throws Exception {
+
+		File file = File.createTempFile("dyno-topology", ".snapshot");
+		file.deleteOnExit();
+		cpConfig.setTopologySnapshotFile(file.getAbsolutePath());
+		cpConfig.setLoadBalancingStrategy(LoadBalancingStrategy.TokenAware);
+
+		// the snapshot was taken before h2 moved
+		List<HostToken> snapshotTokens = new ArrayList<HostToken>(getTokenMapSupplier().getTokens(null));
+		for (int i=0; i<snapshotTokens.size(); i++) {
+			if (snapshotTokens.get(i).getHost().equals(h2)) {
+				snapshotTokens.set(i, new HostToken(2000000000L, h2));
+			}
+		}
+		new TopologySnapshotFile(file.getAbsolutePath()).write(snapshotTokens);
+
+		final CountDownLatch fetchLatch = new CountDownLatch(1);
+		final TokenMapSupplier supplier = getTokenMapSupplier();
+		cpConfig.withTokenSupplier(new TokenMapSupplier() {
+			@Override
+			public List<HostToken> getTokens(Set<Host> activeHosts) {
+				try {
+					fetchLatch.await();
+				} catch (InterruptedException e) {
+				}
+				return supplier.getTokens(activeHosts);
+			}
+
+			@Override
+			public HostToken getTokenForHost(Host host, Set<Host> activeHosts) {
+				return supplier.getTokenForHost(host, activeHosts);
+			}
+		});
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+
+		// returns without waiting on the token supplier
+		selection.initWithHosts(pools);
+		Assert.assertEquals(2000000000L, getLocalToken(selection, h2));
+
+		fetchLatch.countDown();
+
+		for (int i=0; i<100 && getLocalToken(selection, h2) != 3530913377L; i++) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(3530913377L, getLocalToken(selection, h2));
+
+		// and the snapshot is brought up to date
+		TopologySnapshotFile snapshot = new TopologySnapshotFile(file.getAbsolutePath());
+		for (int i=0; i<100 && !snapshot.read().contains(new HostToken(3530913377L, h2)); i++) {
+			Thread.sleep(20);
+		}
+		Assert.assertTrue(snapshot.read().contains(new HostToken(3530913377L, h2)));
+		Assert.assertFalse(snapshot.read().contains(new HostToken(2000000000L, h2)));
+	}
+
+	@Test
+	public void testReconcileTopology() throws Exception {
+
+		cpConfig.setLoadBalancingStrategy(LoadBalancingStrategy.TokenAware);
+
+		final AtomicLong h2Token = new AtomicLong(3530913377L);
+		final TokenMapSupplier supplier = getTokenMapSupplier();
+		cpConfig.withTokenSupplier(new TokenMapSupplier() {
+			@Override
+			public List<HostToken> getTokens(Set<Host> activeHosts) {
+				List<HostToken> tokens = new ArrayList<HostToken>();
+				for (HostToken token : supplier.getTokens(activeHosts)) {
+					tokens.add(token.getHost().equals(h2) ? new HostToken(h2Token.get(), h2) : token);
+				}
+				return tokens;
+			}
+
+			@Override
+			public HostToken getTokenForHost(Host host, Set<Host> activeHosts) {
+				return supplier.getTokenForHost(host, activeHosts);
+			}
+		});
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+		Assert.assertEquals(3530913377L, getLocalToken(selection, h2));
+
+		// nothing moved
+		selection.reconcileTopology();
+		Assert.assertEquals(3530913377L, getLocalToken(selection, h2));
+
+		h2Token.set(2000000000L);
+		selection.reconcileTopology();
+		Assert.assertEquals(2000000000L, getLocalToken(selection, h2));
+
+		// the stale token is gone from the ring
+		List<TokenStatus> localTokens = selection.getTokenPoolTopology().getAllTokens().get("localTestDC");
+		Assert.assertEquals(2, localTokens.size());
+		Assert.assertEquals(1383429731L, getLocalToken(selection, h1));
+	}
+
+	private long getLocalToken(HostSelectionWithFallback<Integer> selection, Host host) {
+		for (TokenStatus status : selection.getTokenPoolTopology().getAllTokens().get("localTestDC")) {
+			if (status.getHostPool().getHost().equals(host)) {
+				return status.getToken();
+			}
+		}
+		return -1L;
+	}
+
 	@Test
 	public void testFallbackToRemotePoolWhenHostDown() throws Exception {
 
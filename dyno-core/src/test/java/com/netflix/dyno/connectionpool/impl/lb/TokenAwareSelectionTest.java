@@ -70,6 +70,35 @@ public class TokenAwareSelectionTest {
 		verifyTokenDistribution(result);
 	}
 
+	@Test
+	public void testRemoveHostPool() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+		pools.put(h3, getMockHostConnectionPool(h3));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+		tokenAwareSelector.addHostPool(h4, getMockHostConnectionPool(h4));
+		
+		Assert.assertEquals("h3", tokenAwareSelector.getOrderedHostPools().get(2).getHost().getHostName());
+		Assert.assertTrue(tokenAwareSelector.removeHostPool(h3));
+		Assert.assertFalse(tokenAwareSelector.removeHostPool(h3));
+		Assert.assertNull(tokenAwareSelector.getPoolForToken(h3.getToken()));
+
+		// the token of 'h3' is gone from the ring too, its keys now belong to 'h4'
+		for (long i=0; i<10000; i++) {
+			BaseOperation<Integer, Long> op = getTestOperation(i);
+			Long keyHash = m1Hash.hash(op.getKey());
+			if (keyHash > 1383429731L && keyHash <= 3530913377L) {
+				Assert.assertEquals("h4", tokenAwareSelector.getPoolForOperation(op).getHost().getHostName());
+			}
+		}
+		
+		Assert.assertEquals(3, tokenAwareSelector.getOrderedHostPools().size());
+	}
+
 	private BaseOperation<Integer, Long> getTestOperation(final Long n) {
 
 		return new BaseOperation<Integer, Long>() {
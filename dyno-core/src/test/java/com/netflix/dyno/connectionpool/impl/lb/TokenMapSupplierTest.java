@@ -1,14 +1,21 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 public class TokenMapSupplierTest {
 
@@ -57,4 +64,60 @@ public class TokenMapSupplierTest {
 		Assert.assertTrue(hTokens.get(7).getToken().equals(1669478519L));
 		Assert.assertTrue(hTokens.get(7).getHost().getHostName().equals("ec2-54-80-65-203.compute-1.amazonaws.com"));
 	}
+
+	@Test
+	public void testUnchangedTopologyIsNotAppliedAgain() throws Exception {
+
+		final String json = "[{\"token\":\"3051939411\",\"hostname\":\"ec2-54-237-143-4.compute-1.amazonaws.com\",\"zone\":\"us-east-1d\"}," +
+				"{\"token\":\"188627880\",\"hostname\":\"ec2-50-17-65-2.compute-1.amazonaws.com\",\"zone\":\"us-east-1d\"}]";
+
+		final AtomicInteger requests = new AtomicInteger(0);
+		final AtomicInteger notModified = new AtomicInteger(0);
+		final AtomicBoolean sendEtag = new AtomicBoolean(false);
+
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				if (sendEtag.get()) {
+					if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+						notModified.incrementAndGet();
+						exchange.sendResponseHeaders(304, -1);
+						exchange.close();
+						return;
+					}
+					exchange.getResponseHeaders().set("ETag", "\"v1\"");
+				}
+				byte[] body = json.getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		server.start();
+
+		try {
+			String url = "http://{hostname}:" + server.getAddress().getPort() + "/REST/v1/admin/cluster_describe";
+			HttpEndpointBasedTokenMapSupplier tokenSupplier = new HttpEndpointBasedTokenMapSupplier(url, 8102, 1, 0);
+
+			List<HostToken> first = tokenSupplier.getTopology("localhost");
+			Assert.assertEquals(2, first.size());
+			Assert.assertEquals(188627880L, first.get(1).getToken().longValue());
+			Assert.assertEquals("us-east-1d", first.get(1).getHost().getRack());
+
+			// same payload, same checksum, same list
+			Assert.assertSame(first, tokenSupplier.getTopology("localhost"));
+
+			// with an ETag the payload is not even sent again
+			sendEtag.set(true);
+			Assert.assertSame(first, tokenSupplier.getTopology("localhost"));
+			Assert.assertSame(first, tokenSupplier.getTopology("localhost"));
+
+			Assert.assertEquals(4, requests.get());
+			Assert.assertEquals(1, notModified.get());
+		} finally {
+			server.stop(0);
+		}
+	}
 }
@@ -0,0 +1,68 @@
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+
+public class TopologySnapshotFileTest {
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+
+		File file = File.createTempFile("dyno-topology", ".snapshot");
+		file.deleteOnExit();
+
+		TopologySnapshotFile snapshot = new TopologySnapshotFile(file.getAbsolutePath());
+
+		List<HostToken> hostTokens = new ArrayList<HostToken>();
+		hostTokens.add(new HostToken(1383429731L, new Host("h1", Status.Up).setRack("us-east-1c")));
+		hostTokens.add(new HostToken(3530913377L, new Host("h2", Status.Up).setRack("us-east-1d")));
+		hostTokens.add(new HostToken(42L, new Host("h3", Status.Up)));
+
+		snapshot.write(hostTokens);
+
+		List<HostToken> result = snapshot.read();
+		Assert.assertEquals(hostTokens, result);
+		Assert.assertNull(result.get(2).getHost().getRack());
+
+		// overwrite
+		snapshot.write(hostTokens.subList(0, 1));
+		Assert.assertEquals(hostTokens.subList(0, 1), snapshot.read());
+		Assert.assertFalse(new File(file.getAbsolutePath() + ".tmp").exists());
+	}
+
+	@Test
+	public void testMissingOrCorruptSnapshotIsIgnored() throws Exception {
+
+		File file = File.createTempFile("dyno-topology", ".snapshot");
+		file.deleteOnExit();
+
+		TopologySnapshotFile snapshot = new TopologySnapshotFile(file.getAbsolutePath());
+
+		// empty
+		Assert.assertNull(snapshot.read());
+
+		List<HostToken> hostTokens = new ArrayList<HostToken>();
+		hostTokens.add(new HostToken(1383429731L, new Host("h1", Status.Up).setRack("us-east-1c")));
+		snapshot.write(hostTokens);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(14);
+			raf.write(0xff);
+		} finally {
+			raf.close();
+		}
+		Assert.assertNull(snapshot.read());
+
+		Assert.assertTrue(file.delete());
+		Assert.assertNull(snapshot.read());
+	}
+}
@@ -0,0 +1,97 @@
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+
+public class HostAddressResolverTest {
+
+	private final AtomicInteger lookups = new AtomicInteger(0);
+	private final CountDownLatch lookupLatch = new CountDownLatch(1);
+
+	private HostAddressResolver getResolver(long ttlMillis) {
+		return new HostAddressResolver(ttlMillis, 4) {
+			@Override
+			protected InetAddress lookup(String hostname) throws UnknownHostException {
+				lookups.incrementAndGet();
+				try {
+					lookupLatch.await();
+				} catch (InterruptedException e) {
+				}
+				if (hostname.startsWith("unknown")) {
+					throw new UnknownHostException(hostname);
+				}
+				return InetAddress.getByAddress(hostname, new byte[] {10, 0, 0, (byte) lookups.get()});
+			}
+		};
+	}
+
+	@Test
+	public void testHostIsNotResolved() throws Exception {
+
+		Host host = new Host("host1.invalid", 8102, Status.Up);
+		Assert.assertTrue(host.getSocketAddress().isUnresolved());
+		Assert.assertTrue(host.setPort(8101).getSocketAddress().isUnresolved());
+		Assert.assertEquals(8101, host.getSocketAddress().getPort());
+	}
+
+	@Test
+	public void testLookupsAreSharedAndCached() throws Exception {
+
+		HostAddressResolver resolver = getResolver(60000);
+		Host host1 = new Host("host1", 8102, Status.Up);
+		Host host2 = new Host("host2", 8102, Status.Up);
+
+		resolver.prefetch(Arrays.asList(host1, host2, host1));
+		resolver.resolveAsync("host1");
+
+		// the lookups are still going, the caller gets the unresolved address once it runs out of time
+		Assert.assertTrue(resolver.resolve(host1, 10).isUnresolved());
+
+		lookupLatch.countDown();
+		InetSocketAddress address = resolver.resolve(host1, 1000);
+		Assert.assertFalse(address.isUnresolved());
+		Assert.assertEquals(8102, address.getPort());
+		Assert.assertEquals(2, lookups.get());
+
+		resolver.resolveAsync("host2").get(1, TimeUnit.SECONDS);
+		Assert.assertEquals(address, resolver.resolve(host1, 1000));
+		Assert.assertFalse(resolver.resolve(host2, 0).isUnresolved());
+		Assert.assertEquals(2, lookups.get());
+	}
+
+	@Test
+	public void testStaleAddressIsServedWhileRefreshing() throws Exception {
+
+		lookupLatch.countDown();
+
+		HostAddressResolver resolver = getResolver(50);
+		Host host = new Host("host1", 8102, Status.Up);
+
+		InetSocketAddress address = resolver.resolve(host, 1000);
+		Thread.sleep(100);
+
+		// expired, the old address is handed out and refreshed in the background
+		Assert.assertEquals(address, resolver.resolve(host, 0));
+		for (int i=0; i<100 && lookups.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, lookups.get());
+
+		// a failed lookup is not cached
+		Host unknown = new Host("unknown1", 8102, Status.Up);
+		Assert.assertTrue(resolver.resolve(unknown, 1000).isUnresolved());
+		Assert.assertTrue(resolver.resolve(unknown, 1000).isUnresolved());
+		Assert.assertEquals(4, lookups.get());
+	}
+}
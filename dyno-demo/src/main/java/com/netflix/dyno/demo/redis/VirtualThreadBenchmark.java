@@ -0,0 +1,152 @@
+package com.netflix.dyno.demo.redis;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.TokenMapSupplier;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.utils.VirtualThreads;
+import com.netflix.dyno.jedis.DynoJedisClient;
+
+/**
+ * Compares the throughput of many concurrent callers on platform threads against the same callers on virtual
+ * threads, with a redis (or dynomite) server on localhost. Virtual threads need java 21 or later.
+ *
+ * Usage: VirtualThreadBenchmark [port] [callers] [seconds] [connsPerHost]
+ */
+public class VirtualThreadBenchmark {
+
+	private static final int NumKeys = 1000;
+
+	private final DynoJedisClient client;
+	private final int callers;
+	private final int seconds;
+
+	public VirtualThreadBenchmark(DynoJedisClient client, int callers, int seconds) {
+		this.client = client;
+		this.callers = callers;
+		this.seconds = seconds;
+	}
+
+	public void run() throws Exception {
+
+		for (int i=0; i<NumKeys; i++) {
+			client.set("DynoBenchmark" + i, "" + i);
+		}
+
+		runCallers("platform threads", Executors.newFixedThreadPool(callers, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DynoBenchmarkCaller");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
+
+		ExecutorService virtualThreads = VirtualThreads.newThreadPerTaskExecutor("DynoBenchmarkCaller-");
+		if (virtualThreads != null) {
+			runCallers("virtual threads", virtualThreads);
+		} else {
+			System.out.println("Virtual threads are not supported on java " + System.getProperty("java.version") + ", skipping");
+		}
+	}
+
+	private void runCallers(String mode, ExecutorService threadPool) throws Exception {
+
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final CountDownLatch latch = new CountDownLatch(callers);
+		final AtomicLong success = new AtomicLong(0);
+		final AtomicLong failure = new AtomicLong(0);
+
+		for (int i=0; i<callers; i++) {
+			threadPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random();
+					try {
+						while (!stop.get()) {
+							try {
+								String key = "DynoBenchmark" + random.nextInt(NumKeys);
+								if (random.nextInt(10) == 0) {
+									client.set(key, key);
+								} else {
+									client.get(key);
+								}
+								success.incrementAndGet();
+							} catch (Exception e) {
+								failure.incrementAndGet();
+							}
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		latch.await(30, TimeUnit.SECONDS);
+		threadPool.shutdownNow();
+
+		System.out.println(mode + ": " + callers + " callers, " + (success.get() / seconds) + " ops/sec, "
+				+ failure.get() + " failures");
+	}
+
+	public static void main(String args[]) throws Exception {
+
+		final int port = args.length > 0 ? Integer.parseInt(args[0]) : 6379;
+		final int callers = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		final int connsPerHost = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+		final Host localHost = new Host("localhost", port, Status.Up);
+		final HostToken localHostToken = new HostToken(100000L, localHost);
+
+		DynoJedisClient client = new DynoJedisClient.Builder()
+		.withApplicationName("benchmark")
+		.withDynomiteClusterName("dyno_benchmark")
+		.withHostSupplier(new HostSupplier() {
+			@Override
+			public Collection<Host> getHosts() {
+				return Collections.singletonList(localHost);
+			}
+		})
+		.withCPConfig(new ConnectionPoolConfigurationImpl("benchmark")
+				.setMaxConnsPerHost(connsPerHost)
+				.setUseVirtualThreads(true)
+				.withTokenSupplier(new TokenMapSupplier() {
+					@Override
+					public List<HostToken> getTokens(Set<Host> activeHosts) {
+						return Collections.singletonList(localHostToken);
+					}
+
+					@Override
+					public HostToken getTokenForHost(Host host, Set<Host> activeHosts) {
+						return localHostToken;
+					}
+				}))
+		.withPort(port)
+		.build();
+
+		try {
+			new VirtualThreadBenchmark(client, callers, seconds).run();
+		} finally {
+			client.stopClient();
+		}
+	}
+}
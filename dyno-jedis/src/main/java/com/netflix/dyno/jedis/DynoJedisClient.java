@@ -21,9 +21,11 @@ import redis.clients.jedis.Tuple;
 import redis.clients.jedis.ZParams;
 
 import com.netflix.discovery.DiscoveryClient;
+import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.ConnectionContext;
 import com.netflix.dyno.connectionpool.ConnectionPool;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.Operation;
 import com.netflix.dyno.connectionpool.OperationResult;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
@@ -53,7 +55,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		return (ConnectionPoolImpl<Jedis>) connPool;
 	}
 	
-	private abstract class BaseKeyOperation<T> implements Operation<Jedis, T> {
+	private abstract class BaseKeyOperation<T> implements Operation<Jedis, T>, BaseOperation.Idempotent {
 		
 		private final String key;
 		private final OpName op;
@@ -70,6 +72,11 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		public String getKey() {
 			return key;
 		}
+
+		@Override
+		public boolean isIdempotent() {
+			return op.isIdempotent();
+		}
 	}
 	
 	@Override
@@ -140,6 +147,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_del}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<Long>> delAsync(final String key)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<Long>(key, OpName.DEL) {
+
+			@Override
+			public Long execute(Jedis client, ConnectionContext state)  {
+				return client.del(key);
+			}
+
+		});
+	}
+
 	public byte[] dump(final String key) {
 		return d_dump(key).getResult();
 	}
@@ -173,6 +195,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_exists}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<Boolean>> existsAsync(final String key)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<Boolean>(key, OpName.EXISTS) {
+
+			@Override
+			public Boolean execute(Jedis client, ConnectionContext state)  {
+				return client.exists(key);
+			}
+
+		});
+	}
+
 	@Override
 	public Long expire(final String key, final int seconds) {
 		return d_expire(key, seconds).getResult();
@@ -190,6 +227,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_expire}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<Long>> expireAsync(final String key, final Integer seconds)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<Long>(key, OpName.EXPIRE) {
+
+			@Override
+			public Long execute(Jedis client, ConnectionContext state)  {
+				return client.expire(key, seconds);
+			}
+
+		});
+	}
+
 	@Override
 	public Long expireAt(final String key, final long unixTime)  {
 		return d_expireAt(key, unixTime).getResult();
@@ -224,6 +276,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_get}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<String>> getAsync(final String key)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<String>(key, OpName.GET) {
+
+			@Override
+			public String execute(Jedis client, ConnectionContext state)  {
+				return client.get(key);
+			}
+
+		});
+	}
+
 	@Override
 	public Boolean getbit(final String key, final long offset)  {
 		return d_getbit(key, offset).getResult();
@@ -326,6 +393,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_hget}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<String>> hgetAsync(final String key, final String field)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<String>(key, OpName.HGET) {
+
+			@Override
+			public String execute(Jedis client, ConnectionContext state)  {
+				return client.hget(key, field);
+			}
+
+		});
+	}
+
 	@Override
 	public Map<String, String> hgetAll(final String key)  {
 		return d_hgetAll(key).getResult();
@@ -462,6 +544,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_hset}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<Long>> hsetAsync(final String key, final String field, final String value)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<Long>(key, OpName.HSET) {
+
+			@Override
+			public Long execute(Jedis client, ConnectionContext state)  {
+				return client.hset(key, field, value);
+			}
+
+		});
+	}
+
 	@Override
 	public List<String> hvals(final String key)  {
 		return d_hvals(key).getResult();
@@ -496,6 +593,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_incr}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<Long>> incrAsync(final String key)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<Long>(key, OpName.INCR) {
+
+			@Override
+			public Long execute(Jedis client, ConnectionContext state)  {
+				return client.incr(key);
+			}
+
+		});
+	}
+
 	@Override
 	public Long incrBy(final String key, final long delta)  {
 		return d_incrBy(key, delta).getResult();
@@ -944,6 +1056,21 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		});
 	}
 
+	/**
+	 * Async {@link #d_set}, the future completes once the operation has completed or has run out of retries
+	 */
+	public ListenableFuture<OperationResult<String>> setAsync(final String key, final String value)  {
+		
+		return connPool.executeWithFailoverAsync(new BaseKeyOperation<String>(key, OpName.SET) {
+
+			@Override
+			public String execute(Jedis client, ConnectionContext state)  {
+				return client.set(key, value);
+			}
+
+		});
+	}
+
 	@Override
 	public Boolean setbit(final String key, final long offset, final boolean value)  {
 	    return d_setbit(key, offset, value).getResult();
@@ -1,5 +1,8 @@
 package com.netflix.dyno.jedis;
 
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -14,6 +17,7 @@ import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionContext;
 import com.netflix.dyno.connectionpool.ConnectionFactory;
 import com.netflix.dyno.connectionpool.ConnectionObservor;
+import com.netflix.dyno.connectionpool.Deadline;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.ListenableFuture;
@@ -26,11 +30,14 @@ import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.ThrottledException;
 import com.netflix.dyno.connectionpool.impl.ConnectionContextImpl;
 import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.connectionpool.impl.utils.HostAddressResolver;
 
 public class JedisConnectionFactory implements ConnectionFactory<Jedis> {
 
     private static final org.slf4j.Logger Logger = LoggerFactory.getLogger(JedisConnectionFactory.class);
 
+    private static final String LoopbackAddress = "127.0.0.1";
+
 	private final OperationMonitor opMonitor; 
 	
 	public JedisConnectionFactory(OperationMonitor monitor) {
@@ -55,7 +62,15 @@ public class JedisConnectionFactory implements ConnectionFactory<Jedis> {
 		public JedisConnection(HostConnectionPool<Jedis> hostPool) {
 			this.hostPool = hostPool;
 			Host host = hostPool.getHost();
-			jedisClient = new Jedis(host.getHostName(), host.getPort(), hostPool.getConnectionTimeout());
+			String hostAddress;
+			if (host.getSocketPath() != null) {
+				// jedis only speaks tcp, the closest it gets to the socket of a co-located host is loopback
+				hostAddress = LoopbackAddress;
+			} else {
+				InetSocketAddress address = HostAddressResolver.getInstance().resolve(host, hostPool.getConnectionTimeout());
+				hostAddress = address.isUnresolved() ? host.getHostName() : address.getAddress().getHostAddress();
+			}
+			jedisClient = new Jedis(hostAddress, host.getPort(), hostPool.getConnectionTimeout());
 		}
 		
 		@Override
@@ -65,6 +80,7 @@ public class JedisConnectionFactory implements ConnectionFactory<Jedis> {
 			String opName = op.getName();
 
 			OperationResultImpl<R> opResult = null;
+			boolean bounded = boundSocketTimeout();
 			
 			try { 
 				R result = op.execute(jedisClient, null);
@@ -85,12 +101,45 @@ public class JedisConnectionFactory implements ConnectionFactory<Jedis> {
 				throw lastDynoException;
 
 			} finally {
+				if (bounded) {
+					restoreSocketTimeout();
+				}
 				long duration = System.nanoTime()/1000 - startTime;
 				if (opResult != null) {
 					opResult.setLatency(duration, TimeUnit.MICROSECONDS);
 				}
 			}
 		}
+		
+		/**
+		 * Cut the socket read timeout down to what is left of the operation's {@link Deadline}, if it has one
+		 * @return whether the timeout was changed
+		 */
+		private boolean boundSocketTimeout() {
+			Object deadline = context.getMetadata(Deadline.CONTEXT_KEY);
+			Socket socket = jedisClient.getClient().getSocket();
+			if (!(deadline instanceof Deadline) || socket == null) {
+				return false;
+			}
+			int timeout = Math.max(1, ((Deadline) deadline).bound(jedisClient.getClient().getTimeout(), TimeUnit.MILLISECONDS));
+			try {
+				socket.setSoTimeout(timeout);
+				return true;
+			} catch (SocketException e) {
+				return false;
+			}
+		}
+		
+		private void restoreSocketTimeout() {
+			Socket socket = jedisClient.getClient().getSocket();
+			try {
+				if (socket != null && !socket.isClosed()) {
+					socket.setSoTimeout(jedisClient.getClient().getTimeout());
+				}
+			} catch (SocketException e) {
+				Logger.warn("Failed to restore socket timeout: " + e.getMessage());
+			}
+		}
 
 		@Override
 		public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<Jedis, R> op) throws DynoException {
@@ -20,5 +20,32 @@ public enum OpName {
 	 ZADD, ZCARD, ZCOUNT, ZINCRBY, ZRANGE, ZRANGEWITHSCORES, ZRANK, ZRANGEBYSCORE, ZRANGEBYSCOREWITHSCORES, ZREM, ZREMRANGEBYRANK, 
 	 ZREMRANGEBYSCORE, ZREVRANGE, ZREVRANGEBYSCORE, ZREVRANGEBYSCOREWITHSCORES, ZREVRANGEWITHSCORES, ZREVRANK, ZSCORE
 	 ;
+	
+	/**
+	 * @return whether running the command twice has the same effect and reply as running it once, i.e it is safe to 
+	 * retry on another host after it may have run. Conditional writes such as SETNX aren't, the retry reports that 
+	 * nothing was written even though the first attempt wrote it. Neither are writes that report what they changed, 
+	 * e.g DEL, HSET or SADD, nor the expire commands since an expiry that already passed deletes the key.
+	 */
+	public boolean isIdempotent() {
+		switch (this) {
+		case APPEND:
+		case BLPOP: case BRPOP:
+		case DECR: case DECRBY: case DEL:
+		case EXPIRE: case EXPIREAT:
+		case GETSET:
+		case HDEL: case HINCRBY: case HINCRBYFLOAT: case HSET: case HSETNX:
+		case INCR: case INCRBY: case INCRBYFLOAT:
+		case LINSERT: case LPOP: case LPUSH: case LPUSHX: case LREM:
+		case MOVE:
+		case PERSIST: case PEXPIRE: case PEXPIREAT:
+		case RESTORE: case RPOP: case RPOPLPUSH: case RPUSH: case RPUSHX:
+		case SADD: case SETBIT: case SETNX: case SMOVE: case SPOP: case SREM:
+		case ZADD: case ZINCRBY: case ZREM: case ZREMRANGEBYRANK: case ZREMRANGEBYSCORE:
+			return false;
+		default:
+			return true;
+		}
+	}
 }
 
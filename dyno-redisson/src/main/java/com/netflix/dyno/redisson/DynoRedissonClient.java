@@ -10,7 +10,6 @@ import org.slf4j.LoggerFactory;
 import com.lambdaworks.redis.RedisAsyncConnection;
 import com.netflix.dyno.connectionpool.AsyncOperation;
 import com.netflix.dyno.connectionpool.ConnectionPool;
-import com.netflix.dyno.connectionpool.DecoratingListenableFuture;
 import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.OperationResult;
 import com.netflix.dyno.connectionpool.exception.DynoException;
@@ -51,7 +50,7 @@ public class DynoRedissonClient {
 
 			@Override
 			public ListenableFuture<String> executeAsync(RedisAsyncConnection<String, String> client) throws DynoException {
-				return new DecoratingListenableFuture<String>((client.get(key)));
+				return new NettyListenableFuture<String>(client.get(key));
 			}
 		});
 	}
@@ -72,7 +71,7 @@ public class DynoRedissonClient {
 
 			@Override
 			public ListenableFuture<String> executeAsync(RedisAsyncConnection<String, String> client) throws DynoException {
-				return new DecoratingListenableFuture<String>((client.set(key, value)));
+				return new NettyListenableFuture<String>(client.set(key, value));
 			}
 		});
 	}
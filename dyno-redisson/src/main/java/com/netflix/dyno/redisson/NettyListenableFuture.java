@@ -0,0 +1,60 @@
+package com.netflix.dyno.redisson;
+
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.netflix.dyno.connectionpool.ListenableFuture;
+
+/**
+ * Adapts the netty futures returned by redisson, so that the connection pool can chain retries on their completion
+ *
+ * @param <V>
+ */
+public class NettyListenableFuture<V> implements ListenableFuture<V> {
+
+	private final Future<V> innerFuture;
+
+	public NettyListenableFuture(Future<V> future) {
+		innerFuture = future;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return innerFuture.cancel(mayInterruptIfRunning);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return innerFuture.isCancelled();
+	}
+
+	@Override
+	public boolean isDone() {
+		return innerFuture.isDone();
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		return innerFuture.get();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return innerFuture.get(timeout, unit);
+	}
+
+	@Override
+	public void addListener(final Runnable listener, final Executor executor) {
+		innerFuture.addListener(new GenericFutureListener<Future<V>>() {
+			@Override
+			public void operationComplete(Future<V> future) throws Exception {
+				executor.execute(listener);
+			}
+		});
+	}
+}
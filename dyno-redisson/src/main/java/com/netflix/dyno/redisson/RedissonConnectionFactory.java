@@ -2,6 +2,7 @@ package com.netflix.dyno.redisson;
 
 import io.netty.channel.EventLoopGroup;
 
+import java.net.InetSocketAddress;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
@@ -25,6 +26,7 @@ import com.netflix.dyno.connectionpool.exception.ThrottledException;
 import com.netflix.dyno.connectionpool.impl.ConnectionContextImpl;
 import com.netflix.dyno.connectionpool.impl.FutureOperationalResultImpl;
 import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.connectionpool.impl.utils.HostAddressResolver;
 
 public class RedissonConnectionFactory implements ConnectionFactory<RedisAsyncConnection<String, String>> {
 	
@@ -56,7 +58,9 @@ public class RedissonConnectionFactory implements ConnectionFactory<RedisAsyncCo
 			this.hostPool = hPool;
 			Host host = hostPool.getHost();
 			this.opMonitor = opMonitor;
-			this.client = new RedisClient(eventGroupLoop, host.getHostName(), host.getPort());
+			InetSocketAddress address = HostAddressResolver.getInstance().resolve(host, hostPool.getConnectionTimeout());
+			String hostAddress = address.isUnresolved() ? host.getHostName() : address.getAddress().getHostAddress();
+			this.client = new RedisClient(eventGroupLoop, hostAddress, host.getPort());
 		}
 		
 		@Override
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import com.netflix.dyno.connectionpool.impl.utils.SettableFuture;
+
+/**
+ * A non blocking socket to a redis (or dynomite) server, this is the client that operations run against.
+ *
+ * Any number of threads can send commands on the channel at the same time. Commands are written in the order they
+ * are sent, several at a time when they queue up, and since the server replies in order, each reply completes the
+ * oldest command that is waiting. Hence a single socket carries many commands in flight, and no thread is tied up
+ * while a command is on the wire.
+ *
+ * When the socket fails, all commands in flight fail with the same {@link DynoConnectException} and the channel
+ * can't be used any more. The same goes for a server that stops replying: once several commands in a row time out,
+ * or the oldest command has waited a few times the command timeout, the channel is taken to be stuck rather than slow.
+ */
+public class RespChannel {
+
+	private static final int MaxWriteBatch = 64;
+	private static final int MaxTimeoutsInARow = 5;
+	private static final int StuckAfterTimeouts = 3;
+
+	private final RespEventLoop loop;
+	private final int commandTimeoutMillis;
+
+	private final Object writeLock = new Object();
+	private final ConcurrentLinkedQueue<PendingCommand> pending = new ConcurrentLinkedQueue<PendingCommand>();
+	private final ConcurrentLinkedQueue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private final AtomicInteger timeoutsInARow = new AtomicInteger(0);
+
+	// only used on the event loop
+	private final RespCodec.Decoder decoder = new RespCodec.Decoder();
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+	private final ByteBuffer[] writeBatch = new ByteBuffer[MaxWriteBatch];
+	private SelectionKey key;
+
+	private volatile SocketChannel socket;
+	private volatile DynoConnectException closedReason = new FatalConnectionException("Not connected");
+	private volatile DynoConnectException lastException;
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled.set(false);
+			try {
+				flush();
+			} catch (IOException e) {
+				fail(new FatalConnectionException(e), true);
+			}
+		}
+	};
+
+	public RespChannel(RespEventLoop loop, int commandTimeoutMillis) {
+		this.loop = loop;
+		this.commandTimeoutMillis = commandTimeoutMillis;
+	}
+
+	/**
+	 * Connect, waiting at most the given time
+	 * @param address
+	 * @param timeoutMillis
+	 * @throws DynoConnectException
+	 */
+	public void connect(InetSocketAddress address, int timeoutMillis) throws DynoConnectException {
+
+		try {
+			SocketChannel sc = SocketChannel.open();
+			socket = sc;
+			sc.socket().setTcpNoDelay(true);
+			sc.socket().setKeepAlive(true);
+			sc.socket().connect(address, timeoutMillis);
+			register(sc, timeoutMillis);
+
+		} catch (Exception e) {
+			DynoConnectException reason = new FatalConnectionException("Failed to connect to " + address, e);
+			fail(reason, true);
+			throw reason;
+		}
+	}
+
+	/**
+	 * Connect to the unix domain socket at the given path, see {@link #isUnixSocketSupported()}
+	 * @param socketPath
+	 * @param timeoutMillis
+	 * @throws DynoConnectException
+	 */
+	public void connect(String socketPath, int timeoutMillis) throws DynoConnectException {
+
+		try {
+			SocketChannel sc = UnixDomainSockets.connect(socketPath, timeoutMillis);
+			socket = sc;
+			register(sc, timeoutMillis);
+
+		} catch (Exception e) {
+			DynoConnectException reason = new FatalConnectionException("Failed to connect to " + socketPath, e);
+			fail(reason, true);
+			throw reason;
+		}
+	}
+
+	/**
+	 * @return whether the runtime can connect over unix domain sockets
+	 */
+	public static boolean isUnixSocketSupported() {
+		return UnixDomainSockets.isSupported();
+	}
+
+	private void register(final SocketChannel sc, int timeoutMillis) throws Exception {
+
+		sc.configureBlocking(false);
+
+		// channels register with the selector on the loop, else they block on its select()
+		final SettableFuture<Void> registered = new SettableFuture<Void>();
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key = sc.register(loop.getSelector(), SelectionKey.OP_READ, RespChannel.this);
+					registered.set(null);
+				} catch (IOException e) {
+					registered.setException(e);
+				}
+			}
+		});
+		registered.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		closedReason = null;
+	}
+
+	/**
+	 * Send the command and wait for its reply
+	 * @param args the command followed by its arguments
+	 * @return the decoded reply, see {@link RespCodec}
+	 * @throws DynoException when the reply doesn't arrive in time or the connection failed
+	 * @throws RespErrorException when the server replies with an error
+	 */
+	public Object command(String... args) throws DynoException {
+
+		ListenableFuture<Object> reply = commandAsync(args);
+		try {
+			return reply.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new FatalConnectionException(e.getCause());
+		} catch (java.util.concurrent.TimeoutException e) {
+			// the late reply still completes this command when it arrives, the commands after it are not affected
+			int timeouts = timeoutsInARow.incrementAndGet();
+			if (timeouts >= MaxTimeoutsInARow) {
+				fail(new FatalConnectionException(timeouts + " commands in a row got no reply in " + commandTimeoutMillis + " ms"), true);
+			} else {
+				failIfStuck();
+			}
+			throw new TimeoutException("No reply after " + commandTimeoutMillis + " ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DynoConnectException(e);
+		}
+	}
+
+	/**
+	 * Send the command
+	 * @param args the command followed by its arguments
+	 * @return future for the decoded reply, it fails with {@link RespErrorException} when the server replies with
+	 * an error, and with a {@link DynoConnectException} when the connection fails
+	 */
+	public ListenableFuture<Object> commandAsync(String... args) {
+
+		SettableFuture<Object> reply = new SettableFuture<Object>();
+		ByteBuffer request = RespCodec.encode(args);
+		failIfStuck();
+
+		// the order of the writes must match the order of the replies
+		synchronized (writeLock) {
+			if (closedReason != null) {
+				reply.setException(closedReason);
+				return reply;
+			}
+			pending.add(new PendingCommand(reply));
+			writes.add(request);
+		}
+		if (flushScheduled.compareAndSet(false, true)) {
+			loop.execute(flushTask);
+		}
+		return reply;
+	}
+
+	/**
+	 * @return the number of commands waiting for their reply
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public boolean isConnected() {
+		return closedReason == null;
+	}
+
+	/**
+	 * @return the error that failed the connection, if any
+	 */
+	public DynoConnectException getLastException() {
+		return lastException;
+	}
+
+	public void close() {
+		fail(new FatalConnectionException("Connection closed"), false);
+	}
+
+	/**
+	 * Fail the channel when its oldest command has waited much longer than any command should, i.e the replies
+	 * stopped coming rather than slowed down
+	 */
+	private void failIfStuck() {
+
+		PendingCommand oldest = pending.peek();
+		if (oldest == null || commandTimeoutMillis <= 0) {
+			return;
+		}
+		long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.sentNanos);
+		if (waitedMillis > (long) commandTimeoutMillis * StuckAfterTimeouts) {
+			fail(new FatalConnectionException("No reply to the oldest command in " + waitedMillis + " ms"), true);
+		}
+	}
+
+	/**
+	 * Handle the selected key, called on the event loop
+	 * @param selectedKey
+	 */
+	void process(SelectionKey selectedKey) {
+		try {
+			if (selectedKey.isValid() && selectedKey.isReadable()) {
+				read();
+			}
+			if (selectedKey.isValid() && selectedKey.isWritable()) {
+				flush();
+			}
+		} catch (Exception e) {
+			fail(new FatalConnectionException(e), true);
+		}
+	}
+
+	private void read() throws IOException {
+
+		SocketChannel sc = socket;
+		if (sc == null) {
+			return;
+		}
+		int n;
+		while ((n = sc.read(readBuffer)) > 0) {
+			readBuffer.flip();
+			for (Object reply : decoder.decode(readBuffer)) {
+				PendingCommand command = pending.poll();
+				if (command == null) {
+					throw new RespCodec.RespProtocolException("Got a reply without a command");
+				}
+				timeoutsInARow.set(0);
+				if (reply instanceof RespErrorException) {
+					command.reply.setException((RespErrorException) reply);
+				} else {
+					command.reply.set(reply);
+				}
+			}
+			readBuffer.clear();
+		}
+		if (n < 0) {
+			throw new IOException("Connection closed by server");
+		}
+	}
+
+	private void flush() throws IOException {
+
+		SocketChannel sc = socket;
+		if (sc == null || key == null || !key.isValid()) {
+			return;
+		}
+
+		while (true) {
+			int n = 0;
+			Iterator<ByteBuffer> iter = writes.iterator();
+			while (iter.hasNext() && n < writeBatch.length) {
+				writeBatch[n++] = iter.next();
+			}
+			if (n == 0) {
+				break;
+			}
+
+			sc.write(writeBatch, 0, n);
+
+			int written = 0;
+			while (written < n && !writeBatch[written].hasRemaining()) {
+				writes.poll();
+				writeBatch[written++] = null;
+			}
+			if (written < n) {
+				// the socket buffer is full, carry on once it drains
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	private void fail(DynoConnectException reason, boolean error) {
+
+		synchronized (writeLock) {
+			if (closedReason != null && socket == null) {
+				return;
+			}
+			closedReason = reason;
+		}
+		if (error) {
+			lastException = reason;
+		}
+
+		SocketChannel sc = socket;
+		socket = null;
+		if (sc != null) {
+			try {
+				sc.close();
+			} catch (IOException e) {
+			}
+		}
+
+		PendingCommand command;
+		while ((command = pending.poll()) != null) {
+			command.reply.setException(reason);
+		}
+		writes.clear();
+	}
+
+	private static class PendingCommand {
+
+		private final SettableFuture<Object> reply;
+		private final long sentNanos = System.nanoTime();
+
+		private PendingCommand(SettableFuture<Object> reply) {
+			this.reply = reply;
+		}
+	}
+}
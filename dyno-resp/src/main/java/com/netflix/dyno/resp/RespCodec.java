@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes commands into the redis protocol (RESP) and decodes the replies.
+ *
+ * Replies are decoded as follows: status replies as String, errors as {@link RespErrorException}, integers as Long,
+ * bulk strings as (UTF-8) String and arrays as List. Null bulk strings and null arrays are decoded as null.
+ */
+public class RespCodec {
+
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte[] CRLF = new byte[] { '\r', '\n' };
+
+	/**
+	 * @param args the command followed by its arguments
+	 * @return ByteBuffer ready to be written
+	 */
+	public static ByteBuffer encode(String... args) {
+
+		byte[][] encodedArgs = new byte[args.length][];
+		int size = 16;
+		for (int i=0; i<args.length; i++) {
+			encodedArgs[i] = args[i].getBytes(UTF8);
+			size += encodedArgs[i].length + 16;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put((byte) '*').put(Integer.toString(args.length).getBytes(UTF8)).put(CRLF);
+		for (byte[] arg : encodedArgs) {
+			buffer.put((byte) '$').put(Integer.toString(arg.length).getBytes(UTF8)).put(CRLF);
+			buffer.put(arg).put(CRLF);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Incremental decoder for the replies on a connection. Bytes are fed as they are read from the socket, a reply
+	 * that is split across reads is decoded once the rest of it arrives.
+	 *
+	 * Not thread safe, each connection reads on a single event loop.
+	 */
+	public static class Decoder {
+
+		private static final Object Incomplete = new Object();
+
+		private byte[] buffer = new byte[8192];
+		private int limit = 0;
+		private int pos = 0;
+
+		/**
+		 * @param in
+		 * @return the replies that are complete, in order
+		 * @throws RespProtocolException
+		 */
+		public List<Object> decode(ByteBuffer in) {
+
+			append(in);
+
+			List<Object> replies = new ArrayList<Object>();
+			int start = 0;
+			while (start < limit) {
+				pos = start;
+				Object reply = parse();
+				if (reply == Incomplete) {
+					break;
+				}
+				replies.add(reply);
+				start = pos;
+			}
+
+			// keep the partial reply, if any
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			limit -= start;
+			return replies;
+		}
+
+		private void append(ByteBuffer in) {
+			int length = in.remaining();
+			if (limit + length > buffer.length) {
+				byte[] newBuffer = new byte[Math.max(buffer.length * 2, limit + length)];
+				System.arraycopy(buffer, 0, newBuffer, 0, limit);
+				buffer = newBuffer;
+			}
+			in.get(buffer, limit, length);
+			limit += length;
+		}
+
+		private Object parse() {
+
+			if (pos >= limit) {
+				return Incomplete;
+			}
+			byte type = buffer[pos++];
+			String line = readLine();
+			if (line == null) {
+				return Incomplete;
+			}
+
+			switch (type) {
+				case '+':
+					return line;
+				case '-':
+					return new RespErrorException(line);
+				case ':':
+					return parseLong(line);
+				case '$': {
+					int length = (int) parseLong(line);
+					if (length < 0) {
+						return null;
+					}
+					if (pos + length + 2 > limit) {
+						return Incomplete;
+					}
+					String value = new String(buffer, pos, length, UTF8);
+					pos += length + 2;
+					return value;
+				}
+				case '*': {
+					int count = (int) parseLong(line);
+					if (count < 0) {
+						return null;
+					}
+					List<Object> values = new ArrayList<Object>(count);
+					for (int i=0; i<count; i++) {
+						Object value = parse();
+						if (value == Incomplete) {
+							return Incomplete;
+						}
+						values.add(value);
+					}
+					return values;
+				}
+				default:
+					throw new RespProtocolException("Unknown reply type: " + (char) type);
+			}
+		}
+
+		private String readLine() {
+			for (int i=pos; i<limit-1; i++) {
+				if (buffer[i] == '\r' && buffer[i+1] == '\n') {
+					String line = new String(buffer, pos, i - pos, UTF8);
+					pos = i + 2;
+					return line;
+				}
+			}
+			return null;
+		}
+
+		private long parseLong(String line) {
+			try {
+				return Long.parseLong(line);
+			} catch (NumberFormatException e) {
+				throw new RespProtocolException("Bad length or integer: " + line);
+			}
+		}
+	}
+
+	/**
+	 * The bytes on the connection are not valid RESP, the connection can't be used any more
+	 */
+	public static class RespProtocolException extends RuntimeException {
+
+		private static final long serialVersionUID = -2651236021437426335L;
+
+		public RespProtocolException(String message) {
+			super(message);
+		}
+	}
+}
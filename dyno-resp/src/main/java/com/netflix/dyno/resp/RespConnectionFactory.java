@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.ConnectionFactory;
+import com.netflix.dyno.connectionpool.ConnectionObservor;
+import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.OperationMonitor;
+import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.impl.ConnectionContextImpl;
+import com.netflix.dyno.connectionpool.impl.FutureOperationalResultImpl;
+import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.connectionpool.impl.utils.HostAddressResolver;
+import com.netflix.dyno.connectionpool.impl.utils.SettableFuture;
+
+/**
+ * Connections over {@link RespChannel}s, i.e non blocking sockets that are read and written by a small group of
+ * {@link RespEventLoop}s. Operations are either sync or async and run against the {@link RespChannel}.
+ *
+ * Each connection carries any number of commands in flight, hence it is meant for the
+ * {@link com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type#Async} and
+ * {@link com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type#Multiplexed} pools,
+ * where callers share a few connections per host instead of borrowing them exclusively.
+ *
+ * Hosts with a {@link Host#getSocketPath()} are connected over their unix domain socket when the runtime supports it.
+ */
+public class RespConnectionFactory implements ConnectionFactory<RespChannel> {
+
+	private static final Logger Logger = LoggerFactory.getLogger(RespConnectionFactory.class);
+
+	private static final String LoopbackAddress = "127.0.0.1";
+	private static final AtomicBoolean UnixSocketWarned = new AtomicBoolean(false);
+
+	private final ConnectionPoolConfiguration cpConfig;
+	private final OperationMonitor opMonitor;
+	private final RespEventLoop.Group eventLoops;
+
+	public RespConnectionFactory(ConnectionPoolConfiguration config, OperationMonitor monitor) {
+		this(config, monitor, RespEventLoop.Group.getDefault());
+	}
+
+	public RespConnectionFactory(ConnectionPoolConfiguration config, OperationMonitor monitor, RespEventLoop.Group loops) {
+		this.cpConfig = config;
+		this.opMonitor = monitor;
+		this.eventLoops = loops;
+	}
+
+	@Override
+	public Connection<RespChannel> createConnection(HostConnectionPool<RespChannel> pool, ConnectionObservor connectionObservor)
+			throws DynoConnectException, ThrottledException {
+
+		return new RespConnection(pool);
+	}
+
+	public class RespConnection implements Connection<RespChannel> {
+
+		private final HostConnectionPool<RespChannel> hostPool;
+		private final RespChannel channel;
+		private final ConnectionContextImpl context = new ConnectionContextImpl();
+
+		public RespConnection(HostConnectionPool<RespChannel> hostPool) {
+			this.hostPool = hostPool;
+			this.channel = new RespChannel(eventLoops.next(), cpConfig.getSocketTimeout());
+		}
+
+		@Override
+		public <R> OperationResult<R> execute(Operation<RespChannel, R> op) throws DynoException {
+
+			long startTime = System.nanoTime()/1000;
+			String opName = op.getName();
+
+			OperationResultImpl<R> opResult = null;
+
+			try {
+				R result = op.execute(channel, context);
+				opMonitor.recordSuccess(opName);
+				opResult = new OperationResultImpl<R>(opName, result, opMonitor);
+				return opResult;
+
+			} catch (RuntimeException ex) {
+				opMonitor.recordFailure(opName, ex.getMessage());
+				throw ex;
+
+			} finally {
+				long duration = System.nanoTime()/1000 - startTime;
+				if (opResult != null) {
+					opResult.setLatency(duration, TimeUnit.MICROSECONDS);
+				}
+			}
+		}
+
+		@Override
+		public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<RespChannel, R> op) throws DynoException {
+
+			final long startTime = System.currentTimeMillis();
+			final String opName = op.getName();
+
+			final ListenableFuture<R> result = op.executeAsync(channel);
+			result.addListener(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						result.get();
+						opMonitor.recordSuccess(opName);
+					} catch (ExecutionException e) {
+						opMonitor.recordFailure(opName, e.getCause().getMessage());
+					} catch (Exception e) {
+						opMonitor.recordFailure(opName, e.getMessage());
+					}
+				}
+			}, SettableFuture.DirectExecutor);
+
+			return new FutureOperationalResultImpl<R>(opName, result, startTime, opMonitor).node(getHost());
+		}
+
+		@Override
+		public void close() {
+			channel.close();
+		}
+
+		@Override
+		public Host getHost() {
+			return hostPool.getHost();
+		}
+
+		@Override
+		public void open() throws DynoException {
+			String socketPath = getHost().getSocketPath();
+			if (socketPath != null) {
+				openLocal(socketPath);
+				return;
+			}
+			InetSocketAddress address = HostAddressResolver.getInstance().resolve(getHost(), hostPool.getConnectionTimeout());
+			if (address.isUnresolved()) {
+				// let the socket have another go at it
+				address = new InetSocketAddress(getHost().getHostName(), getHost().getPort());
+			}
+			try {
+				channel.connect(address, hostPool.getConnectionTimeout());
+			} catch (DynoConnectException e) {
+				throw e.setHost(getHost());
+			}
+		}
+
+		private void openLocal(String socketPath) throws DynoException {
+			try {
+				if (RespChannel.isUnixSocketSupported()) {
+					channel.connect(socketPath, hostPool.getConnectionTimeout());
+				} else {
+					if (!UnixSocketWarned.getAndSet(true)) {
+						Logger.warn("Unix domain sockets need java 16 or later, connecting to " + socketPath + " over loopback instead");
+					}
+					channel.connect(new InetSocketAddress(LoopbackAddress, getHost().getPort()), hostPool.getConnectionTimeout());
+				}
+			} catch (DynoConnectException e) {
+				throw e.setHost(getHost());
+			}
+		}
+
+		@Override
+		public DynoConnectException getLastException() {
+			return channel.getLastException();
+		}
+
+		@Override
+		public HostConnectionPool<RespChannel> getParentConnectionPool() {
+			return hostPool;
+		}
+
+		@Override
+		public void execPing() {
+			Object reply = channel.command("PING");
+			if (!"PONG".equals(reply)) {
+				Logger.warn("Unexpected ping reply from " + getHost() + ": " + reply);
+				throw new DynoConnectException("Unsuccessful ping, got: " + reply);
+			}
+		}
+
+		@Override
+		public ConnectionContext getContext() {
+			return context;
+		}
+	}
+}
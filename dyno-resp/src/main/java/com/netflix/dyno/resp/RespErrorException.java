@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+/**
+ * An error reply from the server, e.g "ERR unknown command". This is an application error, hence it is not a
+ * DynoException and the connection pool does not fail over on it.
+ */
+public class RespErrorException extends RuntimeException {
+
+	private static final long serialVersionUID = 2940526329455617720L;
+
+	public RespErrorException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A selector and the daemon thread that runs it. All reads and writes of the {@link RespChannel}s registered with
+ * the loop happen on its thread, other threads hand work to it via {@link #execute(Runnable)}.
+ */
+public class RespEventLoop implements Runnable {
+
+	private static final Logger Logger = LoggerFactory.getLogger(RespEventLoop.class);
+
+	private final Selector selector;
+	private final Thread thread;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private volatile boolean running = true;
+
+	public RespEventLoop(String name) {
+		try {
+			this.selector = Selector.open();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to open selector", e);
+		}
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Run the task on the loop's thread
+	 * @param task
+	 */
+	public void execute(Runnable task) {
+		if (inEventLoop()) {
+			task.run();
+			return;
+		}
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	Selector getSelector() {
+		return selector;
+	}
+
+	public void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+
+		while (running) {
+			try {
+				selector.select();
+
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					runTask(task);
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					((RespChannel) key.attachment()).process(key);
+				}
+			} catch (Exception e) {
+				Logger.error("Unexpected error in event loop " + thread.getName(), e);
+			}
+		}
+
+		for (SelectionKey key : selector.keys()) {
+			((RespChannel) key.attachment()).close();
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			Logger.warn("Failed to close selector: " + e.getMessage());
+		}
+	}
+
+	private void runTask(Runnable task) {
+		try {
+			task.run();
+		} catch (Exception e) {
+			Logger.error("Task failed in event loop " + thread.getName(), e);
+		}
+	}
+
+	/**
+	 * A fixed set of event loops that connections are spread across
+	 */
+	public static class Group {
+
+		private static volatile Group Default;
+
+		/**
+		 * @return a group with one event loop per core, shared by all connection factories that don't bring their own
+		 */
+		public static Group getDefault() {
+			if (Default == null) {
+				synchronized (Group.class) {
+					if (Default == null) {
+						Default = new Group(Runtime.getRuntime().availableProcessors());
+					}
+				}
+			}
+			return Default;
+		}
+
+		private final RespEventLoop[] loops;
+		private final AtomicInteger next = new AtomicInteger(0);
+
+		public Group(int nLoops) {
+			loops = new RespEventLoop[Math.max(1, nLoops)];
+			for (int i=0; i<loops.length; i++) {
+				loops[i] = new RespEventLoop("DynoRespEventLoop-" + i);
+			}
+		}
+
+		public RespEventLoop next() {
+			return loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+		}
+
+		public void shutdown() {
+			for (RespEventLoop loop : loops) {
+				loop.shutdown();
+			}
+		}
+	}
+}
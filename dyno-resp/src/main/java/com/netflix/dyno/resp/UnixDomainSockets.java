@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.resp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Opens {@link SocketChannel}s over unix domain sockets. The jdk only has these from java 16 on, hence they are
+ * looked up reflectively and {@link #isSupported()} is false on older runtimes.
+ */
+final class UnixDomainSockets {
+
+	private static final ProtocolFamily UnixFamily;
+	private static final Method OpenChannel;
+	private static final Method AddressOf;
+
+	// a unix socket connect blocks while the server's backlog is full and can't be bounded by the socket itself,
+	// hence it runs here while the caller waits for it with a timeout
+	private static final ExecutorService Connector = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "DynoUnixSocketConnector");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	static {
+		ProtocolFamily family = null;
+		Method open = null;
+		Method addressOf = null;
+		try {
+			family = Enum.valueOf(StandardProtocolFamily.class, "UNIX");
+			open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+			addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+		} catch (Exception e) {
+			family = null;
+		}
+		UnixFamily = family;
+		OpenChannel = open;
+		AddressOf = addressOf;
+	}
+
+	private UnixDomainSockets() {
+	}
+
+	static boolean isSupported() {
+		return UnixFamily != null;
+	}
+
+	/**
+	 * Open a blocking channel connected to the socket at the given path
+	 * @param path
+	 * @param timeoutMillis how long to wait for the connect, 0 to wait for as long as it takes
+	 * @return SocketChannel
+	 * @throws IOException
+	 */
+	static SocketChannel connect(String path, int timeoutMillis) throws IOException {
+
+		if (!isSupported()) {
+			throw new IOException("Unix domain sockets are not supported on java " + System.getProperty("java.version"));
+		}
+
+		final SocketChannel sc;
+		final SocketAddress address;
+		try {
+			sc = (SocketChannel) OpenChannel.invoke(null, UnixFamily);
+			address = (SocketAddress) AddressOf.invoke(null, path);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IOException(e);
+		}
+
+		Future<Boolean> connected = Connector.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws IOException {
+				return sc.connect(address);
+			}
+		});
+		try {
+			if (timeoutMillis > 0) {
+				connected.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			} else {
+				// no timeout, same as for a tcp socket
+				connected.get();
+			}
+			return sc;
+		} catch (TimeoutException e) {
+			// closing the channel also ends the connect that is still blocked
+			sc.close();
+			throw new SocketTimeoutException("Timed out connecting to " + path + " after " + timeoutMillis + " ms");
+		} catch (ExecutionException e) {
+			sc.close();
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			sc.close();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while connecting to " + path);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.netflix.dyno.resp;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.exception.DynoConnectException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
+
+public class RespChannelTest {
+
+	private RespStubServer server;
+	private RespEventLoop loop;
+
+	@Before
+	public void beforeTest() throws Exception {
+		server = RespStubServer.start();
+		loop = new RespEventLoop("RespChannelTest");
+	}
+
+	@After
+	public void afterTest() {
+		loop.shutdown();
+		server.shutdown();
+	}
+
+	private RespChannel connect(int commandTimeoutMillis) throws Exception {
+		RespChannel channel = new RespChannel(loop, commandTimeoutMillis);
+		channel.connect(new InetSocketAddress("127.0.0.1", server.getPort()), 1000);
+		return channel;
+	}
+
+	@Test
+	public void testCommands() throws Exception {
+
+		RespChannel channel = connect(1000);
+
+		Assert.assertEquals("PONG", channel.command("PING"));
+		Assert.assertEquals("OK", channel.command("SET", "key", "value"));
+		Assert.assertEquals("value", channel.command("GET", "key"));
+		Assert.assertEquals(1L, channel.command("DEL", "key"));
+		Assert.assertNull(channel.command("GET", "key"));
+
+		try {
+			channel.command("NOSUCHCOMMAND");
+			Assert.fail("Expected error reply");
+		} catch (RespErrorException e) {
+			Assert.assertTrue(e.getMessage().startsWith("ERR unknown command"));
+		}
+
+		// error replies are for the command only
+		Assert.assertTrue(channel.isConnected());
+		Assert.assertEquals("PONG", channel.command("PING"));
+		channel.close();
+	}
+
+	@Test
+	public void testRepliesMatchCommandsWhenSentConcurrently() throws Exception {
+
+		// fragmented replies make the reads end at random points of the replies
+		server.setFragmentSize(3);
+		final RespChannel channel = connect(5000);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int t=0; t<8; t++) {
+				final int thread = t;
+				futures.add(threadPool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						List<ListenableFuture<Object>> replies = new ArrayList<ListenableFuture<Object>>();
+						for (int i=0; i<50; i++) {
+							replies.add(channel.commandAsync("ECHO", thread + "-" + i));
+						}
+						for (int i=0; i<replies.size(); i++) {
+							Assert.assertEquals(thread + "-" + i, replies.get(i).get(5, TimeUnit.SECONDS));
+						}
+						return replies.size();
+					}
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				Assert.assertEquals(50, future.get(10, TimeUnit.SECONDS).intValue());
+			}
+			Assert.assertEquals(0, channel.getPendingCount());
+		} finally {
+			threadPool.shutdownNow();
+			channel.close();
+		}
+	}
+
+	@Test
+	public void testLateReplyGoesToItsCommand() throws Exception {
+
+		RespChannel channel = connect(100);
+
+		try {
+			channel.command("DELAY", "250", "late");
+			Assert.fail("Expected timeout");
+		} catch (TimeoutException e) {
+		}
+
+		// the late reply completes the command that timed out, not the one after it
+		ListenableFuture<Object> next = channel.commandAsync("ECHO", "next");
+		Assert.assertEquals("next", next.get(1, TimeUnit.SECONDS));
+		Assert.assertEquals(0, channel.getPendingCount());
+		Assert.assertTrue(channel.isConnected());
+		channel.close();
+	}
+
+	@Test
+	public void testPendingCommandsFailWhenServerCloses() throws Exception {
+
+		RespChannel channel = connect(1000);
+
+		List<ListenableFuture<Object>> replies = new ArrayList<ListenableFuture<Object>>();
+		for (int i=0; i<3; i++) {
+			replies.add(channel.commandAsync("HANG"));
+		}
+		waitForClients(1);
+		server.closeClients();
+
+		for (ListenableFuture<Object> reply : replies) {
+			assertFailed(reply, FatalConnectionException.class);
+		}
+		Assert.assertFalse(channel.isConnected());
+		Assert.assertTrue(channel.getLastException() instanceof FatalConnectionException);
+		Assert.assertEquals(0, channel.getPendingCount());
+
+		// the channel can't be used any more
+		assertFailed(channel.commandAsync("PING"), FatalConnectionException.class);
+	}
+
+	@Test
+	public void testPendingCommandsFailOnProtocolError() throws Exception {
+
+		RespChannel channel = connect(1000);
+
+		ListenableFuture<Object> garbage = channel.commandAsync("GARBAGE");
+		ListenableFuture<Object> next = channel.commandAsync("DELAY", "100", "next");
+
+		assertFailed(garbage, FatalConnectionException.class);
+		assertFailed(next, FatalConnectionException.class);
+		Assert.assertFalse(channel.isConnected());
+		Assert.assertTrue(channel.getLastException().getCause() instanceof RespCodec.RespProtocolException);
+	}
+
+	@Test
+	public void testPendingCommandsFailOnClose() throws Exception {
+
+		RespChannel channel = connect(1000);
+
+		ListenableFuture<Object> reply = channel.commandAsync("HANG");
+		channel.close();
+
+		assertFailed(reply, FatalConnectionException.class);
+		Assert.assertFalse(channel.isConnected());
+		// closed on purpose, not failed
+		Assert.assertNull(channel.getLastException());
+	}
+
+	@Test
+	public void testChannelFailsAfterTimeoutsInARow() throws Exception {
+
+		final RespChannel channel = connect(100);
+		ListenableFuture<Object> hung = channel.commandAsync("HANG");
+
+		// callers that time out at about the same time, well before the oldest command counts as stuck
+		ExecutorService threadPool = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (int i=0; i<5; i++) {
+				futures.add(threadPool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						try {
+							channel.command("PING");
+							return false;
+						} catch (TimeoutException e) {
+							return true;
+						}
+					}
+				}));
+			}
+			for (Future<Boolean> future : futures) {
+				Assert.assertTrue(future.get(1, TimeUnit.SECONDS));
+			}
+		} finally {
+			threadPool.shutdownNow();
+		}
+
+		// the server is stuck, not slow
+		Assert.assertFalse(channel.isConnected());
+		Assert.assertTrue(channel.getLastException() instanceof FatalConnectionException);
+		Assert.assertTrue(channel.getLastException().getMessage(), channel.getLastException().getMessage().contains("in a row"));
+		assertFailed(hung, FatalConnectionException.class);
+		Assert.assertEquals(0, channel.getPendingCount());
+	}
+
+	@Test
+	public void testChannelFailsWhenOldestCommandIsStuck() throws Exception {
+
+		RespChannel channel = connect(50);
+		ListenableFuture<Object> hung = channel.commandAsync("HANG");
+
+		// a slow reply leaves the channel alone
+		Thread.sleep(100);
+		ListenableFuture<Object> next = channel.commandAsync("PING");
+		Assert.assertTrue(channel.isConnected());
+
+		// no reply after a few times the command timeout fails the channel, and with it the commands waiting
+		Thread.sleep(100);
+		assertFailed(channel.commandAsync("PING"), FatalConnectionException.class);
+		assertFailed(hung, FatalConnectionException.class);
+		assertFailed(next, FatalConnectionException.class);
+		Assert.assertFalse(channel.isConnected());
+		Assert.assertTrue(channel.getLastException() instanceof FatalConnectionException);
+	}
+
+	@Test
+	public void testUnixSocket() throws Exception {
+
+		Assume.assumeTrue(RespChannel.isUnixSocketSupported());
+
+		String path = newSocketPath();
+		RespStubServer unixServer = RespStubServer.startUnix(path, true, 50);
+		try {
+			RespChannel channel = new RespChannel(loop, 1000);
+			channel.connect(path, 1000);
+			Assert.assertEquals("PONG", channel.command("PING"));
+			Assert.assertEquals("OK", channel.command("SET", "key", "value"));
+			Assert.assertEquals("value", channel.command("GET", "key"));
+			channel.close();
+		} finally {
+			unixServer.shutdown();
+		}
+	}
+
+	@Test (timeout=10000)
+	public void testUnixSocketConnectTimesOut() throws Exception {
+
+		Assume.assumeTrue(RespChannel.isUnixSocketSupported());
+
+		// the server never accepts, connects block once its backlog is full
+		String path = newSocketPath();
+		RespStubServer unixServer = RespStubServer.startUnix(path, false, 1);
+		List<RespChannel> channels = new ArrayList<RespChannel>();
+		try {
+			DynoConnectException timedOut = null;
+			for (int i=0; i<10 && timedOut == null; i++) {
+				RespChannel channel = new RespChannel(loop, 1000);
+				channels.add(channel);
+				long startTime = System.currentTimeMillis();
+				try {
+					channel.connect(path, 200);
+				} catch (DynoConnectException e) {
+					timedOut = e;
+					Assert.assertTrue(System.currentTimeMillis() - startTime < 2000);
+				}
+			}
+			Assert.assertNotNull("Expected a connect to time out", timedOut);
+			Assert.assertTrue(timedOut.getCause().toString(), timedOut.getCause() instanceof SocketTimeoutException);
+		} finally {
+			for (RespChannel channel : channels) {
+				channel.close();
+			}
+			unixServer.shutdown();
+		}
+	}
+
+	private static String newSocketPath() {
+		return new File(System.getProperty("java.io.tmpdir"), "dyno-resp-" + System.nanoTime() + ".sock").getPath();
+	}
+
+	private void waitForClients(int count) throws InterruptedException {
+		for (int i=0; i<100 && server.getClientCount() < count; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(count, server.getClientCount());
+	}
+
+	private static void assertFailed(ListenableFuture<Object> reply, Class<? extends Exception> expected) throws Exception {
+		try {
+			reply.get(1, TimeUnit.SECONDS);
+			Assert.fail("Expected " + expected.getSimpleName());
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause().toString(), expected.isInstance(e.getCause()));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.netflix.dyno.resp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RespCodecTest {
+
+	private static final String Replies = "+OK\r\n"
+			+ ":42\r\n"
+			+ "$5\r\nhello\r\n"
+			+ "$0\r\n\r\n"
+			+ "$-1\r\n"
+			+ "-ERR wrong type\r\n"
+			+ "*3\r\n$3\r\nfoo\r\n*2\r\n:1\r\n$-1\r\n*0\r\n"
+			+ "*-1\r\n";
+
+	@Test
+	public void testEncode() throws Exception {
+
+		ByteBuffer buffer = RespCodec.encode("SET", "key", "v\u00e4lue");
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+
+		Assert.assertEquals("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$6\r\nv\u00e4lue\r\n", new String(bytes, RespCodec.UTF8));
+	}
+
+	@Test
+	public void testDecodeWholeReplies() throws Exception {
+
+		List<Object> replies = new RespCodec.Decoder().decode(ByteBuffer.wrap(Replies.getBytes(RespCodec.UTF8)));
+		assertReplies(replies);
+	}
+
+	@Test
+	public void testDecodeRepliesSplitAcrossReads() throws Exception {
+
+		byte[] bytes = Replies.getBytes(RespCodec.UTF8);
+
+		// every possible split point, including inside the CRLFs and the nested array
+		for (int fragment=1; fragment<bytes.length; fragment++) {
+			RespCodec.Decoder decoder = new RespCodec.Decoder();
+			List<Object> replies = new ArrayList<Object>();
+			for (int pos=0; pos<bytes.length; pos+=fragment) {
+				replies.addAll(decoder.decode(ByteBuffer.wrap(bytes, pos, Math.min(fragment, bytes.length - pos))));
+			}
+			assertReplies(replies);
+		}
+	}
+
+	@Test
+	public void testDecodeKeepsIncompleteReply() throws Exception {
+
+		RespCodec.Decoder decoder = new RespCodec.Decoder();
+		Assert.assertEquals(Collections.singletonList("OK"), decoder.decode(ByteBuffer.wrap("+OK\r\n*2\r\n$3\r\nfo".getBytes(RespCodec.UTF8))));
+		Assert.assertTrue(decoder.decode(ByteBuffer.wrap("o\r\n".getBytes(RespCodec.UTF8))).isEmpty());
+		Assert.assertEquals(Collections.singletonList(Arrays.asList("foo", "bar")), decoder.decode(ByteBuffer.wrap("$3\r\nbar\r\n".getBytes(RespCodec.UTF8))));
+	}
+
+	@Test
+	public void testDecodeLargeBulkString() throws Exception {
+
+		StringBuilder value = new StringBuilder();
+		for (int i=0; i<20000; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+		byte[] bytes = ("$" + value.length() + "\r\n" + value + "\r\n").getBytes(RespCodec.UTF8);
+
+		RespCodec.Decoder decoder = new RespCodec.Decoder();
+		Assert.assertTrue(decoder.decode(ByteBuffer.wrap(bytes, 0, 5000)).isEmpty());
+		Assert.assertEquals(Collections.singletonList(value.toString()), decoder.decode(ByteBuffer.wrap(bytes, 5000, bytes.length - 5000)));
+	}
+
+	@Test (expected=RespCodec.RespProtocolException.class)
+	public void testDecodeUnknownType() throws Exception {
+		new RespCodec.Decoder().decode(ByteBuffer.wrap("?garbage\r\n".getBytes(RespCodec.UTF8)));
+	}
+
+	@Test (expected=RespCodec.RespProtocolException.class)
+	public void testDecodeBadLength() throws Exception {
+		new RespCodec.Decoder().decode(ByteBuffer.wrap("$abc\r\n".getBytes(RespCodec.UTF8)));
+	}
+
+	private static void assertReplies(List<Object> replies) {
+
+		Assert.assertEquals(8, replies.size());
+		Assert.assertEquals("OK", replies.get(0));
+		Assert.assertEquals(42L, replies.get(1));
+		Assert.assertEquals("hello", replies.get(2));
+		Assert.assertEquals("", replies.get(3));
+		Assert.assertNull(replies.get(4));
+		Assert.assertTrue(replies.get(5) instanceof RespErrorException);
+		Assert.assertEquals("ERR wrong type", ((RespErrorException) replies.get(5)).getMessage());
+		Assert.assertEquals(Arrays.asList("foo", Arrays.asList(1L, null), Collections.emptyList()), replies.get(6));
+		Assert.assertNull(replies.get(7));
+	}
+}
@@ -0,0 +1,168 @@
+package com.netflix.dyno.resp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration.LoadBalancingStrategy;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.ListenableFuture;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.TokenMapSupplier;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type;
+import com.netflix.dyno.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.impl.LastOperationMonitor;
+import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+
+public class RespConnectionFactoryTest {
+
+	private RespStubServer server;
+	private RespEventLoop.Group eventLoops;
+	private ConnectionPoolImpl<RespChannel> pool;
+
+	@Before
+	public void beforeTest() throws Exception {
+
+		server = RespStubServer.start();
+		eventLoops = new RespEventLoop.Group(1);
+
+		final Host host = new Host("127.0.0.1", server.getPort(), Status.Up).setRack("localDC");
+		ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("RespTest")
+				.setLoadBalancingStrategy(LoadBalancingStrategy.RoundRobin)
+				.setMaxConnsPerHost(2)
+				.setPort(server.getPort());
+		config.setLocalDC("localDC");
+		config.withHostSupplier(new HostSupplier() {
+			@Override
+			public Collection<Host> getHosts() {
+				return Collections.singletonList(host);
+			}
+		});
+		config.withTokenSupplier(new TokenMapSupplier() {
+			@Override
+			public List<HostToken> getTokens(Set<Host> activeHosts) {
+				return Collections.singletonList(new HostToken(309687905L, host));
+			}
+
+			@Override
+			public HostToken getTokenForHost(Host h, Set<Host> activeHosts) {
+				return new HostToken(309687905L, host);
+			}
+		});
+
+		RespConnectionFactory factory = new RespConnectionFactory(config, new LastOperationMonitor(), eventLoops);
+		pool = new ConnectionPoolImpl<RespChannel>(factory, config, new CountingConnectionPoolMonitor(), Type.Async);
+		pool.start();
+	}
+
+	@After
+	public void afterTest() {
+		pool.shutdown();
+		eventLoops.shutdown();
+		server.shutdown();
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+
+		OperationResult<Object> result = pool.executeWithFailover(new TestOperation("key") {
+			@Override
+			public Object execute(RespChannel client, ConnectionContext state) throws DynoException {
+				return client.command("SET", "key", "value");
+			}
+		});
+		Assert.assertEquals("OK", result.getResult());
+		Assert.assertEquals(server.getPort(), result.getNode().getPort());
+
+		result = pool.executeWithFailover(new TestOperation("key") {
+			@Override
+			public Object execute(RespChannel client, ConnectionContext state) throws DynoException {
+				return client.command("GET", "key");
+			}
+		});
+		Assert.assertEquals("value", result.getResult());
+	}
+
+	@Test
+	public void testExecuteAsync() throws Exception {
+
+		pool.executeWithFailover(new TestOperation("key") {
+			@Override
+			public Object execute(RespChannel client, ConnectionContext state) throws DynoException {
+				return client.command("SET", "key", "value");
+			}
+		});
+
+		OperationResult<Object> result = pool.executeAsync(new TestAsyncOperation("GET", "key")).get(1, TimeUnit.SECONDS);
+		Assert.assertEquals("value", result.getResult());
+
+		// error replies are application errors, the pool hands them back as they are
+		try {
+			pool.executeAsync(new TestAsyncOperation("NOSUCHCOMMAND", "key")).get(1, TimeUnit.SECONDS);
+			Assert.fail("Expected error reply");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause().toString(), e.getCause() instanceof RespErrorException);
+		}
+	}
+
+	private static abstract class TestOperation implements Operation<RespChannel, Object> {
+
+		private final String key;
+
+		private TestOperation(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getName() {
+			return "TestOperation";
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private static class TestAsyncOperation implements AsyncOperation<RespChannel, Object> {
+
+		private final String command;
+		private final String key;
+
+		private TestAsyncOperation(String command, String key) {
+			this.command = command;
+			this.key = key;
+		}
+
+		@Override
+		public ListenableFuture<Object> executeAsync(RespChannel client) throws DynoException {
+			return client.commandAsync(command, key);
+		}
+
+		@Override
+		public String getName() {
+			return command;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+}
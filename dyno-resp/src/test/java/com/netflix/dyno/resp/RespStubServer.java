@@ -0,0 +1,224 @@
+package com.netflix.dyno.resp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In process redis server for the tests, it speaks just enough RESP to answer the commands the tests send.
+ *
+ * Besides PING, ECHO, GET, SET and DEL it knows a few commands that misbehave on purpose:
+ * DELAY millis value replies with the value after the delay, holding up the replies after it like a slow server does,
+ * HANG never replies again on the connection, and GARBAGE replies with bytes that aren't RESP.
+ *
+ * Each client is served on its own thread, commands are answered in the order they arrive.
+ */
+public class RespStubServer {
+
+	private final ServerSocketChannel server;
+	private final String socketPath;
+	private final ConcurrentHashMap<String, String> data = new ConcurrentHashMap<String, String>();
+	private final CopyOnWriteArrayList<SocketChannel> clients = new CopyOnWriteArrayList<SocketChannel>();
+
+	private volatile int fragmentSize = 0;
+	private volatile boolean running = true;
+
+	private RespStubServer(ServerSocketChannel server, String socketPath, boolean accept) {
+		this.server = server;
+		this.socketPath = socketPath;
+		if (accept) {
+			startThread("RespStubServer-Acceptor", new Runnable() {
+				@Override
+				public void run() {
+					acceptClients();
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return server listening on an ephemeral port on the loopback interface
+	 * @throws IOException
+	 */
+	public static RespStubServer start() throws IOException {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1", 0));
+		return new RespStubServer(server, null, true);
+	}
+
+	/**
+	 * Listen on a unix domain socket, only on runtimes where {@link RespChannel#isUnixSocketSupported()}
+	 * @param path
+	 * @param accept false to leave the clients in the backlog, their connects block once it is full
+	 * @param backlog
+	 * @return RespStubServer
+	 * @throws Exception
+	 */
+	public static RespStubServer startUnix(String path, boolean accept, int backlog) throws Exception {
+		ProtocolFamily unix = Enum.valueOf(StandardProtocolFamily.class, "UNIX");
+		ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+		SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, path);
+		server.bind(address, backlog);
+		return new RespStubServer(server, path, accept);
+	}
+
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Split every reply into fragments of the given size, written one at a time so that they arrive in separate reads
+	 * @param size 0 to write replies whole
+	 */
+	public void setFragmentSize(int size) {
+		fragmentSize = size;
+	}
+
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	/**
+	 * Drop the connections of all clients, the server keeps taking new ones
+	 */
+	public void closeClients() {
+		for (SocketChannel client : clients) {
+			closeQuietly(client);
+		}
+		clients.clear();
+	}
+
+	public void shutdown() {
+		running = false;
+		closeQuietly(server);
+		closeClients();
+		if (socketPath != null) {
+			new File(socketPath).delete();
+		}
+	}
+
+	private void acceptClients() {
+		while (running) {
+			try {
+				final SocketChannel client = server.accept();
+				clients.add(client);
+				startThread("RespStubServer-Client", new Runnable() {
+					@Override
+					public void run() {
+						serve(client);
+					}
+				});
+			} catch (IOException e) {
+				// shut down
+			}
+		}
+	}
+
+	private void serve(SocketChannel client) {
+
+		RespCodec.Decoder decoder = new RespCodec.Decoder();
+		ByteBuffer in = ByteBuffer.allocate(4096);
+		boolean hung = false;
+		try {
+			while (running && client.read(in) >= 0) {
+				in.flip();
+				for (Object command : decoder.decode(in)) {
+					if (hung) {
+						continue;
+					}
+					String reply = reply((List<?>) command);
+					if (reply == null) {
+						hung = true;
+					} else {
+						write(client, reply);
+					}
+				}
+				in.clear();
+			}
+		} catch (Exception e) {
+			// the client or the server went away
+		} finally {
+			clients.remove(client);
+			closeQuietly(client);
+		}
+	}
+
+	/**
+	 * @return the reply to the command, null to never reply again
+	 */
+	private String reply(List<?> command) throws InterruptedException {
+
+		String name = ((String) command.get(0)).toUpperCase();
+		if (name.equals("PING")) {
+			return "+PONG\r\n";
+		} else if (name.equals("ECHO")) {
+			return bulk((String) command.get(1));
+		} else if (name.equals("SET")) {
+			data.put((String) command.get(1), (String) command.get(2));
+			return "+OK\r\n";
+		} else if (name.equals("GET")) {
+			return bulk(data.get(command.get(1)));
+		} else if (name.equals("DEL")) {
+			return ":" + (data.remove(command.get(1)) != null ? 1 : 0) + "\r\n";
+		} else if (name.equals("DELAY")) {
+			Thread.sleep(Long.parseLong((String) command.get(1)));
+			return bulk((String) command.get(2));
+		} else if (name.equals("HANG")) {
+			return null;
+		} else if (name.equals("GARBAGE")) {
+			return "?garbage\r\n";
+		}
+		return "-ERR unknown command '" + name + "'\r\n";
+	}
+
+	private static String bulk(String value) {
+		if (value == null) {
+			return "$-1\r\n";
+		}
+		return "$" + value.getBytes(RespCodec.UTF8).length + "\r\n" + value + "\r\n";
+	}
+
+	private void write(SocketChannel client, String reply) throws IOException, InterruptedException {
+
+		ByteBuffer out = ByteBuffer.wrap(reply.getBytes(RespCodec.UTF8));
+		int size = fragmentSize;
+		if (size <= 0) {
+			while (out.hasRemaining()) {
+				client.write(out);
+			}
+			return;
+		}
+		while (out.hasRemaining()) {
+			ByteBuffer fragment = out.slice();
+			fragment.limit(Math.min(size, fragment.remaining()));
+			while (fragment.hasRemaining()) {
+				client.write(fragment);
+			}
+			out.position(out.position() + fragment.position());
+			Thread.sleep(1);
+		}
+	}
+
+	private static void startThread(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void closeQuietly(Channel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+	}
+}